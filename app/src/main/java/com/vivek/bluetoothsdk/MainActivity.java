@@ -17,6 +17,10 @@ import androidx.activity.ComponentActivity;
 import androidx.core.app.ActivityCompat;
 
 import com.vivek.blutoothsdk.BluetoothSDK;
+import com.vivek.blutoothsdk.ScanConfig;
+import com.vivek.blutoothsdk.ScanDelta;
+import com.vivek.blutoothsdk.ScanHandle;
+import com.vivek.blutoothsdk.ScanListener;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,11 +28,13 @@ import java.util.List;
 public class MainActivity extends ComponentActivity {
 
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 101;
+    private static final int MAX_LISTED_DEVICES = 100;
     private BluetoothSDK bluetoothSDK;
     private BluetoothDevice selectedDevice;
     private TextView statusTextView;
     private List<BluetoothDevice> deviceList = new ArrayList<>();
     private ArrayAdapter<String> deviceAdapter;
+    private ScanHandle scanHandle;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -112,7 +118,25 @@ public class MainActivity extends ComponentActivity {
             }
         });
 
+        // Devices from earlier sessions connect by address; no scan needed
+        if (hasBluetoothPermissions() && !bluetoothSDK.getKnownDevices().isEmpty()) {
+            reconnectKnownDevices();
+        }
+    }
+
+    private void reconnectKnownDevices() {
+        statusTextView.setText("Reconnecting to " + bluetoothSDK.getKnownDevices().size() + " known devices...");
+        bluetoothSDK.reconnectKnownDevices(new BluetoothSDK.PairingCallback() {
+            @Override
+            public void onPaired(BluetoothDevice device) {
+                updateStatus("Reconnected: " + device.getAddress());
+            }
 
+            @Override
+            public void onPairingFailed(BluetoothDevice device) {
+                updateStatus("Reconnect failed: " + device.getAddress());
+            }
+        });
     }
 
     private void handleScan() {
@@ -129,28 +153,42 @@ public class MainActivity extends ComponentActivity {
         deviceAdapter.clear();
 
 
-        bluetoothSDK.startScan(new BluetoothSDK.Callback<List<BluetoothDevice>>() {
+        // Foreground scan while the user is watching the list
+        ScanConfig config = new ScanConfig.Builder()
+                .setScanMode(ScanConfig.ScanMode.LOW_LATENCY)
+                .setFrameIntervalMillis(100) // redraw the list at most 10 times a second
+                .setDurationMillis(10000)
+                .build();
+
+        // Replacing the previous scan with an identical one keeps the hardware scan running, so
+        // repeated taps no longer count against the platform's limit of 5 scan starts per 30 s
+        if (scanHandle != null) {
+            scanHandle.stop();
+        }
+        scanHandle = bluetoothSDK.startScan(config, new ScanListener<BluetoothDevice>() {
             @Override
-            public void onResult(List<BluetoothDevice> devices) {
-
-                for (BluetoothDevice device : devices) {
-                    deviceList.add(device);
-                    if (ActivityCompat.checkSelfPermission(MainActivity.this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                        // TODO: Consider calling
-                        //    ActivityCompat#requestPermissions
-                        // here to request the missing permissions, and then overriding
-                        //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-                        //                                          int[] grantResults)
-                        // to handle the case where the user grants the permission. See the documentation
-                        // for ActivityCompat#requestPermissions for more details.
-                        return;
-                    }
+            public void onScanFrame(List<ScanDelta<BluetoothDevice>> deltas) {
+                if (ActivityCompat.checkSelfPermission(MainActivity.this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+                    return;
+                }
+                // Any delta can reorder the list; show it nearest first
+                List<BluetoothDevice> ranked = bluetoothSDK.getDevicesByProximity(MAX_LISTED_DEVICES);
+                if (ranked.equals(deviceList)) {
+                    return;
+                }
+                deviceList = ranked;
+                deviceAdapter.setNotifyOnChange(false);
+                deviceAdapter.clear();
+                for (BluetoothDevice device : ranked) {
                     deviceAdapter.add(device.getName() + " (" + device.getAddress() + ")");
-                    deviceAdapter.notifyDataSetChanged();
-                    Log.d("BLE", "Device: " + device.getName() + " [" + device.getAddress() + "]");
                 }
-                // Update UI or handle the list of devices
+                deviceAdapter.notifyDataSetChanged();
+                statusTextView.setText("Found " + deviceList.size() + " devices");
+            }
 
+            @Override
+            public void onScanFailed(int errorCode) {
+                updateStatus("Scan failed: " + errorCode);
             }
         });
     }
@@ -177,6 +215,7 @@ public class MainActivity extends ComponentActivity {
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        bluetoothSDK.onPermissionsChanged();
         if (requestCode == REQUEST_BLUETOOTH_PERMISSIONS) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
                 startScanning();
@@ -190,6 +229,6 @@ public class MainActivity extends ComponentActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        bluetoothSDK.stopScan();
+        bluetoothSDK.close();
     }
 }
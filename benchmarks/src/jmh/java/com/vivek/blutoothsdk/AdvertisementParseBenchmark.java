@@ -0,0 +1,109 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering a status beacon and reading its battery level: a ScanRecord
+ * style parse that copies every AD structure into maps, versus the view and
+ * a compiled matcher over the raw bytes. gc.alloc.rate.norm should be zero
+ * for the view, and only the decoded status for the decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdvertisementParseBenchmark {
+
+    private static final int COMPANY_ID = 0x0A12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Flags, a 16-bit service UUID, status manufacturer data and a name: 26 of 31 bytes
+    private final byte[] record = {
+            0x02, 0x01, 0x06,
+            0x03, 0x03, (byte) 0xAA, (byte) 0xFE,
+            0x07, (byte) 0xFF, 0x12, 0x0A, 0x01, 87, 0x04, 0x2A,
+            0x0A, 0x09, 'R', 'i', 'n', 'g', 'e', 'r', '-', '4', '2',
+            0, 0, 0, 0, 0
+    };
+    private final AdvertisementView view = new AdvertisementView();
+    private AdvertisementMatcher matcher;
+    private AdvertisementDecoders decoders;
+
+    @Setup
+    public void setup() {
+        // Status frames (type 1) with the alarm bit set
+        matcher = new AdvertisementMatcher.Builder()
+                .manufacturerData(COMPANY_ID, new byte[]{0x01, 0, 0x04}, new byte[]{(byte) 0xFF, 0, 0x04})
+                .build();
+        decoders = new AdvertisementDecoders.Builder()
+                .register(COMPANY_ID, new AdvertisementDecoder<int[]>() {
+                    @Override
+                    public int[] decode(byte[] data, int offset, int length) {
+                        return length >= 3 ? new int[]{data[offset + 1], data[offset + 2]} : null;
+                    }
+                })
+                .build();
+    }
+
+    @Benchmark
+    public int scanRecordStyle() {
+        Map<Integer, byte[]> manufacturerData = new HashMap<>();
+        Map<Integer, byte[]> serviceData = new HashMap<>();
+        List<Integer> serviceUuids = new ArrayList<>();
+        String name = null;
+        int position = 0;
+        while (position < record.length && record[position] != 0) {
+            int length = record[position] & 0xFF;
+            int type = record[position + 1] & 0xFF;
+            byte[] value = Arrays.copyOfRange(record, position + 2, position + 1 + length);
+            if (type == AdvertisementView.TYPE_MANUFACTURER_DATA) {
+                manufacturerData.put((value[0] & 0xFF) | (value[1] & 0xFF) << 8, Arrays.copyOfRange(value, 2,
+                        value.length));
+            } else if (type == AdvertisementView.TYPE_SERVICE_DATA16) {
+                serviceData.put((value[0] & 0xFF) | (value[1] & 0xFF) << 8, Arrays.copyOfRange(value, 2,
+                        value.length));
+            } else if (type == AdvertisementView.TYPE_UUID16_COMPLETE) {
+                for (int i = 0; i + 1 < value.length; i += 2) {
+                    serviceUuids.add((value[i] & 0xFF) | (value[i + 1] & 0xFF) << 8);
+                }
+            } else if (type == AdvertisementView.TYPE_NAME_COMPLETE) {
+                name = new String(value, UTF_8);
+            }
+            position += 1 + length;
+        }
+        byte[] status = manufacturerData.get(COMPANY_ID);
+        if (status == null || status.length < 3 || status[0] != 0x01 || (status[2] & 0x04) == 0) {
+            return -1;
+        }
+        return status[1] + (name != null ? 0 : 1) + serviceUuids.size() + serviceData.size();
+    }
+
+    @Benchmark
+    public int viewAndMatcher() {
+        view.reset(record);
+        if (!matcher.matches(view)) {
+            return -1;
+        }
+        int index = view.indexOfManufacturer(COMPANY_ID);
+        return view.getData()[view.getValueOffset(index) + 3];
+    }
+
+    @Benchmark
+    public Object viewAndDecoder() {
+        view.reset(record);
+        return matcher.matches(view) ? decoders.decode(view) : null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fragmenting a payload into MTU-sized write-without-response chunks and
+ * pushing each one through the operation queue. The simulated stack acks
+ * every chunk immediately, so this is pure SDK overhead per transfer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkWriteBenchmark {
+
+    @Param({"512", "16384", "262144"})
+    int payloadSize;
+
+    @Param({"23", "247", "517"})
+    int mtu;
+
+    private byte[] payload;
+    private QueuedScheduler scheduler;
+    private GattOperationQueue queue;
+    private BulkWriter.ChunkSink sink;
+    private BulkTransferResult result;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+        scheduler = new QueuedScheduler();
+        queue = new GattOperationQueue(scheduler);
+        sink = new BulkWriter.ChunkSink() {
+            @Override
+            public GattOperation requestMtu(int requested, BluetoothSDK.Callback<GattResult> callback) {
+                GattResult negotiated = new GattResult(GattOperation.Type.REQUEST_MTU, GattResult.GATT_SUCCESS,
+                        null, Math.min(requested, mtu));
+                return respond(GattOperation.Type.REQUEST_MTU, negotiated, callback);
+            }
+
+            @Override
+            public GattOperation writeChunk(final byte[] chunk, BluetoothSDK.Callback<GattResult> callback) {
+                GattResult written = GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.GATT_SUCCESS);
+                return new GattOperation(GattOperation.Type.WRITE_CHARACTERISTIC, null,
+                        GattOperation.DEFAULT_TIMEOUT_MILLIS, acknowledge(GattOperation.Type.WRITE_CHARACTERISTIC,
+                        written, chunk, blackhole), callback);
+            }
+        };
+    }
+
+    @Benchmark
+    public BulkTransferResult transfer() {
+        result = null;
+        new BulkWriter(queue, scheduler, sink, payload, new BluetoothSDK.Callback<BulkTransferResult>() {
+            @Override
+            public void onResult(BulkTransferResult transferResult) {
+                result = transferResult;
+            }
+        }).start(mtu);
+        scheduler.runPending();
+        if (result == null || !result.isSuccess()) {
+            throw new IllegalStateException("Transfer did not complete: " + result);
+        }
+        return result;
+    }
+
+    private GattOperation respond(GattOperation.Type type, GattResult response,
+                                  BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(type, null, GattOperation.DEFAULT_TIMEOUT_MILLIS,
+                acknowledge(type, response, null, null), callback);
+    }
+
+    // The chunk buffer is reused, so the "radio" must consume it when the write starts
+    private GattOperation.Starter acknowledge(final GattOperation.Type type, final GattResult response,
+                                              final byte[] chunk, final Blackhole blackhole) {
+        return new GattOperation.Starter() {
+            @Override
+            public boolean start() {
+                if (chunk != null) {
+                    blackhole.consume(chunk[chunk.length - 1]);
+                }
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.onComplete(type, null, response);
+                    }
+                });
+                return true;
+            }
+        };
+    }
+}
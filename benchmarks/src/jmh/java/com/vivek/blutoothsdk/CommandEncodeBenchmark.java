@@ -0,0 +1,62 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-send cost of turning a command into bytes: the legacy String path,
+ * the pooled typed encoder and a cached constant. gc.alloc.rate.norm should
+ * be zero for the last two.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandEncodeBenchmark {
+
+    enum Ring {
+        START,
+        STOP
+    }
+
+    private static final CommandEncoder<Ring> RING = new CommandEncoder<Ring>() {
+        @Override
+        public void encode(Ring command, ByteBuffer out) {
+            out.put((byte) (command == Ring.START ? 0x01 : 0x02)).putShort((short) 500);
+        }
+    };
+
+    private CommandWriter writer;
+    private CommandCache<Ring> cache;
+
+    @Setup
+    public void setup() {
+        writer = new CommandWriter();
+        cache = new CommandCache<>(RING);
+    }
+
+    @Benchmark
+    public byte[] stringGetBytes() {
+        return "START:500".getBytes();
+    }
+
+    @Benchmark
+    public int pooledEncode() {
+        byte[] value = writer.encode(Ring.START, RING);
+        int length = value.length;
+        writer.recycle(value);
+        return length;
+    }
+
+    @Benchmark
+    public byte[] cachedConstant() {
+        return cache.get(Ring.START).bytes();
+    }
+}
@@ -0,0 +1,85 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation overhead of the GATT queue: enqueue, permit, timeout arming,
+ * start, completion matching and callback, with a stack that answers at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GattQueueBenchmark {
+
+    private static final UUID CHARACTERISTIC = UUID.fromString("2F123457-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final int BATCH = 16;
+
+    @Param({"false", "true"})
+    boolean arbitrated;
+
+    private QueuedScheduler scheduler;
+    private GattOperationQueue queue;
+    private GattOperation.Starter starter;
+    private BluetoothSDK.Callback<GattResult> callback;
+    private int completed;
+
+    @Setup
+    public void setup() {
+        scheduler = new QueuedScheduler();
+        queue = new GattOperationQueue(scheduler, arbitrated ? new OperationArbiter(1) : null);
+        final GattResult success = GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.GATT_SUCCESS);
+        final Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, CHARACTERISTIC, success);
+            }
+        };
+        starter = new GattOperation.Starter() {
+            @Override
+            public boolean start() {
+                scheduler.post(completion);
+                return true;
+            }
+        };
+        callback = new BluetoothSDK.Callback<GattResult>() {
+            @Override
+            public void onResult(GattResult result) {
+                completed++;
+            }
+        };
+    }
+
+    @Benchmark
+    public int single() {
+        queue.enqueue(newOperation());
+        scheduler.runPending();
+        return completed;
+    }
+
+    // Operations that wait behind the one in flight, as in a burst of writes
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int burst() {
+        for (int i = 0; i < BATCH; i++) {
+            queue.enqueue(newOperation());
+        }
+        scheduler.runPending();
+        return completed;
+    }
+
+    private GattOperation newOperation() {
+        return new GattOperation(GattOperation.Type.WRITE_CHARACTERISTIC, CHARACTERISTIC,
+                GattOperation.DEFAULT_TIMEOUT_MILLIS, starter, callback);
+    }
+}
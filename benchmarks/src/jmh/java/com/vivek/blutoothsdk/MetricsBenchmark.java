@@ -0,0 +1,45 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording cost of {@link SdkMetrics}; gc.alloc.rate.norm must stay at zero.
+ * The contended variant has scan and SDK threads recording at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetricsBenchmark {
+
+    private SdkMetrics metrics;
+
+    @Setup
+    public void setup() {
+        metrics = new SdkMetrics(new QueuedScheduler());
+    }
+
+    @Benchmark
+    public void increment() {
+        metrics.increment(SdkMetrics.Counter.SCAN_RESULTS);
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        metrics.record(SdkMetrics.Histogram.GATT_LATENCY, System.nanoTime() & 1023);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void recordLatencyContended() {
+        metrics.record(SdkMetrics.Histogram.GATT_LATENCY, System.nanoTime() & 1023);
+    }
+}
@@ -0,0 +1,59 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-notification cost of handing a value from the Bluetooth thread to a
+ * consumer: a copied array through a blocking queue versus the pooled ring.
+ * gc.alloc.rate.norm should be zero for the ring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NotificationRingBenchmark {
+
+    // An accelerometer sample: three axes and a sequence number
+    private final byte[] value = new byte[20];
+    private final NotificationConsumer consumer = new NotificationConsumer() {
+        @Override
+        public void onNotification(byte[] buffer, int length, long timestampMillis) {
+            sum += buffer[0] + length;
+        }
+    };
+
+    private ArrayBlockingQueue<byte[]> queue;
+    private NotificationRing ring;
+    private long sum;
+
+    @Setup
+    public void setup() {
+        queue = new ArrayBlockingQueue<>(SubscriptionConfig.DEFAULT_CAPACITY);
+        ring = new NotificationRing(SubscriptionConfig.DEFAULT_CAPACITY, 244,
+                SubscriptionConfig.Backpressure.DROP_OLDEST, 0);
+    }
+
+    @Benchmark
+    public long copiedQueue() {
+        value[0]++;
+        queue.offer(value.clone());
+        byte[] taken = queue.poll();
+        return sum += taken[0] + taken.length;
+    }
+
+    @Benchmark
+    public long pooledRing() {
+        value[0]++;
+        ring.offer(value, 0);
+        ring.drain(consumer, 1);
+        return sum;
+    }
+}
@@ -0,0 +1,38 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayDeque;
+
+// Runs posted tasks when drained; delayed tasks (operation timeouts) never fire
+class QueuedScheduler implements Scheduler {
+
+    private static final Cancellable NOT_SCHEDULED = new Cancellable() {
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private long now;
+
+    @Override
+    public void post(Runnable task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public Cancellable postDelayed(Runnable task, long delayMillis) {
+        return NOT_SCHEDULED;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    void runPending() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.vivek.blutoothsdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one scan result once it reaches the SDK: the proximity table with
+ * RSSI smoothing and re-ranking, and the full session path including frame
+ * coalescing and lost-device expiry.
+ * Results cycle through all known devices, as a busy environment does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScanIngestBenchmark {
+
+    // The session timer runs once per this many results
+    private static final int TICK_EVERY = 1024;
+
+    @Param({"16", "256", "4096"})
+    int deviceCount;
+
+    private final byte[] advertisement = new byte[31];
+    private final Object device = new Object();
+    private long[] addresses;
+    private ProximityTable<Object> table;
+    private ScanSession<Object> session;
+    private int cursor;
+    private long now;
+
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        addresses = new long[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            addresses[i] = 0xA4C1380B0000L + i * 7919L;
+        }
+        table = new ProximityTable<>(deviceCount);
+        // Room for every device, so results update rather than evict
+        ScanConfig config = new ScanConfig.Builder().setMaxDevices(deviceCount).build();
+        session = new ScanSession<>(config, new ScanListener<Object>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<Object>> frame) {
+                blackhole.consume(frame);
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+            }
+        });
+        for (long address : addresses) {
+            table.ingest(address, device, -60, advertisement, 0);
+            session.onResult(address, device, -60, advertisement, 0);
+        }
+    }
+
+    @Benchmark
+    public int tableIngest() {
+        int i = next();
+        return table.ingest(addresses[i], device, -60 - (i & 15), advertisement, now);
+    }
+
+    // Should not depend on deviceCount
+    @Benchmark
+    public int tableNearest() {
+        return table.nearest();
+    }
+
+    @Benchmark
+    public void sessionOnResult() {
+        int i = next();
+        session.onResult(addresses[i], device, -60 - (i & 15), advertisement, now);
+        if ((now & (TICK_EVERY - 1)) == 0) {
+            session.tick(now);
+        }
+    }
+
+    // The scan clock advances 1 ms per result, so nothing goes lost at 4096 devices
+    private int next() {
+        now++;
+        int i = cursor;
+        cursor = i + 1 == deviceCount ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,12 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Stand-in for the SDK entry point on the plain JVM. The real class needs the
+ * Android framework; the benchmarked sources only use its callback type.
+ */
+public class BluetoothSDK {
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+}
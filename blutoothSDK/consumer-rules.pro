@@ -0,0 +1,6 @@
+# BluetoothGattCallback.onConnectionUpdated is @hide, so R8 sees no caller for
+# our override and may strip it; the stack calls it by name to report the
+# negotiated connection interval.
+-keepclassmembers class * extends android.bluetooth.BluetoothGattCallback {
+    public void onConnectionUpdated(android.bluetooth.BluetoothGatt, int, int, int, int);
+}
@@ -0,0 +1,12 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Turns one company's manufacturer data into a typed status, e.g. battery
+ * level and alarm flags. Called on the scanner thread for every matching
+ * advertisement, so it should read the bytes in place and return quickly.
+ */
+public interface AdvertisementDecoder<T> {
+
+    // The payload follows the company ID; null if it is not a status this decoder understands
+    T decode(byte[] data, int offset, int length);
+}
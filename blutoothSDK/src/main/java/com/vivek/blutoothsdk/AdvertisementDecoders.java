@@ -0,0 +1,103 @@
+package com.vivek.blutoothsdk;
+
+import java.util.Arrays;
+
+/**
+ * Manufacturer data decoders keyed by company ID. Lookup is a binary search
+ * over a sorted int array, so decoding an advertisement allocates nothing
+ * beyond what the decoder itself returns.
+ */
+public final class AdvertisementDecoders {
+
+    private final int[] companyIds;
+    private final AdvertisementDecoder<?>[] decoders;
+
+    private AdvertisementDecoders(Builder builder) {
+        int count = builder.count;
+        companyIds = Arrays.copyOf(builder.companyIds, count);
+        decoders = Arrays.copyOf(builder.decoders, count);
+        // Insertion sort keeps the two arrays paired; registrations are few
+        for (int i = 1; i < count; i++) {
+            int id = companyIds[i];
+            AdvertisementDecoder<?> decoder = decoders[i];
+            int j = i - 1;
+            for (; j >= 0 && companyIds[j] > id; j--) {
+                companyIds[j + 1] = companyIds[j];
+                decoders[j + 1] = decoders[j];
+            }
+            companyIds[j + 1] = id;
+            decoders[j + 1] = decoder;
+        }
+    }
+
+    public boolean isEmpty() {
+        return companyIds.length == 0;
+    }
+
+    /**
+     * Status from the first manufacturer data whose company has a decoder
+     * that accepts it, or null.
+     */
+    public Object decode(AdvertisementView view) {
+        for (int i = 0; i < view.getStructureCount(); i++) {
+            Object status = decodeAt(view, i);
+            if (status != null) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    // Wraps the decoded status with where it came from; null if nothing decoded
+    Beacon decode(AdvertisementView view, long address, int rssi, long timestampMillis) {
+        for (int i = 0; i < view.getStructureCount(); i++) {
+            Object status = decodeAt(view, i);
+            if (status != null) {
+                return new Beacon(address, view.keyAt(i), rssi, status, timestampMillis);
+            }
+        }
+        return null;
+    }
+
+    // Null unless structure i is manufacturer data with a decoder that accepts it
+    private Object decodeAt(AdvertisementView view, int i) {
+        if (view.getType(i) != AdvertisementView.TYPE_MANUFACTURER_DATA || view.getValueLength(i) < 2) {
+            return null;
+        }
+        int slot = Arrays.binarySearch(companyIds, view.keyAt(i));
+        return slot >= 0
+                ? decoders[slot].decode(view.getData(), view.getValueOffset(i) + 2, view.getValueLength(i) - 2)
+                : null;
+    }
+
+    public static final class Builder {
+        private int[] companyIds = new int[4];
+        private AdvertisementDecoder<?>[] decoders = new AdvertisementDecoder<?>[4];
+        private int count;
+
+        // A later registration for the same company replaces the earlier one
+        public Builder register(int companyId, AdvertisementDecoder<?> decoder) {
+            if (companyId < 0 || companyId > 0xFFFF) {
+                throw new IllegalArgumentException("Invalid company ID: " + companyId);
+            }
+            for (int i = 0; i < count; i++) {
+                if (companyIds[i] == companyId) {
+                    decoders[i] = decoder;
+                    return this;
+                }
+            }
+            if (count == companyIds.length) {
+                companyIds = Arrays.copyOf(companyIds, count * 2);
+                decoders = Arrays.copyOf(decoders, count * 2);
+            }
+            companyIds[count] = companyId;
+            decoders[count] = decoder;
+            count++;
+            return this;
+        }
+
+        public AdvertisementDecoders build() {
+            return new AdvertisementDecoders(this);
+        }
+    }
+}
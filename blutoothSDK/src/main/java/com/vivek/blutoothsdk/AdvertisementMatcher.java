@@ -0,0 +1,191 @@
+package com.vivek.blutoothsdk;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Software filter over raw advertisements, checked against an
+ * {@link AdvertisementView} without allocating. Conditions added in a row
+ * must all hold; {@link Builder#or()} starts an alternative. Building
+ * compiles the conditions into flat int and byte tables, with the masks
+ * already applied to the expected bytes, so matching is a loop of masked
+ * compares.
+ */
+public final class AdvertisementMatcher {
+
+    // Condition kinds; every condition is one row of ROW ints
+    private static final int MANUFACTURER = 0;
+    private static final int SERVICE_DATA = 1;
+    private static final int SERVICE_UUID16 = 2;
+    private static final int AD_TYPE = 3;
+    private static final int NAME_PREFIX = 4;
+
+    // kind, key (company ID, UUID or AD type), pattern offset, pattern length, value offset the pattern applies at
+    private static final int ROW = 5;
+
+    private final int[] rows;
+    // Index of the first row after each alternative
+    private final int[] alternativeEnds;
+    private final byte[] patterns;
+    private final byte[] masks;
+
+    private AdvertisementMatcher(Builder builder) {
+        builder.or();
+        this.rows = Arrays.copyOf(builder.rows, builder.rowCount * ROW);
+        this.alternativeEnds = Arrays.copyOf(builder.alternativeEnds, builder.alternativeCount);
+        this.patterns = builder.patterns.toByteArray();
+        this.masks = builder.masks.toByteArray();
+    }
+
+    public boolean matches(AdvertisementView view) {
+        int start = 0;
+        for (int end : alternativeEnds) {
+            boolean all = true;
+            for (int row = start; row < end && all; row++) {
+                all = matchesRow(view, row * ROW);
+            }
+            if (all) {
+                return true;
+            }
+            start = end;
+        }
+        return false;
+    }
+
+    private boolean matchesRow(AdvertisementView view, int row) {
+        int kind = rows[row];
+        int key = rows[row + 1];
+        if (kind == SERVICE_UUID16) {
+            return view.hasServiceUuid16(key);
+        }
+        for (int i = 0; i < view.getStructureCount(); i++) {
+            int type = view.getType(i);
+            boolean candidate;
+            switch (kind) {
+                case MANUFACTURER:
+                    candidate = type == AdvertisementView.TYPE_MANUFACTURER_DATA
+                            && view.getValueLength(i) >= 2 && view.keyAt(i) == key;
+                    break;
+                case SERVICE_DATA:
+                    candidate = type == AdvertisementView.TYPE_SERVICE_DATA16
+                            && view.getValueLength(i) >= 2 && view.keyAt(i) == key;
+                    break;
+                case NAME_PREFIX:
+                    candidate = type == AdvertisementView.TYPE_NAME_COMPLETE
+                            || type == AdvertisementView.TYPE_NAME_SHORT;
+                    break;
+                default:
+                    candidate = type == key;
+                    break;
+            }
+            if (candidate && matchesPattern(view, i, rows[row + 2], rows[row + 3], rows[row + 4])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesPattern(AdvertisementView view, int index, int pattern, int length, int skip) {
+        if (view.getValueLength(index) - skip < length) {
+            return false;
+        }
+        byte[] data = view.getData();
+        int offset = view.getValueOffset(index) + skip;
+        for (int j = 0; j < length; j++) {
+            if ((data[offset + j] & masks[pattern + j]) != patterns[pattern + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static final class Builder {
+
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        private int[] rows = new int[4 * ROW];
+        private int rowCount;
+        private int[] alternativeEnds = new int[2];
+        private int alternativeCount;
+        private final ByteArrayOutputStream patterns = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream masks = new ByteArrayOutputStream();
+
+        /**
+         * Manufacturer data from a company whose payload (after the company
+         * ID) starts with data; mask may be null to compare every bit, and
+         * data may be null to match on the company ID alone.
+         */
+        public Builder manufacturerData(int companyId, byte[] data, byte[] mask) {
+            return add(MANUFACTURER, checkUint16(companyId), data, mask, 2);
+        }
+
+        // Service data for a 16-bit UUID whose payload starts with data
+        public Builder serviceData(int uuid16, byte[] data, byte[] mask) {
+            return add(SERVICE_DATA, checkUint16(uuid16), data, mask, 2);
+        }
+
+        // A 16-bit service UUID in the complete or incomplete list
+        public Builder serviceUuid16(int uuid16) {
+            return add(SERVICE_UUID16, checkUint16(uuid16), null, null, 0);
+        }
+
+        // Any AD structure of the type whose value starts with data
+        public Builder adType(int type, byte[] data, byte[] mask) {
+            if (type < 1 || type > 0xFF) {
+                throw new IllegalArgumentException("Invalid AD type: " + type);
+            }
+            return add(AD_TYPE, type, data, mask, 0);
+        }
+
+        public Builder namePrefix(String prefix) {
+            return add(NAME_PREFIX, 0, prefix.getBytes(UTF_8), null, 0);
+        }
+
+        // Conditions from here on form another alternative; an empty alternative matches everything
+        public Builder or() {
+            int start = alternativeCount == 0 ? 0 : alternativeEnds[alternativeCount - 1];
+            if (rowCount == start && alternativeCount > 0) {
+                return this;
+            }
+            if (alternativeCount == alternativeEnds.length) {
+                alternativeEnds = Arrays.copyOf(alternativeEnds, alternativeCount * 2);
+            }
+            alternativeEnds[alternativeCount++] = rowCount;
+            return this;
+        }
+
+        public AdvertisementMatcher build() {
+            return new AdvertisementMatcher(this);
+        }
+
+        private Builder add(int kind, int key, byte[] data, byte[] mask, int skip) {
+            if (mask != null && (data == null || mask.length != data.length)) {
+                throw new IllegalArgumentException("Mask length must match data length");
+            }
+            int length = data != null ? data.length : 0;
+            if ((rowCount + 1) * ROW > rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            int row = rowCount++ * ROW;
+            rows[row] = kind;
+            rows[row + 1] = key;
+            rows[row + 2] = patterns.size();
+            rows[row + 3] = length;
+            rows[row + 4] = skip;
+            for (int i = 0; i < length; i++) {
+                int bits = mask != null ? mask[i] : 0xFF;
+                masks.write(bits);
+                patterns.write(data[i] & bits);
+            }
+            return this;
+        }
+
+        private static int checkUint16(int value) {
+            if (value < 0 || value > 0xFFFF) {
+                throw new IllegalArgumentException("Not a 16-bit value: " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.vivek.blutoothsdk;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Index over the AD structures of a raw advertisement (length, type, value,
+ * repeated), built in one pass over the caller's array without copying it.
+ * Reuse one view per thread: {@link #reset} overwrites the index, and the
+ * offsets it hands out point into whatever array was passed last.
+ *
+ * A structure that runs past the end of the record is left out and
+ * {@link #isTruncated()} is set; everything before it is still indexed.
+ */
+public final class AdvertisementView {
+
+    public static final int TYPE_FLAGS = 0x01;
+    public static final int TYPE_UUID16_INCOMPLETE = 0x02;
+    public static final int TYPE_UUID16_COMPLETE = 0x03;
+    public static final int TYPE_UUID32_INCOMPLETE = 0x04;
+    public static final int TYPE_UUID32_COMPLETE = 0x05;
+    public static final int TYPE_UUID128_INCOMPLETE = 0x06;
+    public static final int TYPE_UUID128_COMPLETE = 0x07;
+    public static final int TYPE_NAME_SHORT = 0x08;
+    public static final int TYPE_NAME_COMPLETE = 0x09;
+    public static final int TYPE_TX_POWER = 0x0A;
+    public static final int TYPE_SERVICE_DATA16 = 0x16;
+    public static final int TYPE_MANUFACTURER_DATA = 0xFF;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Bluetooth base UUID 00000000-0000-1000-8000-00805F9B34FB that 16 and 32-bit UUIDs expand into
+    private static final long BASE_UUID_MSB = 0x1000L;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    private byte[] data;
+    private int count;
+    private boolean truncated;
+    // Per structure: AD type, offset of the value in data, value length
+    private int[] types = new int[16];
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+
+    public AdvertisementView reset(byte[] record) {
+        return reset(record, 0, record != null ? record.length : 0);
+    }
+
+    public AdvertisementView reset(byte[] record, int offset, int length) {
+        data = record;
+        count = 0;
+        truncated = false;
+        int end = offset + length;
+        int position = offset;
+        while (position < end) {
+            int structureLength = record[position] & 0xFF;
+            if (structureLength == 0) {
+                // Zero padding fills the rest of a legacy 31-byte record
+                break;
+            }
+            if (position + 1 + structureLength > end) {
+                truncated = true;
+                break;
+            }
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            types[count] = record[position + 1] & 0xFF;
+            offsets[count] = position + 2;
+            lengths[count] = structureLength - 1;
+            count++;
+            position += 1 + structureLength;
+        }
+        return this;
+    }
+
+    // The array passed to reset; offsets index into it
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getStructureCount() {
+        return count;
+    }
+
+    public int getType(int index) {
+        return types[index];
+    }
+
+    public int getValueOffset(int index) {
+        return offsets[index];
+    }
+
+    public int getValueLength(int index) {
+        return lengths[index];
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    // First structure of the given type, or -1
+    public int indexOf(int type) {
+        for (int i = 0; i < count; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Manufacturer data from a company, or -1; its payload starts two bytes into the value
+    public int indexOfManufacturer(int companyId) {
+        return indexOfKeyed(TYPE_MANUFACTURER_DATA, companyId);
+    }
+
+    // Service data for a 16-bit UUID, or -1; its payload starts two bytes into the value
+    public int indexOfServiceData(int uuid16) {
+        return indexOfKeyed(TYPE_SERVICE_DATA16, uuid16);
+    }
+
+    // Company ID of the first manufacturer data, or -1
+    public int getManufacturerId() {
+        int index = indexOf(TYPE_MANUFACTURER_DATA);
+        return index >= 0 && lengths[index] >= 2 ? keyAt(index) : -1;
+    }
+
+    public boolean hasServiceUuid16(int uuid16) {
+        for (int i = 0; i < count; i++) {
+            if (types[i] == TYPE_UUID16_COMPLETE || types[i] == TYPE_UUID16_INCOMPLETE) {
+                for (int j = offsets[i]; j + 1 < offsets[i] + lengths[i]; j += 2) {
+                    if (((data[j] & 0xFF) | (data[j + 1] & 0xFF) << 8) == uuid16) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether any advertised service UUID, 16, 32 or 128-bit, equals uuid on
+     * the bits set in mask; a null mask compares every bit. Shorter UUIDs
+     * are compared in their expanded 128-bit form.
+     */
+    public boolean hasServiceUuid(UUID uuid, UUID mask) {
+        long msbMask = mask != null ? mask.getMostSignificantBits() : -1L;
+        long lsbMask = mask != null ? mask.getLeastSignificantBits() : -1L;
+        long msb = uuid.getMostSignificantBits() & msbMask;
+        long lsb = uuid.getLeastSignificantBits() & lsbMask;
+        for (int i = 0; i < count; i++) {
+            int width;
+            switch (types[i]) {
+                case TYPE_UUID16_INCOMPLETE:
+                case TYPE_UUID16_COMPLETE:
+                    width = 2;
+                    break;
+                case TYPE_UUID32_INCOMPLETE:
+                case TYPE_UUID32_COMPLETE:
+                    width = 4;
+                    break;
+                case TYPE_UUID128_INCOMPLETE:
+                case TYPE_UUID128_COMPLETE:
+                    width = 16;
+                    break;
+                default:
+                    continue;
+            }
+            for (int j = offsets[i]; j + width <= offsets[i] + lengths[i]; j += width) {
+                long candidateMsb;
+                long candidateLsb;
+                if (width == 16) {
+                    candidateLsb = littleEndian(j, 8);
+                    candidateMsb = littleEndian(j + 8, 8);
+                } else {
+                    candidateMsb = littleEndian(j, width) << 32 | BASE_UUID_MSB;
+                    candidateLsb = BASE_UUID_LSB;
+                }
+                if ((candidateMsb & msbMask) == msb && (candidateLsb & lsbMask) == lsb) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Integer.MIN_VALUE if not advertised
+    public int getTxPower() {
+        int index = indexOf(TYPE_TX_POWER);
+        return index >= 0 && lengths[index] >= 1 ? data[offsets[index]] : Integer.MIN_VALUE;
+    }
+
+    // -1 if not advertised
+    public int getFlags() {
+        int index = indexOf(TYPE_FLAGS);
+        return index >= 0 && lengths[index] >= 1 ? data[offsets[index]] & 0xFF : -1;
+    }
+
+    // Complete or shortened name, null if none; allocates, unlike the rest
+    public String getLocalName() {
+        int index = indexOf(TYPE_NAME_COMPLETE);
+        if (index < 0) {
+            index = indexOf(TYPE_NAME_SHORT);
+        }
+        return index >= 0 ? new String(data, offsets[index], lengths[index], UTF_8) : null;
+    }
+
+    // Little-endian 16-bit company ID or service UUID at the start of a value
+    int keyAt(int index) {
+        int offset = offsets[index];
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private long littleEndian(int offset, int length) {
+        long value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private int indexOfKeyed(int type, int key) {
+        for (int i = 0; i < count; i++) {
+            if (types[i] == type && lengths[i] >= 2 && keyAt(i) == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
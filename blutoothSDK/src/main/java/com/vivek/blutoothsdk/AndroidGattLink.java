@@ -0,0 +1,248 @@
+package com.vivek.blutoothsdk;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.BluetoothStatusCodes;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * {@link GattLink} over a platform BluetoothGatt. Characteristic references
+ * are resolved through an {@link AttributeCache} that is dropped whenever the
+ * handle's services change or go away.
+ */
+@SuppressLint("MissingPermission")
+class AndroidGattLink implements GattLink {
+
+    private final GattLink.Listener listener;
+    private final AttributeCache<BluetoothGattCharacteristic> attributes;
+    private volatile BluetoothGatt gatt;
+
+    final BluetoothGattCallback callback = new BluetoothGattCallback() {
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                attributes.invalidate();
+            }
+            listener.onConnectionStateChange(AndroidGattLink.this, status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            attributes.invalidate();
+            listener.onServicesDiscovered(AndroidGattLink.this, status);
+        }
+
+        // API 33+; the value is no longer stored on the characteristic
+        @Override
+        public void onCharacteristicRead(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic,
+                                         @NonNull byte[] value, int status) {
+            listener.onCharacteristicRead(AndroidGattLink.this, characteristic.getUuid(), value, status);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                listener.onCharacteristicRead(AndroidGattLink.this, characteristic.getUuid(),
+                        characteristic.getValue(), status);
+            }
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            listener.onCharacteristicWrite(AndroidGattLink.this, characteristic.getUuid(), status);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            listener.onDescriptorWrite(AndroidGattLink.this, descriptor.getUuid(), status);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            listener.onMtuChanged(AndroidGattLink.this, mtu, status);
+        }
+
+        // Hidden in the public SDK, but the stack calls it on every connection update since API 26;
+        // consumer-rules.pro keeps it from being stripped in minified apps
+        public void onConnectionUpdated(BluetoothGatt gatt, int interval, int latency, int timeout, int status) {
+            listener.onConnectionUpdated(AndroidGattLink.this, interval, latency, timeout, status);
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            listener.onPhyUpdate(AndroidGattLink.this, txPhy, rxPhy, status);
+        }
+
+        // API 33+
+        @Override
+        public void onCharacteristicChanged(@NonNull BluetoothGatt gatt,
+                                            @NonNull BluetoothGattCharacteristic characteristic,
+                                            @NonNull byte[] value) {
+            listener.onCharacteristicChanged(AndroidGattLink.this, characteristic.getService().getUuid(),
+                    characteristic.getUuid(), value);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                listener.onCharacteristicChanged(AndroidGattLink.this, characteristic.getService().getUuid(),
+                        characteristic.getUuid(), characteristic.getValue());
+            }
+        }
+
+        // API 31+; older stacks rediscover on their own after Service Changed
+        @Override
+        public void onServiceChanged(@NonNull BluetoothGatt gatt) {
+            attributes.invalidate();
+            listener.onServiceChanged(AndroidGattLink.this);
+        }
+    };
+
+    AndroidGattLink(GattLink.Listener listener) {
+        this.listener = listener;
+        this.attributes = new AttributeCache<>(new AttributeCache.Resolver<BluetoothGattCharacteristic>() {
+            @Override
+            public BluetoothGattCharacteristic resolve(UUID serviceUuid, UUID characteristicUuid) {
+                BluetoothGatt current = gatt;
+                BluetoothGattService service = current != null ? current.getService(serviceUuid) : null;
+                return service != null ? service.getCharacteristic(characteristicUuid) : null;
+            }
+        });
+    }
+
+    void attach(BluetoothGatt gatt) {
+        this.gatt = gatt;
+    }
+
+    @Override
+    public boolean connect() {
+        return gatt.connect();
+    }
+
+    @Override
+    public void disconnect() {
+        gatt.disconnect();
+    }
+
+    @Override
+    public void close() {
+        attributes.invalidate();
+        gatt.close();
+    }
+
+    @Override
+    public boolean discoverServices() {
+        return gatt.discoverServices();
+    }
+
+    @Override
+    public GattLayout getLayout() {
+        GattLayout.Builder builder = new GattLayout.Builder();
+        for (BluetoothGattService service : gatt.getServices()) {
+            builder.addService(service.getUuid());
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+                builder.addCharacteristic(service.getUuid(), characteristic.getUuid());
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int getProperties(UUID service, UUID characteristic) {
+        BluetoothGattCharacteristic found = attributes.get(service, characteristic);
+        return found != null ? found.getProperties() : NOT_FOUND;
+    }
+
+    @Override
+    public boolean hasDescriptor(UUID service, UUID characteristic, UUID descriptor) {
+        BluetoothGattCharacteristic found = attributes.get(service, characteristic);
+        return found != null && found.getDescriptor(descriptor) != null;
+    }
+
+    @Override
+    public boolean readCharacteristic(UUID service, UUID characteristic) {
+        BluetoothGattCharacteristic found = attributes.get(service, characteristic);
+        return found != null && gatt.readCharacteristic(found);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public int writeCharacteristic(UUID service, UUID characteristic, byte[] value, int writeType) {
+        BluetoothGattCharacteristic found = attributes.get(service, characteristic);
+        if (found == null) {
+            return GattResult.STATUS_NOT_FOUND;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            switch (gatt.writeCharacteristic(found, value, writeType)) {
+                case BluetoothStatusCodes.SUCCESS:
+                    return GattResult.GATT_SUCCESS;
+                case BluetoothStatusCodes.ERROR_GATT_WRITE_REQUEST_BUSY:
+                    return GattResult.STATUS_BUSY;
+                default:
+                    // Missing permission, not connected, write not allowed, service not bound
+                    return GattResult.STATUS_REJECTED;
+            }
+        }
+        // Before API 33 a refusal is only a boolean; rule out the causes we can see first
+        int writable = BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE;
+        if ((found.getProperties() & writable) == 0) {
+            return GattResult.STATUS_REJECTED;
+        }
+        found.setWriteType(writeType);
+        found.setValue(value);
+        // What is left is the stack's device-busy flag, or a handle that is already closed
+        return gatt.writeCharacteristic(found) ? GattResult.GATT_SUCCESS : GattResult.STATUS_BUSY;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean writeDescriptor(UUID service, UUID characteristic, UUID descriptor, byte[] value) {
+        BluetoothGattCharacteristic found = attributes.get(service, characteristic);
+        BluetoothGattDescriptor target = found != null ? found.getDescriptor(descriptor) : null;
+        if (target == null) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            return gatt.writeDescriptor(target, value) == BluetoothStatusCodes.SUCCESS;
+        }
+        target.setValue(value);
+        return gatt.writeDescriptor(target);
+    }
+
+    @Override
+    public boolean requestMtu(int mtu) {
+        return gatt.requestMtu(mtu);
+    }
+
+    @Override
+    public boolean requestConnectionPriority(int priority) {
+        return gatt.requestConnectionPriority(priority);
+    }
+
+    @Override
+    public boolean setPreferredPhy(int txPhyMask, int rxPhyMask) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return false;
+        }
+        gatt.setPreferredPhy(txPhyMask, rxPhyMask, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+        return true;
+    }
+
+    @Override
+    public boolean setNotificationsEnabled(UUID service, UUID characteristic, boolean enabled) {
+        BluetoothGattCharacteristic found = attributes.get(service, characteristic);
+        return found != null && gatt.setCharacteristicNotification(found, enabled);
+    }
+}
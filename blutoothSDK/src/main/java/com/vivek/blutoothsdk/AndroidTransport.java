@@ -0,0 +1,207 @@
+package com.vivek.blutoothsdk;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * {@link BleTransport} on the platform Bluetooth stack. Callers check
+ * permissions and adapter state before using it.
+ */
+@SuppressLint("MissingPermission")
+class AndroidTransport implements BleTransport<BluetoothDevice> {
+
+    private static final String TAG = "AndroidTransport";
+
+    private final Context context;
+    private final Handler gattHandler;
+    private BluetoothLeScanner scanner;
+    private ScanCallback scanCallback;
+    // Scan results arrive on the main thread only
+    private final AdvertisementView view = new AdvertisementView();
+    private BroadcastReceiver bondReceiver;
+
+    // GATT callbacks are delivered on gattHandler where the platform allows it (API 26+)
+    AndroidTransport(Context context, Handler gattHandler) {
+        this.context = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.gattHandler = gattHandler;
+    }
+
+    private BluetoothAdapter adapter() {
+        BluetoothManager manager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
+        return manager != null ? manager.getAdapter() : null;
+    }
+
+    @Override
+    public boolean startScan(ScanConfig config, final ScanSink<BluetoothDevice> sink) {
+        BluetoothAdapter adapter = adapter();
+        if (adapter == null || !adapter.isEnabled() || adapter.getBluetoothLeScanner() == null) {
+            return false;
+        }
+        stopScan();
+        scanner = adapter.getBluetoothLeScanner();
+        scanCallback = new ScanCallback() {
+            @Override
+            public void onScanResult(int callbackType, ScanResult result) {
+                deliver(result);
+            }
+
+            @Override
+            public void onBatchScanResults(List<ScanResult> results) {
+                for (int i = 0, n = results.size(); i < n; i++) {
+                    deliver(results.get(i));
+                }
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                Log.e(TAG, "Scan failed with error code: " + errorCode);
+                sink.onScanFailed(errorCode);
+            }
+
+            private void deliver(ScanResult result) {
+                BluetoothDevice device = result.getDevice();
+                ScanRecord record = result.getScanRecord();
+                sink.onScanResult(
+                        MacAddress.pack(device.getAddress()),
+                        device,
+                        result.getRssi(),
+                        record != null ? record.getBytes() : null,
+                        // When the controller heard it, on the elapsedRealtime clock; batched results arrive late
+                        result.getTimestampNanos() / 1_000_000);
+            }
+        };
+        scanner.startScan(
+                ScanFilterCompiler.toScanFilters(config),
+                ScanFilterCompiler.toScanSettings(config, adapter),
+                scanCallback);
+        return true;
+    }
+
+    @Override
+    public void stopScan() {
+        if (scanner != null && scanCallback != null) {
+            scanner.stopScan(scanCallback);
+        }
+        scanCallback = null;
+    }
+
+    @Override
+    public boolean matches(ScanConfig config, BluetoothDevice device, byte[] advertisement) {
+        if (config.getFilters().isEmpty()) {
+            return true;
+        }
+        view.reset(advertisement);
+        for (ScanConfig.Filter filter : config.getFilters()) {
+            if (filter.matches(view)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public GattLink openLink(long address, int addressType, boolean autoConnect, GattLink.Listener listener) {
+        BluetoothAdapter adapter = adapter();
+        if (adapter == null) {
+            return null;
+        }
+        BluetoothDevice device;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && addressType != KnownDevice.ADDRESS_TYPE_UNKNOWN) {
+            device = adapter.getRemoteLeDevice(MacAddress.unpack(address), addressType);
+        } else {
+            // Falls back to the type the stack remembers from its last scan
+            device = adapter.getRemoteDevice(MacAddress.unpack(address));
+        }
+        AndroidGattLink link = new AndroidGattLink(listener);
+        BluetoothGatt gatt;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && gattHandler != null) {
+            gatt = device.connectGatt(context, autoConnect, link.callback, BluetoothDevice.TRANSPORT_LE,
+                    BluetoothDevice.PHY_LE_1M_MASK, gattHandler);
+        } else {
+            gatt = device.connectGatt(context, autoConnect, link.callback, BluetoothDevice.TRANSPORT_LE);
+        }
+        if (gatt == null) {
+            return null;
+        }
+        link.attach(gatt);
+        return link;
+    }
+
+    @Override
+    public String getName(long address) {
+        BluetoothAdapter adapter = adapter();
+        if (adapter == null) {
+            return null;
+        }
+        try {
+            return adapter.getRemoteDevice(MacAddress.unpack(address)).getName();
+        } catch (SecurityException e) {
+            // BLUETOOTH_CONNECT was revoked
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isBonded(long address) {
+        return getBondState(address) == BluetoothDevice.BOND_BONDED;
+    }
+
+    @Override
+    public int getBondState(long address) {
+        BluetoothAdapter adapter = adapter();
+        return adapter != null
+                ? adapter.getRemoteDevice(MacAddress.unpack(address)).getBondState() : BluetoothDevice.BOND_NONE;
+    }
+
+    @Override
+    public boolean createBond(long address) {
+        BluetoothAdapter adapter = adapter();
+        return adapter != null && adapter.getRemoteDevice(MacAddress.unpack(address)).createBond();
+    }
+
+    // One receiver for every pending bond, on the SDK thread
+    @Override
+    public void startBondEvents(final BondSink sink) {
+        stopBondEvents();
+        bondReceiver = new BroadcastReceiver() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public void onReceive(Context context, Intent intent) {
+                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                if (device == null) {
+                    return;
+                }
+                sink.onBondStateChanged(MacAddress.pack(device.getAddress()),
+                        intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE),
+                        intent.getIntExtra(BluetoothDevice.EXTRA_PREVIOUS_BOND_STATE, BluetoothDevice.BOND_NONE));
+            }
+        };
+        context.registerReceiver(bondReceiver, new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED),
+                null, gattHandler);
+    }
+
+    @Override
+    public void stopBondEvents() {
+        if (bondReceiver != null) {
+            context.unregisterReceiver(bondReceiver);
+            bondReceiver = null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.vivek.blutoothsdk;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Characteristic references resolved once per connection. The stack's
+ * getService/getCharacteristic walk lists on every call; after the first
+ * lookup a command costs two hash probes. Must be invalidated whenever the
+ * underlying services go away (disconnect, Service Changed, rediscovery).
+ */
+class AttributeCache<C> {
+
+    interface Resolver<C> {
+        C resolve(UUID service, UUID characteristic);
+    }
+
+    private final Resolver<C> resolver;
+    private final Map<UUID, Map<UUID, C>> services = new HashMap<>();
+    private int resolved;
+
+    AttributeCache(Resolver<C> resolver) {
+        this.resolver = resolver;
+    }
+
+    // Misses are not cached, so a lookup before discovery can succeed later
+    synchronized C get(UUID service, UUID characteristic) {
+        Map<UUID, C> characteristics = services.get(service);
+        C cached = characteristics != null ? characteristics.get(characteristic) : null;
+        if (cached != null) {
+            return cached;
+        }
+        C found = resolver.resolve(service, characteristic);
+        if (found != null) {
+            if (characteristics == null) {
+                characteristics = new HashMap<>();
+                services.put(service, characteristics);
+            }
+            characteristics.put(characteristic, found);
+            resolved++;
+        }
+        return found;
+    }
+
+    synchronized void invalidate() {
+        services.clear();
+    }
+
+    // Number of lookups that had to go to the resolver
+    synchronized int getResolvedCount() {
+        return resolved;
+    }
+}
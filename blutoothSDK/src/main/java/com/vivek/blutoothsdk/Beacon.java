@@ -0,0 +1,52 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * A status decoded from an advertisement by a registered
+ * {@link AdvertisementDecoder}, without connecting to the device.
+ */
+public final class Beacon {
+
+    private final long address;
+    private final int companyId;
+    private final int rssi;
+    private final Object status;
+    private final long timestampMillis;
+
+    Beacon(long address, int companyId, int rssi, Object status, long timestampMillis) {
+        this.address = address;
+        this.companyId = companyId;
+        this.rssi = rssi;
+        this.status = status;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    public String getAddressString() {
+        return MacAddress.unpack(address);
+    }
+
+    // Selects the decoder, and so the status type
+    public int getCompanyId() {
+        return companyId;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public Object getStatus() {
+        return status;
+    }
+
+    // Null if the status is of another type, e.g. from another company's decoder
+    public <T> T getStatus(Class<T> type) {
+        return type.isInstance(status) ? type.cast(status) : null;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+}
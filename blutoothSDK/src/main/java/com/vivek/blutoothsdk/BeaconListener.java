@@ -0,0 +1,7 @@
+package com.vivek.blutoothsdk;
+
+public interface BeaconListener {
+
+    // Every decoded advertisement, not coalesced like scan frames
+    void onBeacon(Beacon beacon);
+}
@@ -0,0 +1,269 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayDeque;
+
+/**
+ * Values from a scan or a subscription, delivered only as fast as the
+ * observer asks for them. Nothing arrives before {@link #request}; values
+ * that come in faster wait in a bounded buffer, and once it is full the
+ * oldest is dropped and counted. A slow observer therefore costs a fixed
+ * amount of memory however fast the source is.
+ *
+ * Signals go to the callback executor one at a time and in order. The
+ * stream ends with onComplete, with onError (a {@link BluetoothException},
+ * e.g. TIMEOUT when nothing arrived within the idle timeout), or when the
+ * observer cancels it; either way the scan or subscription behind it stops.
+ */
+public final class BleStream<T> {
+
+    public interface Observer<T> {
+        void onNext(T value);
+
+        // Ends the stream; values still buffered are discarded
+        void onError(Throwable error);
+
+        // Ends the stream after every buffered value was delivered
+        void onComplete();
+    }
+
+    private final Observer<? super T> observer;
+    private final int capacity;
+    private final long idleTimeoutMillis;
+    private final Scheduler scheduler;
+    private final CallbackDispatcher dispatcher;
+    private final ArrayDeque<T> buffer;
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private final Runnable idleCheck = new Runnable() {
+        @Override
+        public void run() {
+            checkIdle();
+        }
+    };
+
+    // Guarded by this
+    private long demand;
+    private boolean drainPosted;
+    // No more values will be accepted; failure is null for a normal end
+    private boolean finished;
+    private Throwable failure;
+    // The observer has been told, or cancelled; nothing more is delivered
+    private boolean done;
+    private Runnable onClose;
+    private Scheduler.Cancellable idleTimer;
+    private long lastValueMillis;
+    private long received;
+    private long delivered;
+    private long dropped;
+
+    BleStream(Observer<? super T> observer, int capacity, long idleTimeoutMillis, Scheduler scheduler,
+              CallbackDispatcher dispatcher) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.observer = observer;
+        this.capacity = capacity;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.scheduler = scheduler;
+        this.dispatcher = dispatcher;
+        this.buffer = new ArrayDeque<>(Math.min(capacity, 64));
+        lastValueMillis = scheduler.now();
+        if (idleTimeoutMillis > 0) {
+            idleTimer = scheduler.postDelayed(idleCheck, idleTimeoutMillis);
+        }
+    }
+
+    /**
+     * Lets up to n more values through; Long.MAX_VALUE turns demand off.
+     * May be called from onNext.
+     */
+    public void request(long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            if (!claimDrain()) {
+                return;
+            }
+        }
+        dispatcher.getExecutor().execute(drain);
+    }
+
+    // Stops the source; no signal follows, not even onComplete
+    public void cancel() {
+        Runnable close;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            finished = true;
+            buffer.clear();
+            close = release();
+        }
+        if (close != null) {
+            close.run();
+        }
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    // Finished by the source or cancelled, though the observer may not have been told yet
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized long getReceivedCount() {
+        return received;
+    }
+
+    public synchronized long getDeliveredCount() {
+        return delivered;
+    }
+
+    // Overwritten in the buffer before the observer asked for them
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized int getBufferedCount() {
+        return buffer.size();
+    }
+
+    // Runs once when the stream ends for any reason; set before the source starts
+    synchronized void setOnClose(Runnable onClose) {
+        this.onClose = onClose;
+    }
+
+    // From the source, any thread; false once the stream is finished
+    boolean emit(T value) {
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            received++;
+            if (buffer.size() == capacity) {
+                buffer.poll();
+                dropped++;
+            }
+            buffer.add(value);
+            lastValueMillis = scheduler.now();
+            if (!claimDrain()) {
+                return true;
+            }
+        }
+        dispatcher.getExecutor().execute(drain);
+        return true;
+    }
+
+    // Ends the stream with onComplete, or with onError when error is not null
+    void finish(Throwable error) {
+        Runnable close;
+        boolean post;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            failure = error;
+            close = release();
+            post = claimDrain();
+        }
+        if (close != null) {
+            close.run();
+        }
+        if (post) {
+            dispatcher.getExecutor().execute(drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            T value;
+            Throwable error = null;
+            synchronized (this) {
+                if (done) {
+                    drainPosted = false;
+                    return;
+                }
+                if (finished && (failure != null || buffer.isEmpty())) {
+                    done = true;
+                    drainPosted = false;
+                    buffer.clear();
+                    error = failure;
+                    value = null;
+                } else if (demand == 0 || buffer.isEmpty()) {
+                    drainPosted = false;
+                    return;
+                } else {
+                    value = buffer.poll();
+                    if (demand != Long.MAX_VALUE) {
+                        demand--;
+                    }
+                    delivered++;
+                }
+            }
+            if (value != null) {
+                observer.onNext(value);
+            } else if (error != null) {
+                observer.onError(error);
+                return;
+            } else {
+                observer.onComplete();
+                return;
+            }
+        }
+    }
+
+    private void checkIdle() {
+        long remaining;
+        synchronized (this) {
+            idleTimer = null;
+            if (finished) {
+                return;
+            }
+            remaining = lastValueMillis + idleTimeoutMillis - scheduler.now();
+            if (remaining > 0) {
+                // Re-armed once per timeout period, not once per value
+                idleTimer = scheduler.postDelayed(idleCheck, remaining);
+                return;
+            }
+        }
+        finish(new BluetoothException("Nothing received for " + idleTimeoutMillis + " ms",
+                CommandResult.of(CommandResult.Status.TIMEOUT)));
+    }
+
+    // Caller holds the lock; true if the caller must post the drain
+    private boolean claimDrain() {
+        if (drainPosted) {
+            return false;
+        }
+        boolean ending = finished && (failure != null || buffer.isEmpty());
+        if (!ending && (demand == 0 || buffer.isEmpty())) {
+            return false;
+        }
+        drainPosted = true;
+        return true;
+    }
+
+    // Caller holds the lock; the close hook and idle timer are released once
+    private Runnable release() {
+        if (idleTimer != null) {
+            idleTimer.cancel();
+            idleTimer = null;
+        }
+        Runnable close = onClose;
+        onClose = null;
+        return close;
+    }
+}
@@ -0,0 +1,33 @@
+package com.vivek.blutoothsdk;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * The SDK's own looper thread, shared by all SDK instances. Connection state
+ * machines, operation queues, timers and (API 26+) GATT callbacks run here,
+ * so neither the main thread nor the stack's binder threads wait on SDK or
+ * user code.
+ */
+final class BleThread {
+
+    private static Handler handler;
+
+    private BleThread() {
+    }
+
+    static synchronized Handler handler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("BluetoothSDK", Process.THREAD_PRIORITY_DEFAULT);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    static boolean isCurrent() {
+        return Looper.myLooper() == handler().getLooper();
+    }
+}
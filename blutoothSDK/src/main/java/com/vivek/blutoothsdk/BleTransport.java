@@ -0,0 +1,63 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * What the SDK needs from a Bluetooth stack: scanning, opening GATT client
+ * handles and bond state. {@link AndroidTransport} drives the platform APIs;
+ * the unit tests swap in an in-process simulation, so connection logic
+ * runs on a plain JVM.
+ *
+ * @param <D> the transport's device handle, passed through to scan listeners
+ */
+interface BleTransport<D> {
+
+    // Same values as BluetoothDevice.BOND_*
+    int BOND_NONE = 10;
+    int BOND_BONDING = 11;
+    int BOND_BONDED = 12;
+
+    interface ScanSink<D> {
+        void onScanResult(long address, D device, int rssi, byte[] advertisement, long nowMillis);
+
+        void onScanFailed(int errorCode);
+    }
+
+    interface BondSink {
+        void onBondStateChanged(long address, int state, int previousState);
+    }
+
+    // Replaces any running scan; returns false if scanning is unavailable
+    boolean startScan(ScanConfig config, ScanSink<D> sink);
+
+    void stopScan();
+
+    /**
+     * Whether a result passes config's controller filters. A scan shared by
+     * several sessions runs with all their filters, so each result is
+     * checked again against the filters of every session it may go to.
+     */
+    boolean matches(ScanConfig config, D device, byte[] advertisement);
+
+    /**
+     * Opens a client handle and starts connecting. A direct connect
+     * (autoConnect false) gives up on its own after ~30 s; a background one
+     * waits until the device is seen. addressType is one of
+     * KnownDevice.ADDRESS_TYPE_*; a random address cannot be reached as a
+     * public one. Returns null if no handle could be opened.
+     */
+    GattLink openLink(long address, int addressType, boolean autoConnect, GattLink.Listener listener);
+
+    // Name the stack has cached for the device, or null
+    String getName(long address);
+
+    boolean isBonded(long address);
+
+    int getBondState(long address);
+
+    // Starts pairing; false if it could not be started, e.g. already bonding
+    boolean createBond(long address);
+
+    // Bond-state changes for all devices, delivered on the SDK thread until stopBondEvents()
+    void startBondEvents(BondSink sink);
+
+    void stopBondEvents();
+}
@@ -0,0 +1,429 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Futures and streams over the callback API, for flows that chain
+ * operations across many devices:
+ *
+ * <pre>
+ * async.connect(address, 10000)
+ *         .thenCompose(device -&gt; async.discoverServices(address, 5000))
+ *         .thenCompose(ignored -&gt; async.write(address, service, characteristic, value, writeType, 2000));
+ * </pre>
+ *
+ * Every operation takes a timeout and fails with a {@link BluetoothException}.
+ * Cancelling a returned future drops the operation if it is still queued
+ * behind others, and abandons a connect that has not finished; an operation
+ * the stack already started runs to completion, its result unused. Futures
+ * complete on the callback executor, so dependent stages run there too.
+ * Get one from {@link BluetoothSDK#async()}.
+ */
+public final class BluetoothAsync {
+
+    interface Connector {
+        void connect(String address, BluetoothSDK.PairingCallback callback);
+    }
+
+    interface Scanner {
+        // Null if scanning could not start
+        ScanHandle start(ScanConfig config, ScanListener<BluetoothDevice> listener);
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Scheduler scheduler;
+    private final ConnectionManager manager;
+    private final CallbackDispatcher dispatcher;
+    private final CommandWriter writer;
+    private final Connector connector;
+    private final Scanner scanner;
+
+    BluetoothAsync(Scheduler scheduler, ConnectionManager manager, CallbackDispatcher dispatcher,
+                   CommandWriter writer, Connector connector, Scanner scanner) {
+        this.scheduler = scheduler;
+        this.manager = manager;
+        this.dispatcher = dispatcher;
+        this.writer = writer;
+        this.connector = connector;
+        this.scanner = scanner;
+    }
+
+    // Completes once services are resolved and the link is READY
+    public CompletableFuture<BluetoothDevice> connect(final String address, long timeoutMillis) {
+        checkTimeout(timeoutMillis);
+        final CompletableFuture<BluetoothDevice> future = new CompletableFuture<>();
+        final Scheduler.Cancellable timeout = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                fail(future, "Connect to " + address, CommandResult.Status.TIMEOUT);
+            }
+        }, timeoutMillis);
+        future.whenComplete(new BiConsumer<BluetoothDevice, Throwable>() {
+            @Override
+            public void accept(BluetoothDevice device, final Throwable error) {
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        timeout.cancel();
+                        if (error != null) {
+                            // Timed out or cancelled: stop the attempt rather than leave it running
+                            manager.disconnect(address);
+                        }
+                    }
+                });
+            }
+        });
+        connector.connect(address, new BluetoothSDK.PairingCallback() {
+            @Override
+            public void onPaired(BluetoothDevice device) {
+                future.complete(device);
+            }
+
+            @Override
+            public void onPairingFailed(BluetoothDevice device) {
+                future.completeExceptionally(new BluetoothException("Connect to " + address,
+                        CommandResult.of(CommandResult.Status.NOT_CONNECTED)));
+            }
+        });
+        return future;
+    }
+
+    // Completes with the value read
+    public CompletableFuture<byte[]> read(String address, final UUID service, final UUID characteristic,
+                                          long timeoutMillis) {
+        return new GattCall<byte[]>("Read " + characteristic, address, timeoutMillis) {
+            @Override
+            GattOperation create(DeviceConnection connection) {
+                if (connection.getProperties(service, characteristic) == GattLink.NOT_FOUND) {
+                    return null;
+                }
+                return GattOperations.readCharacteristic(connection.getLink(), service, characteristic,
+                        manager.getOperationTimeoutMillis(), this);
+            }
+
+            @Override
+            byte[] map(GattResult result) {
+                return result.getValue();
+            }
+        }.submit();
+    }
+
+    // Completes when the peripheral acknowledged the write, or when the stack took it for WRITE_TYPE_NO_RESPONSE
+    public CompletableFuture<Void> write(String address, final UUID service, final UUID characteristic,
+                                         final byte[] value, final int writeType, long timeoutMillis) {
+        return new GattCall<Void>("Write " + characteristic, address, timeoutMillis) {
+            @Override
+            GattOperation create(DeviceConnection connection) {
+                if (connection.getProperties(service, characteristic) == GattLink.NOT_FOUND) {
+                    return null;
+                }
+                return GattOperations.writeCharacteristic(connection.getLink(), service, characteristic, value,
+                        writeType, manager.getOperationTimeoutMillis(), this);
+            }
+
+            @Override
+            Void map(GattResult result) {
+                return null;
+            }
+        }.submit();
+    }
+
+    public CompletableFuture<Void> discoverServices(String address, long timeoutMillis) {
+        return new GattCall<Void>("Discover services", address, timeoutMillis) {
+            @Override
+            GattOperation create(DeviceConnection connection) {
+                return GattOperations.discoverServices(connection.getLink(), manager.getOperationTimeoutMillis(),
+                        this);
+            }
+
+            @Override
+            Void map(GattResult result) {
+                return null;
+            }
+        }.submit();
+    }
+
+    // Completes with the negotiated MTU
+    public CompletableFuture<Integer> requestMtu(String address, final int mtu, long timeoutMillis) {
+        return new GattCall<Integer>("Request MTU", address, timeoutMillis) {
+            @Override
+            GattOperation create(DeviceConnection connection) {
+                return connection.requestMtu(mtu, this);
+            }
+
+            @Override
+            Integer map(GattResult result) {
+                return result.getIntValue();
+            }
+        }.submit();
+    }
+
+    /**
+     * Sends a request through a {@link RequestChannel} and completes with the
+     * reply's payload. The channel's timeout applies; cancelling the future
+     * cancels the request.
+     */
+    public CompletableFuture<byte[]> request(String address, RequestChannel channel, final byte[] payload) {
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        final CommandRequest request = new CommandRequest(MacAddress.pack(address), channel, scheduler,
+                dispatcher.wrap(new BluetoothSDK.Callback<CommandResponse>() {
+                    @Override
+                    public void onResult(CommandResponse response) {
+                        if (response.isSuccess()) {
+                            future.complete(response.getPayload());
+                        } else {
+                            future.completeExceptionally(new BluetoothException("Request", response.getResult()));
+                        }
+                    }
+                }));
+        future.whenComplete(new BiConsumer<byte[], Throwable>() {
+            @Override
+            public void accept(byte[] reply, Throwable error) {
+                if (error instanceof CancellationException) {
+                    request.cancel();
+                }
+            }
+        });
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                byte[] value = writer.encode(payload, BluetoothSDK.RAW_BYTES, 1);
+                if (value == null) {
+                    request.complete(CommandResult.of(CommandResult.Status.ENCODE_FAILED), null);
+                    return;
+                }
+                request.value = value;
+                request.pool = writer;
+                manager.request(request);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Scan results as a stream of per-device deltas. The stream completes
+     * when the scan's duration ends; cancelling it stops the scan.
+     *
+     * @param capacity          deltas held while the observer is not asking for more
+     * @param idleTimeoutMillis fails the stream with TIMEOUT after this long without a delta; 0 for none
+     */
+    public BleStream<ScanDelta<BluetoothDevice>> scan(ScanConfig config, int capacity, long idleTimeoutMillis,
+                                                      BleStream.Observer<? super ScanDelta<BluetoothDevice>> observer) {
+        final BleStream<ScanDelta<BluetoothDevice>> stream = new BleStream<>(observer, capacity,
+                idleTimeoutMillis, scheduler, dispatcher);
+        final Scheduler.Cancellable end = config.getDurationMillis() > 0
+                ? scheduler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        stream.finish(null);
+                    }
+                }, config.getDurationMillis())
+                : null;
+        // The hook goes in first, since the scan can fail inside start()
+        final ScanHandle[] started = new ScanHandle[1];
+        // Only this scan stops; others sharing the radio keep running
+        stream.setOnClose(new Runnable() {
+            @Override
+            public void run() {
+                if (end != null) {
+                    end.cancel();
+                }
+                if (started[0] != null) {
+                    started[0].stop();
+                }
+            }
+        });
+        ScanHandle handle = scanner.start(config, new ScanListener<BluetoothDevice>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<BluetoothDevice>> deltas) {
+                for (int i = 0; i < deltas.size(); i++) {
+                    stream.emit(deltas.get(i));
+                }
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                stream.finish(new BluetoothException("Scan failed with " + errorCode,
+                        CommandResult.of(CommandResult.Status.REJECTED)));
+            }
+        });
+        started[0] = handle;
+        if (handle == null) {
+            stream.finish(new BluetoothException("Scanning is unavailable",
+                    CommandResult.of(CommandResult.Status.REJECTED)));
+        } else if (stream.isFinished()) {
+            // Ended before the hook could see the handle
+            handle.stop();
+        }
+        return stream;
+    }
+
+    /**
+     * Notification values as a stream, each a copy the observer may keep.
+     * Subscribes like {@link BluetoothSDK#subscribe} and stays subscribed
+     * across reconnects; cancelling the stream unsubscribes.
+     *
+     * @param capacity          values held while the observer is not asking for more
+     * @param idleTimeoutMillis fails the stream with TIMEOUT after this long without a value; 0 for none
+     */
+    public BleStream<byte[]> notifications(String address, SubscriptionConfig config, int capacity,
+                                           long idleTimeoutMillis, BleStream.Observer<? super byte[]> observer) {
+        final BleStream<byte[]> stream = new BleStream<>(observer, capacity, idleTimeoutMillis, scheduler,
+                dispatcher);
+        // The stream buffers and hands off, so the subscription's drain runs inline
+        final Subscription subscription = new Subscription(MacAddress.pack(address), config,
+                new NotificationConsumer() {
+                    @Override
+                    public void onNotification(byte[] value, int length, long timestampMillis) {
+                        stream.emit(Arrays.copyOf(value, length));
+                    }
+                }, scheduler, manager, DIRECT, new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(GattResult result) {
+                        if (!result.isSuccess()) {
+                            stream.finish(new BluetoothException("Enable notifications",
+                                    CommandResult.from(result)));
+                        }
+                    }
+                });
+        stream.setOnClose(new Runnable() {
+            @Override
+            public void run() {
+                subscription.cancel();
+            }
+        });
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                manager.subscribe(subscription);
+            }
+        });
+        return stream;
+    }
+
+    private void fail(final CompletableFuture<?> future, final String what, final CommandResult.Status status) {
+        dispatcher.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                future.completeExceptionally(new BluetoothException(what, CommandResult.of(status)));
+            }
+        });
+    }
+
+    private static void checkTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+    }
+
+    /**
+     * One queued GATT operation behind a future. Set up on the scheduler
+     * thread; the timeout and a cancel both take the operation out of the
+     * queue if it has not started.
+     */
+    private abstract class GattCall<T> implements Runnable, BluetoothSDK.Callback<GattResult>,
+            BiConsumer<T, Throwable> {
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        private final String what;
+        private final String address;
+        private final long timeoutMillis;
+        // Scheduler thread only
+        private GattOperationQueue queue;
+        private GattOperation operation;
+        private Scheduler.Cancellable timeout;
+
+        GattCall(String what, String address, long timeoutMillis) {
+            checkTimeout(timeoutMillis);
+            this.what = what;
+            this.address = address;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        // Null if the attribute is not on the device
+        abstract GattOperation create(DeviceConnection connection);
+
+        abstract T map(GattResult result);
+
+        CompletableFuture<T> submit() {
+            scheduler.post(this);
+            return future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                // Cancelled before it was queued
+                return;
+            }
+            DeviceConnection connection = manager.get(address);
+            if (connection == null || connection.getState() != DeviceConnection.State.READY) {
+                fail(future, what, CommandResult.Status.NOT_CONNECTED);
+                return;
+            }
+            operation = create(connection);
+            if (operation == null) {
+                fail(future, what, CommandResult.Status.NOT_FOUND);
+                return;
+            }
+            queue = connection.getQueue();
+            timeout = scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    timeout = null;
+                    fail(future, what, CommandResult.Status.TIMEOUT);
+                    queue.cancel(operation);
+                }
+            }, timeoutMillis);
+            future.whenComplete(this);
+            queue.enqueue(operation);
+        }
+
+        // The operation finished, on the stack's thread or the scheduler
+        @Override
+        public void onResult(final GattResult result) {
+            dispatcher.getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (result.isSuccess()) {
+                        future.complete(map(result));
+                    } else {
+                        future.completeExceptionally(new BluetoothException(what, CommandResult.from(result)));
+                    }
+                }
+            });
+        }
+
+        // The future finished, by result, timeout or cancel
+        @Override
+        public void accept(T value, Throwable error) {
+            final boolean cancelled = error instanceof CancellationException;
+            scheduler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (timeout != null) {
+                        timeout.cancel();
+                        timeout = null;
+                    }
+                    if (cancelled) {
+                        queue.cancel(operation);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Why a future or stream from {@link BluetoothAsync} failed. TIMEOUT means
+ * the operation's own deadline passed; GATT_ERROR carries the ATT status.
+ */
+public final class BluetoothException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CommandResult result;
+
+    BluetoothException(String message, CommandResult result) {
+        super(message + ": " + result);
+        this.result = result;
+    }
+
+    public CommandResult getResult() {
+        return result;
+    }
+
+    public CommandResult.Status getStatus() {
+        return result.getStatus();
+    }
+}
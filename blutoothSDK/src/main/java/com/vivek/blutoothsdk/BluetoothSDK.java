@@ -5,54 +5,160 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
 import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.BluetoothProfile;
-import android.bluetooth.le.BluetoothLeScanner;
-import android.bluetooth.le.ScanCallback;
-import android.bluetooth.le.ScanResult;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 public class BluetoothSDK {
 
     private static final String TAG = "BluetoothSDK";
     private static final int PERMISSION_REQUEST_CODE = 101;
     private static final int DISCOVERY_TIMEOUT = 30000; // 30 seconds
+    static final CommandEncoder<byte[]> RAW_BYTES = new CommandEncoder<byte[]>() {
+        @Override
+        public void encode(byte[] command, ByteBuffer out) {
+            out.put(command);
+        }
+    };
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothLeScanner bluetoothLeScanner;
-    private ScanCallback scanCallback;
-    private BluetoothGatt bluetoothGatt;
+    private final AndroidTransport transport;
+    // Scan state is owned by the main thread, where the platform delivers scan results
+    private final ScanMultiplexer<BluetoothDevice> scans;
+    private final List<ScanHandle> activeScans = new ArrayList<>();
+    // The most recent streaming scan, kept after it stops so its last frame can still be ranked
+    private volatile ScanSession<BluetoothDevice> rankedSession;
+    private ConnectPipeline<BluetoothDevice> connectPipeline;
+    private ScanHandle connectScan;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // State machines and timers run on the SDK thread, never on the main thread
+    private final Handler bleHandler = BleThread.handler();
+    private final Scheduler scheduler = new HandlerScheduler(bleHandler);
+    private final CallbackDispatcher dispatcher;
     private BroadcastReceiver scanReceiver;
     private final Activity activity;
+    private final PermissionCache permissions;
+    private final ConnectionManager connectionManager;
+    private final SdkMetrics metrics;
+    // Typed commands are encoded on the SDK thread only
+    private final CommandWriter commandWriter = new CommandWriter();
+    private final BluetoothAsync async;
     private static final int REQUEST_BLUETOOTH_PERMISSIONS = 1;
-    private static final UUID SERVICE_UUID = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    public static final UUID SERVICE_UUID = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
     // Replace with your service UUID
     private static final UUID CHARACTERISTIC_UUID = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb"); // Replace with your characteristic UUID
 
 
+    // Callbacks are delivered on the main thread
     public BluetoothSDK(Activity activity) {
+        this(activity, null);
+    }
+
+    /**
+     * @param callbackExecutor where callbacks and scan frames are delivered,
+     *                         e.g. a worker pool for data processing; null
+     *                         for the main thread
+     */
+    public BluetoothSDK(Activity activity, Executor callbackExecutor) {
         this.activity = activity;
         this.bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        this.permissions = new PermissionCache(activity);
+        this.dispatcher = new CallbackDispatcher(callbackExecutor != null ? callbackExecutor : mainExecutor());
+        this.transport = new AndroidTransport(activity, bleHandler);
+        this.connectionManager = new ConnectionManager(scheduler, transport, new GattLayoutStore(activity),
+                new KnownDeviceRegistry(activity));
+        this.metrics = connectionManager.getMetrics();
+        this.scans = new ScanMultiplexer<>(new HandlerScheduler(mainHandler), transport, metrics);
+        this.async = new BluetoothAsync(scheduler, connectionManager, dispatcher, commandWriter,
+                this::connectToRingerDevice, this::startScan);
+    }
+
+    /**
+     * The same operations as futures with timeouts and cancellation, and
+     * scans and notifications as streams with demand.
+     */
+    public BluetoothAsync async() {
+        return async;
+    }
+
+    // Applies to callbacks delivered from now on; null selects the main thread
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        dispatcher.setExecutor(callbackExecutor != null ? callbackExecutor : mainExecutor());
+    }
+
+    private Executor mainExecutor() {
+        return new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        };
+    }
+
+    // Connection state is owned by the SDK thread; public calls hop onto it
+    private void runOnBleThread(Runnable task) {
+        if (BleThread.isCurrent()) {
+            task.run();
+        } else {
+            bleHandler.post(task);
+        }
+    }
+
+    /**
+     * Profile for every link, applied to connected links right away and to
+     * new ones once services are resolved. Defaults to balanced.
+     */
+    public void setConnectionProfile(ConnectionProfile profile) {
+        runOnBleThread(() -> connectionManager.setDefaultProfile(profile));
+    }
+
+    // Profile for one link until it is changed again; ignored if the device is unknown
+    public void setConnectionProfile(String deviceAddress, ConnectionProfile profile) {
+        runOnBleThread(() -> {
+            DeviceConnection connection = connectionManager.get(deviceAddress);
+            if (connection != null) {
+                connection.applyProfile(profile);
+            }
+        });
+    }
+
+    // Negotiated interval, PHY and MTU of each link, whenever one of them changes
+    public void setConnectionParametersListener(Callback<ConnectionParameters> listener) {
+        final Callback<ConnectionParameters> wrapped = dispatcher.wrap(listener);
+        runOnBleThread(() -> connectionManager.setParametersListener(wrapped));
+    }
+
+    /**
+     * Counters and latency histograms for scanning, connections and GATT
+     * operations. Poll {@link SdkMetrics#snapshot()} from any thread.
+     */
+    public SdkMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Call from onRequestPermissionsResult so cached permission state is re-read
+    public void onPermissionsChanged() {
+        permissions.refresh();
     }
 
     private void showEnableBluetoothDialog() {
@@ -108,7 +214,8 @@ public class BluetoothSDK {
     }
 
 
-    public void connectToRingerDevice(String deviceAddress, PairingCallback callback) {
+    public void connectToRingerDevice(String deviceAddress, PairingCallback pairingCallback) {
+        final PairingCallback callback = dispatcher.wrap(pairingCallback);
         BluetoothManager bluetoothManager = (BluetoothManager) activity.getSystemService(Context.BLUETOOTH_SERVICE);
         BluetoothAdapter bluetoothAdapter = bluetoothManager.getAdapter();
         BluetoothDevice device = bluetoothAdapter.getRemoteDevice(deviceAddress);
@@ -119,237 +226,477 @@ public class BluetoothSDK {
             return;
         }
 
-        Log.d(TAG, "Attempting to connect to device: " + deviceAddress);
-        bluetoothGatt = device.connectGatt(activity, false, new BluetoothGattCallback() {
-            @Override
-            public void onConnectionStateChange(@NonNull BluetoothGatt gatt, int status, int newState) {
-                if (newState == BluetoothProfile.STATE_CONNECTED) {
-                    Log.d(TAG, "Device connected: " + deviceAddress);
-                    callback.onPaired(device);
-                    if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-                        // TODO: Consider calling
-                        //    ActivityCompat#requestPermissions
-                        // here to request the missing permissions, and then overriding
-                        //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-                        //                                          int[] grantResults)
-                        // to handle the case where the user grants the permission. See the documentation
-                        // for ActivityCompat#requestPermissions for more details.
-                        return;
-                    }
-                    gatt.discoverServices();
-                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                    Log.d(TAG, "Device disconnected: " + deviceAddress);
-                    if (status == 133) {
-                        Log.e(TAG, "GATT connection failed with status 133. Retrying...");
-                        retryGattConnection(device, callback);
-                    } else {
-                        callback.onPairingFailed(device);
-                    }
-                }
-            }
-
-            @Override
-            public void onServicesDiscovered(@NonNull BluetoothGatt gatt, int status) {
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    Log.d(TAG, "Services discovered successfully.");
-                } else {
-                    Log.e(TAG, "Service discovery failed with status: " + status);
-                }
-            }
-        });
-
-        // Implement timeout logic
-        new android.os.Handler().postDelayed(() -> {
-            if (bluetoothGatt != null && bluetoothGatt.getDevice().equals(device)) {
-                Log.w(TAG, "Connection timeout. Disconnecting...");
-                bluetoothGatt.disconnect();
-                callback.onPairingFailed(device);
-            }
-        }, 10000); // 10 seconds timeout
+        // onPaired fires once services are discovered and the link is usable
+        runOnBleThread(() -> connectionManager.connect(MacAddress.pack(device.getAddress()), device, callback));
     }
 
-    public void connectToGatt(BluetoothDevice device, PairingCallback callback) {
+    /**
+     * Pairs with the device if it is not bonded yet, then connects. onPaired
+     * fires once the link is ready; onPairingFailed if pairing is rejected or
+     * times out, or the connection cannot be established.
+     */
+    public void connectToGatt(BluetoothDevice device, PairingCallback pairingCallback) {
+        final PairingCallback callback = dispatcher.wrap(pairingCallback);
         if (ActivityCompat.checkSelfPermission(this.activity, "android.permission.BLUETOOTH_SCAN") == 0 &&
                 ActivityCompat.checkSelfPermission(this.activity, "android.permission.BLUETOOTH_CONNECT") == 0 &&
                 ActivityCompat.checkSelfPermission(this.activity, "android.permission.ACCESS_FINE_LOCATION") == 0) {
+            final long address = MacAddress.pack(device.getAddress());
+            runOnBleThread(() -> connectionManager.bondAndConnect(address, device, callback));
+        } else {
+            ActivityCompat.requestPermissions(this.activity, new String[]{"android.permission.BLUETOOTH_SCAN", "android.permission.BLUETOOTH_CONNECT", "android.permission.ACCESS_FINE_LOCATION"}, 1);
+        }
+    }
+
+    /**
+     * Connects straight to every device that has connected before, without a
+     * scan. Devices connect in parallel up to the connection cap; the callback
+     * fires once per device.
+     */
+    public void reconnectKnownDevices(PairingCallback pairingCallback) {
+        final PairingCallback callback = dispatcher.wrap(pairingCallback);
+        if (!permissions.canConnect()) {
+            ActivityCompat.requestPermissions(activity, new String[]{Manifest.permission.BLUETOOTH_CONNECT}, REQUEST_BLUETOOTH_PERMISSIONS);
+            return;
+        }
+        runOnBleThread(() -> connectionManager.reconnectKnown(this::remoteDevice, callback));
+    }
+
+    // Most recently connected first
+    public List<KnownDevice> getKnownDevices() {
+        return connectionManager.getKnownDevices().getAll();
+    }
+
+    /**
+     * Adds a device without connecting or scanning, e.g. from a provisioning
+     * code. Pass the address type for random static addresses so the device
+     * can be reached before the stack has seen it.
+     */
+    public void rememberDevice(String deviceAddress, String name, int addressType) {
+        connectionManager.getKnownDevices().remember(MacAddress.pack(deviceAddress), name, addressType);
+    }
 
-            // Check if device is already bonded
-            if (device.getBondState() != BluetoothDevice.BOND_BONDED) {
-                Log.e("BluetoothSDK", "Device is not bonded. Initiating bonding...");
+    // Stops remembering the device and its cached layout; does not disconnect it
+    public void forgetDevice(String deviceAddress) {
+        final long address = MacAddress.pack(deviceAddress);
+        runOnBleThread(() -> connectionManager.forget(address));
+    }
+
+    private BluetoothDevice remoteDevice(KnownDevice known) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && known.getAddressType() != KnownDevice.ADDRESS_TYPE_UNKNOWN) {
+            return bluetoothAdapter.getRemoteLeDevice(known.getAddress(), known.getAddressType());
+        }
+        return bluetoothAdapter.getRemoteDevice(known.getAddress());
+    }
+
+    public void disconnect(String deviceAddress) {
+        runOnBleThread(() -> connectionManager.disconnect(deviceAddress));
+    }
+
+    public void disconnectAll() {
+        runOnBleThread(connectionManager::disconnectAll);
+    }
 
-                // Start the bonding process
-                boolean bonded = device.createBond();
-                BroadcastReceiver receiver = new BroadcastReceiver() {
+    public List<BluetoothDevice> getConnectedDevices() {
+        return connectionManager.getConnectedDevices();
+    }
+
+    // Further connect requests wait until a link is released
+    public void setMaxConnections(int maxConnections) {
+        runOnBleThread(() -> connectionManager.setMaxConnections(maxConnections));
+    }
+
+    // GATT operations in flight across all links; links take turns once the limit is hit
+    public void setMaxConcurrentOperations(int maxConcurrentOperations) {
+        runOnBleThread(() -> connectionManager.setMaxConcurrentOperations(maxConcurrentOperations));
+    }
+
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        runOnBleThread(() -> connectionManager.setConnectTimeoutMillis(connectTimeoutMillis));
+    }
+
+    // Backoff, retry budget and background reconnect behaviour for all links
+    public void setReconnectPolicy(ReconnectPolicy policy) {
+        runOnBleThread(() -> connectionManager.setReconnectPolicy(policy));
+    }
+
+    // Upper bound on BluetoothGatt clients the SDK keeps open at once
+    public void setMaxGattClients(int maxGattClients) {
+        connectionManager.setMaxGattClients(maxGattClients);
+    }
+
+    public int getOpenGattClientCount() {
+        return connectionManager.getClients().getOpenCount();
+    }
+
+    // Handles that were replaced without being closed; should stay at zero
+    public int getLeakedGattClientCount() {
+        return connectionManager.getClients().getLeakCount();
+    }
+
+    /**
+     * Stops scanning and closes every GATT client. Call from onDestroy;
+     * the SDK can still be used afterwards.
+     */
+    public void close() {
+        stopScan();
+        runOnBleThread(connectionManager::closeAll);
+    }
+
+    // Sends to the most recently connected device
+    public void sendCommand(final String command, final Callback<String> callback) {
+        runOnBleThread(() -> {
+            DeviceConnection connection = connectionManager.getDefault();
+            sendCommand(connection != null ? MacAddress.unpack(connection.getAddress()) : null, command, callback);
+        });
+    }
+
+    public void sendCommand(String deviceAddress, final String command, Callback<String> callback) {
+        final Callback<String> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> sendCommandNow(deviceAddress, command, result));
+    }
+
+    private void sendCommandNow(String deviceAddress, final String command, final Callback<String> callback) {
+        DeviceConnection connection = deviceAddress != null ? connectionManager.get(deviceAddress) : null;
+        if (connection == null || connection.getLink() == null) {
+            callback.onResult("BluetoothGatt is null");
+            return;
+        }
+
+        if (connection.getProperties(SERVICE_UUID, CHARACTERISTIC_UUID) == GattLink.NOT_FOUND) {
+            callback.onResult("Characteristic not found");
+            return;
+        }
+
+        if (!permissions.canConnect()) {
+            callback.onResult("Permission denied");
+            return;
+        }
+        // Reported once the peripheral has acknowledged the write
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), SERVICE_UUID,
+                CHARACTERISTIC_UUID, command.getBytes(), BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT,
+                connectionManager.getOperationTimeoutMillis(), new Callback<GattResult>() {
                     @Override
-                    public void onReceive(Context context, Intent intent) {
-                        String action = intent.getAction();
-                        if (BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action)) {
-                            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-                            int bondState = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.BOND_NONE);
-
-                            switch (bondState) {
-                                case BluetoothDevice.BOND_NONE:
-                                    Log.e("BluetoothSDK", "Bonding failed or bond removed for device: " + device.getAddress());
-                                    callback.onPairingFailed(device);
-                                    break;
-
-                                case BluetoothDevice.BOND_BONDING:
-                                    Log.d("BluetoothSDK", "Bonding in progress for device: " + device.getAddress());
-                                    // Optionally, notify UI or log progress
-                                    break;
-
-                                case BluetoothDevice.BOND_BONDED:
-                                    Log.d("BluetoothSDK", "Device bonded successfully: " + device.getAddress());
-                                    callback.onPaired(device);
-
-                                    break;
-
-                                default:
-                                    Log.w("BluetoothSDK", "Unknown bond state: " + bondState + " for device: " + device.getAddress());
-                                    break;
-                            }
+                    public void onResult(GattResult result) {
+                        if (result.isSuccess()) {
+                            callback.onResult("Command sent: " + command);
+                        } else {
+                            callback.onResult("Failed to send command");
                         }
                     }
-                };
-                activity.registerReceiver(receiver, new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED));
-            } else {
-                // If already bonded, proceed with GATT connection
-                Log.d("BluetoothSDK", "Device is already bonded. Initiating GATT connection...");
-                initiateGattConnection(device, callback);
+                }));
+    }
+
+    /**
+     * Encodes the command into a reused buffer on the SDK thread and writes it
+     * to the command characteristic. For commands that never change, send an
+     * {@link EncodedCommand} from a {@link CommandCache} instead.
+     */
+    public <C> void sendCommand(String deviceAddress, final C command, final CommandEncoder<? super C> encoder,
+                                Callback<CommandResult> callback) {
+        final Callback<CommandResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> {
+            byte[] value = commandWriter.encode(command, encoder);
+            if (value == null) {
+                deliver(result, CommandResult.of(CommandResult.Status.ENCODE_FAILED));
+                return;
             }
-        } else {
-            ActivityCompat.requestPermissions(this.activity, new String[]{"android.permission.BLUETOOTH_SCAN", "android.permission.BLUETOOTH_CONNECT", "android.permission.ACCESS_FINE_LOCATION"}, 1);
-        }
+            writeCommandNow(deviceAddress, value, true, result);
+        });
     }
 
-    private void initiateGattConnection(BluetoothDevice device, PairingCallback callback) {
-        if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-            // TODO: Consider calling
-            //    ActivityCompat#requestPermissions
-            // here to request the missing permissions, and then overriding
-            //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-            //                                          int[] grantResults)
-            // to handle the case where the user grants the permission. See the documentation
-            // for ActivityCompat#requestPermissions for more details.
+    // Pre-encoded bytes are written as is, with no encoding or copy per send
+    public void sendCommand(String deviceAddress, final EncodedCommand command, Callback<CommandResult> callback) {
+        final Callback<CommandResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> writeCommandNow(deviceAddress, command.bytes(), false, result));
+    }
+
+    private void writeCommandNow(String deviceAddress, final byte[] value, final boolean pooled,
+                                 final Callback<CommandResult> callback) {
+        DeviceConnection connection = deviceAddress != null ? connectionManager.get(deviceAddress) : null;
+        CommandResult.Status failure = null;
+        if (connection == null || connection.getState() != DeviceConnection.State.READY) {
+            failure = CommandResult.Status.NOT_CONNECTED;
+        } else if (connection.getProperties(SERVICE_UUID, CHARACTERISTIC_UUID) == GattLink.NOT_FOUND) {
+            failure = CommandResult.Status.NOT_FOUND;
+        } else if (!permissions.canConnect()) {
+            failure = CommandResult.Status.PERMISSION_DENIED;
+        }
+        if (failure != null) {
+            if (pooled) {
+                commandWriter.recycle(value);
+            }
+            deliver(callback, CommandResult.of(failure));
             return;
         }
-        this.bluetoothGatt = device.connectGatt(this.activity, false, new BluetoothGattCallback() {
-            @Override
-            public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-                Log.d("BluetoothGattCallback", "Connection state changed. Status: " + status + ", New State: " + newState);
-                if (status == BluetoothGatt.GATT_SUCCESS && newState == BluetoothProfile.STATE_CONNECTED) {
-                    Log.d("BluetoothGattCallback", "Device connected. Discovering services...");
-                    if (ActivityCompat.checkSelfPermission(BluetoothSDK.this.activity, "android.permission.BLUETOOTH_CONNECT") != PackageManager.PERMISSION_GRANTED) {
-                        Log.e("BluetoothSDK", "BLUETOOTH_CONNECT permission not granted during service discovery.");
-                        callback.onPairingFailed(device);
-                        return;
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), SERVICE_UUID,
+                CHARACTERISTIC_UUID, value, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT,
+                connectionManager.getOperationTimeoutMillis(), new Callback<GattResult>() {
+                    @Override
+                    public void onResult(GattResult gattResult) {
+                        // The stack copied the value when the write started
+                        if (pooled) {
+                            commandWriter.recycle(value);
+                        }
+                        deliver(callback, CommandResult.from(gattResult));
                     }
-                    gatt.discoverServices();
-                } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                    Log.e("BluetoothGattCallback", "Device disconnected. Status: " + status);
-                    if (status == 133) {
-                        Log.e("BluetoothSDK", "Status 133 encountered. Retrying connection...");
-                        retryGattConnection(gatt.getDevice(), callback);
-                    } else {
-                        callback.onPairingFailed(device);
+                }));
+    }
+
+    /**
+     * Sends a request and matches the peripheral's reply to it by sequence
+     * number, see {@link RequestChannel}. Requests to the same device are
+     * pipelined: the next one goes out without waiting for earlier replies.
+     */
+    public CommandRequest request(String deviceAddress, RequestChannel channel, byte[] payload,
+                                  Callback<CommandResponse> callback) {
+        return request(deviceAddress, channel, payload, RAW_BYTES, callback);
+    }
+
+    public <C> CommandRequest request(String deviceAddress, RequestChannel channel, final C command,
+                                      final CommandEncoder<? super C> encoder, Callback<CommandResponse> callback) {
+        final CommandRequest request = new CommandRequest(MacAddress.pack(deviceAddress), channel, scheduler,
+                dispatcher.wrap(callback));
+        runOnBleThread(() -> {
+            byte[] value = commandWriter.encode(command, encoder, 1);
+            if (value == null) {
+                request.complete(CommandResult.of(CommandResult.Status.ENCODE_FAILED), null);
+                return;
+            }
+            request.value = value;
+            request.pool = commandWriter;
+            connectionManager.request(request);
+        });
+        return request;
+    }
+
+    private static <T> void deliver(Callback<T> callback, T result) {
+        if (callback != null) {
+            callback.onResult(result);
+        }
+    }
+
+    // Drops stored service layouts, e.g. after a firmware update of the peripherals
+    public void clearCachedLayouts() {
+        connectionManager.getLayouts().clear();
+    }
+
+    public void setOperationTimeoutMillis(long operationTimeoutMillis) {
+        runOnBleThread(() -> connectionManager.setOperationTimeoutMillis(operationTimeoutMillis));
+    }
+
+    /**
+     * Queued write; the callback fires on onCharacteristicWrite, not when the
+     * request is handed to the stack.
+     */
+    public void writeCharacteristic(String deviceAddress, UUID serviceUuid, UUID characteristicUuid, byte[] value,
+                                    int writeType, Callback<GattResult> callback) {
+        final Callback<GattResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() ->
+                writeCharacteristicNow(deviceAddress, serviceUuid, characteristicUuid, value, writeType, result));
+    }
+
+    private void writeCharacteristicNow(String deviceAddress, UUID serviceUuid, UUID characteristicUuid, byte[] value,
+                                        int writeType, Callback<GattResult> callback) {
+        DeviceConnection connection = connectionManager.get(deviceAddress);
+        if (connection == null || connection.getProperties(serviceUuid, characteristicUuid) == GattLink.NOT_FOUND) {
+            callback.onResult(GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.STATUS_NOT_FOUND));
+            return;
+        }
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), serviceUuid,
+                characteristicUuid, value, writeType, connectionManager.getOperationTimeoutMillis(), callback));
+    }
+
+    /**
+     * Pushes a large payload: negotiates the MTU, fragments to MTU - 3 and
+     * streams write-without-response chunks under stack flow control.
+     * The result reports the achieved throughput.
+     */
+    public void writeBulk(String deviceAddress, UUID serviceUuid, UUID characteristicUuid, byte[] payload,
+                          Callback<BulkTransferResult> callback) {
+        final Callback<BulkTransferResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> writeBulkNow(deviceAddress, serviceUuid, characteristicUuid, payload, result));
+    }
+
+    private void writeBulkNow(String deviceAddress, UUID serviceUuid, UUID characteristicUuid, byte[] payload,
+                              Callback<BulkTransferResult> callback) {
+        DeviceConnection connection = connectionManager.get(deviceAddress);
+        int properties = connection != null
+                ? connection.getProperties(serviceUuid, characteristicUuid) : GattLink.NOT_FOUND;
+        if (properties == GattLink.NOT_FOUND) {
+            callback.onResult(new BulkTransferResult(GattResult.STATUS_NOT_FOUND, 0, 0, BulkWriter.DEFAULT_MTU));
+            return;
+        }
+        // Fall back to acknowledged writes if the peripheral does not allow the fast path
+        final int writeType = (properties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0
+                ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+        final GattLink link = connection.getLink();
+        final long timeoutMillis = connectionManager.getOperationTimeoutMillis();
+        // Shortest interval and 2M PHY for the transfer, then back to what the link had
+        final ConnectionProfile previous = connection.getProfile();
+        final Callback<BulkTransferResult> finished;
+        if (previous != ConnectionProfile.highThroughput()) {
+            connection.applyProfile(ConnectionProfile.highThroughput());
+            finished = result -> {
+                runOnBleThread(() -> {
+                    if (connection.getProfile() == ConnectionProfile.highThroughput()) {
+                        connection.applyProfile(previous);
                     }
-                }
+                });
+                callback.onResult(result);
+            };
+        } else {
+            finished = callback;
+        }
+        BulkWriter writer = new BulkWriter(connection.getQueue(), scheduler, new BulkWriter.ChunkSink() {
+            @Override
+            public GattOperation requestMtu(int mtu, Callback<GattResult> done) {
+                return connection.requestMtu(mtu, done);
             }
 
             @Override
-            public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    Log.d("BluetoothGattCallback", "Services discovered successfully.");
-                    callback.onPaired(device);
-                } else {
-                    Log.e("BluetoothGattCallback", "Failed to discover services. Status: " + status);
-                    callback.onPairingFailed(device);
-                }
+            public GattOperation writeChunk(byte[] chunk, Callback<GattResult> done) {
+                return GattOperations.writeCharacteristic(link, serviceUuid, characteristicUuid, chunk, writeType,
+                        timeoutMillis, done);
             }
-        });
+        }, payload, finished);
+        writer.start(BulkWriter.MAX_MTU);
     }
 
-    private void retryGattConnection(BluetoothDevice device, PairingCallback callback) {
-        // Post the retry logic to the main thread
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            Log.d(TAG, "Retrying GATT connection for device: " + device.getAddress());
-            connectToRingerDevice(device.getAddress(), callback);
-        }, 3000); // Retry after 3 seconds
+    /**
+     * Streams a large payload, such as a firmware image, with per-block
+     * checksums and acknowledgements. The transfer pauses when the link
+     * drops and resumes from the last acknowledged block once the device is
+     * connected again; cancel it through the returned handle.
+     */
+    public ChunkedTransfer startTransfer(String deviceAddress, TransferConfig config, ByteBuffer data,
+                                         TransferListener listener) {
+        final TransferListener wrapped = dispatcher.wrap(listener);
+        final ChunkedTransfer transfer = new ChunkedTransfer(MacAddress.pack(deviceAddress), config, data, scheduler,
+                connectionManager, wrapped);
+        runOnBleThread(() -> connectionManager.startTransfer(transfer, wrapped));
+        return transfer;
     }
 
+    // Maps the file instead of reading it, so large images are paged in as they are sent
+    public ChunkedTransfer startTransfer(String deviceAddress, TransferConfig config, File file,
+                                         TransferListener listener) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+            return startTransfer(deviceAddress, config, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                    listener);
+        }
+    }
 
-    public void sendCommand(String command, final Callback<String> callback) {
-        if (bluetoothGatt == null) {
-            callback.onResult("BluetoothGatt is null");
+    /**
+     * Streams notifications or indications from a characteristic to the
+     * consumer on the callback executor. The subscription is enabled now if
+     * the device is connected and again after every reconnect; enabled, if
+     * not null, gets the result of each descriptor write.
+     */
+    public Subscription subscribe(String deviceAddress, SubscriptionConfig config, NotificationConsumer consumer,
+                                  Callback<GattResult> enabled) {
+        final Subscription subscription = new Subscription(MacAddress.pack(deviceAddress), config, consumer,
+                scheduler, connectionManager, command -> dispatcher.getExecutor().execute(command),
+                dispatcher.wrap(enabled));
+        runOnBleThread(() -> connectionManager.subscribe(subscription));
+        return subscription;
+    }
+
+    public void readCharacteristic(String deviceAddress, UUID serviceUuid, UUID characteristicUuid,
+                                   Callback<GattResult> callback) {
+        final Callback<GattResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> readCharacteristicNow(deviceAddress, serviceUuid, characteristicUuid, result));
+    }
+
+    private void readCharacteristicNow(String deviceAddress, UUID serviceUuid, UUID characteristicUuid,
+                                       Callback<GattResult> callback) {
+        DeviceConnection connection = connectionManager.get(deviceAddress);
+        if (connection == null || connection.getProperties(serviceUuid, characteristicUuid) == GattLink.NOT_FOUND) {
+            callback.onResult(GattResult.of(GattOperation.Type.READ_CHARACTERISTIC, GattResult.STATUS_NOT_FOUND));
             return;
         }
+        connection.getQueue().enqueue(GattOperations.readCharacteristic(connection.getLink(), serviceUuid,
+                characteristicUuid, connectionManager.getOperationTimeoutMillis(), callback));
+    }
+
+    public void writeDescriptor(String deviceAddress, UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid,
+                                byte[] value, Callback<GattResult> callback) {
+        final Callback<GattResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() ->
+                writeDescriptorNow(deviceAddress, serviceUuid, characteristicUuid, descriptorUuid, value, result));
+    }
 
-        BluetoothGattService service = bluetoothGatt.getService(UUID.fromString("SERVICE_UUID")); // Replace with actual UUID
-        if (service == null) {
-            callback.onResult("Service not found");
+    private void writeDescriptorNow(String deviceAddress, UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid,
+                                    byte[] value, Callback<GattResult> callback) {
+        DeviceConnection connection = connectionManager.get(deviceAddress);
+        if (connection == null || !connection.hasDescriptor(serviceUuid, characteristicUuid, descriptorUuid)) {
+            callback.onResult(GattResult.of(GattOperation.Type.WRITE_DESCRIPTOR, GattResult.STATUS_NOT_FOUND));
             return;
         }
+        connection.getQueue().enqueue(GattOperations.writeDescriptor(connection.getLink(), serviceUuid,
+                characteristicUuid, descriptorUuid, value, connectionManager.getOperationTimeoutMillis(), callback));
+    }
 
-        BluetoothGattCharacteristic characteristic = service.getCharacteristic(UUID.fromString("CHARACTERISTIC_UUID")); // Replace with actual UUID
-        if (characteristic == null) {
-            callback.onResult("Characteristic not found");
+    public void requestMtu(String deviceAddress, int mtu, Callback<GattResult> callback) {
+        final Callback<GattResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> requestMtuNow(deviceAddress, mtu, result));
+    }
+
+    private void requestMtuNow(String deviceAddress, int mtu, Callback<GattResult> callback) {
+        DeviceConnection connection = connectionManager.get(deviceAddress);
+        if (connection == null || connection.getLink() == null) {
+            callback.onResult(GattResult.of(GattOperation.Type.REQUEST_MTU, GattResult.STATUS_NOT_FOUND));
             return;
         }
+        connection.getQueue().enqueue(connection.requestMtu(mtu, callback));
+    }
 
-        characteristic.setValue(command.getBytes());
-        characteristic.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+    public void discoverServices(String deviceAddress, Callback<GattResult> callback) {
+        final Callback<GattResult> result = dispatcher.wrap(callback);
+        runOnBleThread(() -> discoverServicesNow(deviceAddress, result));
+    }
 
-        if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-            // TODO: Consider calling
-            //    ActivityCompat#requestPermissions
-            // here to request the missing permissions, and then overriding
-            //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-            //                                          int[] grantResults)
-            // to handle the case where the user grants the permission. See the documentation
-            // for ActivityCompat#requestPermissions for more details.
+    private void discoverServicesNow(String deviceAddress, Callback<GattResult> callback) {
+        DeviceConnection connection = connectionManager.get(deviceAddress);
+        if (connection == null || connection.getLink() == null) {
+            callback.onResult(GattResult.of(GattOperation.Type.DISCOVER_SERVICES, GattResult.STATUS_NOT_FOUND));
             return;
         }
-        boolean success = bluetoothGatt.writeCharacteristic(characteristic);
-        if (success) {
-            callback.onResult("Command sent: " + command);
-        } else {
-            callback.onResult("Failed to send command");
-        }
+        connection.getQueue().enqueue(GattOperations.discoverServices(connection.getLink(),
+                connectionManager.getOperationTimeoutMillis(), callback));
     }
 
-    public void startScan(final Callback<List<BluetoothDevice>> callback) {
+    // Returns false if scanning cannot start yet (permissions, adapter state)
+    private boolean prepareScanner() {
 
         // Check if permissions are granted
         if (!hasPermissions()) {
             requestPermissions();
-            return;
+            return false;
         }
 
         if (bluetoothAdapter == null) {
             Log.e(TAG, "Bluetooth is not supported on this device.");
             showNoBluetoothDialog();
-            return;
+            return false;
         }
 
         if (!bluetoothAdapter.isEnabled()) {
             Log.e(TAG, "Bluetooth is disabled. Please enable Bluetooth.");
             showEnableBluetoothDialog();
-            return;
+            return false;
         }
 
         BluetoothManager bluetoothManager = (BluetoothManager) activity.getSystemService(Context.BLUETOOTH_SERVICE);
         bluetoothAdapter = bluetoothManager.getAdapter();
-        bluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
-
 
-        // List to hold discovered devices
-        List<BluetoothDevice> scannedDevices = new ArrayList<>();
 
         // Check permissions for Android 6.0+ (ACCESS_FINE_LOCATION)
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
                 ActivityCompat.requestPermissions(activity, new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, 2);
-                return;
+                return false;
             }
         }
 
@@ -357,74 +704,285 @@ public class BluetoothSDK {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
                 ActivityCompat.requestPermissions(activity, new String[]{Manifest.permission.BLUETOOTH_SCAN}, 1);
-                return;
+                return false;
             }
         }
 
-        scanCallback = new ScanCallback() {
-            @Override
-            public void onScanResult(int callbackType, ScanResult result) {
-                BluetoothDevice device = result.getDevice();
+        // Permission state is read once per scan, not per result
+        permissions.refresh();
+        return true;
+    }
 
-                if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+    /**
+     * Scans for 10 s, or until a device named RingerDevice shows up, and
+     * returns what it found, nearest first. Also returns the list if the
+     * scan fails or is stopped early. Other scans keep running.
+     */
+    public ScanHandle startScan(Callback<List<BluetoothDevice>> devicesCallback) {
+        if (!prepareScanner()) {
+            return null;
+        }
+        final Callback<List<BluetoothDevice>> callback = dispatcher.wrap(devicesCallback);
+
+        // Discovered devices, ranked by smoothed RSSI and capped so a crowded scan stays bounded
+        final ProximityTable<BluetoothDevice> scannedDevices =
+                new ProximityTable<>(ProximityTable.DEFAULT_CAPACITY);
+        final ScanHandle[] self = new ScanHandle[1];
+
+        // Unfiltered low-power scan, as with the platform's startScan(callback)
+        ScanConfig config = new ScanConfig.Builder()
+                .setScanMode(ScanConfig.ScanMode.LOW_POWER)
+                .setDurationMillis(10000)
+                .build();
+        self[0] = addScan(config, new BleTransport.ScanSink<BluetoothDevice>() {
+            @Override
+            public void onScanResult(long address, BluetoothDevice device, int rssi, byte[] advertisement,
+                                     long nowMillis) {
+                if (!permissions.canConnect()) {
                     return;
                 }
-
-                // Add device to list if not already present
-                if (!scannedDevices.contains(device)) {
-                    scannedDevices.add(device);
+                boolean added = !scannedDevices.contains(address);
+                if (added && scannedDevices.isFull()) {
+                    scannedDevices.remove(scannedDevices.addressAt(scannedDevices.oldest()));
+                }
+                scannedDevices.ingest(address, device, rssi, advertisement, nowMillis);
+                connectionManager.getKnownDevices().onScanResult(address, rssi);
+                metrics.increment(SdkMetrics.Counter.SCAN_RESULTS);
+                if (!added) {
+                    metrics.increment(SdkMetrics.Counter.SCAN_DUPLICATES);
+                } else if (Log.isLoggable("BLE", Log.DEBUG)) {
+                    // Only build the string when someone is listening
                     Log.d("BLE", "Device found: " + device.getName() + " [" + device.getAddress() + "]");
                 }
-
-                // If specific device found, stop scanning (optional)
-                if ("RingerDevice".equals(device.getName())) { // Replace with your target device name
-                    bluetoothLeScanner.stopScan(scanCallback);
-                    callback.onResult(scannedDevices); // Return the list of devices
+                if (added && "RingerDevice".equals(device.getName())) { // Replace with your target device name
+                    // If specific device found, stop scanning (optional)
+                    self[0].stop();
                 }
             }
 
             @Override
-            public void onBatchScanResults(List<ScanResult> results) {
-                for (ScanResult result : results) {
-                    BluetoothDevice device = result.getDevice();
-                    if (!scannedDevices.contains(device)) {
-                        scannedDevices.add(device);
-//                    Log.d("BLE", "Batch device found: " + device.getName() + " [" + device.getAddress() + "]");
+            public void onScanFailed(int errorCode) {
+                Log.d("BLE", "Scan failed: " + errorCode);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                // Found, timed out, failed or stopped: return the list either way
+                callback.onResult(scannedDevices.byProximity(Integer.MAX_VALUE));
+                Log.d("BLE", "Scanning stopped");
+            }
+        });
+        return self[0];
+    }
+
+    // Device of the current or last streaming scan with the strongest smoothed RSSI, or null
+    public BluetoothDevice getNearestDevice() {
+        ScanSession<BluetoothDevice> session = rankedSession;
+        return session != null ? session.nearest() : null;
+    }
+
+    // Up to max devices of the current or last streaming scan, nearest first
+    public List<BluetoothDevice> getDevicesByProximity(int max) {
+        ScanSession<BluetoothDevice> session = rankedSession;
+        return session != null ? session.byProximity(max) : new ArrayList<BluetoothDevice>();
+    }
+
+    /**
+     * Streams scan results as they arrive. Deltas are coalesced per device and
+     * delivered on the callback executor in frames bounded by the config. Filters in
+     * the config run in the controller, see {@link ScanFilterCompiler}.
+     *
+     * Any number of scans can run at once on one hardware scan, see
+     * {@link ScanMultiplexer}; stop this one with the returned handle, which
+     * is null if scanning could not start. Call on the main thread.
+     */
+    public ScanHandle startScan(ScanConfig config, ScanListener<BluetoothDevice> scanListener) {
+        return startScan(config, scanListener, null);
+    }
+
+    /**
+     * Also decodes status beacons: advertisements that pass the config's
+     * matcher and that one of its decoders accepts go to beaconListener,
+     * every one of them, without connecting.
+     */
+    public ScanHandle startScan(ScanConfig config, ScanListener<BluetoothDevice> scanListener,
+                                BeaconListener beaconListener) {
+        if (!prepareScanner()) {
+            return null;
+        }
+        final ScanListener<BluetoothDevice> listener = dispatcher.wrap(scanListener);
+
+        final ScanSession<BluetoothDevice> session = new ScanSession<>(config, listener, metrics,
+                dispatcher.wrapBeacons(beaconListener));
+        rankedSession = session;
+        final long tickMillis = config.getFrameIntervalMillis() > 0 ? config.getFrameIntervalMillis() : 100;
+        // Expiry sweeps and frame flushes stay off the main thread
+        final Runnable ticker = new Runnable() {
+            @Override
+            public void run() {
+                session.tick(SystemClock.elapsedRealtime());
+                bleHandler.postDelayed(this, tickMillis);
+            }
+        };
+        ScanHandle handle = addScan(config, new BleTransport.ScanSink<BluetoothDevice>() {
+            @Override
+            public void onScanResult(long address, BluetoothDevice device, int rssi, byte[] advertisement,
+                                     long nowMillis) {
+                session.onResult(address, device, rssi, advertisement, nowMillis);
+                connectionManager.getKnownDevices().onScanResult(address, rssi);
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                listener.onScanFailed(errorCode);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                bleHandler.removeCallbacks(ticker);
+                session.finish(SystemClock.elapsedRealtime());
+            }
+        });
+        bleHandler.postDelayed(ticker, tickMillis);
+        return handle;
+    }
+
+    /**
+     * Scans and connects in one go: each matching device is connected as soon
+     * as it is seen, while the scan keeps looking for more. At most
+     * {@link ConnectTarget#getMaxConcurrentConnects()} attempts run at once;
+     * waiting matches go strongest signal first. The callback fires once per
+     * attempted device. Replaces a previous findAndConnect; other scans keep
+     * running.
+     */
+    public void findAndConnect(ConnectTarget target, PairingCallback pairingCallback) {
+        if (!prepareScanner()) {
+            return;
+        }
+        if (connectScan != null) {
+            connectScan.stop();
+        }
+        final PairingCallback callback = dispatcher.wrap(pairingCallback);
+        final ConnectPipeline<BluetoothDevice> pipeline = new ConnectPipeline<>(target, scheduler,
+                new ConnectPipeline.Connector<BluetoothDevice>() {
+                    @Override
+                    public void connect(final long address, final BluetoothDevice device,
+                                        final Callback<Boolean> done) {
+                        runOnBleThread(() -> connectionManager.connect(address, device, new PairingCallback() {
+                            @Override
+                            public void onPaired(BluetoothDevice paired) {
+                                done.onResult(true);
+                                if (callback != null) {
+                                    callback.onPaired(paired);
+                                }
+                            }
+
+                            @Override
+                            public void onPairingFailed(BluetoothDevice failed) {
+                                done.onResult(false);
+                                if (callback != null) {
+                                    callback.onPairingFailed(failed);
+                                }
+                            }
+                        }));
                     }
-                }
+
+                    @Override
+                    public void finished(ConnectPipeline<BluetoothDevice> finished) {
+                        mainHandler.post(() -> stopConnectPipeline(finished));
+                    }
+                });
+        connectPipeline = pipeline;
+        ScanConfig config = target.toScanConfig();
+        connectScan = addScan(config, new BleTransport.ScanSink<BluetoothDevice>() {
+            @Override
+            public void onScanResult(long address, BluetoothDevice device, int rssi, byte[] advertisement,
+                                     long nowMillis) {
+                metrics.increment(SdkMetrics.Counter.SCAN_RESULTS);
+                connectionManager.getKnownDevices().onScanResult(address, rssi);
+                pipeline.onResult(address, device, rssi, nowMillis);
             }
 
             @Override
             public void onScanFailed(int errorCode) {
-                Log.e("BLE", "Scan failed with error code: " + errorCode);
-                callback.onResult(scannedDevices); // Return the list even if scanning fails
             }
-        };
+        }, new Runnable() {
+            @Override
+            public void run() {
+                pipeline.cancel();
+                if (connectPipeline == pipeline) {
+                    connectPipeline = null;
+                    connectScan = null;
+                }
+            }
+        });
+    }
+
+    // Ignores a pipeline that has already been replaced by a newer scan
+    private void stopConnectPipeline(ConnectPipeline<BluetoothDevice> pipeline) {
+        if (pipeline != null && pipeline == connectPipeline && connectScan != null) {
+            connectScan.stop();
+        }
+    }
+
+    /**
+     * Adds a scan to the shared hardware scan. onStop runs once on the main
+     * thread when the handle is stopped, the config's duration runs out or
+     * the scan fails.
+     */
+    private ScanHandle addScan(ScanConfig config, final BleTransport.ScanSink<BluetoothDevice> sink,
+                               final Runnable onStop) {
+        final ScanHandle[] handle = new ScanHandle[1];
+        final ScanMultiplexer<BluetoothDevice>.Client client = scans.register(config,
+                new BleTransport.ScanSink<BluetoothDevice>() {
+                    @Override
+                    public void onScanResult(long address, BluetoothDevice device, int rssi,
+                                             byte[] advertisement, long nowMillis) {
+                        sink.onScanResult(address, device, rssi, advertisement, nowMillis);
+                    }
 
-        bluetoothLeScanner.startScan(scanCallback);
+                    @Override
+                    public void onScanFailed(int errorCode) {
+                        handle[0].stop();
+                        sink.onScanFailed(errorCode);
+                    }
+                });
+        final Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                handle[0].stop();
+            }
+        };
+        handle[0] = new ScanHandle(new Runnable() {
+            @Override
+            public void run() {
+                runOnMainThread(() -> {
+                    mainHandler.removeCallbacks(timeout);
+                    client.cancel();
+                    activeScans.remove(handle[0]);
+                    onStop.run();
+                });
+            }
+        });
+        activeScans.add(handle[0]);
+        if (config.getDurationMillis() > 0) {
+            mainHandler.postDelayed(timeout, config.getDurationMillis());
+        }
+        return handle[0];
+    }
 
-        // Stop scan after a timeout (e.g., 10 seconds) and return the list
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            bluetoothLeScanner.stopScan(scanCallback);
-            callback.onResult(scannedDevices);
-            Log.d("BLE", "Scanning stopped after timeout");
-        }, 10000); // 10 seconds timeout
+    private void runOnMainThread(Runnable task) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.run();
+        } else {
+            mainHandler.post(task);
+        }
     }
 
+    // Stops every scan started through this SDK
     public void stopScan() {
-        if (bluetoothLeScanner != null && scanCallback != null) {
-            if (ActivityCompat.checkSelfPermission(activity, Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
-                // TODO: Consider calling
-                //    ActivityCompat#requestPermissions
-                // here to request the missing permissions, and then overriding
-                //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-                //                                          int[] grantResults)
-                // to handle the case where the user grants the permission. See the documentation
-                // for ActivityCompat#requestPermissions for more details.
-                return;
-            }
-            bluetoothLeScanner.stopScan(scanCallback);
-            Log.d("BLE", "Scanning stopped");
+        for (ScanHandle handle : new ArrayList<>(activeScans)) {
+            handle.stop();
         }
     }
 
@@ -0,0 +1,106 @@
+package com.vivek.blutoothsdk;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes bond-state events from the transport to pending bond requests by
+ * address. Callers bonding the same device share one request, every request
+ * has a timeout, and the transport only delivers events while a request is
+ * pending, so no receiver outlives the work it was registered for.
+ *
+ * Must be used from the scheduler thread.
+ */
+class BondDispatcher implements BleTransport.BondSink {
+
+    private static final String TAG = "BondDispatcher";
+    // Long enough for the user to confirm a pairing dialog
+    static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private final Scheduler scheduler;
+    private final BleTransport<?> transport;
+    private final Map<Long, Pending> pending = new HashMap<>();
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    BondDispatcher(Scheduler scheduler, BleTransport<?> transport) {
+        this.scheduler = scheduler;
+        this.transport = transport;
+    }
+
+    void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Reports true once the device is bonded, false if pairing failed or timed out
+    void bond(final long address, BluetoothSDK.Callback<Boolean> callback) {
+        if (transport.getBondState(address) == BleTransport.BOND_BONDED) {
+            callback.onResult(true);
+            return;
+        }
+        Pending request = pending.get(address);
+        if (request != null) {
+            request.callbacks.add(callback);
+            return;
+        }
+        request = new Pending();
+        request.callbacks.add(callback);
+        pending.put(address, request);
+        if (pending.size() == 1) {
+            transport.startBondEvents(this);
+        }
+        request.timeout = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                Log.w(TAG, "Bonding timed out for " + MacAddress.unpack(address));
+                finish(address, false);
+            }
+        }, timeoutMillis);
+        // createBond() refuses while the stack is already pairing, e.g. started by a GATT request
+        if (!transport.createBond(address) && transport.getBondState(address) != BleTransport.BOND_BONDING) {
+            finish(address, transport.getBondState(address) == BleTransport.BOND_BONDED);
+        }
+    }
+
+    @Override
+    public void onBondStateChanged(long address, int state, int previousState) {
+        if (state == BleTransport.BOND_BONDED) {
+            finish(address, true);
+        } else if (state == BleTransport.BOND_NONE && previousState == BleTransport.BOND_BONDING) {
+            finish(address, false);
+        }
+    }
+
+    // Fails every pending request, e.g. when the SDK is torn down
+    void cancelAll() {
+        for (Long address : new ArrayList<>(pending.keySet())) {
+            finish(address, false);
+        }
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    private void finish(long address, boolean bonded) {
+        Pending request = pending.remove(address);
+        if (request == null) {
+            return;
+        }
+        request.timeout.cancel();
+        if (pending.isEmpty()) {
+            transport.stopBondEvents();
+        }
+        for (BluetoothSDK.Callback<Boolean> callback : request.callbacks) {
+            callback.onResult(bonded);
+        }
+    }
+
+    private static final class Pending {
+        final List<BluetoothSDK.Callback<Boolean>> callbacks = new ArrayList<>();
+        Scheduler.Cancellable timeout;
+    }
+}
@@ -0,0 +1,50 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Summary of a {@link BluetoothSDK#writeBulk} transfer.
+ */
+public final class BulkTransferResult {
+
+    private final int status;
+    private final long bytesWritten;
+    private final long elapsedMillis;
+    private final int mtu;
+
+    BulkTransferResult(int status, long bytesWritten, long elapsedMillis, int mtu) {
+        this.status = status;
+        this.bytesWritten = bytesWritten;
+        this.elapsedMillis = elapsedMillis;
+        this.mtu = mtu;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == GattResult.GATT_SUCCESS;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // ATT MTU the payload was fragmented for; each chunk is mtu - 3 bytes
+    public int getMtu() {
+        return mtu;
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedMillis > 0 ? bytesWritten * 1000.0 / elapsedMillis : bytesWritten * 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkTransferResult{status=" + status + ", bytes=" + bytesWritten + ", ms=" + elapsedMillis
+                + ", mtu=" + mtu + ", B/s=" + (long) getBytesPerSecond() + "}";
+    }
+}
@@ -0,0 +1,116 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Streams a payload as write-without-response chunks of MTU - 3 bytes.
+ *
+ * Every chunk goes through the connection's {@link GattOperationQueue}, so a
+ * new write is only issued once the stack has signalled onCharacteristicWrite
+ * for the previous one. That callback is the stack's "buffer free" credit;
+ * a write the stack reports busy ({@link GattResult#STATUS_BUSY}) is retried
+ * after one connection interval instead of dropping the chunk. Any other
+ * refusal, e.g. a revoked permission or a missing characteristic, ends the
+ * transfer at once.
+ */
+class BulkWriter {
+
+    interface ChunkSink {
+        GattOperation requestMtu(int mtu, BluetoothSDK.Callback<GattResult> callback);
+
+        // The chunk buffer is reused once the operation has started
+        GattOperation writeChunk(byte[] chunk, BluetoothSDK.Callback<GattResult> callback);
+    }
+
+    static final int DEFAULT_MTU = 23;
+    static final int MAX_MTU = 517;
+    private static final int ATT_HEADER = 3;
+    private static final int MAX_BUSY_RETRIES = 20;
+    private static final long BUSY_RETRY_MILLIS = 8; // ~ one 7.5 ms connection interval
+
+    private final GattOperationQueue queue;
+    private final Scheduler scheduler;
+    private final ChunkSink sink;
+    private final byte[] payload;
+    private final BluetoothSDK.Callback<BulkTransferResult> callback;
+
+    private int mtu = DEFAULT_MTU;
+    private byte[] chunk;
+    private int offset;
+    private int chunkLength;
+    private int busyRetries;
+    private long startMillis;
+    private boolean finished;
+
+    BulkWriter(GattOperationQueue queue, Scheduler scheduler, ChunkSink sink, byte[] payload,
+               BluetoothSDK.Callback<BulkTransferResult> callback) {
+        this.queue = queue;
+        this.scheduler = scheduler;
+        this.sink = sink;
+        this.payload = payload;
+        this.callback = callback;
+    }
+
+    void start(int requestedMtu) {
+        startMillis = scheduler.now();
+        if (requestedMtu <= DEFAULT_MTU) {
+            beginChunks(DEFAULT_MTU);
+            return;
+        }
+        queue.enqueue(sink.requestMtu(Math.min(requestedMtu, MAX_MTU), new BluetoothSDK.Callback<GattResult>() {
+            @Override
+            public void onResult(GattResult result) {
+                // A refused MTU request still leaves the default MTU usable
+                beginChunks(result.isSuccess() && result.getIntValue() > DEFAULT_MTU ? result.getIntValue() : DEFAULT_MTU);
+            }
+        }));
+    }
+
+    private void beginChunks(int negotiatedMtu) {
+        mtu = negotiatedMtu;
+        chunk = new byte[mtu - ATT_HEADER];
+        writeNext();
+    }
+
+    private void writeNext() {
+        if (offset >= payload.length) {
+            finish(GattResult.GATT_SUCCESS);
+            return;
+        }
+        chunkLength = Math.min(chunk.length, payload.length - offset);
+        if (chunkLength != chunk.length) {
+            // Only the last chunk is short
+            chunk = new byte[chunkLength];
+        }
+        System.arraycopy(payload, offset, chunk, 0, chunkLength);
+        queue.enqueue(sink.writeChunk(chunk, new BluetoothSDK.Callback<GattResult>() {
+            @Override
+            public void onResult(GattResult result) {
+                onChunkWritten(result);
+            }
+        }));
+    }
+
+    private void onChunkWritten(GattResult result) {
+        if (result.isSuccess()) {
+            offset += chunkLength;
+            busyRetries = 0;
+            writeNext();
+        } else if (result.getStatus() == GattResult.STATUS_BUSY && busyRetries++ < MAX_BUSY_RETRIES) {
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    writeNext();
+                }
+            }, BUSY_RETRY_MILLIS);
+        } else {
+            finish(result.getStatus());
+        }
+    }
+
+    private void finish(int status) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        callback.onResult(new BulkTransferResult(status, offset, scheduler.now() - startMillis, mtu));
+    }
+}
@@ -0,0 +1,148 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Hands results to user callbacks on the executor the app chose (main
+ * thread by default), so user code never runs on the SDK thread or a
+ * Bluetooth binder thread. The executor is read at delivery time.
+ */
+class CallbackDispatcher {
+
+    private volatile Executor executor;
+
+    CallbackDispatcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    <T> BluetoothSDK.Callback<T> wrap(final BluetoothSDK.Callback<T> callback) {
+        if (callback == null) {
+            return null;
+        }
+        return new BluetoothSDK.Callback<T>() {
+            @Override
+            public void onResult(final T result) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(result);
+                    }
+                });
+            }
+        };
+    }
+
+    BluetoothSDK.PairingCallback wrap(final BluetoothSDK.PairingCallback callback) {
+        if (callback == null) {
+            return null;
+        }
+        return new BluetoothSDK.PairingCallback() {
+            @Override
+            public void onPaired(final BluetoothDevice device) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPaired(device);
+                    }
+                });
+            }
+
+            @Override
+            public void onPairingFailed(final BluetoothDevice device) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPairingFailed(device);
+                    }
+                });
+            }
+        };
+    }
+
+    <D> ScanListener<D> wrap(final ScanListener<D> listener) {
+        return new ScanListener<D>() {
+            @Override
+            public void onScanFrame(final List<ScanDelta<D>> frame) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onScanFrame(frame);
+                    }
+                });
+            }
+
+            @Override
+            public void onScanFailed(final int errorCode) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onScanFailed(errorCode);
+                    }
+                });
+            }
+        };
+    }
+
+    // Named apart from wrap(Callback) so a lambda for either stays unambiguous
+    BeaconListener wrapBeacons(final BeaconListener listener) {
+        if (listener == null) {
+            return null;
+        }
+        return new BeaconListener() {
+            @Override
+            public void onBeacon(final Beacon beacon) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onBeacon(beacon);
+                    }
+                });
+            }
+        };
+    }
+
+    TransferListener wrap(final TransferListener listener) {
+        return new TransferListener() {
+            @Override
+            public void onProgress(final long acknowledgedBytes, final long totalBytes, final double bytesPerSecond) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onProgress(acknowledgedBytes, totalBytes, bytesPerSecond);
+                    }
+                });
+            }
+
+            @Override
+            public void onPaused(final long acknowledgedBytes) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onPaused(acknowledgedBytes);
+                    }
+                });
+            }
+
+            @Override
+            public void onFinished(final BulkTransferResult result) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onFinished(result);
+                    }
+                });
+            }
+        };
+    }
+}
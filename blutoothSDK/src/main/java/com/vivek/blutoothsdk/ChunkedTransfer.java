@@ -0,0 +1,421 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A large payload streamed to one device in MTU-sized chunks, see
+ * {@link TransferProtocol}. Up to {@link TransferConfig#getWindowBlocks()}
+ * blocks are sent ahead of the peripheral's acknowledgements; a rejected
+ * or unacknowledged block is resent from the last committed offset.
+ *
+ * When the link drops the transfer pauses, and when the device is ready
+ * again it resumes from the offset the peripheral reports, so a reconnect
+ * costs at most one window. All state lives on the SDK thread.
+ */
+public final class ChunkedTransfer {
+
+    private enum State {
+        WAITING,
+        STARTING,
+        STREAMING,
+        FINISHING,
+        PAUSED,
+        DONE
+    }
+
+    private static final int MAX_BUSY_RETRIES = 20;
+    private static final long BUSY_RETRY_MILLIS = 8;
+
+    private final long address;
+    private final TransferConfig config;
+    private final ByteBuffer source;
+    private final long total;
+    private final Scheduler scheduler;
+    private final ConnectionManager manager;
+    private final TransferListener listener;
+    private final CRC32 blockCrc = new CRC32();
+    // Ends of blocks sent but not yet acknowledged, oldest first
+    private final ArrayDeque<Long> inFlight = new ArrayDeque<>();
+    private final DeviceConnection.NotificationListener acks = new DeviceConnection.NotificationListener() {
+        @Override
+        public void onNotification(UUID service, UUID characteristic, byte[] value) {
+            if (characteristic.equals(config.getControlUuid()) && TransferProtocol.isAck(value)) {
+                onAck(TransferProtocol.getInt(value, 1), value[5]);
+            }
+        }
+    };
+
+    private State state = State.WAITING;
+    // Bumped whenever the stream restarts, so completions of older writes are ignored
+    private int epoch;
+    private DeviceConnection connection;
+    private GattLink link;
+    private ConnectionProfile previousProfile;
+    private int writeType;
+    private int mtu = BulkWriter.DEFAULT_MTU;
+    private int chunkPayload;
+    private byte[] chunk;
+    // The short last chunk of a block; the same size for every block but the final one
+    private byte[] tail;
+    private byte[] writing;
+    private boolean writingData;
+    private long sendOffset;
+    private long blockStart;
+    private int staleNaks;
+    private int retries;
+    private int busyRetries;
+    private Scheduler.Cancellable ackTimeout;
+    private long startedMillis;
+    private long resumedMillis;
+    private long resumedOffset;
+    // Read from other threads
+    private volatile long acknowledged;
+    private volatile boolean finished;
+
+    ChunkedTransfer(long address, TransferConfig config, ByteBuffer data, Scheduler scheduler,
+                    ConnectionManager manager, TransferListener listener) {
+        this.address = address;
+        this.config = config;
+        // A private view of the remaining bytes, so offsets count from the caller's position
+        this.source = data.slice();
+        this.total = source.remaining();
+        this.scheduler = scheduler;
+        this.manager = manager;
+        this.listener = listener;
+    }
+
+    public String getAddress() {
+        return MacAddress.unpack(address);
+    }
+
+    public long getTotalBytes() {
+        return total;
+    }
+
+    // Committed by the peripheral; a resume starts here
+    public long getAcknowledgedBytes() {
+        return acknowledged;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // Stops the transfer; onFinished reports STATUS_CANCELLED
+    public void cancel() {
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                finish(GattResult.STATUS_CANCELLED);
+            }
+        });
+    }
+
+    long getPackedAddress() {
+        return address;
+    }
+
+    void start() {
+        startedMillis = scheduler.now();
+    }
+
+    // The link is READY, for the first time or after a reconnect
+    void onLinkReady(DeviceConnection ready) {
+        if (state == State.DONE) {
+            return;
+        }
+        epoch++;
+        cancelAckTimeout();
+        connection = ready;
+        link = ready.getLink();
+        int dataProperties = ready.getProperties(config.getServiceUuid(), config.getDataUuid());
+        if (dataProperties == GattLink.NOT_FOUND
+                || !ready.hasDescriptor(config.getServiceUuid(), config.getControlUuid(),
+                GattLayout.CLIENT_CHARACTERISTIC_CONFIG)) {
+            finish(GattResult.STATUS_NOT_FOUND);
+            return;
+        }
+        writeType = (dataProperties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0
+                ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+        state = State.WAITING;
+        ready.removeNotificationListener(acks);
+        ready.addNotificationListener(acks);
+        // Large MTU and short interval for the transfer; the profile is re-applied on reconnect
+        if (ready.getProfile() != ConnectionProfile.highThroughput()) {
+            previousProfile = ready.getProfile();
+            ready.applyProfile(ConnectionProfile.highThroughput());
+        }
+        link.setNotificationsEnabled(config.getServiceUuid(), config.getControlUuid(), true);
+        final int current = epoch;
+        ready.getQueue().enqueue(GattOperations.writeDescriptor(link, config.getServiceUuid(),
+                config.getControlUuid(), GattLayout.CLIENT_CHARACTERISTIC_CONFIG,
+                BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE, manager.getOperationTimeoutMillis(),
+                new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(final GattResult result) {
+                        scheduler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (current != epoch) {
+                                    return;
+                                }
+                                if (result.isSuccess()) {
+                                    sendStart();
+                                } else {
+                                    onWriteFailed(result.getStatus());
+                                }
+                            }
+                        });
+                    }
+                }));
+    }
+
+    void onLinkLost() {
+        if (state == State.DONE || state == State.PAUSED || connection == null) {
+            return;
+        }
+        epoch++;
+        cancelAckTimeout();
+        inFlight.clear();
+        state = State.PAUSED;
+        listener.onPaused(acknowledged);
+    }
+
+    private void sendStart() {
+        state = State.STARTING;
+        // MTU and PHY requests were queued ahead of the descriptor write
+        mtu = connection.getMtu();
+        chunkPayload = mtu - 3 - TransferProtocol.DATA_HEADER;
+        chunk = new byte[mtu - 3];
+        writeControl(TransferProtocol.start(total));
+    }
+
+    private void onAck(long offset, int status) {
+        if (state == State.STARTING) {
+            // The peripheral's committed offset is where we resume
+            offset = Math.min(offset, total);
+            acknowledged = offset;
+            rewind(offset);
+            state = State.STREAMING;
+            retries = 0;
+            resumedMillis = scheduler.now();
+            resumedOffset = offset;
+            cancelAckTimeout();
+            pump();
+        } else if (state == State.STREAMING) {
+            if (status == TransferProtocol.STATUS_OK) {
+                while (!inFlight.isEmpty() && inFlight.peek() <= offset) {
+                    inFlight.poll();
+                }
+                acknowledged = Math.max(acknowledged, offset);
+                retries = 0;
+                restartAckTimeout();
+                listener.onProgress(acknowledged, total, rate());
+                pump();
+            } else if (staleNaks > 0) {
+                // Blocks sent before the last rewind, rejected for the same reason
+                staleNaks--;
+            } else if (retry()) {
+                rewind(offset);
+                pump();
+            }
+        } else if (state == State.FINISHING) {
+            cancelAckTimeout();
+            finish(status == TransferProtocol.STATUS_OK && offset == total
+                    ? GattResult.GATT_SUCCESS : GattResult.STATUS_CHECKSUM);
+        }
+    }
+
+    // Restarts the stream at a committed offset
+    private void rewind(long offset) {
+        epoch++;
+        // Every block already closed past the offset will be rejected once more
+        staleNaks = Math.max(0, inFlight.size() - 1);
+        inFlight.clear();
+        sendOffset = offset;
+        blockStart = offset;
+        blockCrc.reset();
+    }
+
+    private void pump() {
+        if (state != State.STREAMING || writingData) {
+            return;
+        }
+        if (sendOffset >= total) {
+            if (inFlight.isEmpty()) {
+                state = State.FINISHING;
+                writeControl(TransferProtocol.finish(total, imageCrc()));
+            }
+            return;
+        }
+        if (inFlight.size() >= config.getWindowBlocks()) {
+            return;
+        }
+        final int length = (int) Math.min(chunkPayload,
+                Math.min(blockStart + config.getBlockSize() - sendOffset, total - sendOffset));
+        byte[] buffer = chunk;
+        if (length != chunkPayload) {
+            if (tail == null || tail.length != TransferProtocol.DATA_HEADER + length) {
+                tail = new byte[TransferProtocol.DATA_HEADER + length];
+            }
+            buffer = tail;
+        }
+        TransferProtocol.putInt(buffer, 0, sendOffset);
+        source.position((int) sendOffset);
+        source.get(buffer, TransferProtocol.DATA_HEADER, length);
+        // Buffers are only refilled once the write that holds them has completed
+        writing = buffer;
+        writingData = true;
+        final int current = epoch;
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(link, config.getServiceUuid(),
+                config.getDataUuid(), buffer, writeType, manager.getOperationTimeoutMillis(),
+                new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(GattResult result) {
+                        onChunkWritten(current, result, length);
+                    }
+                }));
+    }
+
+    private void onChunkWritten(int writtenEpoch, GattResult result, int length) {
+        writingData = false;
+        if (writtenEpoch != epoch) {
+            pump();
+            return;
+        }
+        if (result.isSuccess()) {
+            busyRetries = 0;
+            blockCrc.update(writing, TransferProtocol.DATA_HEADER, length);
+            sendOffset += length;
+            if (sendOffset == blockStart + config.getBlockSize() || sendOffset == total) {
+                inFlight.add(sendOffset);
+                writeControl(TransferProtocol.block(blockStart, (int) (sendOffset - blockStart), blockCrc.getValue()));
+                blockStart = sendOffset;
+                blockCrc.reset();
+            }
+            pump();
+        } else if (result.getStatus() == GattResult.STATUS_BUSY && busyRetries++ < MAX_BUSY_RETRIES) {
+            // Stack buffers full; try again after a connection interval
+            scheduler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    pump();
+                }
+            }, BUSY_RETRY_MILLIS);
+        } else {
+            onWriteFailed(result.getStatus());
+        }
+    }
+
+    private void writeControl(byte[] value) {
+        final int current = epoch;
+        if (ackTimeout == null) {
+            restartAckTimeout();
+        }
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(link, config.getServiceUuid(),
+                config.getControlUuid(), value, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT,
+                manager.getOperationTimeoutMillis(), new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(GattResult result) {
+                        if (current == epoch && !result.isSuccess()) {
+                            onWriteFailed(result.getStatus());
+                        }
+                    }
+                }));
+    }
+
+    // Cancelled writes mean the link went down; onLinkLost pauses the transfer
+    private void onWriteFailed(int status) {
+        if (status != GattResult.STATUS_CANCELLED && connection.getState() == DeviceConnection.State.READY) {
+            finish(status);
+        }
+    }
+
+    private void restartAckTimeout() {
+        cancelAckTimeout();
+        if (state == State.STREAMING && inFlight.isEmpty()) {
+            return;
+        }
+        ackTimeout = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                ackTimeout = null;
+                onAckTimeout();
+            }
+        }, config.getAckTimeoutMillis());
+    }
+
+    private void cancelAckTimeout() {
+        if (ackTimeout != null) {
+            ackTimeout.cancel();
+            ackTimeout = null;
+        }
+    }
+
+    private void onAckTimeout() {
+        if (!retry()) {
+            return;
+        }
+        if (state == State.STARTING) {
+            writeControl(TransferProtocol.start(total));
+        } else if (state == State.STREAMING) {
+            rewind(acknowledged);
+            staleNaks = 0;
+            pump();
+        } else if (state == State.FINISHING) {
+            writeControl(TransferProtocol.finish(total, imageCrc()));
+        }
+    }
+
+    // Counts one retry; false once the budget is used up and the transfer has failed
+    private boolean retry() {
+        if (++retries > config.getMaxRetries()) {
+            finish(state == State.STREAMING ? GattResult.STATUS_CHECKSUM : GattResult.STATUS_TIMEOUT);
+            return false;
+        }
+        return true;
+    }
+
+    private long imageCrc() {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[4096];
+        source.position(0);
+        while (source.hasRemaining()) {
+            int length = Math.min(buffer.length, source.remaining());
+            source.get(buffer, 0, length);
+            crc.update(buffer, 0, length);
+        }
+        return crc.getValue();
+    }
+
+    private double rate() {
+        long elapsed = scheduler.now() - resumedMillis;
+        long bytes = acknowledged - resumedOffset;
+        return elapsed > 0 ? bytes * 1000.0 / elapsed : 0;
+    }
+
+    private void finish(int status) {
+        if (state == State.DONE) {
+            return;
+        }
+        state = State.DONE;
+        finished = true;
+        epoch++;
+        cancelAckTimeout();
+        if (connection != null) {
+            connection.removeNotificationListener(acks);
+            if (previousProfile != null && connection.getProfile() == ConnectionProfile.highThroughput()) {
+                connection.applyProfile(previousProfile);
+            }
+        }
+        manager.onTransferFinished(this);
+        listener.onFinished(new BulkTransferResult(status, acknowledged, scheduler.now() - startedMillis, mtu));
+    }
+}
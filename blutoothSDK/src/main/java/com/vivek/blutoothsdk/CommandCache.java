@@ -0,0 +1,38 @@
+package com.vivek.blutoothsdk;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-encoded bytes for constant commands, encoded on first use. Commands
+ * are looked up by equals/hashCode, so they must be immutable values such
+ * as enum constants. Safe to share between threads.
+ */
+public final class CommandCache<C> {
+
+    private final CommandEncoder<? super C> encoder;
+    private final Map<C, EncodedCommand> encoded = new ConcurrentHashMap<>();
+
+    public CommandCache(CommandEncoder<? super C> encoder) {
+        this.encoder = encoder;
+    }
+
+    public EncodedCommand get(C command) {
+        EncodedCommand cached = encoded.get(command);
+        if (cached == null) {
+            // Racing threads encode the same bytes; either copy may win
+            cached = EncodedCommand.of(command, encoder);
+            encoded.put(command, cached);
+        }
+        return cached;
+    }
+
+    public int size() {
+        return encoded.size();
+    }
+
+    // E.g. after the peripheral firmware changed its command set
+    public void clear() {
+        encoded.clear();
+    }
+}
@@ -0,0 +1,16 @@
+package com.vivek.blutoothsdk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes one typed command into the wire format of the peripheral. The
+ * buffer is reused between calls; write from its current position and
+ * leave everything else to the SDK.
+ *
+ * @param <C> the command type, e.g. an enum of fixed commands or a value class
+ */
+public interface CommandEncoder<C> {
+
+    // A command that does not fit overflows the buffer and fails with ENCODE_FAILED
+    void encode(C command, ByteBuffer out);
+}
@@ -0,0 +1,73 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * A request sent through a {@link RequestChannel}, awaiting its reply. Its
+ * callback fires exactly once.
+ */
+public final class CommandRequest {
+
+    private final long address;
+    private final RequestChannel channel;
+    private final Scheduler scheduler;
+    private final BluetoothSDK.Callback<CommandResponse> callback;
+
+    // The rest is owned by the SDK thread
+    byte[] value;
+    // Pool the value goes back to once written, null if not pooled
+    CommandWriter pool;
+    RequestCorrelator owner;
+    int sequence = -1;
+    long sentMillis;
+    Scheduler.Cancellable timeout;
+    private volatile boolean done;
+
+    CommandRequest(long address, RequestChannel channel, Scheduler scheduler,
+                   BluetoothSDK.Callback<CommandResponse> callback) {
+        this.address = address;
+        this.channel = channel;
+        this.scheduler = scheduler;
+        this.callback = callback;
+    }
+
+    public String getAddress() {
+        return MacAddress.unpack(address);
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    // Completes with CANCELLED unless the reply is already in; a sent request is not recalled
+    public void cancel() {
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                complete(CommandResult.of(CommandResult.Status.CANCELLED), null);
+            }
+        });
+    }
+
+    long getPackedAddress() {
+        return address;
+    }
+
+    RequestChannel getChannel() {
+        return channel;
+    }
+
+    // False if it had already completed
+    boolean complete(CommandResult result, byte[] payload) {
+        if (done) {
+            return false;
+        }
+        done = true;
+        if (owner != null) {
+            owner.onCompleted(this);
+        }
+        long roundTrip = sequence >= 0 ? scheduler.now() - sentMillis : 0;
+        if (callback != null) {
+            callback.onResult(new CommandResponse(result, payload, sequence, roundTrip));
+        }
+        return true;
+    }
+}
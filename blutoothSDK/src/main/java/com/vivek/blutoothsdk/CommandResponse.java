@@ -0,0 +1,48 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Reply to a request sent through a {@link RequestChannel}, or the reason
+ * there is none.
+ */
+public final class CommandResponse {
+
+    private final CommandResult result;
+    private final byte[] payload;
+    private final int sequence;
+    private final long roundTripMillis;
+
+    CommandResponse(CommandResult result, byte[] payload, int sequence, long roundTripMillis) {
+        this.result = result;
+        this.payload = payload;
+        this.sequence = sequence;
+        this.roundTripMillis = roundTripMillis;
+    }
+
+    // SUCCESS once the reply arrived; TIMEOUT if it did not in time
+    public CommandResult getResult() {
+        return result;
+    }
+
+    public boolean isSuccess() {
+        return result.isSuccess();
+    }
+
+    // The reply without its sequence byte; null unless successful
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    // -1 if the request was never sent
+    public int getSequence() {
+        return sequence;
+    }
+
+    public long getRoundTripMillis() {
+        return roundTripMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandResponse{" + result.getStatus() + ", seq=" + sequence + ", ms=" + roundTripMillis + "}";
+    }
+}
@@ -0,0 +1,83 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Outcome of a typed command send. Outcomes without a GATT status are
+ * shared instances, so a successful send allocates no result.
+ */
+public final class CommandResult {
+
+    public enum Status {
+        SUCCESS,
+        // No ready link to the device
+        NOT_CONNECTED,
+        // The command characteristic is missing from the device's services
+        NOT_FOUND,
+        // BLUETOOTH_CONNECT has not been granted
+        PERMISSION_DENIED,
+        // The encoder failed or the command did not fit
+        ENCODE_FAILED,
+        // The stack refused to start the write
+        REJECTED,
+        TIMEOUT,
+        // The link went away before the write completed
+        CANCELLED,
+        // The peripheral answered with an ATT error, see getGattStatus()
+        GATT_ERROR
+    }
+
+    private static final CommandResult[] SHARED = new CommandResult[Status.values().length];
+
+    static {
+        for (Status status : Status.values()) {
+            SHARED[status.ordinal()] = new CommandResult(status, GattResult.GATT_SUCCESS);
+        }
+    }
+
+    private final Status status;
+    private final int gattStatus;
+
+    private CommandResult(Status status, int gattStatus) {
+        this.status = status;
+        this.gattStatus = gattStatus;
+    }
+
+    static CommandResult of(Status status) {
+        return SHARED[status.ordinal()];
+    }
+
+    static CommandResult from(GattResult result) {
+        switch (result.getStatus()) {
+            case GattResult.GATT_SUCCESS:
+                return of(Status.SUCCESS);
+            case GattResult.STATUS_TIMEOUT:
+                return of(Status.TIMEOUT);
+            case GattResult.STATUS_REJECTED:
+            case GattResult.STATUS_BUSY:
+                return of(Status.REJECTED);
+            case GattResult.STATUS_CANCELLED:
+                return of(Status.CANCELLED);
+            case GattResult.STATUS_NOT_FOUND:
+                return of(Status.NOT_FOUND);
+            default:
+                return new CommandResult(Status.GATT_ERROR, result.getStatus());
+        }
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // ATT status for GATT_ERROR, 0 otherwise
+    public int getGattStatus() {
+        return gattStatus;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS;
+    }
+
+    @Override
+    public String toString() {
+        return status == Status.GATT_ERROR ? "GATT_ERROR(" + gattStatus + ")" : status.name();
+    }
+}
@@ -0,0 +1,80 @@
+package com.vivek.blutoothsdk;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Encodes typed commands into one reused buffer and hands out exact-length
+ * arrays from a pool, since the platform write API only takes a whole
+ * byte[]. Arrays go back to the pool when their write has completed.
+ *
+ * Encode on one thread (the SDK thread); recycle may be called from any.
+ */
+class CommandWriter {
+
+    // Longest attribute value ATT allows
+    static final int MAX_COMMAND_LENGTH = 512;
+    // Free arrays kept per length; control loops reuse a few sizes
+    private static final int MAX_FREE_PER_LENGTH = 8;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_COMMAND_LENGTH);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<byte[]>[] free = new ArrayDeque[MAX_COMMAND_LENGTH + 1];
+    private int allocated;
+
+    // A pooled array holding the command, or null if the encoder failed or overflowed
+    <C> byte[] encode(C command, CommandEncoder<? super C> encoder) {
+        return encode(command, encoder, 0);
+    }
+
+    // As encode, leaving headerLength bytes in front for the caller to fill in
+    <C> byte[] encode(C command, CommandEncoder<? super C> encoder, int headerLength) {
+        buffer.clear();
+        try {
+            buffer.position(headerLength);
+            encoder.encode(command, buffer);
+        } catch (RuntimeException e) {
+            // BufferOverflowException when the command does not fit, or a bug in the encoder
+            return null;
+        }
+        int length = buffer.position();
+        byte[] out = acquire(length);
+        System.arraycopy(buffer.array(), 0, out, 0, length);
+        return out;
+    }
+
+    void recycle(byte[] array) {
+        if (array == null || array.length > MAX_COMMAND_LENGTH) {
+            return;
+        }
+        synchronized (free) {
+            ArrayDeque<byte[]> list = free[array.length];
+            if (list == null) {
+                list = new ArrayDeque<>();
+                free[array.length] = list;
+            }
+            if (list.size() < MAX_FREE_PER_LENGTH) {
+                list.push(array);
+            }
+        }
+    }
+
+    // Arrays created because the pool was empty; flat once a loop is warm
+    int getAllocatedCount() {
+        synchronized (free) {
+            return allocated;
+        }
+    }
+
+    private byte[] acquire(int length) {
+        synchronized (free) {
+            ArrayDeque<byte[]> list = free[length];
+            byte[] array = list != null ? list.poll() : null;
+            if (array != null) {
+                return array;
+            }
+            allocated++;
+        }
+        return new byte[length];
+    }
+}
@@ -0,0 +1,156 @@
+package com.vivek.blutoothsdk;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scan results in, connect attempts out. A matching device is connected as
+ * soon as a slot is free while the scan keeps running; when all slots are
+ * busy, matches wait and the strongest signal gets the next slot. Each
+ * device is attempted once per pipeline.
+ *
+ * Results arrive on the scanner's thread and completions on the SDK thread,
+ * hence the lock. The connector is called outside of it.
+ */
+class ConnectPipeline<D> {
+
+    interface Connector<D> {
+        // Must eventually report the outcome through done
+        void connect(long address, D device, BluetoothSDK.Callback<Boolean> done);
+
+        // The device limit was reached; stop scanning
+        void finished(ConnectPipeline<D> pipeline);
+    }
+
+    // A match not seen again for this long has probably left
+    static final long STALE_MILLIS = 10000;
+
+    private final ConnectTarget target;
+    private final Scheduler clock;
+    private final Connector<D> connector;
+    private final Map<Long, Candidate<D>> candidates = new HashMap<>();
+    private final Set<Long> attempted = new HashSet<>();
+    private int inFlight;
+    private int connected;
+    private boolean finished;
+
+    ConnectPipeline(ConnectTarget target, Scheduler clock, Connector<D> connector) {
+        this.target = target;
+        this.clock = clock;
+        this.connector = connector;
+    }
+
+    void onResult(long address, D device, int rssi, long nowMillis) {
+        synchronized (this) {
+            if (finished || rssi < target.getMinRssi() || attempted.contains(address)) {
+                return;
+            }
+            Candidate<D> candidate = candidates.get(address);
+            if (candidate == null) {
+                candidates.put(address, new Candidate<>(address, device, rssi, nowMillis));
+            } else {
+                candidate.rssi = rssi;
+                candidate.lastSeenMillis = nowMillis;
+            }
+        }
+        dispatch();
+    }
+
+    // Drops waiting matches; attempts in flight run to completion
+    synchronized void cancel() {
+        finished = true;
+        candidates.clear();
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getConnected() {
+        return connected;
+    }
+
+    synchronized int getWaiting() {
+        return candidates.size();
+    }
+
+    private void dispatch() {
+        while (true) {
+            final Candidate<D> next;
+            synchronized (this) {
+                if (finished || inFlight >= target.getMaxConcurrentConnects() || atDeviceLimit(connected + inFlight)) {
+                    return;
+                }
+                next = strongest(clock.now());
+                if (next == null) {
+                    return;
+                }
+                candidates.remove(next.address);
+                attempted.add(next.address);
+                inFlight++;
+            }
+            connector.connect(next.address, next.device, new BluetoothSDK.Callback<Boolean>() {
+                @Override
+                public void onResult(Boolean success) {
+                    onConnectResult(success);
+                }
+            });
+        }
+    }
+
+    private void onConnectResult(boolean success) {
+        boolean done;
+        synchronized (this) {
+            inFlight--;
+            if (success) {
+                connected++;
+            }
+            done = !finished && atDeviceLimit(connected);
+            if (done) {
+                finished = true;
+                candidates.clear();
+            }
+        }
+        if (done) {
+            connector.finished(this);
+        } else {
+            dispatch();
+        }
+    }
+
+    private boolean atDeviceLimit(int count) {
+        return target.getMaxDevices() > 0 && count >= target.getMaxDevices();
+    }
+
+    // Caller holds the lock; evicts stale matches on the way
+    private Candidate<D> strongest(long nowMillis) {
+        Candidate<D> best = null;
+        Iterator<Candidate<D>> it = candidates.values().iterator();
+        while (it.hasNext()) {
+            Candidate<D> candidate = it.next();
+            if (nowMillis - candidate.lastSeenMillis > STALE_MILLIS) {
+                it.remove();
+            } else if (best == null || candidate.rssi > best.rssi) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static final class Candidate<D> {
+        final long address;
+        final D device;
+        int rssi;
+        long lastSeenMillis;
+
+        Candidate(long address, D device, int rssi, long lastSeenMillis) {
+            this.address = address;
+            this.device = device;
+            this.rssi = rssi;
+            this.lastSeenMillis = lastSeenMillis;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Which devices {@link BluetoothSDK#findAndConnect} connects to and how many
+ * at a time. Filters run in the controller as for a normal scan; the RSSI
+ * threshold is checked per advertisement.
+ */
+public final class ConnectTarget {
+
+    public static final int DEFAULT_MAX_CONCURRENT_CONNECTS = 3;
+    public static final long DEFAULT_SCAN_DURATION_MILLIS = 30000;
+
+    private final List<ScanConfig.Filter> filters;
+    private final int minRssi;
+    private final int maxConcurrentConnects;
+    private final int maxDevices;
+    private final long scanDurationMillis;
+
+    private ConnectTarget(Builder builder) {
+        this.filters = Collections.unmodifiableList(new ArrayList<>(builder.filters));
+        this.minRssi = builder.minRssi;
+        this.maxConcurrentConnects = builder.maxConcurrentConnects;
+        this.maxDevices = builder.maxDevices;
+        this.scanDurationMillis = builder.scanDurationMillis;
+    }
+
+    public List<ScanConfig.Filter> getFilters() {
+        return filters;
+    }
+
+    public int getMinRssi() {
+        return minRssi;
+    }
+
+    public int getMaxConcurrentConnects() {
+        return maxConcurrentConnects;
+    }
+
+    // 0 for no limit
+    public int getMaxDevices() {
+        return maxDevices;
+    }
+
+    public long getScanDurationMillis() {
+        return scanDurationMillis;
+    }
+
+    // Connecting is what the user waits for, so scan at low latency
+    ScanConfig toScanConfig() {
+        ScanConfig.Builder builder = new ScanConfig.Builder()
+                .setScanMode(ScanConfig.ScanMode.LOW_LATENCY)
+                .setDurationMillis(scanDurationMillis);
+        for (ScanConfig.Filter filter : filters) {
+            builder.addFilter(filter);
+        }
+        return builder.build();
+    }
+
+    public static final class Builder {
+        private final List<ScanConfig.Filter> filters = new ArrayList<>();
+        private int minRssi = Integer.MIN_VALUE;
+        private int maxConcurrentConnects = DEFAULT_MAX_CONCURRENT_CONNECTS;
+        private int maxDevices = 0;
+        private long scanDurationMillis = DEFAULT_SCAN_DURATION_MILLIS;
+
+        public Builder addFilter(ScanConfig.Filter filter) {
+            filters.add(filter);
+            return this;
+        }
+
+        public Builder addNameFilter(String deviceName) {
+            return addFilter(new ScanConfig.Filter.Builder().setDeviceName(deviceName).build());
+        }
+
+        public Builder addServiceUuidFilter(UUID serviceUuid) {
+            return addFilter(new ScanConfig.Filter.Builder().setServiceUuid(serviceUuid).build());
+        }
+
+        public Builder addManufacturerFilter(int manufacturerId, byte[] data, byte[] mask) {
+            return addFilter(new ScanConfig.Filter.Builder().setManufacturerData(manufacturerId, data, mask).build());
+        }
+
+        // Weaker advertisements are ignored, e.g. units in the next room
+        public Builder setMinRssi(int minRssi) {
+            this.minRssi = minRssi;
+            return this;
+        }
+
+        // Connect attempts in flight at once; further matches wait, strongest first
+        public Builder setMaxConcurrentConnects(int maxConcurrentConnects) {
+            if (maxConcurrentConnects < 1) {
+                throw new IllegalArgumentException("maxConcurrentConnects < 1");
+            }
+            this.maxConcurrentConnects = maxConcurrentConnects;
+            return this;
+        }
+
+        // The scan stops once this many devices are connected
+        public Builder setMaxDevices(int maxDevices) {
+            if (maxDevices < 0) {
+                throw new IllegalArgumentException("maxDevices < 0");
+            }
+            this.maxDevices = maxDevices;
+            return this;
+        }
+
+        // 0 scans until stopScan()
+        public Builder setScanDurationMillis(long scanDurationMillis) {
+            this.scanDurationMillis = scanDurationMillis;
+            return this;
+        }
+
+        public ConnectTarget build() {
+            return new ConnectTarget(this);
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns every GATT link, keyed by packed device address. Connect requests
+ * beyond the concurrent-connection cap wait in FIFO order, and all links
+ * share one {@link OperationArbiter} for their GATT operations.
+ *
+ * Must be used from the scheduler thread; only {@link #getConnectedDevices()}
+ * may be called from other threads.
+ */
+class ConnectionManager {
+
+    // Device handles for known devices that are reconnected by address
+    interface DeviceLookup {
+        BluetoothDevice find(KnownDevice known);
+    }
+
+    private static final String TAG = "ConnectionManager";
+    static final int DEFAULT_MAX_CONNECTIONS = 7;
+    static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final Scheduler scheduler;
+    private final BleTransport<?> transport;
+    private final OperationArbiter arbiter = new OperationArbiter(DEFAULT_MAX_CONNECTIONS);
+    private final GattClientRegistry<GattLink> clients = new GattClientRegistry<>(
+            new GattClientRegistry.Closer<GattLink>() {
+                @Override
+                public void close(GattLink link) {
+                    link.close();
+                }
+            });
+    private final ReconnectScheduler reconnects;
+    private final GattLayoutStore layouts;
+    private final KnownDeviceRegistry knownDevices;
+    private final SdkMetrics metrics;
+    private final BondDispatcher bonds;
+    private final Map<Long, DeviceConnection> connections = new ConcurrentHashMap<>();
+    private final ArrayDeque<DeviceConnection> waiting = new ArrayDeque<>();
+    // At most one chunked transfer per device; it outlives reconnects
+    private final Map<Long, ChunkedTransfer> transfers = new HashMap<>();
+    // Re-enabled on every READY until cancelled
+    private final Map<Long, List<Subscription>> subscriptions = new HashMap<>();
+    private final Map<Long, List<RequestCorrelator>> correlators = new HashMap<>();
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private long operationTimeoutMillis = GattOperation.DEFAULT_TIMEOUT_MILLIS;
+    private DeviceConnection lastReady;
+    private ConnectionProfile defaultProfile = ConnectionProfile.balanced();
+    private BluetoothSDK.Callback<ConnectionParameters> parametersListener;
+
+    ConnectionManager(Scheduler scheduler, BleTransport<?> transport, GattLayoutStore layouts) {
+        this(scheduler, transport, layouts, new KnownDeviceRegistry());
+    }
+
+    ConnectionManager(Scheduler scheduler, BleTransport<?> transport, GattLayoutStore layouts,
+                      KnownDeviceRegistry knownDevices) {
+        this.scheduler = scheduler;
+        this.transport = transport;
+        this.reconnects = new ReconnectScheduler(scheduler);
+        this.layouts = layouts;
+        this.knownDevices = knownDevices;
+        this.metrics = new SdkMetrics(scheduler);
+        this.bonds = new BondDispatcher(scheduler, transport);
+    }
+
+    BleTransport<?> getTransport() {
+        return transport;
+    }
+
+    ReconnectScheduler getReconnects() {
+        return reconnects;
+    }
+
+    GattLayoutStore getLayouts() {
+        return layouts;
+    }
+
+    KnownDeviceRegistry getKnownDevices() {
+        return knownDevices;
+    }
+
+    SdkMetrics getMetrics() {
+        return metrics;
+    }
+
+    BondDispatcher getBonds() {
+        return bonds;
+    }
+
+    void setReconnectPolicy(ReconnectPolicy policy) {
+        reconnects.setPolicy(policy);
+    }
+
+    void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        promoteWaiting();
+    }
+
+    // By default each link may have one operation in flight; lower this to
+    // make links take turns on a congested controller
+    void setMaxConcurrentOperations(int maxConcurrentOperations) {
+        arbiter.setMaxInFlight(maxConcurrentOperations);
+    }
+
+    void setConnectTimeoutMillis(long connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    void setOperationTimeoutMillis(long operationTimeoutMillis) {
+        this.operationTimeoutMillis = operationTimeoutMillis;
+    }
+
+    long getOperationTimeoutMillis() {
+        return operationTimeoutMillis;
+    }
+
+    ConnectionProfile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    // Becomes the profile of every link, including the ones already connected
+    void setDefaultProfile(ConnectionProfile profile) {
+        defaultProfile = profile;
+        for (DeviceConnection connection : connections.values()) {
+            connection.applyProfile(profile);
+        }
+    }
+
+    void setParametersListener(BluetoothSDK.Callback<ConnectionParameters> listener) {
+        parametersListener = listener;
+    }
+
+    void onParametersChanged(ConnectionParameters parameters) {
+        if (parametersListener != null) {
+            parametersListener.onResult(parameters);
+        }
+    }
+
+    DeviceConnection connect(long address, BluetoothDevice device, BluetoothSDK.PairingCallback callback) {
+        DeviceConnection connection = connections.get(address);
+        if (connection == null) {
+            // A remembered random address has to be opened as one
+            KnownDevice known = knownDevices.get(address);
+            int addressType = known != null ? known.getAddressType() : KnownDevice.ADDRESS_TYPE_UNKNOWN;
+            connection = new DeviceConnection(address, addressType, device, scheduler, arbiter, clients,
+                    reconnects, this);
+            connections.put(address, connection);
+        }
+        connection.addCallback(callback);
+        if (!connection.isActive() && !waiting.contains(connection)) {
+            if (activeCount() < maxConnections) {
+                connection.connect();
+            } else {
+                Log.d(TAG, "Connection limit reached, queueing " + MacAddress.unpack(address));
+                waiting.add(connection);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Pairs first if the device is not bonded, then connects straight from the
+     * bond event. The callback fires once, when the link is READY or when
+     * pairing or connecting fails.
+     */
+    void bondAndConnect(final long address, final BluetoothDevice device,
+                        final BluetoothSDK.PairingCallback callback) {
+        bonds.bond(address, new BluetoothSDK.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean bonded) {
+                if (bonded) {
+                    connect(address, device, callback);
+                } else if (callback != null) {
+                    Log.d(TAG, "Bonding failed for " + MacAddress.unpack(address));
+                    callback.onPairingFailed(device);
+                }
+            }
+        });
+    }
+
+    /**
+     * Connects to every known device by address, without scanning, most
+     * recently used first. Up to the connection cap they connect in
+     * parallel; the rest wait for a free slot. Devices that are already
+     * connected or connecting just get the callback added.
+     */
+    void reconnectKnown(DeviceLookup lookup, BluetoothSDK.PairingCallback callback) {
+        for (KnownDevice known : knownDevices.getAll()) {
+            connect(known.getPackedAddress(), lookup.find(known), callback);
+        }
+    }
+
+    // Drops the device and its cached layout; an open link stays up
+    void forget(long address) {
+        knownDevices.remove(address);
+        layouts.invalidate(address);
+        dropCorrelators(address);
+    }
+
+    /**
+     * Starts streaming once the device is READY, which may be now. Fails
+     * with STATUS_NOT_FOUND if the device was never connected and with
+     * STATUS_REJECTED if it already has a transfer running.
+     */
+    void startTransfer(ChunkedTransfer transfer, TransferListener listener) {
+        long address = transfer.getPackedAddress();
+        DeviceConnection connection = connections.get(address);
+        if (connection == null || transfers.containsKey(address)) {
+            listener.onFinished(new BulkTransferResult(connection == null ? GattResult.STATUS_NOT_FOUND
+                    : GattResult.STATUS_REJECTED, 0, 0, BulkWriter.DEFAULT_MTU));
+            return;
+        }
+        transfers.put(address, transfer);
+        transfer.start();
+        if (connection.getState() == DeviceConnection.State.READY) {
+            transfer.onLinkReady(connection);
+        }
+    }
+
+    void onTransferFinished(ChunkedTransfer transfer) {
+        if (transfers.get(transfer.getPackedAddress()) == transfer) {
+            transfers.remove(transfer.getPackedAddress());
+        }
+    }
+
+    // Enables the stream now if the device is READY, otherwise when it next is
+    void subscribe(Subscription subscription) {
+        long address = subscription.getPackedAddress();
+        List<Subscription> list = subscriptions.get(address);
+        if (list == null) {
+            list = new ArrayList<>();
+            subscriptions.put(address, list);
+        }
+        list.add(subscription);
+        DeviceConnection connection = connections.get(address);
+        if (connection != null && connection.getState() == DeviceConnection.State.READY) {
+            subscription.enable(connection);
+        }
+    }
+
+    void unsubscribe(Subscription subscription) {
+        List<Subscription> list = subscriptions.get(subscription.getPackedAddress());
+        if (list == null || !list.remove(subscription)) {
+            return;
+        }
+        boolean shared = false;
+        for (Subscription other : list) {
+            shared |= other.matches(subscription);
+        }
+        if (list.isEmpty()) {
+            subscriptions.remove(subscription.getPackedAddress());
+        }
+        subscription.disable(!shared);
+    }
+
+    // Sends through the device's correlator for the request's channel
+    void request(CommandRequest request) {
+        long address = request.getPackedAddress();
+        List<RequestCorrelator> list = correlators.get(address);
+        if (list == null) {
+            list = new ArrayList<>();
+            correlators.put(address, list);
+        }
+        RequestCorrelator correlator = null;
+        for (RequestCorrelator candidate : list) {
+            if (candidate.getChannel().sameCharacteristics(request.getChannel())) {
+                correlator = candidate;
+                break;
+            }
+        }
+        if (correlator == null) {
+            correlator = new RequestCorrelator(request.getChannel(), scheduler, this);
+            list.add(correlator);
+        }
+        correlator.submit(request, connections.get(address));
+    }
+
+    void disconnect(String address) {
+        DeviceConnection connection = connections.get(MacAddress.pack(address));
+        if (connection != null) {
+            waiting.remove(connection);
+            connection.disconnect();
+        }
+    }
+
+    // Disconnects and closes every client handle, e.g. when the SDK is torn down
+    void closeAll() {
+        bonds.cancelAll();
+        for (ChunkedTransfer transfer : new ArrayList<>(transfers.values())) {
+            transfer.cancel();
+        }
+        for (List<Subscription> list : subscriptions.values()) {
+            for (Subscription subscription : list) {
+                subscription.close();
+            }
+        }
+        subscriptions.clear();
+        for (List<RequestCorrelator> list : correlators.values()) {
+            for (RequestCorrelator correlator : list) {
+                correlator.onLinkLost();
+            }
+        }
+        correlators.clear();
+        waiting.clear();
+        for (DeviceConnection connection : new ArrayList<>(connections.values())) {
+            connection.close();
+        }
+        connections.clear();
+        reconnects.resetAll();
+        lastReady = null;
+    }
+
+    GattClientRegistry<GattLink> getClients() {
+        return clients;
+    }
+
+    void setMaxGattClients(int maxClients) {
+        clients.setMaxClients(maxClients);
+    }
+
+    void disconnectAll() {
+        waiting.clear();
+        for (DeviceConnection connection : new ArrayList<>(connections.values())) {
+            connection.disconnect();
+        }
+    }
+
+    DeviceConnection get(String address) {
+        return connections.get(MacAddress.pack(address));
+    }
+
+    // Most recently connected link, for the single-device API
+    DeviceConnection getDefault() {
+        return lastReady != null && lastReady.getState() == DeviceConnection.State.READY ? lastReady : null;
+    }
+
+    List<BluetoothDevice> getConnectedDevices() {
+        List<BluetoothDevice> result = new ArrayList<>();
+        for (DeviceConnection connection : connections.values()) {
+            if (connection.getState() == DeviceConnection.State.READY) {
+                result.add(connection.getDevice());
+            }
+        }
+        return result;
+    }
+
+    void onReady(DeviceConnection connection) {
+        lastReady = connection;
+        long address = connection.getAddress();
+        // Wall clock, since the timestamp outlives the process
+        knownDevices.onConnected(address, transport.getName(address), connection.getAddressType(),
+                transport.getBondState(address), System.currentTimeMillis());
+        List<Subscription> subscribed = subscriptions.get(address);
+        if (subscribed != null) {
+            for (Subscription subscription : subscribed) {
+                subscription.enable(connection);
+            }
+        }
+        ChunkedTransfer transfer = transfers.get(address);
+        if (transfer != null) {
+            transfer.onLinkReady(connection);
+        }
+    }
+
+    // The link went down after being READY: requests fail, a running transfer pauses until it is back
+    void onLinkLost(DeviceConnection connection) {
+        List<RequestCorrelator> list = correlators.get(connection.getAddress());
+        if (list != null) {
+            for (RequestCorrelator correlator : list) {
+                correlator.onLinkLost();
+            }
+        }
+        ChunkedTransfer transfer = transfers.get(connection.getAddress());
+        if (transfer != null) {
+            transfer.onLinkLost();
+        }
+    }
+
+    void onClosed(DeviceConnection connection, int status) {
+        Log.d(TAG, "Connection closed: " + MacAddress.unpack(connection.getAddress()) + " status: " + status);
+        if (lastReady == connection) {
+            lastReady = null;
+        }
+        if (!connection.hasOpenHandle()) {
+            connections.remove(connection.getAddress());
+            dropCorrelators(connection.getAddress());
+        }
+        promoteWaiting();
+    }
+
+    // Channels in use for the device, one correlator each
+    int getCorrelatorCount(long address) {
+        List<RequestCorrelator> list = correlators.get(address);
+        return list != null ? list.size() : 0;
+    }
+
+    // Fails the device's outstanding requests; the next request() starts a new correlator
+    private void dropCorrelators(long address) {
+        List<RequestCorrelator> list = correlators.remove(address);
+        if (list != null) {
+            for (RequestCorrelator correlator : list) {
+                correlator.onLinkLost();
+            }
+        }
+    }
+
+    private void promoteWaiting() {
+        while (!waiting.isEmpty() && activeCount() < maxConnections) {
+            waiting.poll().connect();
+        }
+    }
+
+    private int activeCount() {
+        int count = 0;
+        for (DeviceConnection connection : connections.values()) {
+            if (connection.isActive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
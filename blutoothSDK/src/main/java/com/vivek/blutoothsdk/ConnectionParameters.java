@@ -0,0 +1,77 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * What a link actually negotiated, as reported by the stack. Delivered to the
+ * listener set with {@link BluetoothSDK#setConnectionParametersListener}
+ * whenever one of the values changes.
+ */
+public final class ConnectionParameters {
+
+    // Same values as BluetoothDevice.PHY_LE_*
+    public static final int PHY_LE_1M = 1;
+    public static final int PHY_LE_2M = 2;
+    public static final int PHY_LE_CODED = 3;
+
+    private final long address;
+    private final ConnectionProfile profile;
+    private final int interval;
+    private final int peripheralLatency;
+    private final int supervisionTimeout;
+    private final int txPhy;
+    private final int rxPhy;
+    private final int mtu;
+
+    ConnectionParameters(long address, ConnectionProfile profile, int interval, int peripheralLatency,
+                         int supervisionTimeout, int txPhy, int rxPhy, int mtu) {
+        this.address = address;
+        this.profile = profile;
+        this.interval = interval;
+        this.peripheralLatency = peripheralLatency;
+        this.supervisionTimeout = supervisionTimeout;
+        this.txPhy = txPhy;
+        this.rxPhy = rxPhy;
+        this.mtu = mtu;
+    }
+
+    public String getAddress() {
+        return MacAddress.unpack(address);
+    }
+
+    // Profile last requested for the link
+    public ConnectionProfile getProfile() {
+        return profile;
+    }
+
+    // 0 until the stack reports a connection update
+    public double getIntervalMillis() {
+        return interval * 1.25;
+    }
+
+    // Connection events the peripheral may skip
+    public int getPeripheralLatency() {
+        return peripheralLatency;
+    }
+
+    public int getSupervisionTimeoutMillis() {
+        return supervisionTimeout * 10;
+    }
+
+    public int getTxPhy() {
+        return txPhy;
+    }
+
+    public int getRxPhy() {
+        return rxPhy;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionParameters{" + getAddress() + ", profile=" + profile + ", interval=" + getIntervalMillis()
+                + "ms, latency=" + peripheralLatency + ", timeout=" + getSupervisionTimeoutMillis()
+                + "ms, phy=" + txPhy + "/" + rxPhy + ", mtu=" + mtu + "}";
+    }
+}
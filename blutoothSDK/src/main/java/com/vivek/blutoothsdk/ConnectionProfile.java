@@ -0,0 +1,117 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Link settings applied once a connection is ready: connection priority
+ * (which picks the connection interval), preferred PHY and ATT MTU.
+ * Switch at runtime with {@link BluetoothSDK#setConnectionProfile}.
+ *
+ * A PHY or MTU of 0 leaves the current value alone. The MTU can only be
+ * raised, once per connection, so dropping back to a slower profile keeps it.
+ */
+public final class ConnectionProfile {
+
+    // Same values as BluetoothGatt.CONNECTION_PRIORITY_*
+    public static final int PRIORITY_BALANCED = 0;
+    public static final int PRIORITY_HIGH = 1;
+    public static final int PRIORITY_LOW_POWER = 2;
+
+    // Same values as BluetoothDevice.PHY_LE_*_MASK
+    public static final int PHY_LE_1M_MASK = 1;
+    public static final int PHY_LE_2M_MASK = 2;
+    public static final int PHY_LE_CODED_MASK = 4;
+
+    private static final ConnectionProfile HIGH_THROUGHPUT = new Builder("high-throughput")
+            .setConnectionPriority(PRIORITY_HIGH)
+            .setPreferredPhy(PHY_LE_2M_MASK)
+            .setMtu(BulkWriter.MAX_MTU)
+            .build();
+    private static final ConnectionProfile BALANCED = new Builder("balanced").build();
+    private static final ConnectionProfile LOW_POWER = new Builder("low-power")
+            .setConnectionPriority(PRIORITY_LOW_POWER)
+            .build();
+
+    private final String name;
+    private final int connectionPriority;
+    private final int preferredPhy;
+    private final int mtu;
+
+    private ConnectionProfile(Builder builder) {
+        this.name = builder.name;
+        this.connectionPriority = builder.connectionPriority;
+        this.preferredPhy = builder.preferredPhy;
+        this.mtu = builder.mtu;
+    }
+
+    // Shortest interval (7.5 ms), 2M PHY and the largest MTU, for bulk transfers
+    public static ConnectionProfile highThroughput() {
+        return HIGH_THROUGHPUT;
+    }
+
+    // The stack's defaults, typically a 30-50 ms interval
+    public static ConnectionProfile balanced() {
+        return BALANCED;
+    }
+
+    // Long interval (~100 ms) for idle links that only wait for notifications
+    public static ConnectionProfile lowPower() {
+        return LOW_POWER;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getConnectionPriority() {
+        return connectionPriority;
+    }
+
+    public int getPreferredPhy() {
+        return preferredPhy;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int connectionPriority = PRIORITY_BALANCED;
+        private int preferredPhy = 0;
+        private int mtu = 0;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder setConnectionPriority(int connectionPriority) {
+            if (connectionPriority < PRIORITY_BALANCED || connectionPriority > PRIORITY_LOW_POWER) {
+                throw new IllegalArgumentException("Unknown connection priority: " + connectionPriority);
+            }
+            this.connectionPriority = connectionPriority;
+            return this;
+        }
+
+        // Bitmask of PHY_LE_*_MASK; needs API 26 and a peripheral that supports it
+        public Builder setPreferredPhy(int preferredPhy) {
+            this.preferredPhy = preferredPhy;
+            return this;
+        }
+
+        public Builder setMtu(int mtu) {
+            if (mtu != 0 && (mtu < BulkWriter.DEFAULT_MTU || mtu > BulkWriter.MAX_MTU)) {
+                throw new IllegalArgumentException("MTU must be between 23 and 517");
+            }
+            this.mtu = mtu;
+            return this;
+        }
+
+        public ConnectionProfile build() {
+            return new ConnectionProfile(this);
+        }
+    }
+}
@@ -0,0 +1,700 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothProfile;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One GATT link and its state machine, on a {@link GattLink} from the
+ * manager's transport. State changes run on the scheduler thread; operation
+ * completions go straight to the thread-safe queue.
+ */
+class DeviceConnection {
+
+    enum State {
+        DISCONNECTED,
+        CONNECTING,
+        DISCOVERING,
+        READY,
+        DISCONNECTING
+    }
+
+    // Notifications and indications from the peripheral
+    interface NotificationListener {
+        void onNotification(UUID service, UUID characteristic, byte[] value);
+    }
+
+    private static final String TAG = "DeviceConnection";
+    // Close the handle even if the stack never reports the disconnect
+    private static final long DISCONNECT_TIMEOUT_MILLIS = 2000;
+
+    private final BluetoothDevice device;
+    private final long address;
+    private final int addressType;
+    private final String name;
+    private final Scheduler scheduler;
+    private final ConnectionManager manager;
+    private final GattOperationQueue queue;
+    private final GattClientRegistry<GattLink> clients;
+    private final ReconnectScheduler reconnects;
+    private final SdkMetrics metrics;
+    private final QueueingLinkListener listener;
+    private final List<BluetoothSDK.PairingCallback> callbacks = new ArrayList<>();
+    private final List<NotificationListener> notificationListeners = new CopyOnWriteArrayList<>();
+    // Called on the stack's callback thread; an array so high-rate delivery does not allocate an iterator
+    private volatile NotificationListener[] directListeners = new NotificationListener[0];
+
+    // Read by getConnectedDevices() from other threads
+    private volatile State state = State.DISCONNECTED;
+    private GattLink link;
+    private Scheduler.Cancellable connectTimeout;
+    private Scheduler.Cancellable disconnectTimeout;
+    private boolean background;
+    // Connected through connect() on a kept handle that may still hold its services
+    private boolean reusedHandle;
+    // Start of the current connect or discovery, for latency metrics
+    private long phaseStartedMillis;
+    // Requested profile, re-applied on every reconnect; null until first READY
+    private ConnectionProfile profile;
+    // Negotiated link parameters; written from the stack's callback thread
+    private volatile int mtu = BulkWriter.DEFAULT_MTU;
+    private volatile boolean mtuExchanged;
+    private int interval;
+    private int peripheralLatency;
+    private int supervisionTimeout;
+    private int txPhy = ConnectionParameters.PHY_LE_1M;
+    private int rxPhy = ConnectionParameters.PHY_LE_1M;
+    private final Runnable retry = new Runnable() {
+        @Override
+        public void run() {
+            reconnects.onAttemptStarted(address);
+            connect();
+        }
+    };
+
+    // device is only handed back to callbacks and may be null off-device
+    DeviceConnection(long address, int addressType, BluetoothDevice device, Scheduler scheduler,
+                     OperationArbiter arbiter, GattClientRegistry<GattLink> clients,
+                     ReconnectScheduler reconnects, ConnectionManager manager) {
+        this.device = device;
+        this.address = address;
+        this.addressType = addressType;
+        this.name = MacAddress.unpack(address);
+        this.scheduler = scheduler;
+        this.manager = manager;
+        this.metrics = manager.getMetrics();
+        this.queue = new GattOperationQueue(scheduler, arbiter, metrics);
+        this.clients = clients;
+        this.reconnects = reconnects;
+        // One listener per device, so a kept handle can be reconnected with link.connect()
+        this.listener = new QueueingLinkListener(queue) {
+            @Override
+            public void onConnectionStateChange(final GattLink from, final int status, final int newState) {
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onConnectionStateChanged(from, status, newState);
+                    }
+                });
+            }
+
+            @Override
+            public void onMtuChanged(final GattLink from, int newMtu, int status) {
+                if (from == link && status == BluetoothGatt.GATT_SUCCESS) {
+                    // Set before the queue hears about it, so the next request sees the exchange
+                    mtu = newMtu;
+                    mtuExchanged = true;
+                }
+                super.onMtuChanged(from, newMtu, status);
+                postPublishParameters(from);
+            }
+
+            @Override
+            public void onConnectionUpdated(final GattLink from, final int newInterval, final int latency,
+                                            final int timeout, final int status) {
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (from == link && status == BluetoothGatt.GATT_SUCCESS) {
+                            interval = newInterval;
+                            peripheralLatency = latency;
+                            supervisionTimeout = timeout;
+                            publishParameters();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onPhyUpdate(final GattLink from, final int tx, final int rx, final int status) {
+                super.onPhyUpdate(from, tx, rx, status);
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (from == link && status == BluetoothGatt.GATT_SUCCESS) {
+                            txPhy = tx;
+                            rxPhy = rx;
+                            publishParameters();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onCharacteristicChanged(final GattLink from, final UUID service, final UUID characteristic,
+                                                final byte[] value) {
+                for (NotificationListener direct : directListeners) {
+                    direct.onNotification(service, characteristic, value);
+                }
+                if (notificationListeners.isEmpty()) {
+                    return;
+                }
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (from != link) {
+                            return;
+                        }
+                        for (NotificationListener notificationListener : notificationListeners) {
+                            notificationListener.onNotification(service, characteristic, value);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onServiceChanged(final GattLink from) {
+                scheduler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onServiceChangedIndication(from);
+                    }
+                });
+            }
+        };
+    }
+
+    BluetoothDevice getDevice() {
+        return device;
+    }
+
+    long getAddress() {
+        return address;
+    }
+
+    // One of KnownDevice.ADDRESS_TYPE_*
+    int getAddressType() {
+        return addressType;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    // A link waiting for its next retry still counts against the connection cap
+    boolean isActive() {
+        return state != State.DISCONNECTED || reconnects.isPending(address);
+    }
+
+    boolean isBackgroundConnect() {
+        return background;
+    }
+
+    GattLink getLink() {
+        return link;
+    }
+
+    boolean hasOpenHandle() {
+        return clients.isOpen(address, link);
+    }
+
+    GattOperationQueue getQueue() {
+        return queue;
+    }
+
+    ConnectionProfile getProfile() {
+        return profile;
+    }
+
+    int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * Applies the profile now if READY, otherwise once the link is ready.
+     * Priority takes effect immediately; PHY and MTU changes are queued.
+     */
+    void applyProfile(ConnectionProfile profile) {
+        this.profile = profile;
+        if (state != State.READY) {
+            return;
+        }
+        if (!link.requestConnectionPriority(profile.getConnectionPriority())) {
+            Log.w(TAG, "Connection priority not accepted by " + name);
+        }
+        int phyMask = profile.getPreferredPhy();
+        if (phyMask != 0 && (phyMask & (1 << (txPhy - 1))) == 0) {
+            queue.enqueue(GattOperations.setPreferredPhy(link, phyMask, manager.getOperationTimeoutMillis(), null));
+        }
+        if (profile.getMtu() > mtu) {
+            queue.enqueue(requestMtu(profile.getMtu(), null));
+        }
+        publishParameters();
+    }
+
+    /**
+     * ATT allows one MTU exchange per connection, so once it has happened
+     * later requests complete with the negotiated value without asking again.
+     */
+    GattOperation requestMtu(final int requested, BluetoothSDK.Callback<GattResult> callback) {
+        final GattLink target = link;
+        return new GattOperation(GattOperation.Type.REQUEST_MTU, null, manager.getOperationTimeoutMillis(),
+                new GattOperation.Starter() {
+                    @Override
+                    public boolean start() {
+                        if (!mtuExchanged) {
+                            return target.requestMtu(requested);
+                        }
+                        final GattResult current = new GattResult(GattOperation.Type.REQUEST_MTU,
+                                GattResult.GATT_SUCCESS, null, mtu);
+                        scheduler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                queue.onComplete(GattOperation.Type.REQUEST_MTU, null, current);
+                            }
+                        });
+                        return true;
+                    }
+                }, callback);
+    }
+
+    // Called on the scheduler thread, for values from the current link only
+    void addNotificationListener(NotificationListener notificationListener) {
+        notificationListeners.add(notificationListener);
+    }
+
+    void removeNotificationListener(NotificationListener notificationListener) {
+        notificationListeners.remove(notificationListener);
+    }
+
+    // Called on the stack's callback thread with no hand-off; the listener must not block for long
+    synchronized void addDirectNotificationListener(NotificationListener notificationListener) {
+        NotificationListener[] grown = Arrays.copyOf(directListeners, directListeners.length + 1);
+        grown[directListeners.length] = notificationListener;
+        directListeners = grown;
+    }
+
+    synchronized void removeDirectNotificationListener(NotificationListener notificationListener) {
+        List<NotificationListener> remaining = new ArrayList<>(Arrays.asList(directListeners));
+        remaining.remove(notificationListener);
+        directListeners = remaining.toArray(new NotificationListener[0]);
+    }
+
+    void addCallback(BluetoothSDK.PairingCallback callback) {
+        if (callback == null) {
+            return;
+        }
+        if (state == State.READY) {
+            callback.onPaired(device);
+        } else {
+            callbacks.add(callback);
+        }
+    }
+
+    // Direct connection attempt, bounded by the connect timeout
+    void connect() {
+        if (state != State.DISCONNECTED) {
+            return;
+        }
+        Log.d(TAG, "Attempting to connect to device: " + name);
+        state = State.CONNECTING;
+        background = false;
+        reusedHandle = false;
+        resetParameters();
+        metrics.increment(SdkMetrics.Counter.CONNECT_ATTEMPTS);
+        phaseStartedMillis = scheduler.now();
+        connectTimeout = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                onConnectTimeout();
+            }
+        }, manager.getConnectTimeoutMillis());
+        // connect() on a kept handle is always a slow background connect,
+        // so a direct attempt swaps the idle client for a fresh one
+        closeLink();
+        link = openLink(false);
+        if (link == null) {
+            Log.e(TAG, "No GATT client available for " + name);
+            cancelConnectTimeout();
+            metrics.increment(SdkMetrics.Counter.CONNECT_FAILURES);
+            fail(GattResult.STATUS_REJECTED);
+        }
+    }
+
+    /**
+     * Lets the stack connect whenever the device shows up again (autoConnect).
+     * No timeout; reuses the kept client handle when there is one.
+     */
+    void connectInBackground() {
+        if (state != State.DISCONNECTED) {
+            return;
+        }
+        Log.d(TAG, "Background connect to device: " + name);
+        state = State.CONNECTING;
+        background = true;
+        reusedHandle = false;
+        resetParameters();
+        metrics.increment(SdkMetrics.Counter.CONNECT_ATTEMPTS);
+        if (hasOpenHandle()) {
+            clients.setIdle(address, link, false);
+            if (link.connect()) {
+                reusedHandle = true;
+                return;
+            }
+            closeLink();
+        }
+        link = openLink(true);
+        if (link == null) {
+            Log.e(TAG, "No GATT client available for " + name);
+            metrics.increment(SdkMetrics.Counter.CONNECT_FAILURES);
+            fail(GattResult.STATUS_REJECTED);
+        }
+    }
+
+    void disconnect() {
+        reconnects.reset(address);
+        if (state == State.DISCONNECTING) {
+            return;
+        }
+        if (state == State.DISCONNECTED) {
+            // Possibly waiting for a retry; make sure nothing fires later
+            closeLink();
+            fail(GattResult.STATUS_CANCELLED);
+            return;
+        }
+        cancelConnectTimeout();
+        state = State.DISCONNECTING;
+        link.disconnect();
+        disconnectTimeout = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                disconnectTimeout = null;
+                if (state == State.DISCONNECTING) {
+                    Log.w(TAG, "No disconnect callback, closing " + name);
+                    queue.clear(GattResult.STATUS_CANCELLED);
+                    closeLink();
+                    manager.onLinkLost(DeviceConnection.this);
+                    fail(GattResult.STATUS_CANCELLED);
+                }
+            }
+        }, DISCONNECT_TIMEOUT_MILLIS);
+    }
+
+    // Releases the client handle; a connect still in progress fails, and the manager drops the connection
+    void close() {
+        reconnects.reset(address);
+        cancelConnectTimeout();
+        cancelDisconnectTimeout();
+        queue.clear(GattResult.STATUS_CANCELLED);
+        if (link != null) {
+            link.disconnect();
+        }
+        closeLink();
+        fail(GattResult.STATUS_CANCELLED);
+    }
+
+    // Characteristic properties, or GattLink.NOT_FOUND if not READY or absent
+    int getProperties(UUID serviceUuid, UUID characteristicUuid) {
+        if (link == null || state != State.READY) {
+            return GattLink.NOT_FOUND;
+        }
+        return link.getProperties(serviceUuid, characteristicUuid);
+    }
+
+    boolean hasDescriptor(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid) {
+        return link != null && state == State.READY && link.hasDescriptor(serviceUuid, characteristicUuid, descriptorUuid);
+    }
+
+    private void onConnectionStateChanged(GattLink from, int status, int newState) {
+        if (from != link) {
+            // Late callback for a handle that has already been closed
+            return;
+        }
+        Log.d(TAG, "Connection state changed. Status: " + status + ", New State: " + newState);
+        if (newState == BluetoothProfile.STATE_CONNECTED && status == BluetoothGatt.GATT_SUCCESS) {
+            if (state != State.CONNECTING) {
+                return;
+            }
+            cancelConnectTimeout();
+            long now = scheduler.now();
+            if (!background) {
+                // A background connect completes whenever the device shows up
+                metrics.record(SdkMetrics.Histogram.CONNECT_LATENCY, now - phaseStartedMillis);
+            }
+            phaseStartedMillis = now;
+            state = State.DISCOVERING;
+            if (reusedHandle && !link.getLayout().getServices().isEmpty()) {
+                verifyKnownLayout();
+            } else {
+                discoverServices();
+            }
+        } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+            Log.d(TAG, "Device disconnected: " + name + " status: " + status);
+            cancelConnectTimeout();
+            cancelDisconnectTimeout();
+            queue.clear(GattResult.STATUS_CANCELLED);
+            resetParameters();
+            State previous = state;
+            state = State.DISCONNECTED;
+            if (previous == State.READY || previous == State.DISCONNECTING) {
+                manager.onLinkLost(this);
+            }
+            if (previous == State.DISCONNECTING) {
+                // Requested disconnects free the client
+                closeLink();
+                fail(status);
+                return;
+            }
+            if (status == GattStatus.GATT_ERROR) {
+                metrics.increment(SdkMetrics.Counter.GATT_ERROR_133);
+                // The client is unusable after 133
+                closeLink();
+            } else {
+                // Keep the client for a background reconnect until the budget needs it
+                clients.setIdle(address, link, true);
+            }
+            boolean wasUp = previous == State.READY || previous == State.DISCOVERING;
+            if (wasUp && !reconnects.getPolicy().isReconnectOnLinkLoss()) {
+                fail(status);
+            } else {
+                retryOrFail(status);
+            }
+        }
+    }
+
+    private void discoverServices() {
+        queue.enqueue(GattOperations.discoverServices(link, manager.getOperationTimeoutMillis(),
+                new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(final GattResult result) {
+                        scheduler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                onServicesDiscovered(result.getStatus());
+                            }
+                        });
+                    }
+                }));
+    }
+
+    /**
+     * The kept handle still holds the services from the last connection. If
+     * they match the stored layout and the database is known to be unchanged,
+     * go straight to READY instead of rediscovering.
+     */
+    private void verifyKnownLayout() {
+        final GattLayout stored = manager.getLayouts().get(address);
+        if (stored == null || !stored.sameLayout(link.getLayout())) {
+            discoverServices();
+            return;
+        }
+        final byte[] expected = stored.getDatabaseHash();
+        if (expected != null
+                && link.getProperties(GattLayout.GENERIC_ATTRIBUTE_SERVICE, GattLayout.DATABASE_HASH) != GattLink.NOT_FOUND) {
+            // One read instead of a full discovery
+            queue.enqueue(GattOperations.readCharacteristic(link, GattLayout.GENERIC_ATTRIBUTE_SERVICE,
+                    GattLayout.DATABASE_HASH, manager.getOperationTimeoutMillis(),
+                    new BluetoothSDK.Callback<GattResult>() {
+                        @Override
+                        public void onResult(final GattResult result) {
+                            scheduler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (state != State.DISCOVERING) {
+                                        return;
+                                    }
+                                    if (result.isSuccess() && Arrays.equals(expected, result.getValue())) {
+                                        Log.d(TAG, "Database hash unchanged, skipping discovery");
+                                        onReady();
+                                    } else {
+                                        discoverServices();
+                                    }
+                                }
+                            });
+                        }
+                    }));
+        } else if (manager.getTransport().isBonded(address)) {
+            // Bonded peers must indicate Service Changed on reconnect, which rediscovers
+            Log.d(TAG, "Known layout on bonded device, skipping discovery");
+            onReady();
+        } else {
+            discoverServices();
+        }
+    }
+
+    private void onServicesDiscovered(int status) {
+        if (state != State.DISCOVERING) {
+            return;
+        }
+        if (status == BluetoothGatt.GATT_SUCCESS) {
+            Log.d(TAG, "Services discovered successfully.");
+            metrics.record(SdkMetrics.Histogram.DISCOVERY_LATENCY, scheduler.now() - phaseStartedMillis);
+            storeLayout();
+            onReady();
+        } else {
+            Log.e(TAG, "Service discovery failed with status: " + status);
+            disconnect();
+        }
+    }
+
+    private void onReady() {
+        state = State.READY;
+        reconnects.reset(address);
+        applyProfile(profile != null ? profile : manager.getDefaultProfile());
+        // After the profile, so work resumed by the manager queues behind the MTU exchange
+        manager.onReady(this);
+        List<BluetoothSDK.PairingCallback> ready = new ArrayList<>(callbacks);
+        callbacks.clear();
+        for (BluetoothSDK.PairingCallback callback : ready) {
+            callback.onPaired(device);
+        }
+    }
+
+    // Persists the fresh layout, adding the database hash if the peripheral has one
+    private void storeLayout() {
+        final GattLayout layout = link.getLayout();
+        final GattLayoutStore layouts = manager.getLayouts();
+        layouts.put(address, layout);
+        if (link.getProperties(GattLayout.GENERIC_ATTRIBUTE_SERVICE, GattLayout.DATABASE_HASH) == GattLink.NOT_FOUND) {
+            return;
+        }
+        queue.enqueue(GattOperations.readCharacteristic(link, GattLayout.GENERIC_ATTRIBUTE_SERVICE,
+                GattLayout.DATABASE_HASH, manager.getOperationTimeoutMillis(),
+                new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(GattResult result) {
+                        if (result.isSuccess() && result.getValue() != null) {
+                            layouts.put(address, layout.withDatabaseHash(result.getValue()));
+                        }
+                    }
+                }));
+    }
+
+    private void onServiceChangedIndication(GattLink from) {
+        if (from != link) {
+            return;
+        }
+        Log.d(TAG, "Service Changed from " + name + ", rediscovering");
+        manager.getLayouts().invalidate(address);
+        if (state == State.READY || state == State.DISCOVERING) {
+            state = State.DISCOVERING;
+            discoverServices();
+        }
+    }
+
+    private void onConnectTimeout() {
+        connectTimeout = null;
+        if (state != State.CONNECTING) {
+            return;
+        }
+        Log.w(TAG, "Connection timeout. Disconnecting...");
+        link.disconnect();
+        queue.clear(GattResult.STATUS_TIMEOUT);
+        closeLink();
+        state = State.DISCONNECTED;
+        retryOrFail(GattResult.STATUS_TIMEOUT);
+    }
+
+    private void retryOrFail(int status) {
+        if (reconnects.schedule(address, status, retry)) {
+            metrics.increment(SdkMetrics.Counter.RECONNECTS_SCHEDULED);
+            Log.d(TAG, "Reconnect attempt " + reconnects.attempts(address) + " scheduled for " + name);
+            return;
+        }
+        if (GattStatus.isRetryable(status) && reconnects.getPolicy().isAutoConnectWhenExhausted()) {
+            reconnects.reset(address);
+            connectInBackground();
+            return;
+        }
+        metrics.increment(SdkMetrics.Counter.CONNECT_FAILURES);
+        fail(status);
+    }
+
+    // Gives up: the next connect() starts with a fresh retry budget
+    private void fail(int status) {
+        reconnects.reset(address);
+        state = State.DISCONNECTED;
+        background = false;
+        List<BluetoothSDK.PairingCallback> failed = new ArrayList<>(callbacks);
+        callbacks.clear();
+        for (BluetoothSDK.PairingCallback callback : failed) {
+            callback.onPairingFailed(device);
+        }
+        manager.onClosed(this, status);
+    }
+
+    private GattLink openLink(final boolean autoConnect) {
+        return clients.open(address, new GattClientRegistry.Opener<GattLink>() {
+            @Override
+            public GattLink open() {
+                return manager.getTransport().openLink(address, addressType, autoConnect, listener);
+            }
+        });
+    }
+
+    private void closeLink() {
+        clients.close(address, link);
+        link = null;
+    }
+
+    private void postPublishParameters(final GattLink from) {
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (from == link) {
+                    publishParameters();
+                }
+            }
+        });
+    }
+
+    private void publishParameters() {
+        if (state != State.READY) {
+            return;
+        }
+        manager.onParametersChanged(new ConnectionParameters(address, profile, interval, peripheralLatency,
+                supervisionTimeout, txPhy, rxPhy, mtu));
+    }
+
+    // A new connection starts from the stack's defaults
+    private void resetParameters() {
+        mtu = BulkWriter.DEFAULT_MTU;
+        mtuExchanged = false;
+        interval = 0;
+        peripheralLatency = 0;
+        supervisionTimeout = 0;
+        txPhy = ConnectionParameters.PHY_LE_1M;
+        rxPhy = ConnectionParameters.PHY_LE_1M;
+    }
+
+    private void cancelDisconnectTimeout() {
+        if (disconnectTimeout != null) {
+            disconnectTimeout.cancel();
+            disconnectTimeout = null;
+        }
+    }
+
+    private void cancelConnectTimeout() {
+        if (connectTimeout != null) {
+            connectTimeout.cancel();
+            connectTimeout = null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.vivek.blutoothsdk;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A command encoded once and sent as is, for commands whose bytes never
+ * change. The bytes are shared by every send, so sending one costs no
+ * encoding and no copy. Usually obtained from a {@link CommandCache}.
+ */
+public final class EncodedCommand {
+
+    private final byte[] bytes;
+
+    private EncodedCommand(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException if the command is longer than
+     *                                          {@link CommandWriter#MAX_COMMAND_LENGTH}
+     */
+    public static <C> EncodedCommand of(C command, CommandEncoder<? super C> encoder) {
+        ByteBuffer buffer = ByteBuffer.allocate(CommandWriter.MAX_COMMAND_LENGTH);
+        encoder.encode(command, buffer);
+        return new EncodedCommand(Arrays.copyOf(buffer.array(), buffer.position()));
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    // Never modified; the stack copies the value when the write is started
+    byte[] bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,151 @@
+package com.vivek.blutoothsdk;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Book-keeping for open GATT client handles. The stack only has a few dozen
+ * client slots and an unclosed BluetoothGatt holds one until Bluetooth is
+ * restarted, so every handle is opened and closed through here.
+ *
+ * Disconnected handles may be kept as idle for a background reconnect; when the
+ * budget is used up the least recently idled one is closed to make room.
+ * A handle replaced while still open is counted as a leak and closed.
+ */
+class GattClientRegistry<H> {
+
+    interface Opener<H> {
+        H open();
+    }
+
+    interface Closer<H> {
+        void close(H handle);
+    }
+
+    static final int DEFAULT_MAX_CLIENTS = 10;
+
+    private final Closer<H> closer;
+    // Insertion order doubles as idle order for eviction
+    private final Map<Long, Entry<H>> open = new LinkedHashMap<>();
+    private int maxClients = DEFAULT_MAX_CLIENTS;
+    private int openedTotal;
+    private int closedTotal;
+    private int leaked;
+
+    GattClientRegistry(Closer<H> closer) {
+        this.closer = closer;
+    }
+
+    synchronized void setMaxClients(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Opens a handle for the address, or returns null if the opener failed or
+     * the budget is used up by handles that are all in use.
+     */
+    H open(long address, Opener<H> opener) {
+        H stale;
+        H evicted = null;
+        synchronized (this) {
+            Entry<H> previous = open.remove(address);
+            stale = previous != null ? previous.handle : null;
+            if (previous != null && !previous.idle) {
+                leaked++;
+            }
+            if (stale == null && open.size() >= maxClients) {
+                evicted = evictIdle();
+                if (evicted == null) {
+                    return null;
+                }
+            }
+        }
+        if (stale != null) {
+            closeHandle(stale);
+        }
+        if (evicted != null) {
+            closeHandle(evicted);
+        }
+        H handle = opener.open();
+        if (handle != null) {
+            synchronized (this) {
+                open.put(address, new Entry<>(handle));
+                openedTotal++;
+            }
+        }
+        return handle;
+    }
+
+    // Closing a handle that is no longer registered is a no-op
+    void close(long address, H handle) {
+        synchronized (this) {
+            Entry<H> entry = open.get(address);
+            if (handle == null || entry == null || entry.handle != handle) {
+                return;
+            }
+            open.remove(address);
+        }
+        closeHandle(handle);
+    }
+
+    // Idle handles are disconnected but kept for reuse; they can be evicted
+    synchronized void setIdle(long address, H handle, boolean idle) {
+        Entry<H> entry = open.get(address);
+        if (entry != null && entry.handle == handle) {
+            open.remove(address);
+            entry.idle = idle;
+            open.put(address, entry);
+        }
+    }
+
+    synchronized boolean isOpen(long address, H handle) {
+        Entry<H> entry = open.get(address);
+        return handle != null && entry != null && entry.handle == handle;
+    }
+
+    synchronized int getOpenCount() {
+        return open.size();
+    }
+
+    synchronized int getOpenedTotal() {
+        return openedTotal;
+    }
+
+    synchronized int getClosedTotal() {
+        return closedTotal;
+    }
+
+    synchronized int getLeakCount() {
+        return leaked;
+    }
+
+    // Caller holds the lock
+    private H evictIdle() {
+        Iterator<Entry<H>> it = open.values().iterator();
+        while (it.hasNext()) {
+            Entry<H> entry = it.next();
+            if (entry.idle) {
+                it.remove();
+                return entry.handle;
+            }
+        }
+        return null;
+    }
+
+    private void closeHandle(H handle) {
+        closer.close(handle);
+        synchronized (this) {
+            closedTotal++;
+        }
+    }
+
+    private static final class Entry<H> {
+        final H handle;
+        boolean idle;
+
+        Entry(H handle) {
+            this.handle = handle;
+        }
+    }
+}
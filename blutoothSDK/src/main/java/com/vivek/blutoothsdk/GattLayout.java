@@ -0,0 +1,213 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Services and characteristics of a peripheral as found by discovery, in
+ * handle order. Stored per device so a reconnect can tell whether the
+ * attribute database is unchanged without running discovery again.
+ *
+ * The hash is the peripheral's Database Hash (0x2B2A) when it has one, or
+ * a hash of the layout itself otherwise.
+ */
+final class GattLayout {
+
+    // Generic Attribute service and its Database Hash characteristic (Core 5.1)
+    static final UUID GENERIC_ATTRIBUTE_SERVICE = UUID.fromString("00001801-0000-1000-8000-00805f9b34fb");
+    static final UUID DATABASE_HASH = UUID.fromString("00002b2a-0000-1000-8000-00805f9b34fb");
+    // Client Characteristic Configuration descriptor, written to subscribe
+    static final UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<Service> services;
+    private final byte[] databaseHash;
+    private final long hash;
+
+    private GattLayout(List<Service> services, byte[] databaseHash) {
+        this.services = Collections.unmodifiableList(services);
+        this.databaseHash = databaseHash;
+        this.hash = databaseHash != null ? fnv(FNV_OFFSET, databaseHash) : layoutHash(services);
+    }
+
+    List<Service> getServices() {
+        return services;
+    }
+
+    byte[] getDatabaseHash() {
+        return databaseHash != null ? databaseHash.clone() : null;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    GattLayout withDatabaseHash(byte[] databaseHash) {
+        return new GattLayout(new ArrayList<>(services), databaseHash != null ? databaseHash.clone() : null);
+    }
+
+    boolean hasCharacteristic(UUID service, UUID characteristic) {
+        for (Service s : services) {
+            if (s.uuid.equals(service) && s.characteristics.contains(characteristic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Same attributes in the same order; the database hash is not compared
+    boolean sameLayout(GattLayout other) {
+        return other != null && services.equals(other.services);
+    }
+
+    /**
+     * One line per service: "service=char,char", with an optional first line
+     * "#hash=<hex>" for the database hash.
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        if (databaseHash != null) {
+            sb.append("#hash=");
+            for (byte b : databaseHash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            sb.append('\n');
+        }
+        for (Service service : services) {
+            sb.append(service.uuid).append('=');
+            for (int i = 0; i < service.characteristics.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(service.characteristics.get(i));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // Returns null for anything that does not parse, e.g. an older format
+    static GattLayout decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            Builder builder = new Builder();
+            for (String line : encoded.split("\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.startsWith("#hash=")) {
+                    String hex = line.substring(6);
+                    byte[] bytes = new byte[hex.length() / 2];
+                    for (int i = 0; i < bytes.length; i++) {
+                        bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+                    }
+                    builder.setDatabaseHash(bytes);
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                UUID service = UUID.fromString(line.substring(0, eq));
+                builder.addService(service);
+                if (eq + 1 < line.length()) {
+                    for (String characteristic : line.substring(eq + 1).split(",")) {
+                        builder.addCharacteristic(service, UUID.fromString(characteristic));
+                    }
+                }
+            }
+            return builder.build();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long layoutHash(List<Service> services) {
+        long h = FNV_OFFSET;
+        for (Service service : services) {
+            h = fnv(h, service.uuid);
+            for (UUID characteristic : service.characteristics) {
+                h = fnv(h, characteristic);
+            }
+            // Service boundary, so moving a characteristic changes the hash
+            h = (h ^ 0xFF) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long fnv(long h, UUID uuid) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            h = (h ^ ((msb >>> (i * 8)) & 0xFF)) * FNV_PRIME;
+        }
+        for (int i = 0; i < 8; i++) {
+            h = (h ^ ((lsb >>> (i * 8)) & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long fnv(long h, byte[] bytes) {
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    static final class Service {
+        final UUID uuid;
+        final List<UUID> characteristics = new ArrayList<>();
+
+        Service(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Service)) {
+                return false;
+            }
+            Service other = (Service) o;
+            return uuid.equals(other.uuid) && characteristics.equals(other.characteristics);
+        }
+
+        @Override
+        public int hashCode() {
+            return uuid.hashCode() * 31 + characteristics.hashCode();
+        }
+    }
+
+    static final class Builder {
+        private final List<Service> services = new ArrayList<>();
+        private byte[] databaseHash;
+
+        Builder addService(UUID service) {
+            services.add(new Service(service));
+            return this;
+        }
+
+        // Adds to the most recently added service with this UUID
+        Builder addCharacteristic(UUID service, UUID characteristic) {
+            for (int i = services.size() - 1; i >= 0; i--) {
+                if (services.get(i).uuid.equals(service)) {
+                    services.get(i).characteristics.add(characteristic);
+                    return this;
+                }
+            }
+            throw new IllegalArgumentException("Unknown service " + service);
+        }
+
+        Builder setDatabaseHash(byte[] databaseHash) {
+            this.databaseHash = databaseHash != null ? Arrays.copyOf(databaseHash, databaseHash.length) : null;
+            return this;
+        }
+
+        GattLayout build() {
+            return new GattLayout(services, databaseHash);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.vivek.blutoothsdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Discovered layouts persisted per device address, together with the
+ * database hash they were discovered under. Reads are served from memory
+ * after the first lookup; writes go to SharedPreferences asynchronously.
+ * Without a context the store is memory-only, e.g. in JVM tests.
+ */
+class GattLayoutStore {
+
+    private static final String PREFS = "com.vivek.blutoothsdk.gatt_layouts";
+
+    private final SharedPreferences prefs;
+    private final Map<Long, GattLayout> layouts = new HashMap<>();
+
+    GattLayoutStore() {
+        this.prefs = null;
+    }
+
+    GattLayoutStore(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    synchronized GattLayout get(long address) {
+        if (layouts.containsKey(address)) {
+            return layouts.get(address);
+        }
+        GattLayout layout = prefs != null ? GattLayout.decode(prefs.getString(key(address), null)) : null;
+        layouts.put(address, layout);
+        return layout;
+    }
+
+    synchronized void put(long address, GattLayout layout) {
+        layouts.put(address, layout);
+        if (prefs != null) {
+            prefs.edit().putString(key(address), layout.encode()).apply();
+        }
+    }
+
+    // Service Changed, or the device no longer matches what was stored
+    synchronized void invalidate(long address) {
+        layouts.put(address, null);
+        if (prefs != null) {
+            prefs.edit().remove(key(address)).apply();
+        }
+    }
+
+    synchronized void clear() {
+        layouts.clear();
+        if (prefs != null) {
+            prefs.edit().clear().apply();
+        }
+    }
+
+    private static String key(long address) {
+        return Long.toHexString(address);
+    }
+}
@@ -0,0 +1,76 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * One GATT client handle, addressed by UUIDs so the connection logic does not
+ * depend on android.bluetooth. Requests return false if they could not be
+ * started; completions arrive on the {@link Listener} given to the transport.
+ */
+interface GattLink {
+
+    // getProperties() result for a characteristic the handle does not know
+    int NOT_FOUND = -1;
+
+    // Background reconnect on a kept handle (autoConnect semantics)
+    boolean connect();
+
+    void disconnect();
+
+    // Releases the client slot; no callbacks arrive afterwards
+    void close();
+
+    boolean discoverServices();
+
+    // Services currently known to the handle; empty before the first discovery
+    GattLayout getLayout();
+
+    int getProperties(UUID service, UUID characteristic);
+
+    boolean hasDescriptor(UUID service, UUID characteristic, UUID descriptor);
+
+    boolean readCharacteristic(UUID service, UUID characteristic);
+
+    /**
+     * GattResult.GATT_SUCCESS once the write has started, STATUS_BUSY while
+     * the stack has no room for it, STATUS_NOT_FOUND for an unknown
+     * characteristic and STATUS_REJECTED for any other refusal.
+     */
+    int writeCharacteristic(UUID service, UUID characteristic, byte[] value, int writeType);
+
+    boolean writeDescriptor(UUID service, UUID characteristic, UUID descriptor, byte[] value);
+
+    boolean requestMtu(int mtu);
+
+    // Takes effect without a queued completion; onConnectionUpdated reports the new interval
+    boolean requestConnectionPriority(int priority);
+
+    // ConnectionProfile.PHY_LE_*_MASK bits; completes with onPhyUpdate
+    boolean setPreferredPhy(int txPhyMask, int rxPhyMask);
+
+    // Local routing of notifications only; the CCCD is written separately
+    boolean setNotificationsEnabled(UUID service, UUID characteristic, boolean enabled);
+
+    interface Listener {
+        void onConnectionStateChange(GattLink link, int status, int newState);
+
+        void onServicesDiscovered(GattLink link, int status);
+
+        void onCharacteristicRead(GattLink link, UUID characteristic, byte[] value, int status);
+
+        void onCharacteristicWrite(GattLink link, UUID characteristic, int status);
+
+        void onDescriptorWrite(GattLink link, UUID descriptor, int status);
+
+        void onMtuChanged(GattLink link, int mtu, int status);
+
+        // Interval in 1.25 ms units, supervision timeout in 10 ms units
+        void onConnectionUpdated(GattLink link, int interval, int latency, int timeout, int status);
+
+        void onPhyUpdate(GattLink link, int txPhy, int rxPhy, int status);
+
+        void onCharacteristicChanged(GattLink link, UUID service, UUID characteristic, byte[] value);
+
+        void onServiceChanged(GattLink link);
+    }
+}
@@ -0,0 +1,95 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * One request in a {@link GattOperationQueue}. The starter issues the call to
+ * the stack; the queue matches the completion callback by type and attribute.
+ */
+public final class GattOperation {
+
+    public enum Type {
+        WRITE_CHARACTERISTIC,
+        READ_CHARACTERISTIC,
+        WRITE_DESCRIPTOR,
+        REQUEST_MTU,
+        SET_PHY,
+        DISCOVER_SERVICES
+    }
+
+    interface Starter {
+        // Returns false if the stack refused the request
+        boolean start();
+    }
+
+    // For calls that say why they were refused, e.g. a write while the stack's buffer is full
+    interface StatusStarter {
+        // GATT_SUCCESS once started, otherwise the status to complete the operation with
+        int start();
+    }
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final Type type;
+    private final UUID attribute;
+    private final long timeoutMillis;
+    private final StatusStarter starter;
+    private final BluetoothSDK.Callback<GattResult> callback;
+    private final int payloadLength;
+
+    GattOperation(Type type, UUID attribute, long timeoutMillis, Starter starter,
+                  BluetoothSDK.Callback<GattResult> callback) {
+        this(type, attribute, timeoutMillis, starter, callback, 0);
+    }
+
+    // payloadLength is the number of bytes a write puts on the air, for metrics
+    GattOperation(Type type, UUID attribute, long timeoutMillis, final Starter starter,
+                  BluetoothSDK.Callback<GattResult> callback, int payloadLength) {
+        this(type, attribute, timeoutMillis, new StatusStarter() {
+            @Override
+            public int start() {
+                return starter.start() ? GattResult.GATT_SUCCESS : GattResult.STATUS_REJECTED;
+            }
+        }, callback, payloadLength);
+    }
+
+    GattOperation(Type type, UUID attribute, long timeoutMillis, StatusStarter starter,
+                  BluetoothSDK.Callback<GattResult> callback, int payloadLength) {
+        this.type = type;
+        this.attribute = attribute;
+        this.timeoutMillis = timeoutMillis;
+        this.starter = starter;
+        this.callback = callback;
+        this.payloadLength = payloadLength;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    UUID getAttribute() {
+        return attribute;
+    }
+
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    int getPayloadLength() {
+        return payloadLength;
+    }
+
+    int start() {
+        return starter.start();
+    }
+
+    boolean matches(Type completedType, UUID completedAttribute) {
+        return type == completedType && (attribute == null || attribute.equals(completedAttribute));
+    }
+
+    void complete(GattResult result) {
+        if (callback != null) {
+            callback.onResult(result);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+
+/**
+ * Serializes GATT operations for one connection. Android allows a single
+ * outstanding request per BluetoothGatt; the next operation is started as
+ * soon as the completion callback of the current one arrives.
+ *
+ * Callbacks are delivered outside the lock, so a callback may enqueue more work.
+ */
+class GattOperationQueue {
+
+    private final Scheduler scheduler;
+    private final OperationArbiter arbiter;
+    private final SdkMetrics metrics;
+    private final ArrayDeque<GattOperation> pending = new ArrayDeque<>();
+    private GattOperation current;
+    private long currentStartedMillis;
+    private Scheduler.Cancellable currentTimeout;
+
+    GattOperationQueue(Scheduler scheduler) {
+        this(scheduler, null);
+    }
+
+    // With an arbiter, every operation also needs a permit from the shared budget
+    GattOperationQueue(Scheduler scheduler, OperationArbiter arbiter) {
+        this(scheduler, arbiter, null);
+    }
+
+    GattOperationQueue(Scheduler scheduler, OperationArbiter arbiter, SdkMetrics metrics) {
+        this.scheduler = scheduler;
+        this.arbiter = arbiter;
+        this.metrics = metrics;
+    }
+
+    void enqueue(GattOperation operation) {
+        synchronized (this) {
+            if (metrics != null) {
+                metrics.record(SdkMetrics.Histogram.QUEUE_DEPTH, pending.size() + (current != null ? 1 : 0));
+            }
+            pending.add(operation);
+            if (current != null) {
+                return;
+            }
+        }
+        dispatchNext();
+    }
+
+    /**
+     * Completion from the GATT callback. Returns false if it does not belong
+     * to the operation in flight (e.g. a late callback after a timeout).
+     */
+    boolean onComplete(GattOperation.Type type, UUID attribute, GattResult result) {
+        GattOperation operation;
+        long startedMillis;
+        synchronized (this) {
+            if (current == null || !current.matches(type, attribute)) {
+                return false;
+            }
+            startedMillis = currentStartedMillis;
+            operation = finishCurrent();
+        }
+        releasePermit();
+        record(operation, result.getStatus(), startedMillis);
+        operation.complete(result);
+        dispatchNext();
+        return true;
+    }
+
+    // Fails the current and all pending operations, e.g. on disconnect
+    void clear(int status) {
+        ArrayDeque<GattOperation> failed = new ArrayDeque<>();
+        boolean hadCurrent;
+        synchronized (this) {
+            hadCurrent = current != null;
+            if (hadCurrent) {
+                failed.add(finishCurrent());
+            }
+            failed.addAll(pending);
+            pending.clear();
+        }
+        if (hadCurrent) {
+            releasePermit();
+        }
+        if (arbiter != null) {
+            arbiter.forget(this);
+        }
+        for (GattOperation operation : failed) {
+            operation.complete(GattResult.of(operation.getType(), status));
+        }
+    }
+
+    /**
+     * Drops an operation that has not been handed to the stack yet; it
+     * completes with STATUS_CANCELLED. Returns false if it already started or
+     * finished, since the stack cannot take a request back.
+     */
+    boolean cancel(GattOperation operation) {
+        synchronized (this) {
+            if (!pending.remove(operation)) {
+                return false;
+            }
+        }
+        operation.complete(GattResult.of(operation.getType(), GattResult.STATUS_CANCELLED));
+        return true;
+    }
+
+    synchronized int size() {
+        return pending.size() + (current != null ? 1 : 0);
+    }
+
+    synchronized boolean isIdle() {
+        return current == null && pending.isEmpty();
+    }
+
+    // Called by the arbiter when this queue's turn has come
+    void resume() {
+        boolean idle;
+        synchronized (this) {
+            idle = current != null || pending.isEmpty();
+        }
+        if (idle) {
+            arbiter.forget(this);
+        } else {
+            dispatchNext();
+        }
+    }
+
+    private void dispatchNext() {
+        while (true) {
+            final GattOperation operation;
+            synchronized (this) {
+                if (current != null || pending.isEmpty()) {
+                    return;
+                }
+                if (arbiter != null && !arbiter.tryAcquire(this)) {
+                    return;
+                }
+                operation = pending.poll();
+                current = operation;
+                currentStartedMillis = metrics != null ? metrics.now() : 0;
+                currentTimeout = scheduler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        onTimeout(operation);
+                    }
+                }, operation.getTimeoutMillis());
+            }
+
+            int status;
+            try {
+                status = operation.start();
+            } catch (RuntimeException e) {
+                // SecurityException when BLUETOOTH_CONNECT was revoked
+                status = GattResult.STATUS_REJECTED;
+            }
+            if (status == GattResult.GATT_SUCCESS) {
+                return;
+            }
+            synchronized (this) {
+                if (current != operation) {
+                    continue;
+                }
+                finishCurrent();
+            }
+            releasePermit();
+            record(operation, status, -1);
+            operation.complete(GattResult.of(operation.getType(), status));
+        }
+    }
+
+    private void onTimeout(GattOperation operation) {
+        long startedMillis;
+        synchronized (this) {
+            if (current != operation) {
+                return;
+            }
+            startedMillis = currentStartedMillis;
+            finishCurrent();
+        }
+        releasePermit();
+        record(operation, GattResult.STATUS_TIMEOUT, startedMillis);
+        operation.complete(GattResult.of(operation.getType(), GattResult.STATUS_TIMEOUT));
+        dispatchNext();
+    }
+
+    // Outcome of an operation the stack was asked to run; a negative start time means it never started
+    private void record(GattOperation operation, int status, long startedMillis) {
+        if (metrics == null) {
+            return;
+        }
+        metrics.increment(SdkMetrics.Counter.GATT_OPERATIONS);
+        if (status == GattResult.GATT_SUCCESS) {
+            metrics.add(SdkMetrics.Counter.BYTES_WRITTEN, operation.getPayloadLength());
+        } else {
+            metrics.increment(SdkMetrics.Counter.GATT_FAILURES);
+            if (status == GattResult.STATUS_TIMEOUT) {
+                metrics.increment(SdkMetrics.Counter.GATT_TIMEOUTS);
+            }
+        }
+        if (startedMillis >= 0) {
+            metrics.record(SdkMetrics.Histogram.GATT_LATENCY, metrics.now() - startedMillis);
+        }
+    }
+
+    // Caller must not hold the lock; the arbiter may resume another queue
+    private void releasePermit() {
+        if (arbiter != null) {
+            arbiter.release();
+        }
+    }
+
+    // Caller holds the lock
+    private GattOperation finishCurrent() {
+        GattOperation operation = current;
+        current = null;
+        if (currentTimeout != null) {
+            currentTimeout.cancel();
+            currentTimeout = null;
+        }
+        return operation;
+    }
+}
@@ -0,0 +1,93 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * Factories for queued operations on a {@link GattLink}. Callers check
+ * BLUETOOTH_CONNECT before enqueueing; a revoked permission surfaces as
+ * STATUS_REJECTED from the queue.
+ */
+final class GattOperations {
+
+    private GattOperations() {
+    }
+
+    static GattOperation writeCharacteristic(final GattLink link,
+                                             final UUID service,
+                                             final UUID characteristic,
+                                             final byte[] value,
+                                             final int writeType,
+                                             long timeoutMillis,
+                                             BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(GattOperation.Type.WRITE_CHARACTERISTIC, characteristic, timeoutMillis,
+                new GattOperation.StatusStarter() {
+                    @Override
+                    public int start() {
+                        return link.writeCharacteristic(service, characteristic, value, writeType);
+                    }
+                }, callback, value != null ? value.length : 0);
+    }
+
+    static GattOperation readCharacteristic(final GattLink link,
+                                            final UUID service,
+                                            final UUID characteristic,
+                                            long timeoutMillis,
+                                            BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(GattOperation.Type.READ_CHARACTERISTIC, characteristic, timeoutMillis,
+                new GattOperation.Starter() {
+                    @Override
+                    public boolean start() {
+                        return link.readCharacteristic(service, characteristic);
+                    }
+                }, callback);
+    }
+
+    static GattOperation writeDescriptor(final GattLink link,
+                                         final UUID service,
+                                         final UUID characteristic,
+                                         final UUID descriptor,
+                                         final byte[] value,
+                                         long timeoutMillis,
+                                         BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(GattOperation.Type.WRITE_DESCRIPTOR, descriptor, timeoutMillis,
+                new GattOperation.Starter() {
+                    @Override
+                    public boolean start() {
+                        return link.writeDescriptor(service, characteristic, descriptor, value);
+                    }
+                }, callback, value != null ? value.length : 0);
+    }
+
+    static GattOperation requestMtu(final GattLink link, final int mtu, long timeoutMillis,
+                                    BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(GattOperation.Type.REQUEST_MTU, null, timeoutMillis,
+                new GattOperation.Starter() {
+                    @Override
+                    public boolean start() {
+                        return link.requestMtu(mtu);
+                    }
+                }, callback);
+    }
+
+    static GattOperation setPreferredPhy(final GattLink link, final int phyMask, long timeoutMillis,
+                                         BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(GattOperation.Type.SET_PHY, null, timeoutMillis,
+                new GattOperation.Starter() {
+                    @Override
+                    public boolean start() {
+                        return link.setPreferredPhy(phyMask, phyMask);
+                    }
+                }, callback);
+    }
+
+    static GattOperation discoverServices(final GattLink link, long timeoutMillis,
+                                          BluetoothSDK.Callback<GattResult> callback) {
+        return new GattOperation(GattOperation.Type.DISCOVER_SERVICES, null, timeoutMillis,
+                new GattOperation.Starter() {
+                    @Override
+                    public boolean start() {
+                        return link.discoverServices();
+                    }
+                }, callback);
+    }
+}
@@ -0,0 +1,62 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Outcome of a queued GATT operation, delivered once the stack has actually
+ * completed it (or it timed out / was cancelled).
+ */
+public final class GattResult {
+
+    public static final int GATT_SUCCESS = 0;
+    // SDK-side outcomes, outside the range of ATT / GATT status codes
+    public static final int STATUS_TIMEOUT = -1;
+    public static final int STATUS_REJECTED = -2;
+    public static final int STATUS_CANCELLED = -3;
+    public static final int STATUS_NOT_FOUND = -4;
+    // The peripheral kept rejecting transferred data or its checksum
+    public static final int STATUS_CHECKSUM = -5;
+    // The stack had no room for the write yet; worth retrying after a connection interval
+    public static final int STATUS_BUSY = -6;
+
+    private final GattOperation.Type type;
+    private final int status;
+    private final byte[] value;
+    private final int intValue;
+
+    GattResult(GattOperation.Type type, int status, byte[] value, int intValue) {
+        this.type = type;
+        this.status = status;
+        this.value = value;
+        this.intValue = intValue;
+    }
+
+    static GattResult of(GattOperation.Type type, int status) {
+        return new GattResult(type, status, null, 0);
+    }
+
+    public GattOperation.Type getType() {
+        return type;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == GATT_SUCCESS;
+    }
+
+    // Value read from a characteristic, null for other operations
+    public byte[] getValue() {
+        return value;
+    }
+
+    // Negotiated MTU for REQUEST_MTU
+    public int getIntValue() {
+        return intValue;
+    }
+
+    @Override
+    public String toString() {
+        return type + " status=" + status;
+    }
+}
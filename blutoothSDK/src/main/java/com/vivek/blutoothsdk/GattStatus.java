@@ -0,0 +1,40 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Classifies disconnect / connect-failure status codes. Retryable codes are
+ * transient radio or stack conditions; fatal ones will fail the same way on
+ * every attempt, or mean the disconnect was asked for.
+ */
+final class GattStatus {
+
+    static final int GATT_SUCCESS = 0;
+    static final int GATT_INSUFFICIENT_AUTHENTICATION = 5;
+    static final int CONNECTION_TIMEOUT = 8;
+    static final int GATT_INSUFFICIENT_ENCRYPTION = 15;
+    static final int REMOTE_USER_TERMINATED = 19;
+    static final int LOCAL_HOST_TERMINATED = 22;
+    static final int LMP_RESPONSE_TIMEOUT = 34;
+    static final int CONNECTION_FAILED_TO_ESTABLISH = 62;
+    static final int GATT_ERROR = 133;
+    static final int GATT_AUTH_FAIL = 137;
+    static final int GATT_CONNECTION_TIMEOUT = 147;
+
+    private GattStatus() {
+    }
+
+    static boolean isRetryable(int status) {
+        switch (status) {
+            case GATT_INSUFFICIENT_AUTHENTICATION:
+            case GATT_INSUFFICIENT_ENCRYPTION:
+            case GATT_AUTH_FAIL:
+            case LOCAL_HOST_TERMINATED:
+            case GattResult.STATUS_REJECTED:
+            case GattResult.STATUS_CANCELLED:
+                return false;
+            default:
+                // Includes 133, supervision / LMP timeouts, remote reboot (19)
+                // and our own connect timeout; the retry budget bounds the rest
+                return true;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.vivek.blutoothsdk;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+class HandlerScheduler implements Scheduler {
+
+    private final Handler handler;
+
+    HandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    @Override
+    public Cancellable postDelayed(final Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+        return new Cancellable() {
+            @Override
+            public void cancel() {
+                handler.removeCallbacks(task);
+            }
+        };
+    }
+
+    @Override
+    public long now() {
+        return SystemClock.elapsedRealtime();
+    }
+}
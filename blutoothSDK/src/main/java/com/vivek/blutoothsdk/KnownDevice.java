@@ -0,0 +1,92 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * A device the SDK has connected to before, as kept by the known-device
+ * registry. Known devices can be reconnected by address without a scan, see
+ * {@link BluetoothSDK#reconnectKnownDevices}. The attribute layout cached for
+ * the device is stored and forgotten together with it.
+ */
+public final class KnownDevice {
+
+    // Same values as BluetoothDevice.ADDRESS_TYPE_*
+    public static final int ADDRESS_TYPE_PUBLIC = 0;
+    public static final int ADDRESS_TYPE_RANDOM = 1;
+    public static final int ADDRESS_TYPE_UNKNOWN = 0xFFFF;
+
+    private final long address;
+    private final String name;
+    private final int addressType;
+    private final int bondState;
+    private final int lastRssi;
+    private final long lastConnectedMillis;
+
+    KnownDevice(long address, String name, int addressType, int bondState, int lastRssi, long lastConnectedMillis) {
+        this.address = address;
+        this.name = name;
+        this.addressType = addressType;
+        this.bondState = bondState;
+        this.lastRssi = lastRssi;
+        this.lastConnectedMillis = lastConnectedMillis;
+    }
+
+    public String getAddress() {
+        return MacAddress.unpack(address);
+    }
+
+    long getPackedAddress() {
+        return address;
+    }
+
+    // Null if the stack did not report one
+    public String getName() {
+        return name;
+    }
+
+    public int getAddressType() {
+        return addressType;
+    }
+
+    // One of BluetoothDevice.BOND_*, as of the last successful connection
+    public int getBondState() {
+        return bondState;
+    }
+
+    // Last RSSI seen while scanning, or 0 if the device has not been scanned
+    public int getLastRssi() {
+        return lastRssi;
+    }
+
+    // Wall-clock time the device last became ready
+    public long getLastConnectedMillis() {
+        return lastConnectedMillis;
+    }
+
+    KnownDevice withRssi(int rssi) {
+        return new KnownDevice(address, name, addressType, bondState, rssi, lastConnectedMillis);
+    }
+
+    // Name last, so it may contain the separator
+    String encode() {
+        return addressType + "," + bondState + "," + lastRssi + "," + lastConnectedMillis + ","
+                + (name != null ? name : "");
+    }
+
+    // Returns null for anything that does not parse, e.g. an older format
+    static KnownDevice decode(long address, String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            String[] fields = encoded.split(",", 5);
+            return new KnownDevice(address, fields[4].isEmpty() ? null : fields[4], Integer.parseInt(fields[0]),
+                    Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KnownDevice{" + getAddress() + ", " + name + "}";
+    }
+}
@@ -0,0 +1,163 @@
+package com.vivek.blutoothsdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Devices that have connected successfully, persisted per address so they
+ * can be reconnected on the next start without scanning. Everything is
+ * loaded into memory on first use; writes go to SharedPreferences
+ * asynchronously. Without a context the registry is memory-only.
+ *
+ * RSSI from scans is only kept in memory and saved with the next connect,
+ * so busy scans do not write to disk.
+ */
+class KnownDeviceRegistry {
+
+    private static final String PREFS = "com.vivek.blutoothsdk.known_devices";
+
+    private final SharedPreferences prefs;
+    // A handful of devices; a list keeps the scan-path lookup free of boxing
+    private final List<KnownDevice> devices = new ArrayList<>();
+    private boolean loaded;
+
+    KnownDeviceRegistry() {
+        this.prefs = null;
+        this.loaded = true;
+    }
+
+    KnownDeviceRegistry(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    synchronized KnownDevice get(long address) {
+        int index = indexOf(address);
+        return index >= 0 ? devices.get(index) : null;
+    }
+
+    // Most recently connected first
+    synchronized List<KnownDevice> getAll() {
+        load();
+        List<KnownDevice> result = new ArrayList<>(devices);
+        Collections.sort(result, new Comparator<KnownDevice>() {
+            @Override
+            public int compare(KnownDevice a, KnownDevice b) {
+                return Long.compare(b.getLastConnectedMillis(), a.getLastConnectedMillis());
+            }
+        });
+        return result;
+    }
+
+    synchronized int size() {
+        load();
+        return devices.size();
+    }
+
+    /**
+     * Records a successful connection. An unknown name or address type keeps
+     * the one stored before, as does a missing RSSI.
+     */
+    synchronized void onConnected(long address, String name, int addressType, int bondState, long nowMillis) {
+        int index = indexOf(address);
+        KnownDevice previous = index >= 0 ? devices.get(index) : null;
+        if (previous != null) {
+            if (name == null) {
+                name = previous.getName();
+            }
+            if (addressType == KnownDevice.ADDRESS_TYPE_UNKNOWN) {
+                addressType = previous.getAddressType();
+            }
+        }
+        put(index, new KnownDevice(address, name, addressType, bondState,
+                previous != null ? previous.getLastRssi() : 0, nowMillis));
+    }
+
+    // Added directly, e.g. from a provisioning code, so it can be connected without a scan first
+    synchronized void remember(long address, String name, int addressType) {
+        int index = indexOf(address);
+        if (index < 0) {
+            put(index, new KnownDevice(address, name, addressType, BleTransport.BOND_NONE, 0, 0));
+        }
+    }
+
+    // Called for every scan result; only known devices are touched
+    synchronized void onScanResult(long address, int rssi) {
+        int index = indexOf(address);
+        if (index >= 0 && devices.get(index).getLastRssi() != rssi) {
+            devices.set(index, devices.get(index).withRssi(rssi));
+        }
+    }
+
+    synchronized boolean remove(long address) {
+        int index = indexOf(address);
+        if (index < 0) {
+            return false;
+        }
+        devices.remove(index);
+        if (prefs != null) {
+            prefs.edit().remove(key(address)).apply();
+        }
+        return true;
+    }
+
+    synchronized void clear() {
+        load();
+        devices.clear();
+        if (prefs != null) {
+            prefs.edit().clear().apply();
+        }
+    }
+
+    // Caller holds the lock
+    private void put(int index, KnownDevice device) {
+        if (index >= 0) {
+            devices.set(index, device);
+        } else {
+            devices.add(device);
+        }
+        if (prefs != null) {
+            prefs.edit().putString(key(device.getPackedAddress()), device.encode()).apply();
+        }
+    }
+
+    // Caller holds the lock
+    private int indexOf(long address) {
+        load();
+        for (int i = 0; i < devices.size(); i++) {
+            if (devices.get(i).getPackedAddress() == address) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Caller holds the lock
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            try {
+                long address = Long.parseLong(entry.getKey(), 16);
+                KnownDevice device = entry.getValue() instanceof String
+                        ? KnownDevice.decode(address, (String) entry.getValue()) : null;
+                if (device != null) {
+                    devices.add(device);
+                }
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+    }
+
+    private static String key(long address) {
+        return Long.toHexString(address);
+    }
+}
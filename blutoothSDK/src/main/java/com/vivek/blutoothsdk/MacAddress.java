@@ -0,0 +1,50 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Packs "AA:BB:CC:DD:EE:FF" style Bluetooth addresses into a long and back,
+ * so hot paths can key devices without hashing strings.
+ */
+public final class MacAddress {
+
+    public static final long INVALID = -1L;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private MacAddress() {
+    }
+
+    public static long pack(String address) {
+        if (address == null || address.length() != 17) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return INVALID;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return INVALID;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    public static String unpack(long value) {
+        char[] out = new char[17];
+        for (int i = 5; i >= 0; i--) {
+            int b = (int) (value >>> (8 * (5 - i))) & 0xFF;
+            out[i * 3] = HEX[b >>> 4];
+            out[i * 3 + 1] = HEX[b & 0x0F];
+            if (i < 5) {
+                out[i * 3 + 2] = ':';
+            }
+        }
+        return new String(out);
+    }
+}
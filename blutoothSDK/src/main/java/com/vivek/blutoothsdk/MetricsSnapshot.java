@@ -0,0 +1,70 @@
+package com.vivek.blutoothsdk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Values of every {@link SdkMetrics} counter and histogram at one instant.
+ * Counters are cumulative since the SDK was created.
+ */
+public final class MetricsSnapshot {
+
+    private final long timestampMillis;
+    private final long[] counters;
+    private final HistogramSnapshot[] histograms;
+
+    MetricsSnapshot(long timestampMillis, long[] counters, HistogramSnapshot[] histograms) {
+        this.timestampMillis = timestampMillis;
+        this.counters = counters;
+        this.histograms = histograms;
+    }
+
+    // Monotonic clock, only meaningful relative to another snapshot
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long get(SdkMetrics.Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    public HistogramSnapshot get(SdkMetrics.Histogram histogram) {
+        return histograms[histogram.ordinal()];
+    }
+
+    // Per-second rate of a counter between an earlier snapshot and this one
+    public double ratePerSecond(SdkMetrics.Counter counter, MetricsSnapshot earlier) {
+        long elapsed = timestampMillis - earlier.timestampMillis;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (get(counter) - earlier.get(counter)) * 1000.0 / elapsed;
+    }
+
+    /**
+     * Flat key/value view for exporters, e.g. "scan.results" and
+     * "gatt.latency_ms.p99".
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (SdkMetrics.Counter counter : SdkMetrics.Counter.values()) {
+            values.put(counter.getKey(), get(counter));
+        }
+        for (SdkMetrics.Histogram histogram : SdkMetrics.Histogram.values()) {
+            HistogramSnapshot snapshot = get(histogram);
+            String key = histogram.getKey();
+            values.put(key + ".count", snapshot.getCount());
+            values.put(key + ".mean", (long) snapshot.getMean());
+            values.put(key + ".p50", snapshot.getPercentile(0.5));
+            values.put(key + ".p90", snapshot.getPercentile(0.9));
+            values.put(key + ".p99", snapshot.getPercentile(0.99));
+            values.put(key + ".max", snapshot.getMax());
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot" + toMap();
+    }
+}
@@ -0,0 +1,15 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Receives the values of a {@link Subscription} on the callback executor,
+ * oldest first.
+ */
+public interface NotificationConsumer {
+
+    /**
+     * value is a reused buffer holding length bytes and is only valid during
+     * the call; copy what must be kept. timestampMillis is when the value
+     * arrived, on the SDK's uptime clock.
+     */
+    void onNotification(byte[] value, int length, long timestampMillis);
+}
@@ -0,0 +1,139 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Fixed ring of preallocated value slots between the Bluetooth callback
+ * thread and one consumer. offer copies the value into a slot; drain copies
+ * each slot out into a scratch buffer before delivering it, so the producer
+ * may reuse the slot while the consumer is still running. Neither side
+ * allocates.
+ */
+final class NotificationRing {
+
+    private final SubscriptionConfig.Backpressure backpressure;
+    private final long blockTimeoutMillis;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final long[] timestamps;
+    // Only touched by the draining thread
+    private final byte[] scratch;
+
+    private int head;
+    private int count;
+    private long received;
+    private long delivered;
+    private long dropped;
+    private long coalesced;
+
+    NotificationRing(int capacity, int maxValueLength, SubscriptionConfig.Backpressure backpressure,
+                     long blockTimeoutMillis) {
+        this.backpressure = backpressure;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.slots = new byte[capacity][maxValueLength];
+        this.lengths = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.scratch = new byte[maxValueLength];
+    }
+
+    // False if the value was dropped
+    synchronized boolean offer(byte[] value, long timestampMillis) {
+        received++;
+        if (count == slots.length) {
+            switch (backpressure) {
+                case DROP_OLDEST:
+                    head = (head + 1) % slots.length;
+                    count--;
+                    dropped++;
+                    break;
+                case COALESCE:
+                    count--;
+                    coalesced++;
+                    break;
+                case BLOCK:
+                    if (!awaitSlot()) {
+                        dropped++;
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        int tail = (head + count) % slots.length;
+        int length = Math.min(value.length, slots[tail].length);
+        System.arraycopy(value, 0, slots[tail], 0, length);
+        lengths[tail] = length;
+        timestamps[tail] = timestampMillis;
+        count++;
+        return true;
+    }
+
+    /**
+     * Delivers up to max values, oldest first, and returns how many. Must
+     * not be called from two threads at once.
+     */
+    int drain(NotificationConsumer consumer, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int length;
+            long timestamp;
+            synchronized (this) {
+                if (count == 0) {
+                    break;
+                }
+                length = lengths[head];
+                timestamp = timestamps[head];
+                System.arraycopy(slots[head], 0, scratch, 0, length);
+                head = (head + 1) % slots.length;
+                count--;
+                delivered++;
+                if (backpressure == SubscriptionConfig.Backpressure.BLOCK) {
+                    notifyAll();
+                }
+            }
+            consumer.onNotification(scratch, length, timestamp);
+            drained++;
+        }
+        return drained;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    synchronized long getReceived() {
+        return received;
+    }
+
+    synchronized long getDelivered() {
+        return delivered;
+    }
+
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    // Empties the ring and releases a blocked producer
+    synchronized void clear() {
+        count = 0;
+        notifyAll();
+    }
+
+    private boolean awaitSlot() {
+        long deadline = System.currentTimeMillis() + blockTimeoutMillis;
+        long remaining = blockTimeoutMillis;
+        while (count == slots.length && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return count < slots.length;
+    }
+}
@@ -0,0 +1,76 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Shares a global budget of in-flight GATT operations between connections.
+ * Queues that find the budget exhausted wait in FIFO order, and a released
+ * permit is handed straight to the longest-waiting queue, so a busy link
+ * cannot starve the others.
+ */
+class OperationArbiter {
+
+    private int maxInFlight;
+    private int inFlight;
+    private final ArrayDeque<GattOperationQueue> waiting = new ArrayDeque<>();
+    private final Set<GattOperationQueue> handedOff = new HashSet<>();
+
+    OperationArbiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    synchronized void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    synchronized boolean tryAcquire(GattOperationQueue queue) {
+        if (handedOff.remove(queue)) {
+            return true;
+        }
+        if (inFlight < maxInFlight && waiting.isEmpty()) {
+            inFlight++;
+            return true;
+        }
+        if (!waiting.contains(queue)) {
+            waiting.add(queue);
+        }
+        return false;
+    }
+
+    void release() {
+        GattOperationQueue next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+            } else {
+                handedOff.add(next);
+            }
+        }
+        if (next != null) {
+            next.resume();
+        }
+    }
+
+    // The queue has nothing left to run: drop its place in line or its permit
+    void forget(GattOperationQueue queue) {
+        boolean hadPermit;
+        synchronized (this) {
+            waiting.remove(queue);
+            hadPermit = handedOff.remove(queue);
+        }
+        if (hadPermit) {
+            release();
+        }
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int waitingQueues() {
+        return waiting.size();
+    }
+}
@@ -0,0 +1,50 @@
+package com.vivek.blutoothsdk;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * Cached runtime permission state. Checking a permission is a binder call,
+ * so hot paths (scan callbacks) read these flags and the SDK refreshes them
+ * at operation boundaries or when the app reports a permission change.
+ */
+class PermissionCache {
+
+    private final Context context;
+    private volatile boolean scanGranted;
+    private volatile boolean connectGranted;
+    private volatile boolean locationGranted;
+
+    PermissionCache(Context context) {
+        this.context = context;
+        refresh();
+    }
+
+    void refresh() {
+        locationGranted = isGranted(Manifest.permission.ACCESS_FINE_LOCATION);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            scanGranted = isGranted(Manifest.permission.BLUETOOTH_SCAN);
+            connectGranted = isGranted(Manifest.permission.BLUETOOTH_CONNECT);
+        } else {
+            // Install-time permissions before Android 12
+            scanGranted = true;
+            connectGranted = true;
+        }
+    }
+
+    boolean canScan() {
+        return scanGranted && locationGranted;
+    }
+
+    boolean canConnect() {
+        return connectGranted;
+    }
+
+    private boolean isGranted(String permission) {
+        return ContextCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+}
@@ -0,0 +1,402 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Devices seen by a scan, with a smoothed RSSI each, ranked by it, plus the
+ * last-seen time and latest advertisement of each. All storage is allocated
+ * up front for a fixed number of devices, so a scan in a crowded place runs
+ * in constant memory: when the table is full the device seen least recently
+ * makes room. Advertisements are copied into a fixed record per slot; an
+ * extended advertisement keeps its first {@link #RECORD_SIZE} bytes.
+ *
+ * Three structures share the slots, all intrusive int links:
+ * <ul>
+ * <li>an open-addressing index from packed address to slot;</li>
+ * <li>a list in order of last sighting, so expiry only touches devices that
+ * actually expired;</li>
+ * <li>one list per dBm of smoothed RSSI plus the strongest non-empty bucket,
+ * so the nearest device is a lookup and a new sighting re-ranks in O(1).</li>
+ * </ul>
+ *
+ * RSSI is smoothed with a one-dimensional Kalman filter whose process noise
+ * grows with the time since the last sighting: a device heard rarely
+ * follows new readings more closely than one heard every few milliseconds.
+ *
+ * Not thread-safe; {@link ScanSession} guards it.
+ */
+final class ProximityTable<D> {
+
+    static final int DEFAULT_CAPACITY = 1024;
+    // Drift of the true RSSI per second as the user walks, in dBm squared
+    static final double DEFAULT_PROCESS_NOISE = 4.0;
+    // Spread of single readings from fading and body shadowing, in dBm squared
+    static final double DEFAULT_MEASUREMENT_NOISE = 36.0;
+    // Legacy advertising payload plus scan response
+    static final int RECORD_SIZE = 62;
+
+    // Buckets cover the RSSI range reported by the stack
+    private static final int MIN_RSSI = -127;
+    private static final int MAX_RSSI = 20;
+    private static final int NONE = -1;
+    // Never a real address: INVALID is rejected before it reaches the index
+    private static final long EMPTY = MacAddress.INVALID;
+
+    private final int capacity;
+    private final double processNoise;
+    private final double measurementNoise;
+
+    // Index: packed address to slot
+    private final long[] keys;
+    private final int[] slotOf;
+    private final int mask;
+
+    // Per slot
+    private final long[] addresses;
+    private final Object[] devices;
+    private final long[] lastSeen;
+    private final int[] rawRssi;
+    private final double[] estimate;
+    private final double[] variance;
+    private final int[] bucketOf;
+    // Slot i's advertisement starts at i * RECORD_SIZE
+    private final byte[] records;
+    private final int[] recordLengths;
+
+    // Sighting order, oldest first
+    private final int[] olderLink;
+    private final int[] newerLink;
+    private int oldest = NONE;
+    private int newest = NONE;
+
+    // Ranking: one list per rounded smoothed RSSI
+    private final int[] bucketHeads = new int[MAX_RSSI - MIN_RSSI + 1];
+    private final int[] rankPrev;
+    private final int[] rankNext;
+    private int topBucket = NONE;
+
+    private final int[] freeSlots;
+    private int freeCount;
+    private int size;
+
+    ProximityTable(int capacity) {
+        this(capacity, DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+    }
+
+    ProximityTable(int capacity, double processNoise, double measurementNoise) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1");
+        }
+        this.capacity = capacity;
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+        int tableSize = 16;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        keys = new long[tableSize];
+        Arrays.fill(keys, EMPTY);
+        slotOf = new int[tableSize];
+        mask = tableSize - 1;
+
+        addresses = new long[capacity];
+        devices = new Object[capacity];
+        lastSeen = new long[capacity];
+        rawRssi = new int[capacity];
+        estimate = new double[capacity];
+        variance = new double[capacity];
+        bucketOf = new int[capacity];
+        records = new byte[capacity * RECORD_SIZE];
+        recordLengths = new int[capacity];
+        olderLink = new int[capacity];
+        newerLink = new int[capacity];
+        rankPrev = new int[capacity];
+        rankNext = new int[capacity];
+        Arrays.fill(bucketHeads, NONE);
+        freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    boolean contains(long address) {
+        return indexOf(address) != NONE;
+    }
+
+    // Slot of the address, or -1
+    int indexOf(long address) {
+        if (address == MacAddress.INVALID) {
+            return NONE;
+        }
+        int position = probe(address);
+        return keys[position] == EMPTY ? NONE : slotOf[position];
+    }
+
+    /**
+     * Records a sighting and returns its slot. A new device needs a free
+     * slot: call {@link #oldest()} and {@link #remove} first if the table is
+     * full. Returns -1 if it is full anyway or the address is
+     * {@link MacAddress#INVALID}.
+     */
+    int ingest(long address, D device, int rssi, long timestampMillis) {
+        return ingest(address, device, rssi, null, timestampMillis);
+    }
+
+    // As ingest, also keeping a copy of the advertisement; null stores none
+    int ingest(long address, D device, int rssi, byte[] advertisement, long timestampMillis) {
+        if (address == MacAddress.INVALID) {
+            return NONE;
+        }
+        int position = probe(address);
+        int slot;
+        if (keys[position] != EMPTY) {
+            slot = slotOf[position];
+            double elapsedSeconds = Math.max(0, timestampMillis - lastSeen[slot]) / 1000.0;
+            double predicted = variance[slot] + processNoise * elapsedSeconds;
+            double gain = predicted / (predicted + measurementNoise);
+            estimate[slot] += gain * (rssi - estimate[slot]);
+            variance[slot] = (1 - gain) * predicted;
+            unlinkSighting(slot);
+        } else {
+            if (freeCount == 0) {
+                return NONE;
+            }
+            slot = freeSlots[--freeCount];
+            keys[position] = address;
+            slotOf[position] = slot;
+            addresses[slot] = address;
+            estimate[slot] = rssi;
+            variance[slot] = measurementNoise;
+            bucketOf[slot] = NONE;
+            size++;
+        }
+        devices[slot] = device;
+        rawRssi[slot] = rssi;
+        lastSeen[slot] = timestampMillis;
+        int length = advertisement != null ? Math.min(advertisement.length, RECORD_SIZE) : 0;
+        if (length > 0) {
+            System.arraycopy(advertisement, 0, records, slot * RECORD_SIZE, length);
+        }
+        recordLengths[slot] = length;
+        linkNewest(slot);
+        rank(slot);
+        return slot;
+    }
+
+    boolean remove(long address) {
+        if (address == MacAddress.INVALID) {
+            return false;
+        }
+        int position = probe(address);
+        if (keys[position] == EMPTY) {
+            return false;
+        }
+        int slot = slotOf[position];
+        deleteAt(position);
+        unlinkSighting(slot);
+        unrank(slot);
+        devices[slot] = null;
+        freeSlots[freeCount++] = slot;
+        size--;
+        return true;
+    }
+
+    // Slot seen least recently, or -1 when empty; the next to expire or make room
+    int oldest() {
+        return oldest;
+    }
+
+    // Slot with the strongest smoothed RSSI, or -1 when empty
+    int nearest() {
+        return topBucket == NONE ? NONE : bucketHeads[topBucket];
+    }
+
+    // Slot ranked after the given one, or -1; walks nearest to farthest
+    int nextFarther(int slot) {
+        if (rankNext[slot] != NONE) {
+            return rankNext[slot];
+        }
+        for (int bucket = bucketOf[slot] - 1; bucket >= 0; bucket--) {
+            if (bucketHeads[bucket] != NONE) {
+                return bucketHeads[bucket];
+            }
+        }
+        return NONE;
+    }
+
+    // Up to max devices, nearest first; the list is owned by the caller
+    @SuppressWarnings("unchecked")
+    List<D> byProximity(int max) {
+        List<D> result = new ArrayList<>(Math.min(max, size));
+        for (int slot = nearest(); slot != NONE && result.size() < max; slot = nextFarther(slot)) {
+            result.add((D) devices[slot]);
+        }
+        return result;
+    }
+
+    long addressAt(int slot) {
+        return addresses[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    D deviceAt(int slot) {
+        return (D) devices[slot];
+    }
+
+    int rssiAt(int slot) {
+        return rawRssi[slot];
+    }
+
+    double smoothedRssiAt(int slot) {
+        return estimate[slot];
+    }
+
+    long lastSeenAt(int slot) {
+        return lastSeen[slot];
+    }
+
+    int advertisementLengthAt(int slot) {
+        return recordLengths[slot];
+    }
+
+    // Copies the stored advertisement into dst and returns the number of bytes copied
+    int copyAdvertisementAt(int slot, byte[] dst) {
+        int length = Math.min(recordLengths[slot], dst.length);
+        System.arraycopy(records, slot * RECORD_SIZE, dst, 0, length);
+        return length;
+    }
+
+    /**
+     * Rough distance from the smoothed RSSI by the log-distance path loss
+     * model; measuredPower is the RSSI at one metre, commonly the advertised
+     * TX power minus 41 dB.
+     */
+    double distanceMetersAt(int slot, int measuredPower, double pathLossExponent) {
+        return Math.pow(10, (measuredPower - estimate[slot]) / (10 * pathLossExponent));
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(devices, null);
+        Arrays.fill(bucketHeads, NONE);
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+        oldest = NONE;
+        newest = NONE;
+        topBucket = NONE;
+        size = 0;
+    }
+
+    private void linkNewest(int slot) {
+        olderLink[slot] = newest;
+        newerLink[slot] = NONE;
+        if (newest != NONE) {
+            newerLink[newest] = slot;
+        } else {
+            oldest = slot;
+        }
+        newest = slot;
+    }
+
+    private void unlinkSighting(int slot) {
+        int older = olderLink[slot];
+        int newer = newerLink[slot];
+        if (older != NONE) {
+            newerLink[older] = newer;
+        } else {
+            oldest = newer;
+        }
+        if (newer != NONE) {
+            olderLink[newer] = older;
+        } else {
+            newest = older;
+        }
+    }
+
+    // Moves the slot to the bucket of its current estimate, if that changed
+    private void rank(int slot) {
+        int bucket = (int) Math.round(Math.max(MIN_RSSI, Math.min(MAX_RSSI, estimate[slot]))) - MIN_RSSI;
+        if (bucket == bucketOf[slot]) {
+            return;
+        }
+        unrank(slot);
+        bucketOf[slot] = bucket;
+        rankPrev[slot] = NONE;
+        rankNext[slot] = bucketHeads[bucket];
+        if (bucketHeads[bucket] != NONE) {
+            rankPrev[bucketHeads[bucket]] = slot;
+        }
+        bucketHeads[bucket] = slot;
+        if (bucket > topBucket) {
+            topBucket = bucket;
+        }
+    }
+
+    private void unrank(int slot) {
+        int bucket = bucketOf[slot];
+        if (bucket == NONE) {
+            return;
+        }
+        int prev = rankPrev[slot];
+        int next = rankNext[slot];
+        if (prev != NONE) {
+            rankNext[prev] = next;
+        } else {
+            bucketHeads[bucket] = next;
+        }
+        if (next != NONE) {
+            rankPrev[next] = prev;
+        }
+        bucketOf[slot] = NONE;
+        // The range is fixed, so finding the next non-empty bucket is bounded
+        while (topBucket != NONE && bucketHeads[topBucket] == NONE) {
+            topBucket--;
+        }
+    }
+
+    private int probe(long address) {
+        int position = hash(address) & mask;
+        while (keys[position] != EMPTY && keys[position] != address) {
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+    // Backward-shift deletion, so there are no tombstones
+    private void deleteAt(int position) {
+        int hole = position;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                slotOf[hole] = slotOf[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+    }
+
+    private static int hash(long address) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
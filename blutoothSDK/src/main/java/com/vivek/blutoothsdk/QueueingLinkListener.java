@@ -0,0 +1,73 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * Routes completion callbacks to the connection's {@link GattOperationQueue}.
+ * Subclasses that override a completion callback must call super.
+ */
+class QueueingLinkListener implements GattLink.Listener {
+
+    private final GattOperationQueue queue;
+
+    QueueingLinkListener(GattOperationQueue queue) {
+        this.queue = queue;
+    }
+
+    GattOperationQueue getQueue() {
+        return queue;
+    }
+
+    @Override
+    public void onConnectionStateChange(GattLink link, int status, int newState) {
+    }
+
+    @Override
+    public void onServicesDiscovered(GattLink link, int status) {
+        queue.onComplete(GattOperation.Type.DISCOVER_SERVICES, null,
+                GattResult.of(GattOperation.Type.DISCOVER_SERVICES, status));
+    }
+
+    @Override
+    public void onCharacteristicRead(GattLink link, UUID characteristic, byte[] value, int status) {
+        queue.onComplete(GattOperation.Type.READ_CHARACTERISTIC, characteristic,
+                new GattResult(GattOperation.Type.READ_CHARACTERISTIC, status, value, 0));
+    }
+
+    @Override
+    public void onCharacteristicWrite(GattLink link, UUID characteristic, int status) {
+        queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, characteristic,
+                GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, status));
+    }
+
+    @Override
+    public void onDescriptorWrite(GattLink link, UUID descriptor, int status) {
+        queue.onComplete(GattOperation.Type.WRITE_DESCRIPTOR, descriptor,
+                GattResult.of(GattOperation.Type.WRITE_DESCRIPTOR, status));
+    }
+
+    @Override
+    public void onMtuChanged(GattLink link, int mtu, int status) {
+        queue.onComplete(GattOperation.Type.REQUEST_MTU, null,
+                new GattResult(GattOperation.Type.REQUEST_MTU, status, null, mtu));
+    }
+
+    @Override
+    public void onConnectionUpdated(GattLink link, int interval, int latency, int timeout, int status) {
+    }
+
+    // Also arrives unrequested when the peripheral changes the PHY; the queue ignores those
+    @Override
+    public void onPhyUpdate(GattLink link, int txPhy, int rxPhy, int status) {
+        queue.onComplete(GattOperation.Type.SET_PHY, null,
+                new GattResult(GattOperation.Type.SET_PHY, status, null, txPhy));
+    }
+
+    @Override
+    public void onCharacteristicChanged(GattLink link, UUID service, UUID characteristic, byte[] value) {
+    }
+
+    @Override
+    public void onServiceChanged(GattLink link) {
+    }
+}
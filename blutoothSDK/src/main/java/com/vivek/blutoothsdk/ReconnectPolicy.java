@@ -0,0 +1,119 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Backoff settings for reconnecting after a failed connect or a dropped link.
+ * Delay for attempt n is min(maxDelay, initialDelay * multiplier^n), with up
+ * to {@code jitter} of it randomized so a fleet does not retry in lockstep.
+ */
+public final class ReconnectPolicy {
+
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final double multiplier;
+    private final double jitter;
+    private final int maxAttempts;
+    private final boolean reconnectOnLinkLoss;
+    private final boolean autoConnectWhenExhausted;
+
+    private ReconnectPolicy(Builder builder) {
+        this.initialDelayMillis = builder.initialDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.maxAttempts = builder.maxAttempts;
+        this.reconnectOnLinkLoss = builder.reconnectOnLinkLoss;
+        this.autoConnectWhenExhausted = builder.autoConnectWhenExhausted;
+    }
+
+    public static ReconnectPolicy defaults() {
+        return new Builder().build();
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isReconnectOnLinkLoss() {
+        return reconnectOnLinkLoss;
+    }
+
+    public boolean isAutoConnectWhenExhausted() {
+        return autoConnectWhenExhausted;
+    }
+
+    public static final class Builder {
+        private long initialDelayMillis = 500;
+        private long maxDelayMillis = 30000;
+        private double multiplier = 2.0;
+        private double jitter = 0.5;
+        private int maxAttempts = 8;
+        private boolean reconnectOnLinkLoss = true;
+        private boolean autoConnectWhenExhausted = false;
+
+        public Builder setInitialDelayMillis(long initialDelayMillis) {
+            this.initialDelayMillis = initialDelayMillis;
+            return this;
+        }
+
+        public Builder setMaxDelayMillis(long maxDelayMillis) {
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        public Builder setMultiplier(double multiplier) {
+            if (multiplier < 1.0) {
+                throw new IllegalArgumentException("multiplier < 1");
+            }
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        // Fraction of each delay that is randomized, 0 (none) to 1 (full jitter)
+        public Builder setJitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter must be in [0, 1]");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        // Retry budget per outage; 0 disables reconnects
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        // Reconnect links that drop after being ready, not just failed connects
+        public Builder setReconnectOnLinkLoss(boolean reconnectOnLinkLoss) {
+            this.reconnectOnLinkLoss = reconnectOnLinkLoss;
+            return this;
+        }
+
+        // Once the budget is spent, hand the device to the stack's background
+        // (autoConnect=true) connection instead of giving up
+        public Builder setAutoConnectWhenExhausted(boolean autoConnectWhenExhausted) {
+            this.autoConnectWhenExhausted = autoConnectWhenExhausted;
+            return this;
+        }
+
+        public ReconnectPolicy build() {
+            return new ReconnectPolicy(this);
+        }
+    }
+}
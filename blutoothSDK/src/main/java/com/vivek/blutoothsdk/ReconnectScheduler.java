@@ -0,0 +1,110 @@
+package com.vivek.blutoothsdk;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Per-device retry timers with exponential backoff and jitter. Timers are
+ * cancellable, so a device that reconnects or is disconnected on purpose
+ * never sees a stale retry fire later.
+ */
+class ReconnectScheduler {
+
+    private final Scheduler scheduler;
+    private final Random random;
+    private final Map<Long, Attempts> devices = new HashMap<>();
+    private ReconnectPolicy policy = ReconnectPolicy.defaults();
+
+    ReconnectScheduler(Scheduler scheduler) {
+        this(scheduler, new Random());
+    }
+
+    ReconnectScheduler(Scheduler scheduler, Random random) {
+        this.scheduler = scheduler;
+        this.random = random;
+    }
+
+    void setPolicy(ReconnectPolicy policy) {
+        this.policy = policy;
+    }
+
+    ReconnectPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Schedules another attempt after a failure. Returns false if the status
+     * is fatal or the retry budget for this outage is spent.
+     */
+    boolean schedule(long address, int status, Runnable attempt) {
+        if (!GattStatus.isRetryable(status)) {
+            reset(address);
+            return false;
+        }
+        Attempts attempts = devices.get(address);
+        if (attempts == null) {
+            attempts = new Attempts();
+            devices.put(address, attempts);
+        }
+        if (attempts.count >= policy.getMaxAttempts()) {
+            return false;
+        }
+        cancelTimer(attempts);
+        long delay = nextDelay(attempts.count++);
+        attempts.timer = scheduler.postDelayed(attempt, delay);
+        return true;
+    }
+
+    boolean isPending(long address) {
+        Attempts attempts = devices.get(address);
+        return attempts != null && attempts.timer != null;
+    }
+
+    int attempts(long address) {
+        Attempts attempts = devices.get(address);
+        return attempts != null ? attempts.count : 0;
+    }
+
+    // Called when the timer has fired and the attempt is running
+    void onAttemptStarted(long address) {
+        Attempts attempts = devices.get(address);
+        if (attempts != null) {
+            attempts.timer = null;
+        }
+    }
+
+    // Connected again, disconnected on purpose or given up: drop timer and budget
+    void reset(long address) {
+        Attempts attempts = devices.remove(address);
+        if (attempts != null) {
+            cancelTimer(attempts);
+        }
+    }
+
+    void resetAll() {
+        for (Attempts attempts : devices.values()) {
+            cancelTimer(attempts);
+        }
+        devices.clear();
+    }
+
+    long nextDelay(int attempt) {
+        double base = policy.getInitialDelayMillis() * Math.pow(policy.getMultiplier(), attempt);
+        long capped = (long) Math.min(base, policy.getMaxDelayMillis());
+        long jitterRange = (long) (capped * policy.getJitter());
+        return capped - jitterRange + (jitterRange > 0 ? (long) (random.nextDouble() * jitterRange) : 0);
+    }
+
+    private static void cancelTimer(Attempts attempts) {
+        if (attempts.timer != null) {
+            attempts.timer.cancel();
+            attempts.timer = null;
+        }
+    }
+
+    private static final class Attempts {
+        int count;
+        Scheduler.Cancellable timer;
+    }
+}
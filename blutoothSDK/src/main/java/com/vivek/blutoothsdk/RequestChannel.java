@@ -0,0 +1,103 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * A request/response protocol for {@link BluetoothSDK#request}. Each request
+ * is written to the request characteristic with a one-byte sequence number
+ * in front; the peripheral answers on the response characteristic, by
+ * notification or indication, starting with the same byte. Replies may
+ * arrive in any order, so several requests can be in flight at once.
+ */
+public final class RequestChannel {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    // Sequence numbers are one byte
+    public static final int MAX_IN_FLIGHT = 256;
+
+    private final UUID serviceUuid;
+    private final UUID requestUuid;
+    private final UUID responseUuid;
+    private final long timeoutMillis;
+    private final int maxInFlight;
+    private final boolean indications;
+
+    private RequestChannel(Builder builder) {
+        this.serviceUuid = builder.serviceUuid;
+        this.requestUuid = builder.requestUuid;
+        this.responseUuid = builder.responseUuid;
+        this.timeoutMillis = builder.timeoutMillis;
+        this.maxInFlight = builder.maxInFlight;
+        this.indications = builder.indications;
+    }
+
+    public UUID getServiceUuid() {
+        return serviceUuid;
+    }
+
+    public UUID getRequestUuid() {
+        return requestUuid;
+    }
+
+    public UUID getResponseUuid() {
+        return responseUuid;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean isIndications() {
+        return indications;
+    }
+
+    // Channels with the same characteristics share replies, so they are one channel
+    boolean sameCharacteristics(RequestChannel other) {
+        return serviceUuid.equals(other.serviceUuid) && requestUuid.equals(other.requestUuid)
+                && responseUuid.equals(other.responseUuid);
+    }
+
+    public static final class Builder {
+        private final UUID serviceUuid;
+        private final UUID requestUuid;
+        private final UUID responseUuid;
+        private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private boolean indications;
+
+        public Builder(UUID serviceUuid, UUID requestUuid, UUID responseUuid) {
+            this.serviceUuid = serviceUuid;
+            this.requestUuid = requestUuid;
+            this.responseUuid = responseUuid;
+        }
+
+        // Per request, from the moment it is sent
+        public Builder setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        // Requests awaiting a reply per device; more wait their turn
+        public Builder setMaxInFlight(int maxInFlight) {
+            if (maxInFlight < 1 || maxInFlight > MAX_IN_FLIGHT) {
+                throw new IllegalArgumentException("maxInFlight must be 1.." + MAX_IN_FLIGHT);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder setIndications(boolean indications) {
+            this.indications = indications;
+            return this;
+        }
+
+        public RequestChannel build() {
+            return new RequestChannel(this);
+        }
+    }
+}
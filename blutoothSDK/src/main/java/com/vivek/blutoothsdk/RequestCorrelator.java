@@ -0,0 +1,197 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Matches replies to requests for one device and one {@link RequestChannel}.
+ * Sequence numbers are handed out in turn, so a number is only reused after
+ * 255 others and a late reply to a timed-out request is unlikely to be
+ * taken for a newer one. Lookup is an array index, not a map.
+ *
+ * Scheduler thread only.
+ */
+final class RequestCorrelator {
+
+    private final RequestChannel channel;
+    private final Scheduler scheduler;
+    private final ConnectionManager manager;
+    private final CommandRequest[] inFlight = new CommandRequest[RequestChannel.MAX_IN_FLIGHT];
+    private final ArrayDeque<CommandRequest> waiting = new ArrayDeque<>();
+    private final DeviceConnection.NotificationListener replies = new DeviceConnection.NotificationListener() {
+        @Override
+        public void onNotification(UUID service, UUID characteristic, byte[] value) {
+            if (characteristic.equals(channel.getResponseUuid()) && service.equals(channel.getServiceUuid())) {
+                onReply(value);
+            }
+        }
+    };
+
+    private int inFlightCount;
+    private int nextSequence;
+    // Link the response characteristic is enabled on; null after link loss
+    private DeviceConnection subscribed;
+    private int writeType;
+    private int unmatchedReplies;
+
+    RequestCorrelator(RequestChannel channel, Scheduler scheduler, ConnectionManager manager) {
+        this.channel = channel;
+        this.scheduler = scheduler;
+        this.manager = manager;
+    }
+
+    RequestChannel getChannel() {
+        return channel;
+    }
+
+    int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    int getWaitingCount() {
+        return waiting.size();
+    }
+
+    // Replies with no request waiting for them, e.g. after a timeout
+    int getUnmatchedReplies() {
+        return unmatchedReplies;
+    }
+
+    void submit(CommandRequest request, DeviceConnection connection) {
+        if (request.isDone()) {
+            // Cancelled before it got here
+            recycle(request);
+            return;
+        }
+        request.owner = this;
+        if (connection == null || connection.getState() != DeviceConnection.State.READY) {
+            request.complete(CommandResult.of(CommandResult.Status.NOT_CONNECTED), null);
+            return;
+        }
+        int properties = connection.getProperties(channel.getServiceUuid(), channel.getRequestUuid());
+        if (properties == GattLink.NOT_FOUND || !connection.hasDescriptor(channel.getServiceUuid(),
+                channel.getResponseUuid(), GattLayout.CLIENT_CHARACTERISTIC_CONFIG)) {
+            request.complete(CommandResult.of(CommandResult.Status.NOT_FOUND), null);
+            return;
+        }
+        if (subscribed != connection) {
+            subscribe(connection, properties);
+        }
+        if (inFlightCount < channel.getMaxInFlight()) {
+            send(request);
+        } else {
+            waiting.add(request);
+        }
+    }
+
+    // Fails everything outstanding; nothing is resent since the device may have acted on it
+    void onLinkLost() {
+        if (subscribed != null) {
+            subscribed.removeNotificationListener(replies);
+            subscribed = null;
+        }
+        CommandResult cancelled = CommandResult.of(CommandResult.Status.CANCELLED);
+        for (CommandRequest request : inFlight) {
+            if (request != null) {
+                request.complete(cancelled, null);
+            }
+        }
+        while (!waiting.isEmpty()) {
+            waiting.peek().complete(cancelled, null);
+        }
+    }
+
+    // From CommandRequest.complete; frees the slot and sends the next waiting request
+    void onCompleted(CommandRequest request) {
+        if (request.sequence >= 0 && inFlight[request.sequence] == request) {
+            inFlight[request.sequence] = null;
+            inFlightCount--;
+            if (request.timeout != null) {
+                request.timeout.cancel();
+                request.timeout = null;
+            }
+        } else {
+            waiting.remove(request);
+            // Never handed to the stack
+            recycle(request);
+        }
+        while (subscribed != null && inFlightCount < channel.getMaxInFlight() && !waiting.isEmpty()) {
+            send(waiting.poll());
+        }
+    }
+
+    private void subscribe(DeviceConnection connection, int requestProperties) {
+        subscribed = connection;
+        writeType = (requestProperties & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0
+                ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+        connection.removeNotificationListener(replies);
+        connection.addNotificationListener(replies);
+        GattLink link = connection.getLink();
+        link.setNotificationsEnabled(channel.getServiceUuid(), channel.getResponseUuid(), true);
+        // Queued ahead of the first request, so its reply cannot be missed
+        connection.getQueue().enqueue(GattOperations.writeDescriptor(link, channel.getServiceUuid(),
+                channel.getResponseUuid(), GattLayout.CLIENT_CHARACTERISTIC_CONFIG, channel.isIndications()
+                        ? BluetoothGattDescriptor.ENABLE_INDICATION_VALUE
+                        : BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE,
+                manager.getOperationTimeoutMillis(), null));
+    }
+
+    private void send(final CommandRequest request) {
+        int sequence = nextSequence;
+        while (inFlight[sequence] != null) {
+            sequence = (sequence + 1) % inFlight.length;
+        }
+        nextSequence = (sequence + 1) % inFlight.length;
+        request.sequence = sequence;
+        request.value[0] = (byte) sequence;
+        request.sentMillis = scheduler.now();
+        inFlight[sequence] = request;
+        inFlightCount++;
+        request.timeout = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                request.timeout = null;
+                request.complete(CommandResult.of(CommandResult.Status.TIMEOUT), null);
+            }
+        }, channel.getTimeoutMillis());
+        subscribed.getQueue().enqueue(GattOperations.writeCharacteristic(subscribed.getLink(),
+                channel.getServiceUuid(), channel.getRequestUuid(), request.value, writeType,
+                manager.getOperationTimeoutMillis(), new BluetoothSDK.Callback<GattResult>() {
+                    @Override
+                    public void onResult(final GattResult result) {
+                        // The stack copied the value when the write started
+                        recycle(request);
+                        if (result.isSuccess()) {
+                            return;
+                        }
+                        scheduler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                request.complete(CommandResult.from(result), null);
+                            }
+                        });
+                    }
+                }));
+    }
+
+    private void onReply(byte[] value) {
+        CommandRequest request = value.length > 0 ? inFlight[value[0] & 0xFF] : null;
+        if (request == null) {
+            unmatchedReplies++;
+            return;
+        }
+        request.complete(CommandResult.of(CommandResult.Status.SUCCESS), Arrays.copyOfRange(value, 1, value.length));
+    }
+
+    private static void recycle(CommandRequest request) {
+        if (request.pool != null) {
+            request.pool.recycle(request.value);
+            request.pool = null;
+        }
+    }
+}
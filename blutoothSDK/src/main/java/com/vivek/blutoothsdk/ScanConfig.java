@@ -0,0 +1,398 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Options for a streaming scan started with
+ * {@link BluetoothSDK#startScan(ScanConfig, ScanListener)}.
+ */
+public final class ScanConfig {
+
+    public enum ScanMode {
+        OPPORTUNISTIC,
+        LOW_POWER,
+        BALANCED,
+        LOW_LATENCY
+    }
+
+    public enum MatchMode {
+        // Report a match on the first, possibly weak, advertisement
+        AGGRESSIVE,
+        // Wait for a device to be seen several times at a usable signal
+        STICKY
+    }
+
+    private final List<Filter> filters;
+    private final ScanMode scanMode;
+    private final MatchMode matchMode;
+    private final long reportDelayMillis;
+    private final long frameIntervalMillis;
+    private final int maxChangesPerFrame;
+    private final long lostTimeoutMillis;
+    private final long durationMillis;
+    private final long scanWindowMillis;
+    private final long scanIntervalMillis;
+    private final int maxDevices;
+    private final AdvertisementMatcher matcher;
+    private final AdvertisementDecoders decoders;
+
+    private ScanConfig(Builder builder) {
+        this.filters = Collections.unmodifiableList(new ArrayList<>(builder.filters));
+        this.scanMode = builder.scanMode;
+        this.matchMode = builder.matchMode;
+        this.reportDelayMillis = builder.reportDelayMillis;
+        this.frameIntervalMillis = builder.frameIntervalMillis;
+        this.maxChangesPerFrame = builder.maxChangesPerFrame;
+        this.lostTimeoutMillis = builder.lostTimeoutMillis;
+        this.durationMillis = builder.durationMillis;
+        this.scanWindowMillis = builder.scanWindowMillis;
+        this.scanIntervalMillis = builder.scanIntervalMillis;
+        this.maxDevices = builder.maxDevices;
+        this.matcher = builder.matcher;
+        this.decoders = builder.decoders;
+    }
+
+    public static ScanConfig defaults() {
+        return new Builder().build();
+    }
+
+    // A result is reported if it matches any filter; no filters means everything
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    public ScanMode getScanMode() {
+        return scanMode;
+    }
+
+    public MatchMode getMatchMode() {
+        return matchMode;
+    }
+
+    public long getReportDelayMillis() {
+        return reportDelayMillis;
+    }
+
+    public long getFrameIntervalMillis() {
+        return frameIntervalMillis;
+    }
+
+    public int getMaxChangesPerFrame() {
+        return maxChangesPerFrame;
+    }
+
+    public long getLostTimeoutMillis() {
+        return lostTimeoutMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    // Radio time per duty cycle; 0 when scanning continuously
+    public long getScanWindowMillis() {
+        return scanWindowMillis;
+    }
+
+    // Length of a duty cycle; 0 when scanning continuously
+    public long getScanIntervalMillis() {
+        return scanIntervalMillis;
+    }
+
+    public int getMaxDevices() {
+        return maxDevices;
+    }
+
+    // Checked on the raw advertisement after the controller filters; null lets everything through
+    public AdvertisementMatcher getMatcher() {
+        return matcher;
+    }
+
+    public AdvertisementDecoders getDecoders() {
+        return decoders;
+    }
+
+    public static final class Builder {
+        private final List<Filter> filters = new ArrayList<>();
+        private ScanMode scanMode = ScanMode.BALANCED;
+        private MatchMode matchMode = MatchMode.AGGRESSIVE;
+        private long reportDelayMillis = 0;
+        private long frameIntervalMillis = 100;
+        private int maxChangesPerFrame = 32;
+        private long lostTimeoutMillis = 10000;
+        private long durationMillis = 0; // 0 = until stopScan()
+        private long scanWindowMillis = 0;
+        private long scanIntervalMillis = 0;
+        private int maxDevices = ProximityTable.DEFAULT_CAPACITY;
+        private AdvertisementMatcher matcher;
+        private AdvertisementDecoders decoders;
+
+        public Builder addFilter(Filter filter) {
+            filters.add(filter);
+            return this;
+        }
+
+        public Builder addNameFilter(String deviceName) {
+            return addFilter(new Filter.Builder().setDeviceName(deviceName).build());
+        }
+
+        public Builder addServiceUuidFilter(UUID serviceUuid) {
+            return addFilter(new Filter.Builder().setServiceUuid(serviceUuid).build());
+        }
+
+        public Builder addManufacturerFilter(int manufacturerId, byte[] data, byte[] mask) {
+            return addFilter(new Filter.Builder().setManufacturerData(manufacturerId, data, mask).build());
+        }
+
+        public Builder setScanMode(ScanMode scanMode) {
+            this.scanMode = scanMode;
+            return this;
+        }
+
+        public Builder setMatchMode(MatchMode matchMode) {
+            this.matchMode = matchMode;
+            return this;
+        }
+
+        // Non-zero lets the controller batch results and deliver them through
+        // onBatchScanResults, so the app processor can stay asleep in between
+        public Builder setReportDelayMillis(long reportDelayMillis) {
+            if (reportDelayMillis < 0) {
+                throw new IllegalArgumentException("reportDelayMillis < 0");
+            }
+            this.reportDelayMillis = reportDelayMillis;
+            return this;
+        }
+
+        // Minimum time between two frames delivered to the listener
+        public Builder setFrameIntervalMillis(long frameIntervalMillis) {
+            if (frameIntervalMillis < 0) {
+                throw new IllegalArgumentException("frameIntervalMillis < 0");
+            }
+            this.frameIntervalMillis = frameIntervalMillis;
+            return this;
+        }
+
+        // A frame is delivered early once it holds this many device changes
+        public Builder setMaxChangesPerFrame(int maxChangesPerFrame) {
+            if (maxChangesPerFrame < 1) {
+                throw new IllegalArgumentException("maxChangesPerFrame < 1");
+            }
+            this.maxChangesPerFrame = maxChangesPerFrame;
+            return this;
+        }
+
+        // Devices not seen for this long are reported as LOST
+        public Builder setLostTimeoutMillis(long lostTimeoutMillis) {
+            this.lostTimeoutMillis = lostTimeoutMillis;
+            return this;
+        }
+
+        public Builder setDurationMillis(long durationMillis) {
+            this.durationMillis = durationMillis;
+            return this;
+        }
+
+        /**
+         * Scans for windowMillis at the start of every intervalMillis and
+         * leaves the radio off in between, for long-running background
+         * scans. Every window is a new scan start, so the interval must be
+         * at least {@link ScanMultiplexer#MIN_DUTY_INTERVAL_MILLIS} to stay
+         * under the platform's start limit. Lost devices are given at least
+         * two intervals before they are reported.
+         */
+        public Builder setDutyCycle(long windowMillis, long intervalMillis) {
+            if (windowMillis <= 0 || windowMillis >= intervalMillis) {
+                throw new IllegalArgumentException("Window must be positive and shorter than the interval");
+            }
+            if (intervalMillis < ScanMultiplexer.MIN_DUTY_INTERVAL_MILLIS) {
+                throw new IllegalArgumentException("intervalMillis < " + ScanMultiplexer.MIN_DUTY_INTERVAL_MILLIS);
+            }
+            this.scanWindowMillis = windowMillis;
+            this.scanIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        // Scan all the time; the default
+        public Builder setContinuous() {
+            this.scanWindowMillis = 0;
+            this.scanIntervalMillis = 0;
+            return this;
+        }
+
+        // Devices tracked at once, allocated up front; beyond it the one seen least recently is LOST
+        public Builder setMaxDevices(int maxDevices) {
+            if (maxDevices < 1) {
+                throw new IllegalArgumentException("maxDevices < 1");
+            }
+            this.maxDevices = maxDevices;
+            return this;
+        }
+
+        // For what controller filters cannot express, e.g. masked service data or alternatives
+        public Builder setMatcher(AdvertisementMatcher matcher) {
+            this.matcher = matcher;
+            return this;
+        }
+
+        // Matching advertisements go through these and decoded ones to the BeaconListener
+        public Builder setDecoders(AdvertisementDecoders decoders) {
+            this.decoders = decoders;
+            return this;
+        }
+
+        public ScanConfig build() {
+            return new ScanConfig(this);
+        }
+    }
+
+    /**
+     * One controller-side filter. All fields that are set must match.
+     */
+    public static final class Filter {
+
+        private final String deviceName;
+        private final UUID serviceUuid;
+        private final UUID serviceUuidMask;
+        private final int manufacturerId;
+        private final byte[] manufacturerData;
+        private final byte[] manufacturerDataMask;
+
+        private Filter(Builder builder) {
+            this.deviceName = builder.deviceName;
+            this.serviceUuid = builder.serviceUuid;
+            this.serviceUuidMask = builder.serviceUuidMask;
+            this.manufacturerId = builder.manufacturerId;
+            this.manufacturerData = builder.manufacturerData;
+            this.manufacturerDataMask = builder.manufacturerDataMask;
+        }
+
+        public String getDeviceName() {
+            return deviceName;
+        }
+
+        public UUID getServiceUuid() {
+            return serviceUuid;
+        }
+
+        public UUID getServiceUuidMask() {
+            return serviceUuidMask;
+        }
+
+        // -1 if the filter does not look at manufacturer data
+        public int getManufacturerId() {
+            return manufacturerId;
+        }
+
+        public byte[] getManufacturerData() {
+            return manufacturerData;
+        }
+
+        public byte[] getManufacturerDataMask() {
+            return manufacturerDataMask;
+        }
+
+        // The controller's check, redone in software when a shared scan carries other filters too
+        boolean matches(AdvertisementView view) {
+            if (deviceName != null && !deviceName.equals(view.getLocalName())) {
+                return false;
+            }
+            if (serviceUuid != null && !view.hasServiceUuid(serviceUuid, serviceUuidMask)) {
+                return false;
+            }
+            if (manufacturerId >= 0) {
+                int index = view.indexOfManufacturer(manufacturerId);
+                if (index < 0) {
+                    return false;
+                }
+                if (manufacturerData != null) {
+                    int offset = view.getValueOffset(index) + 2;
+                    if (view.getValueLength(index) - 2 < manufacturerData.length) {
+                        return false;
+                    }
+                    byte[] data = view.getData();
+                    for (int i = 0; i < manufacturerData.length; i++) {
+                        int m = manufacturerDataMask != null ? manufacturerDataMask[i] : 0xFF;
+                        if ((data[offset + i] & m) != (manufacturerData[i] & m)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Equal filters are merged when scans share the radio
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Filter)) {
+                return false;
+            }
+            Filter other = (Filter) o;
+            return manufacturerId == other.manufacturerId
+                    && Objects.equals(deviceName, other.deviceName)
+                    && Objects.equals(serviceUuid, other.serviceUuid)
+                    && Objects.equals(serviceUuidMask, other.serviceUuidMask)
+                    && Arrays.equals(manufacturerData, other.manufacturerData)
+                    && Arrays.equals(manufacturerDataMask, other.manufacturerDataMask);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(deviceName, serviceUuid, serviceUuidMask, manufacturerId);
+            result = 31 * result + Arrays.hashCode(manufacturerData);
+            result = 31 * result + Arrays.hashCode(manufacturerDataMask);
+            return result;
+        }
+
+        public static final class Builder {
+            private String deviceName;
+            private UUID serviceUuid;
+            private UUID serviceUuidMask;
+            private int manufacturerId = -1;
+            private byte[] manufacturerData;
+            private byte[] manufacturerDataMask;
+
+            public Builder setDeviceName(String deviceName) {
+                this.deviceName = deviceName;
+                return this;
+            }
+
+            public Builder setServiceUuid(UUID serviceUuid) {
+                return setServiceUuid(serviceUuid, null);
+            }
+
+            public Builder setServiceUuid(UUID serviceUuid, UUID mask) {
+                this.serviceUuid = serviceUuid;
+                this.serviceUuidMask = mask;
+                return this;
+            }
+
+            // data and mask may be null to match on the company ID alone
+            public Builder setManufacturerData(int manufacturerId, byte[] data, byte[] mask) {
+                if (manufacturerId < 0 || manufacturerId > 0xFFFF) {
+                    throw new IllegalArgumentException("Invalid manufacturer ID: " + manufacturerId);
+                }
+                if (mask != null && (data == null || mask.length != data.length)) {
+                    throw new IllegalArgumentException("Mask length must match data length");
+                }
+                this.manufacturerId = manufacturerId;
+                this.manufacturerData = data != null ? Arrays.copyOf(data, data.length) : null;
+                this.manufacturerDataMask = mask != null ? Arrays.copyOf(mask, mask.length) : null;
+                return this;
+            }
+
+            public Filter build() {
+                return new Filter(this);
+            }
+        }
+    }
+}
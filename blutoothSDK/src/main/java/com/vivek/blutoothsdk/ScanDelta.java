@@ -0,0 +1,51 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * A single change to the set of devices seen by a streaming scan.
+ */
+public final class ScanDelta<D> {
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        LOST
+    }
+
+    private final Type type;
+    private final long address;
+    private final D device;
+    private final int rssi;
+    private final long timestampMillis;
+
+    ScanDelta(Type type, long address, D device, int rssi, long timestampMillis) {
+        this.type = type;
+        this.address = address;
+        this.device = device;
+        this.rssi = rssi;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    public String getAddressString() {
+        return MacAddress.unpack(address);
+    }
+
+    public D getDevice() {
+        return device;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+}
@@ -0,0 +1,81 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanSettings;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a {@link ScanConfig} into the ScanFilter / ScanSettings pair handed
+ * to the controller, so non-matching advertisements never reach the app.
+ */
+final class ScanFilterCompiler {
+
+    private static final String TAG = "ScanFilterCompiler";
+
+    private ScanFilterCompiler() {
+    }
+
+    static List<ScanFilter> toScanFilters(ScanConfig config) {
+        List<ScanFilter> result = new ArrayList<>(config.getFilters().size());
+        for (ScanConfig.Filter filter : config.getFilters()) {
+            ScanFilter.Builder builder = new ScanFilter.Builder();
+            if (filter.getDeviceName() != null) {
+                builder.setDeviceName(filter.getDeviceName());
+            }
+            if (filter.getServiceUuid() != null) {
+                ParcelUuid uuid = new ParcelUuid(filter.getServiceUuid());
+                if (filter.getServiceUuidMask() != null) {
+                    builder.setServiceUuid(uuid, new ParcelUuid(filter.getServiceUuidMask()));
+                } else {
+                    builder.setServiceUuid(uuid);
+                }
+            }
+            if (filter.getManufacturerId() >= 0) {
+                byte[] data = filter.getManufacturerData() != null ? filter.getManufacturerData() : new byte[0];
+                if (filter.getManufacturerDataMask() != null) {
+                    builder.setManufacturerData(filter.getManufacturerId(), data, filter.getManufacturerDataMask());
+                } else {
+                    builder.setManufacturerData(filter.getManufacturerId(), data);
+                }
+            }
+            result.add(builder.build());
+        }
+        return result;
+    }
+
+    static ScanSettings toScanSettings(ScanConfig config, BluetoothAdapter adapter) {
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setScanMode(toScanMode(config.getScanMode()))
+                .setMatchMode(config.getMatchMode() == ScanConfig.MatchMode.STICKY
+                        ? ScanSettings.MATCH_MODE_STICKY
+                        : ScanSettings.MATCH_MODE_AGGRESSIVE);
+
+        long reportDelay = config.getReportDelayMillis();
+        if (reportDelay > 0 && !adapter.isOffloadedScanBatchingSupported()) {
+            // Without controller batching the stack would only buffer in the host
+            Log.w(TAG, "Offloaded scan batching not supported, ignoring reportDelay");
+            reportDelay = 0;
+        }
+        builder.setReportDelay(reportDelay);
+        return builder.build();
+    }
+
+    private static int toScanMode(ScanConfig.ScanMode mode) {
+        switch (mode) {
+            case OPPORTUNISTIC:
+                return ScanSettings.SCAN_MODE_OPPORTUNISTIC;
+            case LOW_POWER:
+                return ScanSettings.SCAN_MODE_LOW_POWER;
+            case LOW_LATENCY:
+                return ScanSettings.SCAN_MODE_LOW_LATENCY;
+            case BALANCED:
+            default:
+                return ScanSettings.SCAN_MODE_BALANCED;
+        }
+    }
+}
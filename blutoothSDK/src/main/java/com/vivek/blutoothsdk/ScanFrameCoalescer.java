@@ -0,0 +1,76 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges per-device scan deltas and emits them as frames, at most one frame
+ * per interval unless a frame fills up first. The first delta after a quiet
+ * period is emitted right away so the first device shows up immediately.
+ */
+class ScanFrameCoalescer<D> {
+
+    private final long frameIntervalMillis;
+    private final int maxChangesPerFrame;
+    private final ScanListener<D> listener;
+    private final Map<Long, ScanDelta<D>> pending = new LinkedHashMap<>();
+    private long lastFrameMillis = Long.MIN_VALUE / 2;
+
+    ScanFrameCoalescer(long frameIntervalMillis, int maxChangesPerFrame, ScanListener<D> listener) {
+        this.frameIntervalMillis = frameIntervalMillis;
+        this.maxChangesPerFrame = maxChangesPerFrame;
+        this.listener = listener;
+    }
+
+    void offer(ScanDelta.Type type, long address, D device, int rssi, long nowMillis) {
+        ScanDelta<D> previous = pending.get(address);
+        ScanDelta.Type merged = previous == null ? type : merge(previous.getType(), type);
+        if (merged == null) {
+            // Added and lost within the same frame: the listener never saw it
+            pending.remove(address);
+        } else {
+            pending.put(address, new ScanDelta<>(merged, address, device, rssi, nowMillis));
+        }
+        if (pending.size() >= maxChangesPerFrame || nowMillis - lastFrameMillis >= frameIntervalMillis) {
+            flush(nowMillis);
+        }
+    }
+
+    // Called from the scan timer so trailing deltas are not held back
+    void flushIfDue(long nowMillis) {
+        if (nowMillis - lastFrameMillis >= frameIntervalMillis) {
+            flush(nowMillis);
+        }
+    }
+
+    void flush(long nowMillis) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ScanDelta<D>> frame = Collections.unmodifiableList(new ArrayList<>(pending.values()));
+        pending.clear();
+        lastFrameMillis = nowMillis;
+        listener.onScanFrame(frame);
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    private static ScanDelta.Type merge(ScanDelta.Type previous, ScanDelta.Type next) {
+        if (next == ScanDelta.Type.LOST) {
+            return previous == ScanDelta.Type.ADDED ? null : ScanDelta.Type.LOST;
+        }
+        if (previous == ScanDelta.Type.ADDED) {
+            return ScanDelta.Type.ADDED;
+        }
+        if (previous == ScanDelta.Type.LOST) {
+            // Lost and found again before the listener heard about it
+            return ScanDelta.Type.UPDATED;
+        }
+        return next;
+    }
+}
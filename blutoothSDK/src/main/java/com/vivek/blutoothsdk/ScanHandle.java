@@ -0,0 +1,30 @@
+package com.vivek.blutoothsdk;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One scan started through {@link BluetoothSDK}. Scans share the radio, so
+ * stopping one leaves the others running; the hardware scan only stops
+ * once the last of them does.
+ */
+public final class ScanHandle {
+
+    private final AtomicBoolean active = new AtomicBoolean(true);
+    private final Runnable onStop;
+
+    ScanHandle(Runnable onStop) {
+        this.onStop = onStop;
+    }
+
+    // False once stopped, timed out or failed
+    public boolean isActive() {
+        return active.get();
+    }
+
+    // May be called from any thread and more than once
+    public void stop() {
+        if (active.compareAndSet(true, false)) {
+            onStop.run();
+        }
+    }
+}
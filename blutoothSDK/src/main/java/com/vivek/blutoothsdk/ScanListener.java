@@ -0,0 +1,14 @@
+package com.vivek.blutoothsdk;
+
+import java.util.List;
+
+public interface ScanListener<D> {
+
+    // Bluetooth is off or has no LE scanner; the platform's ScanCallback codes are positive
+    int SCAN_FAILED_UNAVAILABLE = -1;
+
+    // Deltas are coalesced per device; the list is immutable
+    void onScanFrame(List<ScanDelta<D>> deltas);
+
+    void onScanFailed(int errorCode);
+}
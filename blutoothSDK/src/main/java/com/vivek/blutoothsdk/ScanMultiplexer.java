@@ -0,0 +1,390 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs any number of logical scans on one hardware scan. The hardware scan
+ * carries the union of every client's filters, the most eager scan and
+ * match mode, the shortest report delay and the most frequent duty cycle;
+ * each result then goes to the clients whose own filters it passes.
+ *
+ * Android stops delivering results, without an error, to an app that
+ * starts more than {@link #MAX_STARTS} scans within
+ * {@link #THROTTLE_WINDOW_MILLIS}. Starts are therefore counted here and a
+ * restart that would exceed the limit waits until it no longer does, while
+ * the running scan carries on. Changes made in one pass on the scheduler
+ * thread, e.g. stopping a scan and starting an identical one, collapse
+ * into a single reconfiguration, and a client whose needs the running
+ * scan already covers does not restart it at all.
+ *
+ * Clients are added and cancelled on the scheduler thread; results may
+ * arrive on the transport's.
+ */
+final class ScanMultiplexer<D> implements BleTransport.ScanSink<D> {
+
+    static final int MAX_STARTS = 5;
+    static final long THROTTLE_WINDOW_MILLIS = 30000;
+    // Shortest duty cycle that can run indefinitely within the limit
+    static final long MIN_DUTY_INTERVAL_MILLIS = THROTTLE_WINDOW_MILLIS / MAX_STARTS;
+    // Allowance for the stack timing starts slightly differently
+    private static final long THROTTLE_MARGIN_MILLIS = 100;
+
+    private final Scheduler scheduler;
+    private final BleTransport<D> transport;
+    private final SdkMetrics metrics;
+    private final List<Client> clients = new ArrayList<>();
+    // Copy for result delivery, replaced whenever clients change
+    private volatile List<Client> snapshot = Collections.emptyList();
+    // Config of the running hardware scan, null while the radio is off
+    private volatile ScanConfig hardware;
+
+    // The last MAX_STARTS start times, oldest at startHead once full
+    private final long[] starts = new long[MAX_STARTS];
+    private int startHead;
+    private int startCount;
+
+    // End of the current duty cycle; the next window opens then
+    private long cycleEnd;
+    private boolean applyPosted;
+    private Scheduler.Cancellable cycleTimer;
+    private Scheduler.Cancellable retryTimer;
+
+    private final Runnable applyTask = new Runnable() {
+        @Override
+        public void run() {
+            applyPosted = false;
+            apply();
+        }
+    };
+
+    // Timers get their own tasks: a Handler cancels by task, which would also drop a posted apply
+    private final Runnable retryTask = new Runnable() {
+        @Override
+        public void run() {
+            retryTimer = null;
+            apply();
+        }
+    };
+
+    private final Runnable windowEnd = new Runnable() {
+        @Override
+        public void run() {
+            stopHardware();
+            cycleTimer = scheduler.postDelayed(windowStart, Math.max(0, cycleEnd - scheduler.now()));
+        }
+    };
+
+    private final Runnable windowStart = new Runnable() {
+        @Override
+        public void run() {
+            cycleTimer = null;
+            apply();
+        }
+    };
+
+    ScanMultiplexer(Scheduler scheduler, BleTransport<D> transport, SdkMetrics metrics) {
+        this.scheduler = scheduler;
+        this.transport = transport;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Adds a logical scan. The hardware scan is reconfigured once the
+     * current pass on the scheduler thread is over, or later if the start
+     * limit is reached; results for this client start flowing then.
+     */
+    Client register(ScanConfig config, BleTransport.ScanSink<D> sink) {
+        Client client = new Client(config, sink);
+        clients.add(client);
+        publish();
+        requestApply();
+        return client;
+    }
+
+    // Cancels every client; the hardware scan stops on the next pass
+    void cancelAll() {
+        for (Client client : new ArrayList<>(clients)) {
+            client.cancel();
+        }
+    }
+
+    int getClientCount() {
+        return clients.size();
+    }
+
+    boolean isScanning() {
+        return hardware != null;
+    }
+
+    // What the radio is doing, null while it is off
+    ScanConfig getHardwareConfig() {
+        return hardware;
+    }
+
+    // True while a needed restart is held back by the start limit
+    boolean isDeferred() {
+        return retryTimer != null;
+    }
+
+    @Override
+    public void onScanResult(long address, D device, int rssi, byte[] advertisement, long nowMillis) {
+        ScanConfig running = hardware;
+        // No usable address means nothing to track the device by
+        if (running == null || address == MacAddress.INVALID) {
+            return;
+        }
+        List<Client> current = snapshot;
+        for (int i = 0, n = current.size(); i < n; i++) {
+            Client client = current.get(i);
+            List<ScanConfig.Filter> filters = client.config.getFilters();
+            // The controller already applied exactly these filters
+            boolean checked = filters.isEmpty() || filters.equals(running.getFilters());
+            if (client.active && (checked || transport.matches(client.config, device, advertisement))) {
+                client.sink.onScanResult(address, device, rssi, advertisement, nowMillis);
+            }
+        }
+    }
+
+    @Override
+    public void onScanFailed(int errorCode) {
+        hardware = null;
+        cancel(cycleTimer);
+        cycleTimer = null;
+        failAll(errorCode);
+    }
+
+    private void requestApply() {
+        if (!applyPosted) {
+            applyPosted = true;
+            scheduler.post(applyTask);
+        }
+    }
+
+    // Brings the hardware scan in line with the clients, as far as the start limit allows
+    private void apply() {
+        ScanConfig desired = merge();
+        long now = scheduler.now();
+        if (desired == null) {
+            cancelRetry();
+            cancel(cycleTimer);
+            cycleTimer = null;
+            stopHardware();
+            cycleEnd = 0;
+            return;
+        }
+        ScanConfig running = hardware;
+        if (running != null) {
+            boolean covered = covers(running, desired);
+            if (covered && covers(desired, running)) {
+                cancelRetry();
+                return;
+            }
+            // Narrowing only saves power, so it leaves one start for a client that needs a restart
+            long at = nextStartAt(now, covered ? 1 : 0);
+            if (at > now) {
+                retryAt(at, now);
+                return;
+            }
+        } else {
+            if (desired.getScanIntervalMillis() > 0 && now < cycleEnd) {
+                // Between two windows; the timer opens the next one
+                cancelRetry();
+                return;
+            }
+            long at = nextStartAt(now, 0);
+            if (at > now) {
+                retryAt(at, now);
+                return;
+            }
+        }
+        start(desired, now);
+    }
+
+    private void start(ScanConfig config, long now) {
+        cancelRetry();
+        cancel(cycleTimer);
+        cycleTimer = null;
+        recordStart(now);
+        if (metrics != null) {
+            metrics.increment(SdkMetrics.Counter.SCAN_STARTS);
+        }
+        // Replaces the running scan, if any
+        if (!transport.startScan(config, this)) {
+            hardware = null;
+            failAll(ScanListener.SCAN_FAILED_UNAVAILABLE);
+            return;
+        }
+        hardware = config;
+        if (config.getScanIntervalMillis() > 0) {
+            cycleEnd = now + config.getScanIntervalMillis();
+            cycleTimer = scheduler.postDelayed(windowEnd, config.getScanWindowMillis());
+        } else {
+            cycleEnd = 0;
+        }
+    }
+
+    private void stopHardware() {
+        if (hardware != null) {
+            hardware = null;
+            transport.stopScan();
+        }
+    }
+
+    private void failAll(int errorCode) {
+        List<Client> failed = new ArrayList<>(clients);
+        clients.clear();
+        publish();
+        for (Client client : failed) {
+            client.active = false;
+            client.sink.onScanFailed(errorCode);
+        }
+    }
+
+    private void retryAt(long at, long now) {
+        if (retryTimer != null) {
+            retryTimer.cancel();
+        } else if (metrics != null) {
+            metrics.increment(SdkMetrics.Counter.SCAN_STARTS_DEFERRED);
+        }
+        retryTimer = scheduler.postDelayed(retryTask, at - now);
+    }
+
+    private void cancelRetry() {
+        cancel(retryTimer);
+        retryTimer = null;
+    }
+
+    private static void cancel(Scheduler.Cancellable timer) {
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    private void recordStart(long now) {
+        if (startCount < MAX_STARTS) {
+            starts[(startHead + startCount++) % MAX_STARTS] = now;
+        } else {
+            starts[startHead] = now;
+            startHead = (startHead + 1) % MAX_STARTS;
+        }
+    }
+
+    /**
+     * Earliest time a start leaves at least reserve more starts within the
+     * limit. Only the last MAX_STARTS starts can still be in the window.
+     */
+    private long nextStartAt(long now, int reserve) {
+        int allowed = MAX_STARTS - reserve;
+        int recent = 0;
+        for (int i = 0; i < startCount; i++) {
+            if (now - starts[(startHead + i) % MAX_STARTS] < THROTTLE_WINDOW_MILLIS + THROTTLE_MARGIN_MILLIS) {
+                recent++;
+            }
+        }
+        if (recent < allowed) {
+            return now;
+        }
+        // Recent starts have to age out until one fewer than allowed remain
+        int index = startCount - allowed;
+        return starts[(startHead + index) % MAX_STARTS] + THROTTLE_WINDOW_MILLIS + THROTTLE_MARGIN_MILLIS;
+    }
+
+    // One hardware config serving every client, or null when there are none
+    private ScanConfig merge() {
+        if (clients.isEmpty()) {
+            return null;
+        }
+        Set<ScanConfig.Filter> filters = new LinkedHashSet<>();
+        boolean unfiltered = false;
+        ScanConfig.ScanMode scanMode = ScanConfig.ScanMode.OPPORTUNISTIC;
+        ScanConfig.MatchMode matchMode = ScanConfig.MatchMode.STICKY;
+        long reportDelay = Long.MAX_VALUE;
+        boolean continuous = false;
+        long window = 0;
+        long interval = Long.MAX_VALUE;
+        for (Client client : clients) {
+            ScanConfig config = client.config;
+            if (config.getFilters().isEmpty()) {
+                unfiltered = true;
+            } else {
+                filters.addAll(config.getFilters());
+            }
+            if (config.getScanMode().ordinal() > scanMode.ordinal()) {
+                scanMode = config.getScanMode();
+            }
+            if (config.getMatchMode() == ScanConfig.MatchMode.AGGRESSIVE) {
+                matchMode = ScanConfig.MatchMode.AGGRESSIVE;
+            }
+            reportDelay = Math.min(reportDelay, config.getReportDelayMillis());
+            if (config.getScanIntervalMillis() == 0) {
+                continuous = true;
+            } else {
+                window = Math.max(window, config.getScanWindowMillis());
+                interval = Math.min(interval, config.getScanIntervalMillis());
+            }
+        }
+        ScanConfig.Builder builder = new ScanConfig.Builder()
+                .setScanMode(scanMode)
+                .setMatchMode(matchMode)
+                .setReportDelayMillis(reportDelay);
+        if (!unfiltered) {
+            for (ScanConfig.Filter filter : filters) {
+                builder.addFilter(filter);
+            }
+        }
+        if (!continuous && window < interval) {
+            builder.setDutyCycle(window, interval);
+        }
+        return builder.build();
+    }
+
+    // Whether a scan with config a delivers at least what b asks for
+    static boolean covers(ScanConfig a, ScanConfig b) {
+        boolean filters = a.getFilters().isEmpty()
+                || (!b.getFilters().isEmpty() && a.getFilters().containsAll(b.getFilters()));
+        boolean duty = a.getScanIntervalMillis() == 0
+                || (b.getScanIntervalMillis() != 0
+                && a.getScanIntervalMillis() <= b.getScanIntervalMillis()
+                && a.getScanWindowMillis() >= b.getScanWindowMillis());
+        return filters
+                && duty
+                && a.getScanMode().ordinal() >= b.getScanMode().ordinal()
+                && (a.getMatchMode() == ScanConfig.MatchMode.AGGRESSIVE
+                || b.getMatchMode() == ScanConfig.MatchMode.STICKY)
+                && a.getReportDelayMillis() <= b.getReportDelayMillis();
+    }
+
+    private void publish() {
+        snapshot = Collections.unmodifiableList(new ArrayList<>(clients));
+    }
+
+    // One logical scan; results stop once it is cancelled or the scan fails
+    final class Client {
+        private final ScanConfig config;
+        private final BleTransport.ScanSink<D> sink;
+        private volatile boolean active = true;
+
+        private Client(ScanConfig config, BleTransport.ScanSink<D> sink) {
+            this.config = config;
+            this.sink = sink;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        void cancel() {
+            if (!active) {
+                return;
+            }
+            active = false;
+            clients.remove(this);
+            publish();
+            requestApply();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.vivek.blutoothsdk;
+
+import java.util.List;
+
+/**
+ * State of one streaming scan: the device table plus the frame coalescer
+ * that turns sightings into ADDED / UPDATED / LOST deltas. Results arrive on
+ * the scanner's thread and ticks on the SDK thread, hence the lock.
+ *
+ * The table holds at most {@link ScanConfig#getMaxDevices()} devices; a new
+ * device beyond that pushes out the one seen least recently, reported LOST.
+ */
+class ScanSession<D> {
+
+    private final ScanConfig config;
+    private final ProximityTable<D> table;
+    private final ScanFrameCoalescer<D> coalescer;
+    private final SdkMetrics metrics;
+    private final BeaconListener beacons;
+    // Reused for every result; results are handled under the lock
+    private final AdvertisementView view = new AdvertisementView();
+
+    ScanSession(ScanConfig config, ScanListener<D> listener) {
+        this(config, listener, null);
+    }
+
+    ScanSession(ScanConfig config, ScanListener<D> listener, SdkMetrics metrics) {
+        this(config, listener, metrics, null);
+    }
+
+    ScanSession(ScanConfig config, ScanListener<D> listener, SdkMetrics metrics, BeaconListener beacons) {
+        this.config = config;
+        this.metrics = metrics;
+        this.beacons = beacons;
+        this.table = new ProximityTable<>(config.getMaxDevices());
+        this.coalescer = new ScanFrameCoalescer<>(
+                config.getFrameIntervalMillis(), config.getMaxChangesPerFrame(), listener);
+    }
+
+    ScanConfig getConfig() {
+        return config;
+    }
+
+    ProximityTable<D> getTable() {
+        return table;
+    }
+
+    // The device with the strongest smoothed RSSI, null if none
+    synchronized D nearest() {
+        int slot = table.nearest();
+        return slot >= 0 ? table.deviceAt(slot) : null;
+    }
+
+    synchronized List<D> byProximity(int max) {
+        return table.byProximity(max);
+    }
+
+    synchronized void onResult(long address, D device, int rssi, byte[] advertisement, long nowMillis) {
+        AdvertisementMatcher matcher = config.getMatcher();
+        AdvertisementDecoders decoders = config.getDecoders();
+        if (matcher != null || decoders != null) {
+            view.reset(advertisement);
+            if (matcher != null && !matcher.matches(view)) {
+                return;
+            }
+            if (decoders != null && beacons != null) {
+                Beacon beacon = decoders.decode(view, address, rssi, nowMillis);
+                if (beacon != null) {
+                    beacons.onBeacon(beacon);
+                }
+            }
+        }
+        boolean added = !table.contains(address);
+        if (added && table.isFull()) {
+            evictOldest(nowMillis);
+        }
+        table.ingest(address, device, rssi, advertisement, nowMillis);
+        if (metrics != null) {
+            metrics.increment(SdkMetrics.Counter.SCAN_RESULTS);
+            if (!added) {
+                metrics.increment(SdkMetrics.Counter.SCAN_DUPLICATES);
+            }
+        }
+        coalescer.offer(added ? ScanDelta.Type.ADDED : ScanDelta.Type.UPDATED, address, device, rssi, nowMillis);
+    }
+
+    // Periodic timer: expire silent devices and push out any trailing frame
+    synchronized void tick(long nowMillis) {
+        long timeout = config.getLostTimeoutMillis();
+        if (timeout > 0 && config.getReportDelayMillis() > 0) {
+            // Batched results arrive late by design; don't call those devices lost
+            timeout = Math.max(timeout, 2 * config.getReportDelayMillis());
+        }
+        if (timeout > 0 && config.getScanIntervalMillis() > 0) {
+            // Nothing is heard between duty cycle windows either
+            timeout = Math.max(timeout, 2 * config.getScanIntervalMillis());
+        }
+        if (timeout > 0) {
+            // Oldest first, so this stops at the first device still in range
+            while (table.size() > 0 && nowMillis - table.lastSeenAt(table.oldest()) > timeout) {
+                evictOldest(nowMillis);
+            }
+        }
+        coalescer.flushIfDue(nowMillis);
+    }
+
+    private void evictOldest(long nowMillis) {
+        int slot = table.oldest();
+        long address = table.addressAt(slot);
+        D device = table.deviceAt(slot);
+        int rssi = table.rssiAt(slot);
+        table.remove(address);
+        coalescer.offer(ScanDelta.Type.LOST, address, device, rssi, nowMillis);
+    }
+
+    synchronized void finish(long nowMillis) {
+        coalescer.flush(nowMillis);
+    }
+}
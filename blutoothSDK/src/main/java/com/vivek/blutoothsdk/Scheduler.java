@@ -0,0 +1,19 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Minimal timer abstraction so queueing and retry logic can run against a
+ * Handler on device and a fake clock in unit tests.
+ */
+interface Scheduler {
+
+    void post(Runnable task);
+
+    Cancellable postDelayed(Runnable task, long delayMillis);
+
+    // Monotonic time in milliseconds
+    long now();
+
+    interface Cancellable {
+        void cancel();
+    }
+}
@@ -0,0 +1,110 @@
+package com.vivek.blutoothsdk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and histograms for the SDK hot paths. Recording is lock-free and
+ * allocation-free so it can stay on for every scan result and GATT operation;
+ * {@link #snapshot()} copies the current values for a monitoring agent to poll.
+ *
+ * Rates such as scan results per second or bytes written per second come from
+ * two snapshots, see {@link MetricsSnapshot#ratePerSecond}.
+ */
+public final class SdkMetrics {
+
+    public enum Counter {
+        SCAN_RESULTS("scan.results"),
+        // Results for a device that was already known; divide by SCAN_RESULTS for the dedup hit rate
+        SCAN_DUPLICATES("scan.duplicates"),
+        // Hardware scan starts, shared by all running scans
+        SCAN_STARTS("scan.starts"),
+        // Restarts held back to stay under the platform's limit of 5 starts per 30 s
+        SCAN_STARTS_DEFERRED("scan.starts_deferred"),
+        CONNECT_ATTEMPTS("connect.attempts"),
+        CONNECT_FAILURES("connect.failures"),
+        GATT_ERROR_133("connect.status_133"),
+        RECONNECTS_SCHEDULED("connect.retries"),
+        GATT_OPERATIONS("gatt.operations"),
+        GATT_FAILURES("gatt.failures"),
+        GATT_TIMEOUTS("gatt.timeouts"),
+        BYTES_WRITTEN("gatt.bytes_written");
+
+        private final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    public enum Histogram {
+        // Milliseconds from connect request to link up
+        CONNECT_LATENCY("connect.latency_ms"),
+        // Milliseconds from link up to services resolved
+        DISCOVERY_LATENCY("discovery.latency_ms"),
+        // Milliseconds from an operation starting on the stack to its completion
+        GATT_LATENCY("gatt.latency_ms"),
+        // Operations ahead of a newly enqueued one, including the one in flight
+        QUEUE_DEPTH("gatt.queue_depth");
+
+        private final String key;
+
+        Histogram(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Histogram[] HISTOGRAMS = Histogram.values();
+
+    private final Scheduler clock;
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+    private final LatencyHistogram[] histograms = new LatencyHistogram[HISTOGRAMS.length];
+
+    SdkMetrics(Scheduler clock) {
+        this.clock = clock;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    void record(Histogram histogram, long value) {
+        histograms[histogram.ordinal()].record(value);
+    }
+
+    // Same clock the connection timers use, so latencies line up with timeouts
+    long now() {
+        return clock.now();
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    public MetricsSnapshot snapshot() {
+        long[] counterValues = new long[COUNTERS.length];
+        for (int i = 0; i < counterValues.length; i++) {
+            counterValues[i] = counters.get(i);
+        }
+        HistogramSnapshot[] histogramValues = new HistogramSnapshot[HISTOGRAMS.length];
+        for (int i = 0; i < histogramValues.length; i++) {
+            histogramValues[i] = histograms[i].snapshot();
+        }
+        return new MetricsSnapshot(clock.now(), counterValues, histogramValues);
+    }
+}
@@ -0,0 +1,189 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A live notification or indication stream from one characteristic. Values
+ * are buffered in a {@link NotificationRing} on the Bluetooth callback
+ * thread and drained to the consumer on the callback executor, one task per
+ * burst rather than per packet. The subscription is re-enabled every time
+ * the device is READY, until it is cancelled.
+ */
+public final class Subscription {
+
+    // Values delivered per executor task before yielding to other work
+    private static final int DRAIN_BATCH = 64;
+
+    private final long address;
+    private final SubscriptionConfig config;
+    private final NotificationConsumer consumer;
+    private final Scheduler scheduler;
+    private final ConnectionManager manager;
+    private final Executor executor;
+    private final BluetoothSDK.Callback<GattResult> enabled;
+    private final NotificationRing ring;
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            if (active) {
+                ring.drain(consumer, DRAIN_BATCH);
+            }
+            // Cleared only after draining, so a pooled executor never runs two drains at once
+            drainPosted.set(false);
+            if (active && ring.size() > 0) {
+                postDrain();
+            }
+        }
+    };
+    private final DeviceConnection.NotificationListener values = new DeviceConnection.NotificationListener() {
+        @Override
+        public void onNotification(UUID service, UUID characteristic, byte[] value) {
+            if (active && characteristic.equals(config.getCharacteristicUuid())
+                    && service.equals(config.getServiceUuid())) {
+                ring.offer(value, scheduler.now());
+                postDrain();
+            }
+        }
+    };
+
+    private volatile boolean active = true;
+    // Scheduler thread only
+    private DeviceConnection connection;
+
+    Subscription(long address, SubscriptionConfig config, NotificationConsumer consumer, Scheduler scheduler,
+                 ConnectionManager manager, Executor executor, BluetoothSDK.Callback<GattResult> enabled) {
+        this.address = address;
+        this.config = config;
+        this.consumer = consumer;
+        this.scheduler = scheduler;
+        this.manager = manager;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.ring = new NotificationRing(config.getCapacity(), config.getMaxValueLength(), config.getBackpressure(),
+                config.getBlockTimeoutMillis());
+    }
+
+    public String getAddress() {
+        return MacAddress.unpack(address);
+    }
+
+    public SubscriptionConfig getConfig() {
+        return config;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // Values that arrived, including those dropped or coalesced
+    public long getReceivedCount() {
+        return ring.getReceived();
+    }
+
+    public long getDeliveredCount() {
+        return ring.getDelivered();
+    }
+
+    // Lost to backpressure: overwritten under DROP_OLDEST or timed out under BLOCK
+    public long getDroppedCount() {
+        return ring.getDropped();
+    }
+
+    // Replaced by a newer value under COALESCE
+    public long getCoalescedCount() {
+        return ring.getCoalesced();
+    }
+
+    // Arrived but not yet delivered
+    public int getBufferedCount() {
+        return ring.size();
+    }
+
+    // Stops delivery now and disables the notifications on the peripheral
+    public void cancel() {
+        if (!active) {
+            return;
+        }
+        close();
+        scheduler.post(new Runnable() {
+            @Override
+            public void run() {
+                manager.unsubscribe(Subscription.this);
+            }
+        });
+    }
+
+    long getPackedAddress() {
+        return address;
+    }
+
+    boolean matches(Subscription other) {
+        return other.config.getServiceUuid().equals(config.getServiceUuid())
+                && other.config.getCharacteristicUuid().equals(config.getCharacteristicUuid());
+    }
+
+    // Stops delivery without touching the link
+    void close() {
+        active = false;
+        ring.clear();
+    }
+
+    // Writes the CCCD on a READY link; it does not survive reconnects to unbonded devices
+    void enable(DeviceConnection ready) {
+        if (!active) {
+            return;
+        }
+        UUID service = config.getServiceUuid();
+        UUID characteristic = config.getCharacteristicUuid();
+        int properties = ready.getProperties(service, characteristic);
+        int required = config.isIndications() ? BluetoothGattCharacteristic.PROPERTY_INDICATE
+                : BluetoothGattCharacteristic.PROPERTY_NOTIFY;
+        if (properties == GattLink.NOT_FOUND || (properties & required) == 0
+                || !ready.hasDescriptor(service, characteristic, GattLayout.CLIENT_CHARACTERISTIC_CONFIG)) {
+            if (enabled != null) {
+                enabled.onResult(GattResult.of(GattOperation.Type.WRITE_DESCRIPTOR, GattResult.STATUS_NOT_FOUND));
+            }
+            return;
+        }
+        connection = ready;
+        ready.removeDirectNotificationListener(values);
+        ready.addDirectNotificationListener(values);
+        GattLink link = ready.getLink();
+        link.setNotificationsEnabled(service, characteristic, true);
+        ready.getQueue().enqueue(GattOperations.writeDescriptor(link, service, characteristic,
+                GattLayout.CLIENT_CHARACTERISTIC_CONFIG, config.isIndications()
+                        ? BluetoothGattDescriptor.ENABLE_INDICATION_VALUE
+                        : BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE,
+                manager.getOperationTimeoutMillis(), enabled));
+    }
+
+    // Stops listening; writes the CCCD off too unless another subscription still uses it
+    void disable(boolean writeDescriptor) {
+        if (connection == null) {
+            return;
+        }
+        connection.removeDirectNotificationListener(values);
+        if (writeDescriptor && connection.getState() == DeviceConnection.State.READY) {
+            UUID service = config.getServiceUuid();
+            UUID characteristic = config.getCharacteristicUuid();
+            GattLink link = connection.getLink();
+            link.setNotificationsEnabled(service, characteristic, false);
+            connection.getQueue().enqueue(GattOperations.writeDescriptor(link, service, characteristic,
+                    GattLayout.CLIENT_CHARACTERISTIC_CONFIG, BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE,
+                    manager.getOperationTimeoutMillis(), null));
+        }
+        connection = null;
+    }
+
+    private void postDrain() {
+        if (drainPosted.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+}
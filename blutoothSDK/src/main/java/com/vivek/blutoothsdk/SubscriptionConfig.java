@@ -0,0 +1,127 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * A notification or indication stream for {@link BluetoothSDK#subscribe}.
+ * Values are copied into a ring of preallocated slots as they arrive and
+ * handed to the consumer in batches, so a fast stream allocates nothing
+ * per packet.
+ */
+public final class SubscriptionConfig {
+
+    // What happens when a value arrives and every slot holds an undelivered one
+    public enum Backpressure {
+        // Discard the oldest undelivered value
+        DROP_OLDEST,
+        // Hold the Bluetooth callback thread until the consumer frees a slot, then drop the value
+        BLOCK,
+        // Replace the newest undelivered value, for streams where only the latest reading matters
+        COALESCE
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+    // Largest attribute value ATT allows
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 512;
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 100;
+
+    private final UUID serviceUuid;
+    private final UUID characteristicUuid;
+    private final boolean indications;
+    private final Backpressure backpressure;
+    private final int capacity;
+    private final int maxValueLength;
+    private final long blockTimeoutMillis;
+
+    private SubscriptionConfig(Builder builder) {
+        this.serviceUuid = builder.serviceUuid;
+        this.characteristicUuid = builder.characteristicUuid;
+        this.indications = builder.indications;
+        this.backpressure = builder.backpressure;
+        this.capacity = builder.capacity;
+        this.maxValueLength = builder.maxValueLength;
+        this.blockTimeoutMillis = builder.blockTimeoutMillis;
+    }
+
+    public UUID getServiceUuid() {
+        return serviceUuid;
+    }
+
+    public UUID getCharacteristicUuid() {
+        return characteristicUuid;
+    }
+
+    public boolean isIndications() {
+        return indications;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    public long getBlockTimeoutMillis() {
+        return blockTimeoutMillis;
+    }
+
+    public static final class Builder {
+        private final UUID serviceUuid;
+        private final UUID characteristicUuid;
+        private boolean indications;
+        private Backpressure backpressure = Backpressure.DROP_OLDEST;
+        private int capacity = DEFAULT_CAPACITY;
+        private int maxValueLength = DEFAULT_MAX_VALUE_LENGTH;
+        private long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+
+        public Builder(UUID serviceUuid, UUID characteristicUuid) {
+            this.serviceUuid = serviceUuid;
+            this.characteristicUuid = characteristicUuid;
+        }
+
+        // Acknowledged indications instead of notifications
+        public Builder setIndications(boolean indications) {
+            this.indications = indications;
+            return this;
+        }
+
+        public Builder setBackpressure(Backpressure backpressure) {
+            this.backpressure = backpressure;
+            return this;
+        }
+
+        // Values buffered between the Bluetooth thread and the consumer
+        public Builder setCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity < 1");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        // Slot size; longer values are truncated. The MTU minus 3 is enough.
+        public Builder setMaxValueLength(int maxValueLength) {
+            if (maxValueLength < 1) {
+                throw new IllegalArgumentException("maxValueLength < 1");
+            }
+            this.maxValueLength = maxValueLength;
+            return this;
+        }
+
+        // Longest BLOCK waits for a free slot before the value is dropped
+        public Builder setBlockTimeoutMillis(long blockTimeoutMillis) {
+            this.blockTimeoutMillis = blockTimeoutMillis;
+            return this;
+        }
+
+        public SubscriptionConfig build() {
+            return new SubscriptionConfig(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.vivek.blutoothsdk;
+
+import java.util.UUID;
+
+/**
+ * Where and how {@link BluetoothSDK#startTransfer} streams a large payload.
+ * Data goes to the data characteristic, write-without-response where the
+ * peripheral allows it. Block checksums, acknowledgements and the resume
+ * handshake go over the control characteristic, which must support write
+ * and notify. See {@link TransferProtocol} for the wire format.
+ */
+public final class TransferConfig {
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_WINDOW_BLOCKS = 4;
+    public static final long DEFAULT_ACK_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    private final UUID serviceUuid;
+    private final UUID dataUuid;
+    private final UUID controlUuid;
+    private final int blockSize;
+    private final int windowBlocks;
+    private final long ackTimeoutMillis;
+    private final int maxRetries;
+
+    private TransferConfig(Builder builder) {
+        this.serviceUuid = builder.serviceUuid;
+        this.dataUuid = builder.dataUuid;
+        this.controlUuid = builder.controlUuid;
+        this.blockSize = builder.blockSize;
+        this.windowBlocks = builder.windowBlocks;
+        this.ackTimeoutMillis = builder.ackTimeoutMillis;
+        this.maxRetries = builder.maxRetries;
+    }
+
+    public UUID getServiceUuid() {
+        return serviceUuid;
+    }
+
+    public UUID getDataUuid() {
+        return dataUuid;
+    }
+
+    public UUID getControlUuid() {
+        return controlUuid;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getWindowBlocks() {
+        return windowBlocks;
+    }
+
+    public long getAckTimeoutMillis() {
+        return ackTimeoutMillis;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public static final class Builder {
+        private final UUID serviceUuid;
+        private final UUID dataUuid;
+        private final UUID controlUuid;
+        private int blockSize = DEFAULT_BLOCK_SIZE;
+        private int windowBlocks = DEFAULT_WINDOW_BLOCKS;
+        private long ackTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+
+        public Builder(UUID serviceUuid, UUID dataUuid, UUID controlUuid) {
+            this.serviceUuid = serviceUuid;
+            this.dataUuid = dataUuid;
+            this.controlUuid = controlUuid;
+        }
+
+        // Bytes covered by one checksum and acknowledgement; a failed block is resent whole
+        public Builder setBlockSize(int blockSize) {
+            if (blockSize < 1) {
+                throw new IllegalArgumentException("blockSize < 1");
+            }
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        // Blocks that may be sent before the oldest one is acknowledged
+        public Builder setWindowBlocks(int windowBlocks) {
+            if (windowBlocks < 1) {
+                throw new IllegalArgumentException("windowBlocks < 1");
+            }
+            this.windowBlocks = windowBlocks;
+            return this;
+        }
+
+        public Builder setAckTimeoutMillis(long ackTimeoutMillis) {
+            this.ackTimeoutMillis = ackTimeoutMillis;
+            return this;
+        }
+
+        // Rejected or unacknowledged blocks in a row before the transfer fails
+        public Builder setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public TransferConfig build() {
+            return new TransferConfig(this);
+        }
+    }
+}
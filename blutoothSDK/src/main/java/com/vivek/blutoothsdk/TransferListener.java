@@ -0,0 +1,15 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Progress of a {@link ChunkedTransfer}, delivered on the callback executor.
+ */
+public interface TransferListener {
+
+    // After every acknowledged block; the rate covers the current connection only
+    void onProgress(long acknowledgedBytes, long totalBytes, double bytesPerSecond);
+
+    // The link went down; the transfer resumes from acknowledgedBytes once it is back
+    void onPaused(long acknowledgedBytes);
+
+    void onFinished(BulkTransferResult result);
+}
@@ -0,0 +1,85 @@
+package com.vivek.blutoothsdk;
+
+/**
+ * Wire format of a chunked transfer. All integers are unsigned 32-bit little
+ * endian.
+ *
+ * <pre>
+ * data     offset, bytes...                   one chunk at its offset in the image
+ * control  START  total                       peripheral answers ACK with the offset it already has
+ *          BLOCK  offset, length, crc32       closes a block; ACK or NAK with the committed offset
+ *          FINISH total, crc32                verifies the whole image; ACK or FAILED
+ * notify   ACK    offset, status
+ * </pre>
+ *
+ * A peripheral only commits a block whose chunks arrived in order and whose
+ * CRC matches, and keeps the committed offset across disconnects so the
+ * sender can resume from it.
+ */
+final class TransferProtocol {
+
+    static final byte OP_START = 0x01;
+    static final byte OP_BLOCK = 0x02;
+    static final byte OP_FINISH = 0x03;
+    static final byte OP_ACK = (byte) 0x81;
+
+    static final int STATUS_OK = 0;
+    // Block missing chunks or failing its CRC; resend from the offset
+    static final int STATUS_NAK = 1;
+    // Whole-image check failed
+    static final int STATUS_FAILED = 2;
+
+    static final int DATA_HEADER = 4;
+    static final int ACK_LENGTH = 6;
+
+    private TransferProtocol() {
+    }
+
+    static byte[] start(long total) {
+        byte[] out = new byte[5];
+        out[0] = OP_START;
+        putInt(out, 1, total);
+        return out;
+    }
+
+    static byte[] block(long offset, int length, long crc) {
+        byte[] out = new byte[13];
+        out[0] = OP_BLOCK;
+        putInt(out, 1, offset);
+        putInt(out, 5, length);
+        putInt(out, 9, crc);
+        return out;
+    }
+
+    static byte[] finish(long total, long crc) {
+        byte[] out = new byte[9];
+        out[0] = OP_FINISH;
+        putInt(out, 1, total);
+        putInt(out, 5, crc);
+        return out;
+    }
+
+    static byte[] ack(long offset, int status) {
+        byte[] out = new byte[ACK_LENGTH];
+        out[0] = OP_ACK;
+        putInt(out, 1, offset);
+        out[5] = (byte) status;
+        return out;
+    }
+
+    static boolean isAck(byte[] value) {
+        return value != null && value.length >= ACK_LENGTH && value[0] == OP_ACK;
+    }
+
+    static void putInt(byte[] out, int index, long value) {
+        out[index] = (byte) value;
+        out[index + 1] = (byte) (value >> 8);
+        out[index + 2] = (byte) (value >> 16);
+        out[index + 3] = (byte) (value >> 24);
+    }
+
+    static long getInt(byte[] in, int index) {
+        return (in[index] & 0xFFL) | (in[index + 1] & 0xFFL) << 8
+                | (in[index + 2] & 0xFFL) << 16 | (in[index + 3] & 0xFFL) << 24;
+    }
+}
@@ -0,0 +1,183 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+// Raw AD structure parsing, compiled matchers and per-company decoders
+public class AdvertisementViewTest {
+
+    private static final int COMPANY_ID = 0x0A12;
+
+    // Flags, 16-bit UUIDs FEAA and 180F, status manufacturer data, service data, name; zero padded
+    private static final byte[] RECORD = {
+            0x02, 0x01, 0x06,
+            0x05, 0x03, (byte) 0xAA, (byte) 0xFE, 0x0F, 0x18,
+            0x07, (byte) 0xFF, 0x12, 0x0A, 0x01, 87, 0x04, 0x2A,
+            0x04, 0x16, 0x0F, 0x18, 0x55,
+            0x07, 0x09, 'R', 'i', 'n', 'g', 'e', 'r',
+            0, 0
+    };
+
+    private final AdvertisementView view = new AdvertisementView();
+
+    @Test
+    public void view_indexesEveryStructureInPlace() {
+        view.reset(RECORD);
+
+        assertEquals(5, view.getStructureCount());
+        assertFalse(view.isTruncated());
+        assertSame(RECORD, view.getData());
+        assertEquals(0x06, view.getFlags());
+        assertEquals(COMPANY_ID, view.getManufacturerId());
+        assertTrue(view.hasServiceUuid16(0x180F));
+        assertFalse(view.hasServiceUuid16(0x1810));
+        assertEquals("Ringer", view.getLocalName());
+        assertEquals(Integer.MIN_VALUE, view.getTxPower());
+
+        int index = view.indexOfManufacturer(COMPANY_ID);
+        assertEquals(87, RECORD[view.getValueOffset(index) + 3]);
+        assertEquals(3, view.indexOfServiceData(0x180F));
+    }
+
+    @Test
+    public void view_stopsAtAStructureThatRunsPastTheEnd() {
+        byte[] truncated = {0x02, 0x01, 0x06, 0x09, (byte) 0xFF, 0x12, 0x0A, 0x01};
+        view.reset(truncated);
+
+        assertTrue(view.isTruncated());
+        assertEquals(1, view.getStructureCount());
+        assertEquals(-1, view.getManufacturerId());
+
+        // A reset with a good record clears the flag
+        view.reset(RECORD);
+        assertFalse(view.isTruncated());
+        view.reset(null);
+        assertEquals(0, view.getStructureCount());
+    }
+
+    @Test
+    public void matcher_appliesMasksToManufacturerData() {
+        view.reset(RECORD);
+        // Status frame with the alarm bit set, battery ignored
+        AdvertisementMatcher alarm = new AdvertisementMatcher.Builder()
+                .manufacturerData(COMPANY_ID, new byte[]{0x01, 0, 0x04}, new byte[]{(byte) 0xFF, 0, 0x04})
+                .build();
+        AdvertisementMatcher otherFrame = new AdvertisementMatcher.Builder()
+                .manufacturerData(COMPANY_ID, new byte[]{0x02}, null)
+                .build();
+        AdvertisementMatcher tooLong = new AdvertisementMatcher.Builder()
+                .manufacturerData(COMPANY_ID, new byte[]{0x01, 87, 0x04, 0x2A, 0x00}, null)
+                .build();
+
+        assertTrue(alarm.matches(view));
+        assertFalse(otherFrame.matches(view));
+        assertFalse(tooLong.matches(view));
+    }
+
+    @Test
+    public void matcher_conditionsAndWithinAnAlternativeAndOrAcross() {
+        view.reset(RECORD);
+        AdvertisementMatcher both = new AdvertisementMatcher.Builder()
+                .serviceUuid16(0xFEAA)
+                .namePrefix("Ring")
+                .serviceData(0x180F, new byte[]{0x50}, new byte[]{(byte) 0xF0})
+                .build();
+        AdvertisementMatcher missingOne = new AdvertisementMatcher.Builder()
+                .serviceUuid16(0xFEAA)
+                .namePrefix("Bell")
+                .build();
+        AdvertisementMatcher eitherOne = new AdvertisementMatcher.Builder()
+                .namePrefix("Bell")
+                .or()
+                .adType(AdvertisementView.TYPE_FLAGS, new byte[]{0x04}, new byte[]{0x04})
+                .build();
+
+        assertTrue(both.matches(view));
+        assertFalse(missingOne.matches(view));
+        assertTrue(eitherOne.matches(view));
+        assertTrue(new AdvertisementMatcher.Builder().build().matches(view));
+    }
+
+    @Test
+    public void decoders_dispatchOnCompanyId() {
+        view.reset(RECORD);
+        AdvertisementDecoders decoders = new AdvertisementDecoders.Builder()
+                .register(0x004C, (data, offset, length) -> "not ours")
+                .register(COMPANY_ID, (data, offset, length) -> length >= 3 && data[offset] == 0x01
+                        ? new int[]{data[offset + 1], data[offset + 2]}
+                        : null)
+                .build();
+
+        Beacon beacon = decoders.decode(view, 0xA4C1380B7FE2L, -61, 1000);
+        assertNotNull(beacon);
+        assertEquals(COMPANY_ID, beacon.getCompanyId());
+        assertArrayEquals(new int[]{87, 4}, beacon.getStatus(int[].class));
+        assertNull(beacon.getStatus(String.class));
+        assertEquals("A4:C1:38:0B:7F:E2", beacon.getAddressString());
+
+        // The decoder rejects other frame types
+        view.reset(new byte[]{0x04, (byte) 0xFF, 0x12, 0x0A, 0x02});
+        assertNull(decoders.decode(view));
+    }
+
+    @Test
+    public void filter_recheckFollowsTheControllerRules() {
+        // 128-bit UUID 2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6, little-endian
+        byte[] record = {
+                0x11, 0x07, (byte) 0xA6, (byte) 0xFF, (byte) 0xA9, 0x1B, (byte) 0x91, (byte) 0xF4, (byte) 0xF2,
+                (byte) 0xAD, 0x0F, 0x4A, 0x6D, (byte) 0xCF, 0x56, 0x34, 0x12, 0x2F
+        };
+        view.reset(record);
+        UUID service = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+
+        assertTrue(view.hasServiceUuid(service, null));
+        assertTrue(view.hasServiceUuid(UUID.fromString("2F123456-0000-0000-0000-000000000000"),
+                UUID.fromString("FFFFFFFF-0000-0000-0000-000000000000")));
+        // 16-bit UUIDs compare in their expanded form
+        view.reset(RECORD);
+        assertTrue(view.hasServiceUuid(UUID.fromString("0000180F-0000-1000-8000-00805F9B34FB"), null));
+        assertTrue(view.hasServiceUuid(UUID.fromString("0000FE00-0000-1000-8000-00805F9B34FB"),
+                UUID.fromString("0000FF00-0000-0000-0000-000000000000")));
+        assertFalse(view.hasServiceUuid(service, null));
+
+        assertTrue(new ScanConfig.Filter.Builder().setDeviceName("Ringer")
+                .setManufacturerData(COMPANY_ID, new byte[]{0x01}, null).build().matches(view));
+        assertFalse(new ScanConfig.Filter.Builder().setDeviceName("Bell").build().matches(view));
+        assertFalse(new ScanConfig.Filter.Builder()
+                .setManufacturerData(COMPANY_ID, new byte[]{0x02}, null).build().matches(view));
+    }
+
+    @Test
+    public void session_dropsUnmatchedResultsAndReportsBeacons() {
+        ScanConfig config = new ScanConfig.Builder()
+                .setMatcher(new AdvertisementMatcher.Builder().manufacturerData(COMPANY_ID, null, null).build())
+                .setDecoders(new AdvertisementDecoders.Builder()
+                        .register(COMPANY_ID, (data, offset, length) -> data[offset + 1] & 0xFF)
+                        .build())
+                .build();
+        final List<Beacon> beacons = new ArrayList<>();
+        ScanSession<String> session = new ScanSession<>(config, new ScanListener<String>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<String>> deltas) {
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+            }
+        }, null, beacons::add);
+
+        session.onResult(1, "status", -60, RECORD, 0);
+        session.onResult(2, "other", -60, new byte[]{0x02, 0x01, 0x06}, 0);
+        session.onResult(1, "status", -58, RECORD, 10);
+
+        assertEquals(1, session.getTable().size());
+        assertEquals(2, beacons.size());
+        assertEquals(Integer.valueOf(87), beacons.get(1).getStatus(Integer.class));
+        assertEquals(-58, beacons.get(1).getRssi());
+    }
+}
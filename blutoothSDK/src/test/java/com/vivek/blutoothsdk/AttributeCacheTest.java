@@ -0,0 +1,87 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AttributeCacheTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID CHARACTERISTIC = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+    private static final UUID OTHER = UUID.fromString("00002a24-0000-1000-8000-00805f9b34fb");
+
+    @Test
+    public void get_resolvesOncePerConnection() {
+        final AtomicInteger lookups = new AtomicInteger();
+        AttributeCache<String> cache = new AttributeCache<>((service, characteristic) -> {
+            lookups.incrementAndGet();
+            return characteristic.equals(CHARACTERISTIC) ? "command" : null;
+        });
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("command", cache.get(SERVICE, CHARACTERISTIC));
+        }
+        assertEquals(1, lookups.get());
+        assertEquals(1, cache.getResolvedCount());
+
+        // Misses go back to the resolver, so late discovery is picked up
+        assertNull(cache.get(SERVICE, OTHER));
+        assertNull(cache.get(SERVICE, OTHER));
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    public void invalidate_forcesFreshLookup() {
+        final String[] current = {"before"};
+        AttributeCache<String> cache = new AttributeCache<>((service, characteristic) -> current[0]);
+
+        assertEquals("before", cache.get(SERVICE, CHARACTERISTIC));
+        current[0] = "after";
+        assertEquals("before", cache.get(SERVICE, CHARACTERISTIC));
+        cache.invalidate();
+        assertEquals("after", cache.get(SERVICE, CHARACTERISTIC));
+    }
+
+    @Test
+    public void layout_roundTripsThroughEncoding() {
+        GattLayout layout = new GattLayout.Builder()
+                .addService(GattLayout.GENERIC_ATTRIBUTE_SERVICE)
+                .addCharacteristic(GattLayout.GENERIC_ATTRIBUTE_SERVICE, GattLayout.DATABASE_HASH)
+                .addService(SERVICE)
+                .addCharacteristic(SERVICE, CHARACTERISTIC)
+                .addCharacteristic(SERVICE, OTHER)
+                .setDatabaseHash(new byte[]{0x12, (byte) 0xAB, 0x00, 0x7F})
+                .build();
+
+        GattLayout decoded = GattLayout.decode(layout.encode());
+        assertNotNull(decoded);
+        assertTrue(decoded.sameLayout(layout));
+        assertEquals(layout.getHash(), decoded.getHash());
+        assertArrayEquals(new byte[]{0x12, (byte) 0xAB, 0x00, 0x7F}, decoded.getDatabaseHash());
+        assertTrue(decoded.hasCharacteristic(SERVICE, OTHER));
+        assertFalse(decoded.hasCharacteristic(GattLayout.GENERIC_ATTRIBUTE_SERVICE, OTHER));
+        assertNull(GattLayout.decode("not a layout"));
+    }
+
+    @Test
+    public void layout_hashTracksChanges() {
+        GattLayout a = new GattLayout.Builder()
+                .addService(SERVICE).addCharacteristic(SERVICE, CHARACTERISTIC).build();
+        GattLayout same = new GattLayout.Builder()
+                .addService(SERVICE).addCharacteristic(SERVICE, CHARACTERISTIC).build();
+        GattLayout moved = new GattLayout.Builder()
+                .addService(SERVICE).addService(GattLayout.GENERIC_ATTRIBUTE_SERVICE)
+                .addCharacteristic(GattLayout.GENERIC_ATTRIBUTE_SERVICE, CHARACTERISTIC).build();
+
+        assertEquals(a.getHash(), same.getHash());
+        assertTrue(a.sameLayout(same));
+        assertNotEquals(a.getHash(), moved.getHash());
+        assertFalse(a.sameLayout(moved));
+        // The peripheral's database hash takes over once known
+        assertNotEquals(a.getHash(), a.withDatabaseHash(new byte[]{1}).getHash());
+        assertTrue(a.sameLayout(a.withDatabaseHash(new byte[]{1})));
+    }
+}
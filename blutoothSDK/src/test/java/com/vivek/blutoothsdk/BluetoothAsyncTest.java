@@ -0,0 +1,223 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+// Futures and streams over the simulator, with callbacks delivered inline
+public class BluetoothAsyncTest {
+
+    private static final long ADDRESS = 0xA4C1380B7FE2L;
+    private static final String ADDRESS_TEXT = MacAddress.unpack(ADDRESS);
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID CONTROL = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+    private static final int PROPERTIES = BluetoothGattCharacteristic.PROPERTY_READ
+            | BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_NOTIFY;
+
+    private FakeScheduler scheduler;
+    private SimulatedTransport transport;
+    private SimulatedPeripheral device;
+    private ConnectionManager manager;
+    private BluetoothAsync async;
+    private final List<Integer> values = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        transport = new SimulatedTransport(scheduler, 1);
+        device = new SimulatedPeripheral(ADDRESS)
+                .addCharacteristic(SERVICE, CONTROL, PROPERTIES, new byte[]{1});
+        transport.add(device);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        async = new BluetoothAsync(scheduler, manager, new CallbackDispatcher(Runnable::run), new CommandWriter(),
+                (address, callback) -> manager.connect(MacAddress.pack(address), null, callback),
+                (config, listener) -> null);
+    }
+
+    @Test
+    public void connectWriteRead_compose() throws Exception {
+        CompletableFuture<byte[]> read = async.connect(ADDRESS_TEXT, 5000)
+                .thenCompose(connected -> async.write(ADDRESS_TEXT, SERVICE, CONTROL, new byte[]{7},
+                        BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT, 1000))
+                .thenCompose(written -> async.read(ADDRESS_TEXT, SERVICE, CONTROL, 1000));
+        scheduler.advance(2000);
+
+        assertTrue(read.isDone());
+        assertArrayEquals(new byte[]{7}, read.get());
+    }
+
+    @Test
+    public void timeout_failsTheFutureAndDropsTheQueuedOperation() {
+        connect();
+        device.setLatencyMillis(200);
+        CompletableFuture<Void> first = write(1, 1000);
+        CompletableFuture<Void> second = write(2, 50);
+        scheduler.advance(1000);
+
+        assertFalse(first.isCompletedExceptionally());
+        assertEquals(CommandResult.Status.TIMEOUT, statusOf(second));
+        // The second write never reached the peripheral
+        assertEquals(1, device.getWritesReceived());
+    }
+
+    @Test
+    public void cancel_dropsAQueuedOperation() {
+        connect();
+        device.setLatencyMillis(200);
+        CompletableFuture<Void> first = write(1, 1000);
+        CompletableFuture<Void> second = write(2, 1000);
+        scheduler.advance(10);
+        assertTrue(second.cancel(true));
+        scheduler.advance(1000);
+
+        assertTrue(first.isDone());
+        assertFalse(first.isCompletedExceptionally());
+        assertEquals(1, device.getWritesReceived());
+        assertArrayEquals(new byte[]{1}, device.getValue(SERVICE, CONTROL));
+    }
+
+    @Test
+    public void connectTimeout_abandonsTheAttempt() {
+        device.setConnectLatencyMillis(5000);
+        CompletableFuture<BluetoothDevice> connected = async.connect(ADDRESS_TEXT, 1000);
+        scheduler.advance(8000);
+
+        assertEquals(CommandResult.Status.TIMEOUT, statusOf(connected));
+        // Disconnected and closed rather than left to finish later
+        assertNull(manager.get(ADDRESS_TEXT));
+        assertFalse(device.isConnected());
+    }
+
+    @Test
+    public void notifications_deliverOnlyWhatWasRequested() {
+        connect();
+        BleStream<byte[]> stream = async.notifications(ADDRESS_TEXT,
+                new SubscriptionConfig.Builder(SERVICE, CONTROL).build(), 4, 0, observer());
+        scheduler.advance(100);
+        assertTrue(device.isSubscribed(CONTROL));
+        for (int i = 0; i < 10; i++) {
+            device.notify(SERVICE, CONTROL, new byte[]{(byte) i});
+            scheduler.advance(10);
+        }
+        assertTrue(values.isEmpty());
+
+        stream.request(2);
+        // The buffer kept the newest four; the observer asked for two of them
+        assertEquals(Arrays.asList(6, 7), values);
+        assertEquals(6, stream.getDroppedCount());
+        assertEquals(2, stream.getBufferedCount());
+
+        stream.cancel();
+        scheduler.advance(100);
+        assertFalse(device.isSubscribed(CONTROL));
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void notifications_idleTimeoutEndsTheStream() {
+        connect();
+        BleStream<byte[]> stream = async.notifications(ADDRESS_TEXT,
+                new SubscriptionConfig.Builder(SERVICE, CONTROL).build(), 4, 300, observer());
+        stream.request(Long.MAX_VALUE);
+        scheduler.advance(100);
+        device.notify(SERVICE, CONTROL, new byte[]{5});
+        scheduler.advance(200);
+        // The value reset the idle clock
+        assertTrue(errors.isEmpty());
+        scheduler.advance(500);
+
+        assertEquals(Arrays.asList(5), values);
+        assertEquals(1, errors.size());
+        assertEquals(CommandResult.Status.TIMEOUT, ((BluetoothException) errors.get(0)).getStatus());
+        assertTrue(stream.isDone());
+        assertFalse(device.isSubscribed(CONTROL));
+    }
+
+    @Test
+    public void scanFailingInsideStart_stopsTheHandle() {
+        final ScanHandle[] handle = new ScanHandle[1];
+        async = new BluetoothAsync(scheduler, manager, new CallbackDispatcher(Runnable::run), new CommandWriter(),
+                (address, callback) -> manager.connect(MacAddress.pack(address), null, callback),
+                (config, listener) -> {
+                    handle[0] = new ScanHandle(() -> { });
+                    // Delivered inline, before start() returns
+                    listener.onScanFailed(2);
+                    return handle[0];
+                });
+        BleStream<ScanDelta<BluetoothDevice>> stream = async.scan(
+                new ScanConfig.Builder().setDurationMillis(5000).build(), 4, 0,
+                new BleStream.Observer<ScanDelta<BluetoothDevice>>() {
+                    @Override
+                    public void onNext(ScanDelta<BluetoothDevice> delta) {
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        errors.add(error);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                    }
+                });
+        stream.request(Long.MAX_VALUE);
+
+        assertTrue(stream.isDone());
+        assertEquals(1, errors.size());
+        assertFalse(handle[0].isActive());
+        // The duration timer went with it
+        assertEquals(0, scheduler.pendingTasks());
+    }
+
+    private void connect() {
+        manager.connect(ADDRESS, null, null);
+        scheduler.advance(500);
+    }
+
+    private CompletableFuture<Void> write(int value, long timeoutMillis) {
+        return async.write(ADDRESS_TEXT, SERVICE, CONTROL, new byte[]{(byte) value},
+                BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT, timeoutMillis);
+    }
+
+    private BleStream.Observer<byte[]> observer() {
+        return new BleStream.Observer<byte[]>() {
+            @Override
+            public void onNext(byte[] value) {
+                values.add(value[0] & 0xFF);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+
+    private static CommandResult.Status statusOf(CompletableFuture<?> future) {
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            throw new AssertionError("not failed");
+        } catch (ExecutionException e) {
+            return ((BluetoothException) e.getCause()).getStatus();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
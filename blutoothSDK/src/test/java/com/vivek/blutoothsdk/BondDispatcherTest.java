@@ -0,0 +1,110 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BondDispatcherTest {
+
+    private FakeScheduler scheduler;
+    private SimulatedTransport transport;
+    private SimulatedPeripheral ringer;
+    private ConnectionManager manager;
+    private final DeviceConnectionTest.RecordingPairing pairing = new DeviceConnectionTest.RecordingPairing();
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        transport = new SimulatedTransport(scheduler, 1);
+        ringer = new SimulatedPeripheral(1).setBondingMillis(1500);
+        transport.add(ringer);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+    }
+
+    @Test
+    public void unbondedDevice_pairsThenConnects() {
+        manager.bondAndConnect(1, null, pairing);
+        assertTrue(transport.isListeningForBonds());
+        scheduler.advance(1000);
+        assertEquals(0, transport.getLinksOpened());
+
+        scheduler.advance(1000);
+        assertTrue(ringer.isBonded());
+        assertEquals(DeviceConnection.State.READY, manager.get(MacAddress.unpack(1)).getState());
+        assertEquals(1, pairing.paired);
+        assertFalse(transport.isListeningForBonds());
+    }
+
+    @Test
+    public void bondedDevice_connectsWithoutPairing() {
+        ringer.setBonded(true);
+        manager.bondAndConnect(1, null, pairing);
+        assertFalse(transport.isListeningForBonds());
+        scheduler.advance(500);
+        assertEquals(1, pairing.paired);
+    }
+
+    @Test
+    public void concurrentRequests_shareOneBond() {
+        final List<Boolean> results = new ArrayList<>();
+        BondDispatcher bonds = manager.getBonds();
+        bonds.bond(1, results::add);
+        bonds.bond(1, results::add);
+        assertEquals(1, bonds.getPendingCount());
+
+        scheduler.advance(2000);
+        assertEquals(2, results.size());
+        assertTrue(results.get(0) && results.get(1));
+        assertEquals(0, bonds.getPendingCount());
+    }
+
+    @Test
+    public void rejectedPairing_failsWithoutConnecting() {
+        ringer.setAcceptsBonding(false);
+        manager.bondAndConnect(1, null, pairing);
+        scheduler.advance(2000);
+
+        assertEquals(1, pairing.failed);
+        assertEquals(0, pairing.paired);
+        assertEquals(0, transport.getLinksOpened());
+        assertFalse(transport.isListeningForBonds());
+    }
+
+    @Test
+    public void eventsForOtherDevices_areNotDelivered() {
+        SimulatedPeripheral other = new SimulatedPeripheral(2).setBondingMillis(200).setAcceptsBonding(false);
+        transport.add(other);
+        final List<Boolean> first = new ArrayList<>();
+        final List<Boolean> second = new ArrayList<>();
+        BondDispatcher bonds = manager.getBonds();
+        bonds.bond(1, first::add);
+        bonds.bond(2, second::add);
+
+        scheduler.advance(500);
+        assertEquals(1, second.size());
+        assertFalse(second.get(0));
+        assertTrue(first.isEmpty());
+        assertTrue(transport.isListeningForBonds());
+
+        scheduler.advance(1500);
+        assertEquals(1, first.size());
+        assertTrue(first.get(0));
+    }
+
+    @Test
+    public void pairingThatNeverFinishes_timesOut() {
+        ringer.setBondingMillis(120000);
+        manager.bondAndConnect(1, null, pairing);
+        scheduler.advance(BondDispatcher.DEFAULT_TIMEOUT_MILLIS - 1);
+        assertEquals(0, pairing.failed);
+
+        scheduler.advance(1);
+        assertEquals(1, pairing.failed);
+        assertFalse(transport.isListeningForBonds());
+        assertEquals(0, manager.getBonds().getPendingCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class BulkWriterTest {
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final GattOperationQueue queue = new GattOperationQueue(scheduler);
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private BulkTransferResult result;
+    private int mtuRequested;
+    private int busyAnswers;
+    private int refusal = GattResult.STATUS_BUSY;
+    private int attempts;
+
+    private final BulkWriter.ChunkSink sink = new BulkWriter.ChunkSink() {
+        @Override
+        public GattOperation requestMtu(int mtu, BluetoothSDK.Callback<GattResult> callback) {
+            mtuRequested = mtu;
+            return new GattOperation(GattOperation.Type.REQUEST_MTU, null, 1000, () -> true, callback);
+        }
+
+        @Override
+        public GattOperation writeChunk(byte[] chunk, BluetoothSDK.Callback<GattResult> callback) {
+            GattOperation.StatusStarter starter = () -> {
+                attempts++;
+                if (busyAnswers > 0) {
+                    busyAnswers--;
+                    return refusal;
+                }
+                received.write(chunk, 0, chunk.length);
+                return GattResult.GATT_SUCCESS;
+            };
+            return new GattOperation(GattOperation.Type.WRITE_CHARACTERISTIC, null, 1000, starter, callback, chunk.length);
+        }
+    };
+
+    private void ackWrites() {
+        while (queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, null,
+                GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.GATT_SUCCESS))) {
+            scheduler.advance(1);
+        }
+    }
+
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void payload_isFragmentedToNegotiatedMtu() {
+        byte[] data = payload(4096);
+        new BulkWriter(queue, scheduler, sink, data, r -> result = r).start(BulkWriter.MAX_MTU);
+        assertEquals(517, mtuRequested);
+
+        queue.onComplete(GattOperation.Type.REQUEST_MTU, null,
+                new GattResult(GattOperation.Type.REQUEST_MTU, GattResult.GATT_SUCCESS, null, 247));
+        assertEquals(244, received.size());
+        ackWrites();
+
+        assertTrue(result.isSuccess());
+        assertEquals(4096, result.getBytesWritten());
+        assertEquals(247, result.getMtu());
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    public void refusedMtu_fallsBackToDefault() {
+        new BulkWriter(queue, scheduler, sink, payload(50), r -> result = r).start(BulkWriter.MAX_MTU);
+        queue.onComplete(GattOperation.Type.REQUEST_MTU, null,
+                GattResult.of(GattOperation.Type.REQUEST_MTU, 0x06));
+        assertEquals(20, received.size());
+        ackWrites();
+
+        assertEquals(23, result.getMtu());
+        assertEquals(50, received.size());
+    }
+
+    @Test
+    public void busyStack_isRetriedWithoutLosingChunks() {
+        byte[] data = payload(100);
+        busyAnswers = 3;
+        new BulkWriter(queue, scheduler, sink, data, r -> result = r).start(BulkWriter.DEFAULT_MTU);
+        for (int i = 0; i < 10 && result == null; i++) {
+            scheduler.advance(10);
+            ackWrites();
+        }
+
+        assertTrue(result.isSuccess());
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    public void refusedWrite_failsWithoutRetrying() {
+        // e.g. BLUETOOTH_CONNECT revoked: retrying cannot help
+        busyAnswers = 3;
+        refusal = GattResult.STATUS_REJECTED;
+        new BulkWriter(queue, scheduler, sink, payload(100), r -> result = r).start(BulkWriter.DEFAULT_MTU);
+        scheduler.advance(100);
+
+        assertEquals(GattResult.STATUS_REJECTED, result.getStatus());
+        assertEquals(1, attempts);
+        assertEquals(0, result.getBytesWritten());
+    }
+
+    @Test
+    public void failedWrite_reportsBytesDelivered() {
+        new BulkWriter(queue, scheduler, sink, payload(100), r -> result = r).start(BulkWriter.DEFAULT_MTU);
+        queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, null,
+                GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.GATT_SUCCESS));
+        queue.clear(GattResult.STATUS_CANCELLED);
+
+        assertEquals(GattResult.STATUS_CANCELLED, result.getStatus());
+        assertEquals(20, result.getBytesWritten());
+    }
+}
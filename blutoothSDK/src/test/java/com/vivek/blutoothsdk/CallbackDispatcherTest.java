@@ -0,0 +1,87 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CallbackDispatcherTest {
+
+    // Runs tasks only when drained, like a Handler or thread pool would
+    private static final class QueueExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        int drain() {
+            int n = tasks.size();
+            for (Runnable task : new ArrayList<>(tasks)) {
+                task.run();
+            }
+            tasks.clear();
+            return n;
+        }
+    }
+
+    @Test
+    public void wrap_deliversOnExecutorNotCallerThread() {
+        QueueExecutor executor = new QueueExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor);
+        final List<String> received = new ArrayList<>();
+
+        BluetoothSDK.Callback<String> callback = dispatcher.wrap(received::add);
+        callback.onResult("ack");
+        assertTrue(received.isEmpty());
+        assertEquals(1, executor.drain());
+        assertEquals(Collections.singletonList("ack"), received);
+        assertNull(dispatcher.wrap((BluetoothSDK.Callback<String>) null));
+    }
+
+    @Test
+    public void setExecutor_appliesToAlreadyWrappedCallbacks() {
+        QueueExecutor first = new QueueExecutor();
+        QueueExecutor second = new QueueExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(first);
+        final List<Integer> received = new ArrayList<>();
+
+        BluetoothSDK.Callback<Integer> callback = dispatcher.wrap(received::add);
+        dispatcher.setExecutor(second);
+        callback.onResult(7);
+        assertEquals(0, first.drain());
+        assertEquals(1, second.drain());
+        assertEquals(Collections.singletonList(7), received);
+    }
+
+    @Test
+    public void wrap_forwardsScanFramesAndFailures() {
+        QueueExecutor executor = new QueueExecutor();
+        CallbackDispatcher dispatcher = new CallbackDispatcher(executor);
+        final List<Object> received = new ArrayList<>();
+
+        ScanListener<String> listener = dispatcher.wrap(new ScanListener<String>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<String>> frame) {
+                received.add(frame.size());
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                received.add("failed " + errorCode);
+            }
+        });
+        listener.onScanFrame(Collections.<ScanDelta<String>>emptyList());
+        listener.onScanFailed(2);
+        assertTrue(received.isEmpty());
+        executor.drain();
+        assertEquals(2, received.size());
+        assertEquals(0, received.get(0));
+        assertEquals("failed 2", received.get(1));
+    }
+}
@@ -0,0 +1,179 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+// Windowed, resumable transfer against the simulated receiver
+public class ChunkedTransferTest {
+
+    private static final long ADDRESS = 0xA4C1380B7FE2L;
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID DATA = UUID.fromString("00002a30-0000-1000-8000-00805f9b34fb");
+    private static final UUID CONTROL = UUID.fromString("00002a31-0000-1000-8000-00805f9b34fb");
+
+    private FakeScheduler scheduler;
+    private SimulatedPeripheral device;
+    private SimulatedTransferReceiver receiver;
+    private ConnectionManager manager;
+    private final RecordingListener listener = new RecordingListener();
+    private byte[] image;
+
+    static final class RecordingListener implements TransferListener {
+        int progress;
+        long lastAcknowledged;
+        double lastRate;
+        long pausedAt = -1;
+        BulkTransferResult result;
+
+        @Override
+        public void onProgress(long acknowledgedBytes, long totalBytes, double bytesPerSecond) {
+            progress++;
+            lastAcknowledged = acknowledgedBytes;
+            lastRate = bytesPerSecond;
+        }
+
+        @Override
+        public void onPaused(long acknowledgedBytes) {
+            pausedAt = acknowledgedBytes;
+        }
+
+        @Override
+        public void onFinished(BulkTransferResult result) {
+            this.result = result;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 7);
+        device = new SimulatedPeripheral(ADDRESS);
+        receiver = new SimulatedTransferReceiver(device, SERVICE, DATA, CONTROL);
+        transport.add(device);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        manager.setReconnectPolicy(new ReconnectPolicy.Builder()
+                .setInitialDelayMillis(100)
+                .setJitter(0)
+                .build());
+        manager.connect(ADDRESS, null, null);
+        scheduler.advance(500);
+        image = new byte[20000];
+        new Random(1).nextBytes(image);
+    }
+
+    @Test
+    public void transfer_deliversImageAndReportsProgress() {
+        ChunkedTransfer transfer = start(new TransferConfig.Builder(SERVICE, DATA, CONTROL).build());
+        scheduler.advance(10000);
+
+        assertTrue(transfer.isFinished());
+        assertTrue(listener.result.isSuccess());
+        assertEquals(image.length, listener.result.getBytesWritten());
+        assertArrayEquals(image, receiver.getImage());
+        assertTrue(receiver.isComplete());
+        // One acknowledgement per 4 KiB block
+        assertEquals(5, listener.progress);
+        assertEquals(image.length, listener.lastAcknowledged);
+        assertTrue(listener.lastRate > 0);
+        assertEquals(0, receiver.getNaks());
+    }
+
+    @Test
+    public void corruptedBlock_isResentFromCommittedOffset() {
+        receiver.corruptNextChunk();
+        start(new TransferConfig.Builder(SERVICE, DATA, CONTROL).build());
+        scheduler.advance(10000);
+
+        assertTrue(listener.result.isSuccess());
+        assertArrayEquals(image, receiver.getImage());
+        assertTrue(receiver.getNaks() >= 1);
+    }
+
+    @Test
+    public void linkLoss_pausesAndResumesWithoutResendingCommittedBlocks() {
+        ChunkedTransfer transfer = start(new TransferConfig.Builder(SERVICE, DATA, CONTROL)
+                .setBlockSize(2048)
+                .build());
+        while (receiver.getCommitted() < 8192) {
+            scheduler.advance(5);
+        }
+        device.dropLink(GattStatus.CONNECTION_TIMEOUT);
+        scheduler.advance(1);
+        assertFalse(transfer.isFinished());
+        // Acknowledgements may still be on their way
+        assertTrue(listener.pausedAt >= 4096);
+        int before = device.getWritesReceived();
+
+        scheduler.advance(10000);
+        assertTrue(listener.result.isSuccess());
+        assertArrayEquals(image, receiver.getImage());
+        assertEquals(2, receiver.getStarts());
+        // The rest of the image plus at most one window of uncommitted blocks
+        int chunk = 247 - 3 - TransferProtocol.DATA_HEADER;
+        long limit = (image.length - listener.pausedAt + 4 * 2048) / chunk + 20;
+        int sent = device.getWritesReceived() - before;
+        assertTrue("sent=" + sent, sent < limit);
+    }
+
+    @Test
+    public void packetLoss_isRecoveredByTimeoutsAndNaks() {
+        device.setPacketLoss(0.02);
+        start(new TransferConfig.Builder(SERVICE, DATA, CONTROL)
+                .setAckTimeoutMillis(300)
+                .setMaxRetries(20)
+                .build());
+        scheduler.advance(60000);
+
+        assertTrue(String.valueOf(listener.result), listener.result.isSuccess());
+        assertArrayEquals(image, receiver.getImage());
+    }
+
+    @Test
+    public void transfer_sendsOnlyTheBytesAfterTheCallersPosition() {
+        // An image behind a 16-byte header, with trailing bytes past the limit
+        byte[] file = new byte[16 + image.length + 8];
+        System.arraycopy(image, 0, file, 16, image.length);
+        ByteBuffer data = ByteBuffer.wrap(file);
+        data.position(16);
+        data.limit(16 + image.length);
+        manager.startTransfer(new ChunkedTransfer(ADDRESS, new TransferConfig.Builder(SERVICE, DATA, CONTROL).build(),
+                data, scheduler, manager, listener), listener);
+        scheduler.advance(10000);
+
+        assertTrue(String.valueOf(listener.result), listener.result.isSuccess());
+        assertArrayEquals(image, receiver.getImage());
+        assertTrue(receiver.isComplete());
+        assertEquals(16, data.position());
+    }
+
+    @Test
+    public void cancel_stopsTheTransfer() {
+        ChunkedTransfer transfer = start(new TransferConfig.Builder(SERVICE, DATA, CONTROL).build());
+        scheduler.advance(50);
+        transfer.cancel();
+        scheduler.advance(10000);
+
+        assertEquals(GattResult.STATUS_CANCELLED, listener.result.getStatus());
+        assertFalse(receiver.isComplete());
+
+        // The device is free for the next transfer
+        RecordingListener second = new RecordingListener();
+        manager.startTransfer(new ChunkedTransfer(ADDRESS, new TransferConfig.Builder(SERVICE, DATA, CONTROL).build(),
+                ByteBuffer.wrap(image), scheduler, manager, second), second);
+        scheduler.advance(10000);
+        assertTrue(second.result.isSuccess());
+    }
+
+    private ChunkedTransfer start(TransferConfig config) {
+        ChunkedTransfer transfer = new ChunkedTransfer(ADDRESS, config, ByteBuffer.wrap(image), scheduler, manager,
+                listener);
+        manager.startTransfer(transfer, listener);
+        return transfer;
+    }
+}
@@ -0,0 +1,131 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class CommandCodecTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID COMMAND = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+
+    enum Ring {
+        START,
+        STOP
+    }
+
+    // Opcode byte plus a little-endian duration
+    static final class RingFor {
+        final int millis;
+
+        RingFor(int millis) {
+            this.millis = millis;
+        }
+    }
+
+    private static final CommandEncoder<Ring> RING = new CommandEncoder<Ring>() {
+        @Override
+        public void encode(Ring command, ByteBuffer out) {
+            out.put((byte) (command == Ring.START ? 0x01 : 0x02));
+        }
+    };
+
+    private static final CommandEncoder<RingFor> RING_FOR = new CommandEncoder<RingFor>() {
+        @Override
+        public void encode(RingFor command, ByteBuffer out) {
+            out.put((byte) 0x03).put((byte) command.millis).put((byte) (command.millis >> 8));
+        }
+    };
+
+    @Test
+    public void writer_reusesRecycledArrays() {
+        CommandWriter writer = new CommandWriter();
+        byte[] first = writer.encode(new RingFor(500), RING_FOR);
+        assertArrayEquals(new byte[]{0x03, (byte) 0xF4, 0x01}, first);
+        writer.recycle(first);
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] value = writer.encode(new RingFor(i), RING_FOR);
+            assertSame(first, value);
+            assertEquals((byte) i, value[1]);
+            writer.recycle(value);
+        }
+        assertEquals(1, writer.getAllocatedCount());
+    }
+
+    @Test
+    public void writer_failsOversizedCommands() {
+        CommandWriter writer = new CommandWriter();
+        byte[] value = writer.encode(new byte[CommandWriter.MAX_COMMAND_LENGTH + 1], new CommandEncoder<byte[]>() {
+            @Override
+            public void encode(byte[] command, ByteBuffer out) {
+                out.put(command);
+            }
+        });
+        assertNull(value);
+        // The buffer is cleared before the next command
+        assertArrayEquals(new byte[]{0x01}, writer.encode(Ring.START, RING));
+    }
+
+    @Test
+    public void cache_encodesEachCommandOnce() {
+        CommandCache<Ring> cache = new CommandCache<>(RING);
+        EncodedCommand start = cache.get(Ring.START);
+        assertSame(start, cache.get(Ring.START));
+        assertArrayEquals(new byte[]{0x02}, cache.get(Ring.STOP).toByteArray());
+        assertEquals(2, cache.size());
+
+        start.toByteArray()[0] = 0x7F;
+        assertEquals(0x01, start.bytes()[0]);
+    }
+
+    @Test
+    public void result_mapsGattStatuses() {
+        CommandResult ok = CommandResult.from(GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, 0));
+        assertTrue(ok.isSuccess());
+        assertSame(ok, CommandResult.of(CommandResult.Status.SUCCESS));
+        assertEquals(CommandResult.Status.TIMEOUT, CommandResult.from(
+                GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.STATUS_TIMEOUT)).getStatus());
+
+        CommandResult error = CommandResult.from(GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, 0x03));
+        assertEquals(CommandResult.Status.GATT_ERROR, error.getStatus());
+        assertEquals(0x03, error.getGattStatus());
+    }
+
+    // A recycled array is overwritten by the next command; the peripheral must
+    // still receive what was sent
+    @Test
+    public void pooledWrites_arriveIntact() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 1);
+        SimulatedPeripheral ringer = new SimulatedPeripheral(1)
+                .addCharacteristic(SERVICE, COMMAND, BluetoothGattCharacteristic.PROPERTY_WRITE, new byte[]{0});
+        transport.add(ringer);
+        ConnectionManager manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        DeviceConnection connection = manager.connect(1, null, null);
+        scheduler.advance(500);
+
+        final CommandWriter writer = new CommandWriter();
+        final int[] succeeded = new int[1];
+        for (int i = 0; i < 3; i++) {
+            final byte[] value = writer.encode(new RingFor(0x100 + i), RING_FOR);
+            connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), SERVICE, COMMAND,
+                    value, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT, 1000, result -> {
+                        writer.recycle(value);
+                        if (CommandResult.from(result).isSuccess()) {
+                            succeeded[0]++;
+                        }
+                    }));
+            scheduler.advance(100);
+        }
+
+        assertEquals(3, succeeded[0]);
+        assertEquals(1, writer.getAllocatedCount());
+        assertArrayEquals(new byte[]{3, 0, 1, 3, 1, 1, 3, 2, 1}, ringer.getReceivedBytes());
+    }
+}
@@ -0,0 +1,182 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+// Find-and-connect against the simulated transport
+public class ConnectPipelineTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID COMMAND = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+    private static final long FIRST = 0xA4C1380B0001L;
+
+    private FakeScheduler scheduler;
+    private SimulatedTransport transport;
+    private ConnectionManager manager;
+    private final List<Long> attempts = new ArrayList<>();
+    private int finished;
+    private int maxInFlight;
+    private ConnectPipeline<SimulatedPeripheral> pipeline;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        transport = new SimulatedTransport(scheduler, 3);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+    }
+
+    private SimulatedPeripheral ringer(int index, int rssi) {
+        SimulatedPeripheral peripheral = new SimulatedPeripheral(FIRST + index)
+                .setName("RingerDevice")
+                .setRssi(rssi)
+                .addCharacteristic(SERVICE, COMMAND, BluetoothGattCharacteristic.PROPERTY_WRITE, new byte[]{1});
+        transport.add(peripheral);
+        return peripheral;
+    }
+
+    private ConnectPipeline<SimulatedPeripheral> start(ConnectTarget target) {
+        pipeline = new ConnectPipeline<>(target, scheduler, new ConnectPipeline.Connector<SimulatedPeripheral>() {
+            @Override
+            public void connect(long address, SimulatedPeripheral device, final BluetoothSDK.Callback<Boolean> done) {
+                attempts.add(address);
+                maxInFlight = Math.max(maxInFlight, pipeline.getInFlight());
+                manager.connect(address, null, new BluetoothSDK.PairingCallback() {
+                    @Override
+                    public void onPaired(BluetoothDevice paired) {
+                        done.onResult(true);
+                    }
+
+                    @Override
+                    public void onPairingFailed(BluetoothDevice failed) {
+                        done.onResult(false);
+                    }
+                });
+            }
+
+            @Override
+            public void finished(ConnectPipeline<SimulatedPeripheral> done) {
+                finished++;
+                transport.stopScan();
+            }
+        });
+        transport.startScan(target.toScanConfig(), new BleTransport.ScanSink<SimulatedPeripheral>() {
+            @Override
+            public void onScanResult(long address, SimulatedPeripheral device, int rssi, byte[] advertisement,
+                                     long nowMillis) {
+                pipeline.onResult(address, device, rssi, nowMillis);
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                fail();
+            }
+        });
+        return pipeline;
+    }
+
+    @Test
+    public void connectsOnFirstMatchWhileScanKeepsRunning() {
+        for (int i = 0; i < 3; i++) {
+            ringer(i, -60);
+        }
+        ringer(3, -60).setName("Other");
+        start(new ConnectTarget.Builder().addNameFilter("RingerDevice").build());
+
+        // Advertising interval is 100 ms plus up to 10 ms advDelay
+        scheduler.advance(110);
+        assertFalse(attempts.isEmpty());
+        scheduler.advance(500);
+        assertEquals(3, attempts.size());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(transport.get(FIRST + i).isConnected());
+        }
+        assertFalse(transport.get(FIRST + 3).isConnected());
+    }
+
+    @Test
+    public void waitingMatchesConnectStrongestFirst() {
+        int[] rssi = {-80, -50, -70, -60, -95};
+        for (int i = 0; i < rssi.length; i++) {
+            ringer(i, rssi[i]).setConnectLatencyMillis(500);
+        }
+        start(new ConnectTarget.Builder()
+                .addNameFilter("RingerDevice")
+                .setMinRssi(-85)
+                .setMaxConcurrentConnects(1)
+                .build());
+        scheduler.advance(5000);
+
+        assertEquals(1, maxInFlight);
+        assertEquals(4, attempts.size());
+        assertFalse(attempts.contains(FIRST + 4));
+        // The first match connects right away; the rest queued up behind it
+        for (int i = 2; i < attempts.size(); i++) {
+            int previous = transport.get(attempts.get(i - 1)).getRssi();
+            assertTrue(attempts.toString(), previous >= transport.get(attempts.get(i)).getRssi());
+        }
+    }
+
+    @Test
+    public void stopsOnceDeviceLimitIsConnected() {
+        for (int i = 0; i < 4; i++) {
+            ringer(i, -60 - i);
+        }
+        start(new ConnectTarget.Builder()
+                .setMaxConcurrentConnects(3)
+                .setMaxDevices(2)
+                .build());
+        scheduler.advance(2000);
+
+        assertEquals(2, attempts.size());
+        assertEquals(2, pipeline.getConnected());
+        assertEquals(1, finished);
+        assertEquals(0, pipeline.getWaiting());
+    }
+
+    @Test
+    public void failedAttemptFreesSlotAndStaleMatchesAreSkipped() {
+        final List<BluetoothSDK.Callback<Boolean>> pending = new ArrayList<>();
+        final List<Long> started = new ArrayList<>();
+        ConnectPipeline<Object> manual = new ConnectPipeline<>(
+                new ConnectTarget.Builder().setMaxConcurrentConnects(1).build(), scheduler,
+                new ConnectPipeline.Connector<Object>() {
+                    @Override
+                    public void connect(long address, Object device, BluetoothSDK.Callback<Boolean> done) {
+                        started.add(address);
+                        pending.add(done);
+                    }
+
+                    @Override
+                    public void finished(ConnectPipeline<Object> finished) {
+                    }
+                });
+
+        manual.onResult(1, null, -70, 0);
+        manual.onResult(2, null, -40, 0);
+        scheduler.advance(ConnectPipeline.STALE_MILLIS + 1);
+        manual.onResult(3, null, -90, scheduler.now());
+        assertEquals(2, manual.getWaiting());
+
+        pending.get(0).onResult(false);
+        // Device 2 was stronger but has not been seen for too long
+        assertEquals(2, started.size());
+        assertEquals(Long.valueOf(3), started.get(1));
+        assertEquals(0, manual.getWaiting());
+        assertEquals(0, manual.getConnected());
+
+        // Each device is attempted once
+        pending.get(1).onResult(true);
+        manual.onResult(1, null, -30, scheduler.now());
+        assertEquals(2, started.size());
+        assertEquals(1, manual.getConnected());
+    }
+}
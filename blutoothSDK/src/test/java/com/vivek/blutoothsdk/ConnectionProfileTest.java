@@ -0,0 +1,147 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class ConnectionProfileTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID DATA = UUID.fromString("2F123457-CF6D-4A0F-ADF2-F4911BA9FFA6");
+
+    private FakeScheduler scheduler;
+    private SimulatedPeripheral sensor;
+    private ConnectionManager manager;
+    private final List<ConnectionParameters> reported = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 5);
+        sensor = new SimulatedPeripheral(1)
+                .setConnectionIntervalMillis(45)
+                .addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE, null);
+        transport.add(sensor);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        manager.setParametersListener(reported::add);
+    }
+
+    @Test
+    public void balancedProfile_isAppliedWhenReady() {
+        DeviceConnection connection = connect();
+
+        ConnectionParameters last = last();
+        assertSame(ConnectionProfile.balanced(), connection.getProfile());
+        assertSame(ConnectionProfile.balanced(), last.getProfile());
+        assertEquals(45, last.getIntervalMillis(), 0.001);
+        assertEquals(ConnectionParameters.PHY_LE_1M, last.getTxPhy());
+        assertEquals(BulkWriter.DEFAULT_MTU, last.getMtu());
+    }
+
+    @Test
+    public void highThroughput_negotiatesIntervalPhyAndMtu_thenDropsBack() {
+        DeviceConnection connection = connect();
+        connection.applyProfile(ConnectionProfile.highThroughput());
+        scheduler.advance(200);
+
+        ConnectionParameters fast = last();
+        assertEquals(7.5, fast.getIntervalMillis(), 0.001);
+        assertEquals(ConnectionParameters.PHY_LE_2M, fast.getTxPhy());
+        assertEquals(ConnectionParameters.PHY_LE_2M, fast.getRxPhy());
+        assertEquals(247, fast.getMtu());
+
+        connection.applyProfile(ConnectionProfile.lowPower());
+        scheduler.advance(200);
+        ConnectionParameters slow = last();
+        assertEquals(100, slow.getIntervalMillis(), 0.001);
+        // PHY is left alone and the MTU cannot be lowered
+        assertEquals(ConnectionParameters.PHY_LE_2M, slow.getTxPhy());
+        assertEquals(247, slow.getMtu());
+    }
+
+    @Test
+    public void requestMtu_afterExchange_reportsNegotiatedValueWithoutAskingAgain() {
+        DeviceConnection connection = connect();
+        final GattResult[] results = new GattResult[2];
+        connection.getQueue().enqueue(connection.requestMtu(517, r -> results[0] = r));
+        scheduler.advance(100);
+        assertEquals(247, results[0].getIntValue());
+
+        connection.getQueue().enqueue(connection.requestMtu(185, r -> results[1] = r));
+        scheduler.advance(0);
+        assertTrue(results[1].isSuccess());
+        assertEquals(247, results[1].getIntValue());
+    }
+
+    @Test
+    public void peripheralWithout2M_staysOn1M() {
+        sensor.setSupports2MPhy(false);
+        DeviceConnection connection = connect();
+        connection.applyProfile(ConnectionProfile.highThroughput());
+        scheduler.advance(200);
+        assertEquals(ConnectionParameters.PHY_LE_1M, last().getTxPhy());
+    }
+
+    @Test
+    public void highThroughput_speedsUpBulkWrite() {
+        long balanced = bulkWriteMillis(ConnectionProfile.balanced());
+        long fast = bulkWriteMillis(ConnectionProfile.highThroughput());
+        assertTrue("balanced=" + balanced + " fast=" + fast, fast * 4 < balanced);
+    }
+
+    @Test
+    public void defaultProfile_appliesToConnectedLinksAndReconnects() {
+        DeviceConnection connection = connect();
+        manager.setDefaultProfile(ConnectionProfile.lowPower());
+        scheduler.advance(100);
+        assertEquals(100, last().getIntervalMillis(), 0.001);
+
+        sensor.dropLink(8);
+        scheduler.advance(1000);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        assertSame(ConnectionProfile.lowPower(), last().getProfile());
+        assertEquals(100, last().getIntervalMillis(), 0.001);
+    }
+
+    private long bulkWriteMillis(ConnectionProfile profile) {
+        setUp();
+        final DeviceConnection connection = connect();
+        connection.applyProfile(profile);
+        scheduler.advance(200);
+        final BulkTransferResult[] result = new BulkTransferResult[1];
+        new BulkWriter(connection.getQueue(), scheduler, new BulkWriter.ChunkSink() {
+            @Override
+            public GattOperation requestMtu(int mtu, BluetoothSDK.Callback<GattResult> done) {
+                return connection.requestMtu(mtu, done);
+            }
+
+            @Override
+            public GattOperation writeChunk(byte[] chunk, BluetoothSDK.Callback<GattResult> done) {
+                return GattOperations.writeCharacteristic(connection.getLink(), SERVICE, DATA, chunk,
+                        BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE, 1000, done);
+            }
+        }, new byte[10000], r -> result[0] = r).start(BulkWriter.MAX_MTU);
+        scheduler.advance(60000);
+        assertTrue(result[0].isSuccess());
+        return result[0].getElapsedMillis();
+    }
+
+    private DeviceConnection connect() {
+        DeviceConnection connection = manager.connect(1, null, null);
+        scheduler.advance(500);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        return connection;
+    }
+
+    private ConnectionParameters last() {
+        assertFalse(reported.isEmpty());
+        return reported.get(reported.size() - 1);
+    }
+}
@@ -0,0 +1,193 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+// Connection state machine against the simulated transport
+public class DeviceConnectionTest {
+
+    private static final long ADDRESS = 0xA4C1380B7FE2L;
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID COMMAND = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+
+    private FakeScheduler scheduler;
+    private SimulatedTransport transport;
+    private SimulatedPeripheral ringer;
+    private ConnectionManager manager;
+    private final RecordingPairing pairing = new RecordingPairing();
+
+    static final class RecordingPairing implements BluetoothSDK.PairingCallback {
+        int paired;
+        int failed;
+
+        @Override
+        public void onPaired(BluetoothDevice device) {
+            paired++;
+        }
+
+        @Override
+        public void onPairingFailed(BluetoothDevice device) {
+            failed++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        transport = new SimulatedTransport(scheduler, 1);
+        ringer = new SimulatedPeripheral(ADDRESS)
+                .setName("RingerDevice")
+                .addCharacteristic(SERVICE, COMMAND, BluetoothGattCharacteristic.PROPERTY_WRITE
+                        | BluetoothGattCharacteristic.PROPERTY_READ, new byte[]{1});
+        transport.add(ringer);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        manager.setConnectTimeoutMillis(1000);
+        manager.setReconnectPolicy(new ReconnectPolicy.Builder()
+                .setInitialDelayMillis(100)
+                .setJitter(0)
+                .setMaxAttempts(3)
+                .build());
+    }
+
+    @Test
+    public void connect_discoversServicesAndWrites() {
+        DeviceConnection connection = manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(500);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        assertEquals(1, pairing.paired);
+
+        final GattResult[] result = new GattResult[1];
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), SERVICE, COMMAND,
+                "ring".getBytes(), BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT, 1000, r -> result[0] = r));
+        scheduler.advance(100);
+        assertTrue(result[0].isSuccess());
+        assertEquals("ring", new String(ringer.getReceivedBytes()));
+        assertEquals(GattLink.NOT_FOUND, connection.getProperties(SERVICE, UUID.randomUUID()));
+    }
+
+    @Test
+    public void status133_isRetriedWithBackoff() {
+        ringer.failNextConnects(2);
+        DeviceConnection connection = manager.connect(ADDRESS, null, pairing);
+
+        scheduler.advance(30);
+        assertEquals(DeviceConnection.State.DISCONNECTED, connection.getState());
+        assertTrue(connection.isActive());
+        scheduler.advance(1000);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        assertEquals(1, pairing.paired);
+        assertEquals(0, pairing.failed);
+        // Every 133 closes the handle, so each attempt opened a fresh one
+        assertEquals(3, transport.getLinksOpened());
+        assertEquals(1, manager.getClients().getOpenCount());
+        assertEquals(0, manager.getReconnects().attempts(ADDRESS));
+    }
+
+    @Test
+    public void linkLoss_reconnectsAndRediscovers() {
+        DeviceConnection connection = manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(500);
+        ringer.dropLink(GattStatus.CONNECTION_TIMEOUT);
+        scheduler.advance(1);
+        assertEquals(DeviceConnection.State.DISCONNECTED, connection.getState());
+
+        scheduler.advance(1000);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        assertEquals(2, transport.getLinksOpened());
+        assertEquals(0, manager.getClients().getLeakCount());
+    }
+
+    @Test
+    public void outOfRange_failsOnceRetryBudgetIsSpent() {
+        ringer.setInRange(false);
+        manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(60000);
+
+        assertEquals(0, pairing.paired);
+        assertEquals(1, pairing.failed);
+        // One attempt plus three retries, each ended by the connect timeout
+        assertEquals(4, transport.getLinksOpened());
+        assertNull(manager.get(MacAddress.unpack(ADDRESS)));
+        assertEquals(0, manager.getClients().getOpenCount());
+        assertEquals(0, scheduler.pendingTasks());
+
+        // The next connect gets its retries back
+        manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(60000);
+        assertEquals(2, pairing.failed);
+        assertEquals(8, transport.getLinksOpened());
+    }
+
+    @Test
+    public void closeAll_failsAConnectInProgress() {
+        DeviceConnection connection = manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(5);
+        assertEquals(DeviceConnection.State.CONNECTING, connection.getState());
+
+        manager.closeAll();
+        assertEquals(1, pairing.failed);
+        assertEquals(DeviceConnection.State.DISCONNECTED, connection.getState());
+        assertNull(manager.get(MacAddress.unpack(ADDRESS)));
+        assertEquals(0, manager.getClients().getOpenCount());
+
+        scheduler.advance(60000);
+        assertEquals(0, pairing.paired);
+        assertEquals(1, pairing.failed);
+    }
+
+    @Test
+    public void disconnect_cancelsPendingRetry() {
+        ringer.setStatus133Rate(1.0);
+        manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(50);
+        assertTrue(manager.getReconnects().isPending(ADDRESS));
+
+        manager.disconnect(MacAddress.unpack(ADDRESS));
+        int opened = transport.getLinksOpened();
+        scheduler.advance(60000);
+        assertEquals(opened, transport.getLinksOpened());
+        assertEquals(1, pairing.failed);
+        assertEquals(0, scheduler.pendingTasks());
+    }
+
+    @Test
+    public void lostResponse_timesOutOperation() {
+        DeviceConnection connection = manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(500);
+        ringer.setPacketLoss(1.0);
+
+        final GattResult[] result = new GattResult[1];
+        connection.getQueue().enqueue(GattOperations.readCharacteristic(connection.getLink(), SERVICE, COMMAND,
+                200, r -> result[0] = r));
+        scheduler.advance(199);
+        assertNull(result[0]);
+        scheduler.advance(1);
+        assertEquals(GattResult.STATUS_TIMEOUT, result[0].getStatus());
+        assertTrue(connection.getQueue().isIdle());
+    }
+
+    @Test
+    public void backgroundReconnect_skipsDiscoveryForBondedKnownLayout() {
+        ringer.setBonded(true);
+        manager.setReconnectPolicy(new ReconnectPolicy.Builder().setMaxAttempts(0)
+                .setAutoConnectWhenExhausted(true).build());
+        DeviceConnection connection = manager.connect(ADDRESS, null, pairing);
+        scheduler.advance(500);
+        assertNotNull(manager.getLayouts().get(ADDRESS));
+
+        ringer.dropLink(GattStatus.CONNECTION_TIMEOUT);
+        scheduler.advance(1);
+        assertTrue(connection.isBackgroundConnect());
+        // Connect latency only; no discovery round trip
+        scheduler.advance(ringer.getConnectLatencyMillis());
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        assertEquals(1, transport.getLinksOpened());
+    }
+}
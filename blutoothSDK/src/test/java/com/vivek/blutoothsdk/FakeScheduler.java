@@ -0,0 +1,66 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Manually advanced clock for driving timers in unit tests
+class FakeScheduler implements Scheduler {
+
+    private final List<Task> tasks = new ArrayList<>();
+    private long now;
+
+    @Override
+    public void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    @Override
+    public Cancellable postDelayed(Runnable runnable, long delayMillis) {
+        final Task task = new Task(runnable, now + delayMillis);
+        tasks.add(task);
+        return new Cancellable() {
+            @Override
+            public void cancel() {
+                tasks.remove(task);
+            }
+        };
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    void advance(long millis) {
+        long target = now + millis;
+        while (true) {
+            Task next = null;
+            for (Task task : tasks) {
+                if (task.due <= target && (next == null || task.due < next.due)) {
+                    next = task;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            tasks.remove(next);
+            now = next.due;
+            next.runnable.run();
+        }
+        now = target;
+    }
+
+    int pendingTasks() {
+        return tasks.size();
+    }
+
+    private static final class Task {
+        final Runnable runnable;
+        final long due;
+
+        Task(Runnable runnable, long due) {
+            this.runnable = runnable;
+            this.due = due;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GattClientRegistryTest {
+
+    private final List<String> closed = new ArrayList<>();
+    private final GattClientRegistry<String> registry = new GattClientRegistry<>(closed::add);
+
+    @Test
+    public void openAndClose_balance() {
+        String handle = registry.open(1L, () -> "gatt-1");
+        assertEquals(1, registry.getOpenCount());
+        assertTrue(registry.isOpen(1L, handle));
+
+        registry.close(1L, handle);
+        registry.close(1L, handle);
+        assertEquals(0, registry.getOpenCount());
+        assertEquals(1, registry.getClosedTotal());
+        assertEquals(0, registry.getLeakCount());
+    }
+
+    @Test
+    public void reopeningLiveHandle_isCountedAsLeakAndClosed() {
+        registry.open(1L, () -> "first");
+        registry.open(1L, () -> "second");
+
+        assertEquals(1, registry.getLeakCount());
+        assertEquals(1, registry.getOpenCount());
+        assertEquals("first", closed.get(0));
+    }
+
+    @Test
+    public void budget_evictsIdleHandlesBeforeRefusing() {
+        registry.setMaxClients(2);
+        String a = registry.open(1L, () -> "a");
+        registry.open(2L, () -> "b");
+        assertNull(registry.open(3L, () -> "c"));
+
+        registry.setIdle(1L, a, true);
+        assertEquals("c", registry.open(3L, () -> "c"));
+        assertEquals("a", closed.get(0));
+        assertFalse(registry.isOpen(1L, a));
+        assertEquals(0, registry.getLeakCount());
+    }
+
+    @Test
+    public void reusedIdleHandle_isNotALeak() {
+        String a = registry.open(1L, () -> "a");
+        registry.setIdle(1L, a, true);
+        registry.open(1L, () -> "a2");
+
+        assertEquals(0, registry.getLeakCount());
+        assertEquals(1, registry.getOpenCount());
+    }
+}
@@ -0,0 +1,103 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GattOperationQueueTest {
+
+    private static final UUID CHARACTERISTIC = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final GattOperationQueue queue = new GattOperationQueue(scheduler);
+    private final List<String> started = new ArrayList<>();
+    private final List<GattResult> results = new ArrayList<>();
+
+    private GattOperation write(final String name, boolean accepted) {
+        return new GattOperation(GattOperation.Type.WRITE_CHARACTERISTIC, CHARACTERISTIC, 1000,
+                () -> {
+                    started.add(name);
+                    return accepted;
+                },
+                results::add);
+    }
+
+    private GattResult success() {
+        return GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.GATT_SUCCESS);
+    }
+
+    @Test
+    public void onlyOneOperationIsInFlight() {
+        queue.enqueue(write("a", true));
+        queue.enqueue(write("b", true));
+        assertEquals(1, started.size());
+        assertEquals(2, queue.size());
+
+        assertTrue(queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, CHARACTERISTIC, success()));
+        assertEquals(2, started.size());
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccess());
+
+        queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, CHARACTERISTIC, success());
+        assertTrue(queue.isIdle());
+        assertEquals(0, scheduler.pendingTasks());
+    }
+
+    @Test
+    public void unrelatedCompletion_isIgnored() {
+        queue.enqueue(write("a", true));
+        assertFalse(queue.onComplete(GattOperation.Type.READ_CHARACTERISTIC, CHARACTERISTIC, success()));
+        assertFalse(queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, UUID.randomUUID(), success()));
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void timeout_failsOperationAndStartsNext() {
+        queue.enqueue(write("a", true));
+        queue.enqueue(write("b", true));
+        scheduler.advance(1000);
+
+        assertEquals(GattResult.STATUS_TIMEOUT, results.get(0).getStatus());
+        assertEquals(2, started.size());
+        // A late callback for the timed-out write completes "b" instead of being lost
+        assertTrue(queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, CHARACTERISTIC, success()));
+    }
+
+    @Test
+    public void rejectedStart_failsImmediatelyAndStartsNext() {
+        queue.enqueue(write("a", false));
+        queue.enqueue(write("b", true));
+        queue.enqueue(write("c", true));
+
+        assertEquals(GattResult.STATUS_REJECTED, results.get(0).getStatus());
+        assertEquals(2, started.size());
+        assertEquals("b", started.get(1));
+    }
+
+    @Test
+    public void clear_failsEverything() {
+        queue.enqueue(write("a", true));
+        queue.enqueue(write("b", true));
+        queue.clear(GattResult.STATUS_CANCELLED);
+
+        assertEquals(2, results.size());
+        assertEquals(GattResult.STATUS_CANCELLED, results.get(1).getStatus());
+        assertTrue(queue.isIdle());
+        assertEquals(0, scheduler.pendingTasks());
+    }
+
+    @Test
+    public void callbackMayEnqueueMoreWork() {
+        queue.enqueue(new GattOperation(GattOperation.Type.REQUEST_MTU, null, 1000, () -> true,
+                result -> queue.enqueue(write("after-mtu", true))));
+        queue.onComplete(GattOperation.Type.REQUEST_MTU, null,
+                new GattResult(GattOperation.Type.REQUEST_MTU, GattResult.GATT_SUCCESS, null, 247));
+
+        assertEquals(1, started.size());
+        assertEquals("after-mtu", started.get(0));
+    }
+}
@@ -0,0 +1,145 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class KnownDeviceRegistryTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID COMMAND = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+    private static final long FIRST = 0xA4C1380B0001L;
+
+    private FakeScheduler scheduler;
+    private SimulatedTransport transport;
+    private KnownDeviceRegistry registry;
+    private ConnectionManager manager;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        transport = new SimulatedTransport(scheduler, 1);
+        for (int i = 0; i < 3; i++) {
+            transport.add(new SimulatedPeripheral(FIRST + i)
+                    .setName("Ringer " + i)
+                    .addCharacteristic(SERVICE, COMMAND, BluetoothGattCharacteristic.PROPERTY_WRITE, new byte[]{1}));
+        }
+        registry = new KnownDeviceRegistry();
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore(), registry);
+    }
+
+    @Test
+    public void ready_registersDevice() {
+        transport.get(FIRST).setBonded(true);
+        DeviceConnectionTest.RecordingPairing pairing = new DeviceConnectionTest.RecordingPairing();
+        manager.connect(FIRST, null, pairing);
+        scheduler.advance(500);
+        assertEquals(1, pairing.paired);
+
+        KnownDevice known = registry.get(FIRST);
+        assertNotNull(known);
+        assertEquals("A4:C1:38:0B:00:01", known.getAddress());
+        assertEquals("Ringer 0", known.getName());
+        assertEquals(BleTransport.BOND_BONDED, known.getBondState());
+        assertTrue(known.getLastConnectedMillis() > 0);
+        assertNull(registry.get(FIRST + 1));
+    }
+
+    // A restart with three known devices: no scan, and all links come up in
+    // about the time of one connect and discovery instead of three
+    @Test
+    public void reconnectKnown_connectsInParallelWithoutScanning() {
+        for (int i = 0; i < 3; i++) {
+            registry.remember(FIRST + i, "Ringer " + i, KnownDevice.ADDRESS_TYPE_PUBLIC);
+        }
+        DeviceConnectionTest.RecordingPairing pairing = new DeviceConnectionTest.RecordingPairing();
+        manager.reconnectKnown(new ConnectionManager.DeviceLookup() {
+            @Override
+            public BluetoothDevice find(KnownDevice known) {
+                return null;
+            }
+        }, pairing);
+
+        // 30 ms connect plus 30 ms discovery per device
+        scheduler.advance(100);
+        assertEquals(3, pairing.paired);
+        assertEquals(3, transport.getLinksOpened());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(transport.get(FIRST + i).isConnected());
+            assertTrue(registry.get(FIRST + i).getLastConnectedMillis() > 0);
+        }
+    }
+
+    @Test
+    public void getAll_mostRecentFirstAndKeepsRememberedAddressType() {
+        registry.remember(FIRST, null, KnownDevice.ADDRESS_TYPE_RANDOM);
+        registry.onConnected(FIRST + 1, "b", KnownDevice.ADDRESS_TYPE_UNKNOWN, BleTransport.BOND_NONE, 1000);
+        registry.onConnected(FIRST, "a", KnownDevice.ADDRESS_TYPE_UNKNOWN, BleTransport.BOND_BONDED, 2000);
+
+        List<KnownDevice> all = registry.getAll();
+        assertEquals(2, all.size());
+        assertEquals(FIRST, all.get(0).getPackedAddress());
+        assertEquals(KnownDevice.ADDRESS_TYPE_RANDOM, all.get(0).getAddressType());
+        assertEquals("a", all.get(0).getName());
+        assertEquals(FIRST + 1, all.get(1).getPackedAddress());
+    }
+
+    @Test
+    public void scanResults_updateRssiOfKnownDevicesOnly() {
+        registry.remember(FIRST, "a", KnownDevice.ADDRESS_TYPE_PUBLIC);
+        registry.onScanResult(FIRST, -48);
+        registry.onScanResult(FIRST + 1, -70);
+        assertEquals(-48, registry.get(FIRST).getLastRssi());
+        assertEquals(1, registry.size());
+
+        // A later connect keeps the RSSI
+        registry.onConnected(FIRST, null, KnownDevice.ADDRESS_TYPE_UNKNOWN, BleTransport.BOND_NONE, 5);
+        assertEquals(-48, registry.get(FIRST).getLastRssi());
+        assertEquals("a", registry.get(FIRST).getName());
+    }
+
+    @Test
+    public void reconnectKnown_opensRandomAddressWithItsType() {
+        registry.remember(FIRST, "Ringer 0", KnownDevice.ADDRESS_TYPE_RANDOM);
+        DeviceConnectionTest.RecordingPairing pairing = new DeviceConnectionTest.RecordingPairing();
+        manager.reconnectKnown(known -> null, pairing);
+        assertEquals(KnownDevice.ADDRESS_TYPE_RANDOM, transport.getLastAddressType());
+
+        scheduler.advance(500);
+        assertEquals(1, pairing.paired);
+        assertEquals(KnownDevice.ADDRESS_TYPE_RANDOM, registry.get(FIRST).getAddressType());
+    }
+
+    @Test
+    public void forget_dropsDeviceAndLayout() {
+        manager.connect(FIRST, null, null);
+        scheduler.advance(500);
+        assertNotNull(manager.getLayouts().get(FIRST));
+
+        manager.forget(FIRST);
+        assertNull(registry.get(FIRST));
+        assertNull(manager.getLayouts().get(FIRST));
+    }
+
+    @Test
+    public void encode_roundTripsNamesWithSeparators() {
+        KnownDevice device = new KnownDevice(FIRST, "Ringer, bay 3", KnownDevice.ADDRESS_TYPE_RANDOM,
+                BleTransport.BOND_BONDED, -61, 1700000000000L);
+        KnownDevice decoded = KnownDevice.decode(FIRST, device.encode());
+        assertEquals("Ringer, bay 3", decoded.getName());
+        assertEquals(KnownDevice.ADDRESS_TYPE_RANDOM, decoded.getAddressType());
+        assertEquals(BleTransport.BOND_BONDED, decoded.getBondState());
+        assertEquals(-61, decoded.getLastRssi());
+        assertEquals(1700000000000L, decoded.getLastConnectedMillis());
+
+        assertNull(KnownDevice.decode(FIRST, new KnownDevice(FIRST, null, 0, 10, 0, 0).encode()).getName());
+        assertNull(KnownDevice.decode(FIRST, "not a device"));
+    }
+}
@@ -0,0 +1,17 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MacAddressTest {
+
+    @Test
+    public void macAddress_roundTrips() {
+        long packed = MacAddress.pack("A4:C1:38:0B:7F:E2");
+        assertEquals(0xA4C1380B7FE2L, packed);
+        assertEquals("A4:C1:38:0B:7F:E2", MacAddress.unpack(packed));
+        assertEquals(MacAddress.INVALID, MacAddress.pack("A4-C1-38-0B-7F-E2"));
+        assertEquals(MacAddress.INVALID, MacAddress.pack(null));
+    }
+}
@@ -0,0 +1,78 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OperationArbiterTest {
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private final List<String> started = new ArrayList<>();
+
+    private GattOperation op(final String name) {
+        return new GattOperation(GattOperation.Type.WRITE_CHARACTERISTIC, null, 1000, () -> {
+            started.add(name);
+            return true;
+        }, null);
+    }
+
+    private static void complete(GattOperationQueue queue) {
+        assertTrue(queue.onComplete(GattOperation.Type.WRITE_CHARACTERISTIC, null,
+                GattResult.of(GattOperation.Type.WRITE_CHARACTERISTIC, GattResult.GATT_SUCCESS)));
+    }
+
+    @Test
+    public void linksTakeTurnsWhenBudgetIsExhausted() {
+        OperationArbiter arbiter = new OperationArbiter(1);
+        GattOperationQueue busy = new GattOperationQueue(scheduler, arbiter);
+        GattOperationQueue quiet = new GattOperationQueue(scheduler, arbiter);
+
+        busy.enqueue(op("busy-1"));
+        busy.enqueue(op("busy-2"));
+        busy.enqueue(op("busy-3"));
+        quiet.enqueue(op("quiet-1"));
+        assertEquals(1, started.size());
+
+        complete(busy);
+        assertEquals("quiet-1", started.get(1));
+        complete(quiet);
+        assertEquals("busy-2", started.get(2));
+        complete(busy);
+        complete(busy);
+
+        assertEquals(4, started.size());
+        assertEquals(0, arbiter.inFlight());
+    }
+
+    @Test
+    public void clearedQueue_givesUpItsTurn() {
+        OperationArbiter arbiter = new OperationArbiter(1);
+        GattOperationQueue first = new GattOperationQueue(scheduler, arbiter);
+        GattOperationQueue second = new GattOperationQueue(scheduler, arbiter);
+        GattOperationQueue third = new GattOperationQueue(scheduler, arbiter);
+
+        first.enqueue(op("first"));
+        second.enqueue(op("second"));
+        third.enqueue(op("third"));
+        second.clear(GattResult.STATUS_CANCELLED);
+        complete(first);
+
+        assertEquals("third", started.get(1));
+        assertEquals(0, arbiter.waitingQueues());
+    }
+
+    @Test
+    public void independentLinks_runInParallelWithinBudget() {
+        OperationArbiter arbiter = new OperationArbiter(2);
+        GattOperationQueue a = new GattOperationQueue(scheduler, arbiter);
+        GattOperationQueue b = new GattOperationQueue(scheduler, arbiter);
+        a.enqueue(op("a"));
+        b.enqueue(op("b"));
+
+        assertEquals(2, started.size());
+        assertEquals(2, arbiter.inFlight());
+    }
+}
@@ -0,0 +1,185 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// RSSI smoothing, proximity ranking and the memory cap
+public class ProximityTableTest {
+
+    private static final int RESULTS_PER_SECOND = 10_000;
+
+    @Test
+    public void ingest_updatesSightingsInPlace() {
+        ProximityTable<String> table = new ProximityTable<>(4);
+        long address = MacAddress.pack("00:11:22:33:44:55");
+
+        int slot = table.ingest(address, "ringer", -70, new byte[]{1, 2, 3}, 100);
+        assertEquals(slot, table.ingest(address, "ringer", -55, new byte[]{9, 8}, 200));
+        assertEquals(1, table.size());
+        assertEquals("ringer", table.deviceAt(slot));
+        assertEquals(-55, table.rssiAt(slot));
+        assertEquals(200, table.lastSeenAt(slot));
+
+        byte[] adv = new byte[ProximityTable.RECORD_SIZE];
+        assertEquals(2, table.copyAdvertisementAt(slot, adv));
+        assertEquals(9, adv[0]);
+        assertEquals(8, adv[1]);
+
+        // Longer extended advertisements keep their first RECORD_SIZE bytes
+        table.ingest(address, "ringer", -55, new byte[100], 300);
+        assertEquals(ProximityTable.RECORD_SIZE, table.advertisementLengthAt(slot));
+        table.ingest(address, "ringer", -55, null, 400);
+        assertEquals(0, table.advertisementLengthAt(slot));
+    }
+
+    @Test
+    public void ingest_ignoresInvalidAddress() {
+        ProximityTable<String> table = new ProximityTable<>(2);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(-1, table.ingest(MacAddress.INVALID, "broken", -60, i));
+        }
+        assertEquals(0, table.size());
+        assertFalse(table.contains(MacAddress.INVALID));
+        assertFalse(table.remove(MacAddress.INVALID));
+
+        // Both slots are still free
+        assertTrue(table.ingest(1, "a", -60, 10) >= 0);
+        assertTrue(table.ingest(2, "b", -60, 10) >= 0);
+    }
+
+    @Test
+    public void ingest_smoothsOutASingleFade() {
+        ProximityTable<String> table = new ProximityTable<>(4);
+        for (int i = 0; i < 20; i++) {
+            table.ingest(1, "ringer", -60, i * 100);
+        }
+        int slot = table.ingest(1, "ringer", -90, 2000);
+
+        // The raw reading is kept, the estimate barely moves
+        assertEquals(-90, table.rssiAt(slot));
+        assertTrue(table.smoothedRssiAt(slot) > -65);
+
+        // A device heard again after a long gap follows the new level quickly
+        slot = table.ingest(2, "other", -60, 0);
+        table.ingest(2, "other", -80, 60000);
+        assertTrue(table.smoothedRssiAt(slot) < -75);
+    }
+
+    @Test
+    public void nearest_followsTheSmoothedRanking() {
+        ProximityTable<String> table = new ProximityTable<>(8);
+        table.ingest(1, "far", -85, 0);
+        table.ingest(2, "near", -50, 0);
+        table.ingest(3, "middle", -70, 0);
+
+        assertEquals("near", table.deviceAt(table.nearest()));
+        assertEquals(Arrays.asList("near", "middle", "far"), table.byProximity(10));
+        assertEquals(Arrays.asList("near", "middle"), table.byProximity(2));
+
+        // The near device walks away over a few seconds
+        for (int t = 1; t <= 20; t++) {
+            table.ingest(2, "near", -95, t * 500);
+        }
+        assertEquals("middle", table.deviceAt(table.nearest()));
+        assertEquals("near", table.byProximity(10).get(2));
+
+        table.remove(3);
+        assertEquals("far", table.deviceAt(table.nearest()));
+        table.clear();
+        assertEquals(-1, table.nearest());
+        assertTrue(table.byProximity(10).isEmpty());
+    }
+
+    @Test
+    public void oldest_isTheDeviceSeenLeastRecently() {
+        ProximityTable<Integer> table = new ProximityTable<>(3);
+        table.ingest(1, 1, -60, 0);
+        table.ingest(2, 2, -60, 10);
+        table.ingest(3, 3, -60, 20);
+        table.ingest(1, 1, -60, 30);
+
+        assertTrue(table.isFull());
+        assertEquals(-1, table.ingest(4, 4, -60, 40));
+        assertEquals(2L, table.addressAt(table.oldest()));
+
+        table.remove(table.addressAt(table.oldest()));
+        assertTrue(table.ingest(4, 4, -60, 40) >= 0);
+        assertEquals(3L, table.addressAt(table.oldest()));
+        assertFalse(table.contains(2));
+    }
+
+    @Test
+    public void session_capsTheTableAndReportsEvictionsAsLost() {
+        ScanConfig config = new ScanConfig.Builder()
+                .setMaxDevices(2)
+                .setLostTimeoutMillis(1000)
+                .setFrameIntervalMillis(0)
+                .build();
+        final List<String> lost = new ArrayList<>();
+        ScanSession<String> session = new ScanSession<>(config, new ScanListener<String>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<String>> deltas) {
+                for (ScanDelta<String> delta : deltas) {
+                    if (delta.getType() == ScanDelta.Type.LOST) {
+                        lost.add(delta.getDevice());
+                    }
+                }
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+            }
+        });
+
+        session.onResult(1, "a", -70, null, 0);
+        session.onResult(2, "b", -50, null, 100);
+        session.onResult(3, "c", -60, null, 200);
+        session.tick(200);
+
+        assertEquals(2, session.getTable().size());
+        assertEquals(Arrays.asList("a"), lost);
+        assertEquals("b", session.nearest());
+
+        // b stays in range, c times out
+        session.onResult(2, "b", -50, null, 1100);
+        session.tick(1300);
+        assertEquals(Arrays.asList("a", "c"), lost);
+        assertEquals(Arrays.asList("b"), session.byProximity(10));
+    }
+
+    // One second of traffic at 10k results/s must ingest in well under a second,
+    // and the per-result cost must not scale with the number of known devices.
+    @Test
+    public void benchmark_ingestIsConstantTimeAt10kResultsPerSecond() {
+        long small = measureIngestNanos(16);
+        long large = measureIngestNanos(8192);
+
+        assertTrue("10k results took " + large / 1_000_000 + " ms", large < 1_000_000_000L);
+        // An O(n) list scan would be ~500x slower at 8192 devices than at 16
+        assertTrue("small=" + small + "ns large=" + large + "ns", large < small * 20 + 5_000_000L);
+    }
+
+    private static long measureIngestNanos(int deviceCount) {
+        ProximityTable<Object> table = new ProximityTable<>(deviceCount);
+        Object device = new Object();
+        for (int i = 0; i < deviceCount; i++) {
+            table.ingest(0xA4C1380B0000L + i, device, -60, 0);
+        }
+        // Warm up, then take the best of several rounds to reduce JIT and GC noise
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < RESULTS_PER_SECOND; i++) {
+                table.ingest(0xA4C1380B0000L + (i % deviceCount), device, -60 - (i & 15), i);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        assertEquals(deviceCount, table.size());
+        return best;
+    }
+}
@@ -0,0 +1,115 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ReconnectSchedulerTest {
+
+    private static final long ADDRESS = 0xA4C1380B7FE2L;
+
+    private static ReconnectPolicy noJitter(int maxAttempts) {
+        return new ReconnectPolicy.Builder()
+                .setInitialDelayMillis(100)
+                .setMaxDelayMillis(1000)
+                .setJitter(0)
+                .setMaxAttempts(maxAttempts)
+                .build();
+    }
+
+    @Test
+    public void delay_growsExponentiallyUpToCap() {
+        ReconnectScheduler reconnects = new ReconnectScheduler(new FakeScheduler());
+        reconnects.setPolicy(noJitter(8));
+        assertEquals(100, reconnects.nextDelay(0));
+        assertEquals(200, reconnects.nextDelay(1));
+        assertEquals(800, reconnects.nextDelay(3));
+        assertEquals(1000, reconnects.nextDelay(4));
+        assertEquals(1000, reconnects.nextDelay(30));
+    }
+
+    @Test
+    public void delay_jitterStaysWithinFraction() {
+        ReconnectScheduler reconnects = new ReconnectScheduler(new FakeScheduler(), new Random(42));
+        reconnects.setPolicy(new ReconnectPolicy.Builder()
+                .setInitialDelayMillis(1000)
+                .setJitter(0.5)
+                .build());
+        for (int i = 0; i < 1000; i++) {
+            long delay = reconnects.nextDelay(0);
+            assertTrue("delay=" + delay, delay >= 500 && delay <= 1000);
+        }
+    }
+
+    @Test
+    public void schedule_firesAttemptAfterDelay() {
+        FakeScheduler scheduler = new FakeScheduler();
+        ReconnectScheduler reconnects = new ReconnectScheduler(scheduler);
+        reconnects.setPolicy(noJitter(8));
+        final AtomicInteger fired = new AtomicInteger();
+
+        assertTrue(reconnects.schedule(ADDRESS, GattStatus.GATT_ERROR, fired::incrementAndGet));
+        assertTrue(reconnects.isPending(ADDRESS));
+        scheduler.advance(99);
+        assertEquals(0, fired.get());
+        scheduler.advance(1);
+        assertEquals(1, fired.get());
+        assertEquals(1, reconnects.attempts(ADDRESS));
+    }
+
+    @Test
+    public void schedule_refusesFatalStatus() {
+        FakeScheduler scheduler = new FakeScheduler();
+        ReconnectScheduler reconnects = new ReconnectScheduler(scheduler);
+
+        assertFalse(reconnects.schedule(ADDRESS, GattStatus.GATT_INSUFFICIENT_AUTHENTICATION, () -> { }));
+        assertFalse(reconnects.schedule(ADDRESS, GattStatus.LOCAL_HOST_TERMINATED, () -> { }));
+        assertFalse(reconnects.schedule(ADDRESS, GattResult.STATUS_CANCELLED, () -> { }));
+        assertEquals(0, scheduler.pendingTasks());
+        assertTrue(GattStatus.isRetryable(GattStatus.CONNECTION_FAILED_TO_ESTABLISH));
+        assertTrue(GattStatus.isRetryable(GattResult.STATUS_TIMEOUT));
+    }
+
+    @Test
+    public void schedule_stopsWhenBudgetSpent() {
+        FakeScheduler scheduler = new FakeScheduler();
+        ReconnectScheduler reconnects = new ReconnectScheduler(scheduler);
+        reconnects.setPolicy(noJitter(3));
+        final AtomicInteger fired = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(reconnects.schedule(ADDRESS, GattStatus.GATT_ERROR, () -> {
+                reconnects.onAttemptStarted(ADDRESS);
+                fired.incrementAndGet();
+            }));
+            scheduler.advance(1000);
+        }
+        assertFalse(reconnects.schedule(ADDRESS, GattStatus.GATT_ERROR, fired::incrementAndGet));
+        assertEquals(3, fired.get());
+        assertFalse(reconnects.isPending(ADDRESS));
+
+        // A successful connect starts a fresh budget
+        reconnects.reset(ADDRESS);
+        assertTrue(reconnects.schedule(ADDRESS, GattStatus.GATT_ERROR, fired::incrementAndGet));
+    }
+
+    @Test
+    public void reset_cancelsPendingTimer() {
+        FakeScheduler scheduler = new FakeScheduler();
+        ReconnectScheduler reconnects = new ReconnectScheduler(scheduler);
+        final AtomicInteger fired = new AtomicInteger();
+
+        reconnects.schedule(ADDRESS, GattStatus.GATT_ERROR, fired::incrementAndGet);
+        reconnects.schedule(ADDRESS + 1, GattStatus.GATT_ERROR, fired::incrementAndGet);
+        reconnects.reset(ADDRESS);
+        assertEquals(1, scheduler.pendingTasks());
+        reconnects.resetAll();
+        assertEquals(0, scheduler.pendingTasks());
+        scheduler.advance(60000);
+        assertEquals(0, fired.get());
+        assertFalse(reconnects.isPending(ADDRESS + 1));
+    }
+}
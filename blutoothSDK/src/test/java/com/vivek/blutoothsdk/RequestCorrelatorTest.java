@@ -0,0 +1,170 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+// Pipelined requests against a simulated peripheral that answers slowly
+public class RequestCorrelatorTest {
+
+    private static final long ADDRESS = 0xA4C1380B7FE2L;
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID REQUEST = UUID.fromString("00002a40-0000-1000-8000-00805f9b34fb");
+    private static final UUID RESPONSE = UUID.fromString("00002a41-0000-1000-8000-00805f9b34fb");
+    // Firmware that takes its time: a reply 60 ms after each request
+    private static final long REPLY_MILLIS = 60;
+
+    private FakeScheduler scheduler;
+    private SimulatedPeripheral device;
+    private ConnectionManager manager;
+    private final CommandWriter writer = new CommandWriter();
+    private final List<CommandResponse> responses = new ArrayList<>();
+    private boolean answering = true;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 1);
+        device = new SimulatedPeripheral(ADDRESS)
+                .addCharacteristic(SERVICE, REQUEST, BluetoothGattCharacteristic.PROPERTY_WRITE, null)
+                .addCharacteristic(SERVICE, RESPONSE, BluetoothGattCharacteristic.PROPERTY_NOTIFY, null);
+        // Echoes the sequence byte and answers with the payload plus one
+        device.setWriteHandler((service, characteristic, value) -> {
+            if (!answering || !characteristic.equals(REQUEST)) {
+                return;
+            }
+            final byte[] reply = new byte[]{value[0], (byte) (value[1] + 1)};
+            scheduler.postDelayed(() -> device.notify(SERVICE, RESPONSE, reply), REPLY_MILLIS);
+        });
+        transport.add(device);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        manager.connect(ADDRESS, null, null);
+        scheduler.advance(500);
+    }
+
+    @Test
+    public void replies_matchTheirRequests() {
+        RequestChannel channel = new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).build();
+        for (int i = 0; i < 5; i++) {
+            send(channel, i);
+        }
+        scheduler.advance(1000);
+
+        assertEquals(5, responses.size());
+        for (CommandResponse response : responses) {
+            assertTrue(response.toString(), response.isSuccess());
+            // The peripheral adds one to the request's payload
+            assertEquals(response.getSequence() + 1, response.getPayload()[0]);
+        }
+    }
+
+    @Test
+    public void pipelining_beatsOneRoundTripAtATime() {
+        long pipelined = run(new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).setMaxInFlight(8).build());
+        setUp();
+        responses.clear();
+        long serial = run(new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).setMaxInFlight(1).build());
+        assertTrue("pipelined=" + pipelined + " serial=" + serial, pipelined * 3 < serial);
+    }
+
+    @Test
+    public void missingReply_timesOutAndLateReplyIsIgnored() {
+        RequestChannel channel = new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE)
+                .setTimeoutMillis(40)
+                .build();
+        send(channel, 1);
+        scheduler.advance(1000);
+
+        // The reply at 60 ms does not complete it a second time
+        assertEquals(1, responses.size());
+        assertEquals(CommandResult.Status.TIMEOUT, responses.get(0).getResult().getStatus());
+    }
+
+    @Test
+    public void linkLoss_failsOutstandingRequests() {
+        answering = false;
+        RequestChannel channel = new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).setMaxInFlight(2).build();
+        for (int i = 0; i < 4; i++) {
+            send(channel, i);
+        }
+        scheduler.advance(100);
+        device.dropLink(GattStatus.CONNECTION_TIMEOUT);
+        scheduler.advance(10);
+
+        assertEquals(4, responses.size());
+        for (CommandResponse response : responses) {
+            assertEquals(CommandResult.Status.CANCELLED, response.getResult().getStatus());
+        }
+    }
+
+    @Test
+    public void cancel_completesOnceAndFreesTheSlot() {
+        answering = false;
+        RequestChannel channel = new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).setMaxInFlight(1).build();
+        CommandRequest first = send(channel, 1);
+        send(channel, 2);
+        first.cancel();
+        scheduler.advance(100);
+        first.cancel();
+        scheduler.advance(100);
+
+        assertTrue(first.isDone());
+        assertEquals(1, responses.size());
+        assertEquals(CommandResult.Status.CANCELLED, responses.get(0).getResult().getStatus());
+        // The second request took the free slot
+        assertEquals(2, device.getWritesReceived());
+    }
+
+    @Test
+    public void forget_dropsTheDevicesCorrelators() {
+        answering = false;
+        send(new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).build(), 1);
+        scheduler.advance(10);
+        assertEquals(1, manager.getCorrelatorCount(ADDRESS));
+
+        manager.forget(ADDRESS);
+        assertEquals(0, manager.getCorrelatorCount(ADDRESS));
+        assertEquals(1, responses.size());
+        assertEquals(CommandResult.Status.CANCELLED, responses.get(0).getResult().getStatus());
+    }
+
+    @Test
+    public void closedConnection_dropsTheDevicesCorrelators() {
+        RequestChannel channel = new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).build();
+        send(channel, 1);
+        // Same characteristics, so the existing correlator is reused
+        send(new RequestChannel.Builder(SERVICE, REQUEST, RESPONSE).build(), 2);
+        scheduler.advance(200);
+        assertEquals(1, manager.getCorrelatorCount(ADDRESS));
+
+        manager.disconnect(MacAddress.unpack(ADDRESS));
+        scheduler.advance(500);
+        assertEquals(0, manager.getCorrelatorCount(ADDRESS));
+    }
+
+    private long run(RequestChannel channel) {
+        long started = scheduler.now();
+        for (int i = 0; i < 16; i++) {
+            send(channel, i);
+        }
+        while (responses.size() < 16) {
+            scheduler.advance(1);
+        }
+        return scheduler.now() - started;
+    }
+
+    private CommandRequest send(RequestChannel channel, int payload) {
+        CommandRequest request = new CommandRequest(ADDRESS, channel, scheduler, responses::add);
+        request.value = writer.encode(new byte[]{(byte) payload}, (command, out) -> out.put(command), 1);
+        request.pool = writer;
+        manager.request(request);
+        return request;
+    }
+}
@@ -0,0 +1,62 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanConfigTest {
+
+    @Test
+    public void filters_areCollectedInOrder() {
+        ScanConfig config = new ScanConfig.Builder()
+                .addNameFilter("RingerDevice")
+                .addServiceUuidFilter(BluetoothSDK.SERVICE_UUID)
+                .addManufacturerFilter(0x0059, new byte[]{0x01, 0x00}, new byte[]{(byte) 0xFF, 0x00})
+                .setScanMode(ScanConfig.ScanMode.LOW_POWER)
+                .setReportDelayMillis(5000)
+                .build();
+
+        assertEquals(3, config.getFilters().size());
+        assertEquals("RingerDevice", config.getFilters().get(0).getDeviceName());
+        assertEquals(-1, config.getFilters().get(0).getManufacturerId());
+        assertEquals(BluetoothSDK.SERVICE_UUID, config.getFilters().get(1).getServiceUuid());
+        assertEquals(0x0059, config.getFilters().get(2).getManufacturerId());
+        assertEquals(ScanConfig.ScanMode.LOW_POWER, config.getScanMode());
+        assertEquals(5000, config.getReportDelayMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void manufacturerMask_mustMatchDataLength() {
+        new ScanConfig.Filter.Builder().setManufacturerData(0x0059, new byte[]{1, 2}, new byte[]{1});
+    }
+
+    @Test
+    public void batchedScan_doesNotReportDevicesLostBetweenBatches() {
+        final int[] lost = {0};
+        ScanConfig config = new ScanConfig.Builder()
+                .setReportDelayMillis(5000)
+                .setLostTimeoutMillis(1000)
+                .build();
+        ScanSession<String> session = new ScanSession<>(config, new ScanListener<String>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<String>> deltas) {
+                for (ScanDelta<String> delta : deltas) {
+                    if (delta.getType() == ScanDelta.Type.LOST) {
+                        lost[0]++;
+                    }
+                }
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+            }
+        });
+        session.onResult(1L, "a", -60, null, 0);
+        session.tick(4000);
+        assertEquals(0, lost[0]);
+        session.tick(10001);
+        assertEquals(1, lost[0]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanFrameCoalescerTest {
+
+    private final List<List<ScanDelta<String>>> frames = new ArrayList<>();
+    private final ScanListener<String> listener = new ScanListener<String>() {
+        @Override
+        public void onScanFrame(List<ScanDelta<String>> deltas) {
+            frames.add(deltas);
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+        }
+    };
+
+    @Test
+    public void firstDevice_isDeliveredImmediately() {
+        ScanSession<String> session = new ScanSession<>(ScanConfig.defaults(), listener);
+        session.onResult(1L, "a", -60, null, 1000);
+
+        assertEquals(1, frames.size());
+        assertEquals(ScanDelta.Type.ADDED, frames.get(0).get(0).getType());
+    }
+
+    @Test
+    public void deltasWithinInterval_areCoalescedPerDevice() {
+        ScanFrameCoalescer<String> coalescer = new ScanFrameCoalescer<>(100, 32, listener);
+        coalescer.offer(ScanDelta.Type.ADDED, 1L, "a", -60, 1000);
+        coalescer.offer(ScanDelta.Type.ADDED, 2L, "b", -70, 1010);
+        coalescer.offer(ScanDelta.Type.UPDATED, 2L, "b", -65, 1020);
+        coalescer.offer(ScanDelta.Type.UPDATED, 1L, "a", -50, 1030);
+        coalescer.offer(ScanDelta.Type.UPDATED, 1L, "a", -40, 1040);
+        assertEquals(1, frames.size());
+
+        coalescer.flushIfDue(1100);
+        assertEquals(2, frames.size());
+        List<ScanDelta<String>> frame = frames.get(1);
+        assertEquals(2, frame.size());
+        assertEquals(ScanDelta.Type.ADDED, frame.get(0).getType());
+        assertEquals(-65, frame.get(0).getRssi());
+        assertEquals(ScanDelta.Type.UPDATED, frame.get(1).getType());
+        assertEquals(-40, frame.get(1).getRssi());
+    }
+
+    @Test
+    public void fullFrame_isDeliveredBeforeInterval() {
+        ScanFrameCoalescer<String> coalescer = new ScanFrameCoalescer<>(100, 3, listener);
+        coalescer.offer(ScanDelta.Type.ADDED, 1L, "a", -60, 1000);
+        for (long address = 2; address <= 4; address++) {
+            coalescer.offer(ScanDelta.Type.ADDED, address, "x", -60, 1001);
+        }
+        assertEquals(2, frames.size());
+        assertEquals(3, frames.get(1).size());
+    }
+
+    @Test
+    public void silentDevice_isReportedLost() {
+        ScanConfig config = new ScanConfig.Builder().setLostTimeoutMillis(500).build();
+        ScanSession<String> session = new ScanSession<>(config, listener);
+        session.onResult(1L, "a", -60, null, 1000);
+        session.tick(1200);
+        session.tick(1600);
+
+        List<ScanDelta<String>> last = frames.get(frames.size() - 1);
+        assertEquals(ScanDelta.Type.LOST, last.get(0).getType());
+        assertEquals(0, session.getTable().size());
+    }
+}
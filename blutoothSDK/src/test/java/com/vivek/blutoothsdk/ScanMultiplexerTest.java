@@ -0,0 +1,170 @@
+package com.vivek.blutoothsdk;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// Many logical scans on one hardware scan, within the platform's start limit
+public class ScanMultiplexerTest {
+
+    private FakeScheduler scheduler;
+    private SimulatedTransport transport;
+    private SdkMetrics metrics;
+    private ScanMultiplexer<SimulatedPeripheral> scans;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        transport = new SimulatedTransport(scheduler, 3);
+        transport.add(new SimulatedPeripheral(1).setName("Ringer"));
+        transport.add(new SimulatedPeripheral(2).setName("Bell"));
+        metrics = new SdkMetrics(scheduler);
+        scans = new ScanMultiplexer<>(scheduler, transport, metrics);
+    }
+
+    @Test
+    public void sessions_shareOneScanAndGetOnlyTheirOwnResults() {
+        Recorder ringer = new Recorder();
+        Recorder bell = new Recorder();
+        Recorder everything = new Recorder();
+        ScanMultiplexer<SimulatedPeripheral>.Client ringerClient = scans.register(named("Ringer"), ringer);
+        scans.register(named("Bell"), bell);
+        scheduler.advance(1000);
+
+        assertEquals(1, transport.getScanStarts());
+        assertEquals(2, scans.getHardwareConfig().getFilters().size());
+        assertTrue(ringer.count(1) > 0 && ringer.count(2) == 0);
+        assertTrue(bell.count(2) > 0 && bell.count(1) == 0);
+
+        // An unfiltered session widens the scan; dropping one narrows it again
+        scans.register(ScanConfig.defaults(), everything);
+        ringerClient.cancel();
+        scheduler.advance(1000);
+        assertEquals(2, transport.getScanStarts());
+        assertTrue(scans.getHardwareConfig().getFilters().isEmpty());
+        assertTrue(everything.count(1) > 0 && everything.count(2) > 0);
+
+        scans.cancelAll();
+        scheduler.advance(10);
+        assertFalse(scans.isScanning());
+        assertFalse(transport.isScanning());
+    }
+
+    @Test
+    public void replacingAScanWithAnEqualOne_keepsTheHardwareScan() {
+        ScanMultiplexer<SimulatedPeripheral>.Client client = scans.register(named("Ringer"), new Recorder());
+        scheduler.advance(100);
+        Recorder last = null;
+        // A user tapping scan over and over
+        for (int i = 0; i < 20; i++) {
+            client.cancel();
+            last = new Recorder();
+            client = scans.register(named("Ringer"), last);
+            scheduler.advance(500);
+        }
+
+        assertEquals(1, transport.getScanStarts());
+        assertTrue(last.count(1) > 0);
+        assertFalse(scans.isDeferred());
+    }
+
+    @Test
+    public void restarts_waitForTheThrottleWindow() {
+        ScanMultiplexer<SimulatedPeripheral>.Client previous = null;
+        for (int i = 0; i < 7; i++) {
+            ScanMultiplexer<SimulatedPeripheral>.Client next = scans.register(named("Device" + i), new Recorder());
+            if (previous != null) {
+                previous.cancel();
+            }
+            previous = next;
+            scheduler.advance(100);
+        }
+
+        // Five starts, then the sixth waits for the first to leave the 30 s window
+        assertEquals(5, transport.getScanStarts());
+        assertTrue(scans.isDeferred());
+        assertEquals(1, metrics.snapshot().get(SdkMetrics.Counter.SCAN_STARTS_DEFERRED));
+
+        scheduler.advance(ScanMultiplexer.THROTTLE_WINDOW_MILLIS);
+        assertEquals(6, transport.getScanStarts());
+        assertFalse(scans.isDeferred());
+        assertEquals(named("Device6").getFilters(), scans.getHardwareConfig().getFilters());
+    }
+
+    @Test
+    public void dutyCycle_scansOnlyInsideTheWindows() {
+        Recorder recorder = new Recorder();
+        scans.register(new ScanConfig.Builder().setDutyCycle(1000, 10000).build(), recorder);
+        scheduler.advance(500);
+        assertTrue(scans.isScanning());
+        scheduler.advance(4500);
+        assertFalse(scans.isScanning());
+        int firstWindow = recorder.count(1);
+        assertTrue(firstWindow > 0);
+
+        scheduler.advance(54000);
+        // One start per cycle, well inside the limit
+        assertEquals(6, transport.getScanStarts());
+        assertEquals(0, metrics.snapshot().get(SdkMetrics.Counter.SCAN_STARTS_DEFERRED));
+        assertTrue(recorder.count(1) <= 6 * (firstWindow + 1));
+
+        // A continuous session takes over until it is gone
+        ScanMultiplexer<SimulatedPeripheral>.Client continuous = scans.register(ScanConfig.defaults(), new Recorder());
+        scheduler.advance(5000);
+        assertTrue(scans.isScanning());
+        assertEquals(0, scans.getHardwareConfig().getScanIntervalMillis());
+        continuous.cancel();
+        scheduler.advance(10);
+        assertEquals(8, transport.getScanStarts());
+        assertEquals(10000, scans.getHardwareConfig().getScanIntervalMillis());
+    }
+
+    @Test
+    public void covers_comparesWhatEachScanDelivers() {
+        ScanConfig ringer = named("Ringer");
+        ScanConfig both = new ScanConfig.Builder().addNameFilter("Ringer").addNameFilter("Bell").build();
+        ScanConfig fast = new ScanConfig.Builder().setScanMode(ScanConfig.ScanMode.LOW_LATENCY).build();
+
+        assertTrue(ScanMultiplexer.covers(both, ringer));
+        assertFalse(ScanMultiplexer.covers(ringer, both));
+        assertTrue(ScanMultiplexer.covers(ScanConfig.defaults(), both));
+        assertFalse(ScanMultiplexer.covers(ringer, ScanConfig.defaults()));
+        assertTrue(ScanMultiplexer.covers(fast, ScanConfig.defaults()));
+        assertFalse(ScanMultiplexer.covers(ScanConfig.defaults(), fast));
+        assertTrue(ScanMultiplexer.covers(ScanConfig.defaults(),
+                new ScanConfig.Builder().setDutyCycle(1000, 10000).build()));
+    }
+
+    private static ScanConfig named(String name) {
+        return new ScanConfig.Builder().addNameFilter(name).build();
+    }
+
+    private static final class Recorder implements BleTransport.ScanSink<SimulatedPeripheral> {
+        private final List<Long> addresses = new ArrayList<>();
+
+        @Override
+        public void onScanResult(long address, SimulatedPeripheral device, int rssi, byte[] advertisement,
+                                 long nowMillis) {
+            addresses.add(address);
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            fail("Scan failed: " + errorCode);
+        }
+
+        int count(long address) {
+            int count = 0;
+            for (long a : addresses) {
+                if (a == address) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SdkMetricsTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID COMMAND = UUID.fromString("00002a29-0000-1000-8000-00805f9b34fb");
+
+    @Test
+    public void histogram_bucketsAreWithin25PercentOfValue() {
+        int previous = 0;
+        for (long value = 0; value < 1_000_000; value += 1 + value / 16) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= previous);
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(value + " -> " + upper, upper >= value && upper <= value + value / 4);
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void snapshot_reportsPercentilesAndRates() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SdkMetrics metrics = new SdkMetrics(scheduler);
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(SdkMetrics.Histogram.GATT_LATENCY, i);
+        }
+        MetricsSnapshot before = metrics.snapshot();
+        metrics.add(SdkMetrics.Counter.SCAN_RESULTS, 500);
+        scheduler.advance(250);
+        MetricsSnapshot after = metrics.snapshot();
+
+        HistogramSnapshot latency = after.get(SdkMetrics.Histogram.GATT_LATENCY);
+        assertEquals(100, latency.getCount());
+        assertEquals(50.5, latency.getMean(), 0.001);
+        assertEquals(100, latency.getMax());
+        long p50 = latency.getPercentile(0.5);
+        assertTrue("p50=" + p50, p50 >= 50 && p50 <= 63);
+        assertEquals(100, latency.getPercentile(0.99));
+        assertEquals(0, after.get(SdkMetrics.Histogram.CONNECT_LATENCY).getPercentile(0.99));
+
+        assertEquals(2000, after.ratePerSecond(SdkMetrics.Counter.SCAN_RESULTS, before), 0.001);
+        Map<String, Long> exported = after.toMap();
+        assertEquals(Long.valueOf(500), exported.get("scan.results"));
+        assertEquals(Long.valueOf(100), exported.get("gatt.latency_ms.p99"));
+    }
+
+    @Test
+    public void connection_recordsAttemptsLatencyAndBytes() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 1);
+        SimulatedPeripheral ringer = new SimulatedPeripheral(1)
+                .addCharacteristic(SERVICE, COMMAND, BluetoothGattCharacteristic.PROPERTY_WRITE, null)
+                .failNextConnects(1);
+        transport.add(ringer);
+        ConnectionManager manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        manager.setReconnectPolicy(new ReconnectPolicy.Builder().setInitialDelayMillis(100).setJitter(0).build());
+
+        DeviceConnection connection = manager.connect(1, null, null);
+        scheduler.advance(1000);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+        connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), SERVICE, COMMAND,
+                "ring".getBytes(), BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT, 1000, null));
+        scheduler.advance(100);
+
+        MetricsSnapshot snapshot = manager.getMetrics().snapshot();
+        assertEquals(2, snapshot.get(SdkMetrics.Counter.CONNECT_ATTEMPTS));
+        assertEquals(1, snapshot.get(SdkMetrics.Counter.GATT_ERROR_133));
+        assertEquals(1, snapshot.get(SdkMetrics.Counter.RECONNECTS_SCHEDULED));
+        assertEquals(0, snapshot.get(SdkMetrics.Counter.CONNECT_FAILURES));
+        assertEquals(4, snapshot.get(SdkMetrics.Counter.BYTES_WRITTEN));
+        // Connect latency is the simulated 30 ms link setup
+        assertEquals(30, snapshot.get(SdkMetrics.Histogram.CONNECT_LATENCY).getMax());
+        // Discovery (two round trips) plus the write (one)
+        assertEquals(30, snapshot.get(SdkMetrics.Histogram.DISCOVERY_LATENCY).getMax());
+        assertEquals(2, snapshot.get(SdkMetrics.Histogram.GATT_LATENCY).getCount());
+        assertEquals(45, snapshot.get(SdkMetrics.Histogram.GATT_LATENCY).getSum());
+    }
+}
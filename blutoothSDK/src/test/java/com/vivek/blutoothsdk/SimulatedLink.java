@@ -0,0 +1,405 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothProfile;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * {@link GattLink} to a {@link SimulatedPeripheral}. Mirrors the platform's
+ * rules that matter to the SDK: one outstanding request per handle, requests
+ * fail while disconnected, services stay on the handle across a disconnect,
+ * and nothing is delivered after close().
+ */
+class SimulatedLink implements GattLink {
+
+    private static final int DEFAULT_MTU = 23;
+    // Connection intervals the stack picks for high and low-power priority
+    private static final long HIGH_PRIORITY_INTERVAL_MILLIS = 8;
+    private static final long LOW_POWER_INTERVAL_MILLIS = 100;
+    // Used when connecting to an address no peripheral answers to
+    private static final long RETRY_MILLIS = 100;
+
+    private final SimulatedTransport transport;
+    private final Scheduler scheduler;
+    private final SimulatedPeripheral peripheral;
+    private final Listener listener;
+    private final Set<UUID> notifying = new HashSet<>();
+
+    private boolean autoConnect;
+    private boolean connecting;
+    private boolean connected;
+    private boolean closed;
+    private boolean requestPending;
+    private GattLayout services = new GattLayout.Builder().build();
+    private int mtu = DEFAULT_MTU;
+    private long intervalMillis;
+    private int phy = ConnectionParameters.PHY_LE_1M;
+    private Scheduler.Cancellable attempt;
+
+    SimulatedLink(SimulatedTransport transport, Scheduler scheduler, SimulatedPeripheral peripheral,
+                  boolean autoConnect, Listener listener) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.peripheral = peripheral;
+        this.autoConnect = autoConnect;
+        this.listener = listener;
+        scheduleAttempt();
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    int getMtu() {
+        return mtu;
+    }
+
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    int getPhy() {
+        return phy;
+    }
+
+    @Override
+    public boolean connect() {
+        if (closed) {
+            return false;
+        }
+        // Like the platform, reconnecting a kept handle is a background connect
+        autoConnect = true;
+        if (!connected && !connecting) {
+            scheduleAttempt();
+        }
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+        if (closed) {
+            return;
+        }
+        if (connecting) {
+            cancelAttempt();
+            connecting = false;
+            post(0, new Runnable() {
+                @Override
+                public void run() {
+                    listener.onConnectionStateChange(SimulatedLink.this, BluetoothGatt.GATT_SUCCESS,
+                            BluetoothProfile.STATE_DISCONNECTED);
+                }
+            });
+        } else if (connected) {
+            post(peripheral.getLatencyMillis(), new Runnable() {
+                @Override
+                public void run() {
+                    linkDown(BluetoothGatt.GATT_SUCCESS);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        cancelAttempt();
+        if (connected) {
+            connected = false;
+            peripheral.detach(this);
+        }
+    }
+
+    @Override
+    public boolean discoverServices() {
+        return request(2 * peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                services = peripheral.getLayout();
+                listener.onServicesDiscovered(SimulatedLink.this, BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+    }
+
+    @Override
+    public GattLayout getLayout() {
+        return services;
+    }
+
+    @Override
+    public int getProperties(UUID service, UUID characteristic) {
+        if (!services.hasCharacteristic(service, characteristic)) {
+            return NOT_FOUND;
+        }
+        return peripheral.getProperties(service, characteristic);
+    }
+
+    @Override
+    public boolean hasDescriptor(UUID service, UUID characteristic, UUID descriptor) {
+        return services.hasCharacteristic(service, characteristic)
+                && GattLayout.CLIENT_CHARACTERISTIC_CONFIG.equals(descriptor)
+                && peripheral.canNotify(service, characteristic);
+    }
+
+    @Override
+    public boolean readCharacteristic(final UUID service, final UUID characteristic) {
+        if (getProperties(service, characteristic) == NOT_FOUND) {
+            return false;
+        }
+        return request(peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                listener.onCharacteristicRead(SimulatedLink.this, characteristic,
+                        peripheral.getValue(service, characteristic), BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+    }
+
+    @Override
+    public int writeCharacteristic(final UUID service, final UUID characteristic, byte[] value, int writeType) {
+        if (getProperties(service, characteristic) == NOT_FOUND) {
+            return GattResult.STATUS_NOT_FOUND;
+        }
+        // Callers may reuse the buffer once the call returns
+        final byte[] copy = value.clone();
+        if (writeType == BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE) {
+            if (copy.length > mtu - 3 || !connected) {
+                return GattResult.STATUS_REJECTED;
+            }
+            if (requestPending) {
+                return GattResult.STATUS_BUSY;
+            }
+            // Completes locally once the packet is sent; a lost packet is never noticed
+            requestPending = true;
+            post(intervalMillis, new Runnable() {
+                @Override
+                public void run() {
+                    requestPending = false;
+                    if (transport.isLost(peripheral)) {
+                        peripheral.onPacketDropped();
+                    } else {
+                        peripheral.onWrite(service, characteristic, copy);
+                    }
+                    listener.onCharacteristicWrite(SimulatedLink.this, characteristic, BluetoothGatt.GATT_SUCCESS);
+                }
+            });
+            return GattResult.GATT_SUCCESS;
+        }
+        if (requestPending && !closed && connected) {
+            return GattResult.STATUS_BUSY;
+        }
+        boolean started = request(peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                peripheral.onWrite(service, characteristic, copy);
+                listener.onCharacteristicWrite(SimulatedLink.this, characteristic, BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+        return started ? GattResult.GATT_SUCCESS : GattResult.STATUS_REJECTED;
+    }
+
+    @Override
+    public boolean writeDescriptor(UUID service, final UUID characteristic, final UUID descriptor, byte[] value) {
+        if (!hasDescriptor(service, characteristic, descriptor)) {
+            return false;
+        }
+        final boolean enabled = value.length > 0 && value[0] != 0;
+        return request(peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                peripheral.onSubscribe(characteristic, enabled);
+                listener.onDescriptorWrite(SimulatedLink.this, descriptor, BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+    }
+
+    @Override
+    public boolean requestMtu(final int requested) {
+        return request(peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                mtu = Math.max(DEFAULT_MTU, Math.min(requested, peripheral.getMaxMtu()));
+                listener.onMtuChanged(SimulatedLink.this, mtu, BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+    }
+
+    // The peripheral's preferred interval stands in for the balanced default
+    @Override
+    public boolean requestConnectionPriority(int priority) {
+        if (closed || !connected) {
+            return false;
+        }
+        final long interval = priority == ConnectionProfile.PRIORITY_HIGH ? HIGH_PRIORITY_INTERVAL_MILLIS
+                : priority == ConnectionProfile.PRIORITY_LOW_POWER ? LOW_POWER_INTERVAL_MILLIS
+                : peripheral.getConnectionIntervalMillis();
+        post(peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                intervalMillis = interval;
+                listener.onConnectionUpdated(SimulatedLink.this, (int) (interval * 4 / 5), 0, 500,
+                        BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean setPreferredPhy(final int txPhyMask, int rxPhyMask) {
+        return request(peripheral.getLatencyMillis(), new Runnable() {
+            @Override
+            public void run() {
+                phy = (txPhyMask & ConnectionProfile.PHY_LE_2M_MASK) != 0 && peripheral.supports2MPhy()
+                        ? ConnectionParameters.PHY_LE_2M : ConnectionParameters.PHY_LE_1M;
+                listener.onPhyUpdate(SimulatedLink.this, phy, phy, BluetoothGatt.GATT_SUCCESS);
+            }
+        });
+    }
+
+    @Override
+    public boolean setNotificationsEnabled(UUID service, UUID characteristic, boolean enabled) {
+        if (getProperties(service, characteristic) == NOT_FOUND) {
+            return false;
+        }
+        if (enabled) {
+            notifying.add(characteristic);
+        } else {
+            notifying.remove(characteristic);
+        }
+        return true;
+    }
+
+    void deliverNotification(final UUID service, final UUID characteristic, byte[] value) {
+        if (!connected || !notifying.contains(characteristic)) {
+            return;
+        }
+        // The stack truncates notifications to the ATT payload size
+        final byte[] payload = value.length > mtu - 3 ? Arrays.copyOf(value, mtu - 3) : value;
+        post(intervalMillis, new Runnable() {
+            @Override
+            public void run() {
+                if (transport.isLost(peripheral)) {
+                    peripheral.onPacketDropped();
+                    return;
+                }
+                listener.onCharacteristicChanged(SimulatedLink.this, service, characteristic, payload);
+            }
+        });
+    }
+
+    void serviceChanged() {
+        post(intervalMillis, new Runnable() {
+            @Override
+            public void run() {
+                listener.onServiceChanged(SimulatedLink.this);
+            }
+        });
+    }
+
+    void linkLost(final int status) {
+        post(0, new Runnable() {
+            @Override
+            public void run() {
+                linkDown(status);
+            }
+        });
+    }
+
+    private void linkDown(int status) {
+        if (!connected) {
+            return;
+        }
+        connected = false;
+        requestPending = false;
+        mtu = DEFAULT_MTU;
+        phy = ConnectionParameters.PHY_LE_1M;
+        peripheral.detach(this);
+        listener.onConnectionStateChange(this, status, BluetoothProfile.STATE_DISCONNECTED);
+    }
+
+    private void scheduleAttempt() {
+        connecting = true;
+        long delay = peripheral != null ? peripheral.getConnectLatencyMillis() : RETRY_MILLIS;
+        attempt = scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                attempt = null;
+                attemptConnect();
+            }
+        }, delay);
+    }
+
+    private void attemptConnect() {
+        if (closed || !connecting) {
+            return;
+        }
+        boolean reachable = peripheral != null && peripheral.isInRange()
+                && (peripheral.getLink() == null || peripheral.getLink() == this);
+        if (!reachable) {
+            // A direct attempt is ended by the caller's timeout; autoConnect keeps waiting
+            if (autoConnect) {
+                scheduleAttempt();
+            }
+            return;
+        }
+        connecting = false;
+        if (transport.shouldFail133(peripheral)) {
+            listener.onConnectionStateChange(this, GattStatus.GATT_ERROR, BluetoothProfile.STATE_DISCONNECTED);
+            return;
+        }
+        connected = true;
+        intervalMillis = peripheral.getConnectionIntervalMillis();
+        peripheral.attach(this);
+        listener.onConnectionStateChange(this, BluetoothGatt.GATT_SUCCESS, BluetoothProfile.STATE_CONNECTED);
+    }
+
+    private void cancelAttempt() {
+        if (attempt != null) {
+            attempt.cancel();
+            attempt = null;
+        }
+    }
+
+    // One request/response exchange; a lost response leaves the caller to time out
+    private boolean request(long delayMillis, final Runnable response) {
+        if (closed || !connected || requestPending) {
+            return false;
+        }
+        requestPending = true;
+        post(delayMillis, new Runnable() {
+            @Override
+            public void run() {
+                requestPending = false;
+                if (transport.isLost(peripheral)) {
+                    peripheral.onPacketDropped();
+                    return;
+                }
+                response.run();
+            }
+        });
+        return true;
+    }
+
+    // Drops anything scheduled before the handle was closed or the link went down
+    private void post(long delayMillis, final Runnable task) {
+        final boolean wasConnected = connected;
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (closed || (wasConnected && !connected)) {
+                    return;
+                }
+                task.run();
+            }
+        }, delayMillis);
+    }
+}
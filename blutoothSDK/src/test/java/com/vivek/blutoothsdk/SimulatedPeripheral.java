@@ -0,0 +1,418 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An in-process peripheral for {@link SimulatedTransport}: an attribute
+ * table, advertising, and knobs for latency, MTU, packet loss and status 133,
+ * so connection and transfer behaviour can be exercised on a plain JVM.
+ *
+ * Not thread-safe; drive it from the transport's scheduler thread.
+ */
+class SimulatedPeripheral {
+
+    // Peripheral-side application logic, e.g. answering writes with notifications
+    interface WriteHandler {
+        void onWrite(UUID service, UUID characteristic, byte[] value);
+    }
+
+    private final long address;
+    private final Map<UUID, Map<UUID, Attribute>> services = new LinkedHashMap<>();
+    private final Set<UUID> subscribed = new HashSet<>();
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+    private String name;
+    private UUID advertisedService;
+    private int rssi = -60;
+    // Extra AD structures set by the test; the record also carries name and service
+    private byte[] advertisement = new byte[0];
+    private byte[] record = new byte[0];
+    private long advertisingIntervalMillis = 100;
+    private long connectLatencyMillis = 30;
+    private long latencyMillis = 15;
+    private long connectionIntervalMillis = 8;
+    private int maxMtu = 247;
+    private boolean supports2MPhy = true;
+    private double packetLoss;
+    private double status133Rate;
+    private int forced133;
+    private int bondState = BleTransport.BOND_NONE;
+    private boolean acceptsBonding = true;
+    private long bondingMillis = 1500;
+    private boolean inRange = true;
+
+    private SimulatedLink link;
+    private WriteHandler writeHandler;
+    private int writesReceived;
+    private int droppedPackets;
+
+    SimulatedPeripheral(long address) {
+        this.address = address;
+    }
+
+    long getAddress() {
+        return address;
+    }
+
+    SimulatedPeripheral setName(String name) {
+        this.name = name;
+        buildRecord();
+        return this;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    SimulatedPeripheral setAdvertisedService(UUID advertisedService) {
+        this.advertisedService = advertisedService;
+        buildRecord();
+        return this;
+    }
+
+    UUID getAdvertisedService() {
+        return advertisedService;
+    }
+
+    SimulatedPeripheral setRssi(int rssi) {
+        this.rssi = rssi;
+        return this;
+    }
+
+    int getRssi() {
+        return rssi;
+    }
+
+    // AD structures advertised besides the name and service UUID
+    SimulatedPeripheral setAdvertisement(byte[] advertisement) {
+        this.advertisement = advertisement.clone();
+        buildRecord();
+        return this;
+    }
+
+    // The full advertising record a scanner receives
+    byte[] getAdvertisement() {
+        return record;
+    }
+
+    // 0 stops advertising
+    SimulatedPeripheral setAdvertisingIntervalMillis(long advertisingIntervalMillis) {
+        this.advertisingIntervalMillis = advertisingIntervalMillis;
+        return this;
+    }
+
+    long getAdvertisingIntervalMillis() {
+        return advertisingIntervalMillis;
+    }
+
+    SimulatedPeripheral setConnectLatencyMillis(long connectLatencyMillis) {
+        this.connectLatencyMillis = connectLatencyMillis;
+        return this;
+    }
+
+    long getConnectLatencyMillis() {
+        return connectLatencyMillis;
+    }
+
+    // Round trip of a request/response operation (read, acknowledged write, MTU, discovery)
+    SimulatedPeripheral setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    // Pacing of write-without-response packets and notifications at balanced priority
+    SimulatedPeripheral setConnectionIntervalMillis(long connectionIntervalMillis) {
+        this.connectionIntervalMillis = connectionIntervalMillis;
+        return this;
+    }
+
+    long getConnectionIntervalMillis() {
+        return connectionIntervalMillis;
+    }
+
+    SimulatedPeripheral setMaxMtu(int maxMtu) {
+        this.maxMtu = maxMtu;
+        return this;
+    }
+
+    int getMaxMtu() {
+        return maxMtu;
+    }
+
+    SimulatedPeripheral setSupports2MPhy(boolean supports2MPhy) {
+        this.supports2MPhy = supports2MPhy;
+        return this;
+    }
+
+    boolean supports2MPhy() {
+        return supports2MPhy;
+    }
+
+    // Probability that an advertisement, response or unacknowledged packet is lost
+    SimulatedPeripheral setPacketLoss(double packetLoss) {
+        this.packetLoss = packetLoss;
+        return this;
+    }
+
+    double getPacketLoss() {
+        return packetLoss;
+    }
+
+    // Probability that a connection attempt fails with status 133
+    SimulatedPeripheral setStatus133Rate(double status133Rate) {
+        this.status133Rate = status133Rate;
+        return this;
+    }
+
+    double getStatus133Rate() {
+        return status133Rate;
+    }
+
+    // The next count connection attempts fail with status 133
+    SimulatedPeripheral failNextConnects(int count) {
+        this.forced133 = count;
+        return this;
+    }
+
+    boolean consumeForced133() {
+        if (forced133 > 0) {
+            forced133--;
+            return true;
+        }
+        return false;
+    }
+
+    SimulatedPeripheral setBonded(boolean bonded) {
+        this.bondState = bonded ? BleTransport.BOND_BONDED : BleTransport.BOND_NONE;
+        return this;
+    }
+
+    boolean isBonded() {
+        return bondState == BleTransport.BOND_BONDED;
+    }
+
+    int getBondState() {
+        return bondState;
+    }
+
+    void setBondState(int bondState) {
+        this.bondState = bondState;
+    }
+
+    // False makes pairing fail, as when the user cancels the pairing dialog
+    SimulatedPeripheral setAcceptsBonding(boolean acceptsBonding) {
+        this.acceptsBonding = acceptsBonding;
+        return this;
+    }
+
+    boolean acceptsBonding() {
+        return acceptsBonding;
+    }
+
+    SimulatedPeripheral setBondingMillis(long bondingMillis) {
+        this.bondingMillis = bondingMillis;
+        return this;
+    }
+
+    long getBondingMillis() {
+        return bondingMillis;
+    }
+
+    // Out of range: no advertising and connection attempts do not complete
+    SimulatedPeripheral setInRange(boolean inRange) {
+        this.inRange = inRange;
+        if (!inRange && link != null) {
+            link.linkLost(GattStatus.CONNECTION_TIMEOUT);
+        }
+        return this;
+    }
+
+    boolean isInRange() {
+        return inRange;
+    }
+
+    SimulatedPeripheral addCharacteristic(UUID service, UUID characteristic, int properties, byte[] value) {
+        Map<UUID, Attribute> characteristics = services.get(service);
+        if (characteristics == null) {
+            characteristics = new LinkedHashMap<>();
+            services.put(service, characteristics);
+        }
+        characteristics.put(characteristic, new Attribute(properties, value != null ? value.clone() : new byte[0]));
+        return this;
+    }
+
+    GattLayout getLayout() {
+        GattLayout.Builder builder = new GattLayout.Builder();
+        for (Map.Entry<UUID, Map<UUID, Attribute>> service : services.entrySet()) {
+            builder.addService(service.getKey());
+            for (UUID characteristic : service.getValue().keySet()) {
+                builder.addCharacteristic(service.getKey(), characteristic);
+            }
+        }
+        return builder.build();
+    }
+
+    int getProperties(UUID service, UUID characteristic) {
+        Attribute attribute = find(service, characteristic);
+        return attribute != null ? attribute.properties : GattLink.NOT_FOUND;
+    }
+
+    byte[] getValue(UUID service, UUID characteristic) {
+        Attribute attribute = find(service, characteristic);
+        return attribute != null ? attribute.value.clone() : null;
+    }
+
+    void setValue(UUID service, UUID characteristic, byte[] value) {
+        Attribute attribute = find(service, characteristic);
+        if (attribute != null) {
+            attribute.value = value.clone();
+        }
+    }
+
+    // Everything written to any characteristic, in arrival order
+    byte[] getReceivedBytes() {
+        return received.toByteArray();
+    }
+
+    int getWritesReceived() {
+        return writesReceived;
+    }
+
+    int getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    boolean isConnected() {
+        return link != null;
+    }
+
+    boolean isSubscribed(UUID characteristic) {
+        return subscribed.contains(characteristic);
+    }
+
+    // Sends a notification if the central has subscribed
+    void notify(UUID service, UUID characteristic, byte[] value) {
+        setValue(service, characteristic, value);
+        if (link != null && subscribed.contains(characteristic)) {
+            link.deliverNotification(service, characteristic, value.clone());
+        }
+    }
+
+    // Supervision timeout, remote reset etc.
+    void dropLink(int status) {
+        if (link != null) {
+            link.linkLost(status);
+        }
+    }
+
+    // Changes the attribute table and indicates Service Changed to a connected central
+    void changeServices(UUID service, UUID characteristic, int properties) {
+        addCharacteristic(service, characteristic, properties, null);
+        if (link != null) {
+            link.serviceChanged();
+        }
+    }
+
+    SimulatedPeripheral setWriteHandler(WriteHandler writeHandler) {
+        this.writeHandler = writeHandler;
+        return this;
+    }
+
+    void attach(SimulatedLink link) {
+        this.link = link;
+    }
+
+    void detach(SimulatedLink link) {
+        if (this.link == link) {
+            this.link = null;
+            subscribed.clear();
+        }
+    }
+
+    SimulatedLink getLink() {
+        return link;
+    }
+
+    void onWrite(UUID service, UUID characteristic, byte[] value) {
+        Attribute attribute = find(service, characteristic);
+        if (attribute != null) {
+            attribute.value = value;
+        }
+        received.write(value, 0, value.length);
+        writesReceived++;
+        if (writeHandler != null) {
+            writeHandler.onWrite(service, characteristic, value);
+        }
+    }
+
+    void onSubscribe(UUID characteristic, boolean enabled) {
+        if (enabled) {
+            subscribed.add(characteristic);
+        } else {
+            subscribed.remove(characteristic);
+        }
+    }
+
+    void onPacketDropped() {
+        droppedPackets++;
+    }
+
+    boolean canNotify(UUID service, UUID characteristic) {
+        int properties = getProperties(service, characteristic);
+        return properties != GattLink.NOT_FOUND
+                && (properties & (BluetoothGattCharacteristic.PROPERTY_NOTIFY
+                | BluetoothGattCharacteristic.PROPERTY_INDICATE)) != 0;
+    }
+
+    private Attribute find(UUID service, UUID characteristic) {
+        Map<UUID, Attribute> characteristics = services.get(service);
+        return characteristics != null ? characteristics.get(characteristic) : null;
+    }
+
+    private static final class Attribute {
+        final int properties;
+        byte[] value;
+
+        Attribute(int properties, byte[] value) {
+            this.properties = properties;
+            this.value = value;
+        }
+    }
+
+    // Advertisement first, then the 128-bit service UUID and the complete local name
+    private void buildRecord() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(advertisement, 0, advertisement.length);
+        if (advertisedService != null) {
+            out.write(17);
+            out.write(AdvertisementView.TYPE_UUID128_COMPLETE);
+            writeLittleEndian(out, advertisedService.getLeastSignificantBits());
+            writeLittleEndian(out, advertisedService.getMostSignificantBits());
+        }
+        if (name != null) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes.length + 1);
+            out.write(AdvertisementView.TYPE_NAME_COMPLETE);
+            out.write(bytes, 0, bytes.length);
+        }
+        record = out.toByteArray();
+    }
+
+    private static void writeLittleEndian(ByteArrayOutputStream out, long value) {
+        for (int i = 0; i < 8; i++) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+}
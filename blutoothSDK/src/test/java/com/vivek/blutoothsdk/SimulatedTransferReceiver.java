@@ -0,0 +1,139 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * The peripheral side of {@link TransferProtocol} for a
+ * {@link SimulatedPeripheral}: commits in-order blocks whose CRC matches,
+ * keeps the committed offset across disconnects and verifies the image on
+ * FINISH.
+ */
+class SimulatedTransferReceiver implements SimulatedPeripheral.WriteHandler {
+
+    private final SimulatedPeripheral peripheral;
+    private final UUID service;
+    private final UUID data;
+    private final UUID control;
+    private final CRC32 crc = new CRC32();
+
+    private byte[] image = new byte[0];
+    private long committed;
+    private long expected;
+    private boolean complete;
+    private boolean corruptNext;
+    private int naks;
+    private int starts;
+
+    SimulatedTransferReceiver(SimulatedPeripheral peripheral, UUID service, UUID data, UUID control) {
+        this.peripheral = peripheral;
+        this.service = service;
+        this.data = data;
+        this.control = control;
+        peripheral.addCharacteristic(service, data, BluetoothGattCharacteristic.PROPERTY_WRITE
+                        | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE, null)
+                .addCharacteristic(service, control, BluetoothGattCharacteristic.PROPERTY_WRITE
+                        | BluetoothGattCharacteristic.PROPERTY_NOTIFY, null)
+                .setWriteHandler(this);
+    }
+
+    // The next accepted chunk has a flipped bit, so its block fails the CRC
+    void corruptNextChunk() {
+        corruptNext = true;
+    }
+
+    byte[] getImage() {
+        return Arrays.copyOf(image, (int) committed);
+    }
+
+    long getCommitted() {
+        return committed;
+    }
+
+    boolean isComplete() {
+        return complete;
+    }
+
+    int getNaks() {
+        return naks;
+    }
+
+    int getStarts() {
+        return starts;
+    }
+
+    @Override
+    public void onWrite(UUID writtenService, UUID characteristic, byte[] value) {
+        if (!writtenService.equals(service)) {
+            return;
+        }
+        if (characteristic.equals(data)) {
+            onChunk(value);
+        } else if (characteristic.equals(control) && value.length > 0) {
+            onControl(value);
+        }
+    }
+
+    private void onChunk(byte[] value) {
+        long offset = TransferProtocol.getInt(value, 0);
+        int length = value.length - TransferProtocol.DATA_HEADER;
+        // Chunks after a gap are dropped; the block NAK makes the sender resend them
+        if (offset != expected || offset + length > image.length) {
+            return;
+        }
+        System.arraycopy(value, TransferProtocol.DATA_HEADER, image, (int) offset, length);
+        if (corruptNext) {
+            corruptNext = false;
+            image[(int) offset] ^= 1;
+        }
+        expected += length;
+    }
+
+    private void onControl(byte[] value) {
+        switch (value[0]) {
+            case TransferProtocol.OP_START:
+                starts++;
+                long total = TransferProtocol.getInt(value, 1);
+                if (total != image.length) {
+                    image = new byte[(int) total];
+                    committed = 0;
+                    complete = false;
+                }
+                expected = committed;
+                ack(committed, TransferProtocol.STATUS_OK);
+                break;
+            case TransferProtocol.OP_BLOCK:
+                long offset = TransferProtocol.getInt(value, 1);
+                int length = (int) TransferProtocol.getInt(value, 5);
+                if (offset == committed && expected == offset + length
+                        && crcOf(offset, length) == TransferProtocol.getInt(value, 9)) {
+                    committed = expected;
+                    ack(committed, TransferProtocol.STATUS_OK);
+                } else {
+                    naks++;
+                    expected = committed;
+                    ack(committed, TransferProtocol.STATUS_NAK);
+                }
+                break;
+            case TransferProtocol.OP_FINISH:
+                complete = committed == image.length && crcOf(0, image.length) == TransferProtocol.getInt(value, 5);
+                ack(committed, complete ? TransferProtocol.STATUS_OK : TransferProtocol.STATUS_FAILED);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private long crcOf(long offset, int length) {
+        crc.reset();
+        crc.update(image, (int) offset, length);
+        return crc.getValue();
+    }
+
+    private void ack(long offset, int status) {
+        peripheral.notify(service, control, TransferProtocol.ack(offset, status));
+    }
+}
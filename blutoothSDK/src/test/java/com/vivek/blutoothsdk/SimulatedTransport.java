@@ -0,0 +1,214 @@
+package com.vivek.blutoothsdk;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * In-process {@link BleTransport} over {@link SimulatedPeripheral}s, driven by
+ * a {@link Scheduler}. With a fake clock and a fixed seed every run is
+ * deterministic, so queueing, reconnect and throughput behaviour can be
+ * tested and benchmarked without a phone.
+ */
+class SimulatedTransport implements BleTransport<SimulatedPeripheral> {
+
+    // Random 0-10 ms advDelay the spec adds to every advertising event
+    private static final int MAX_ADV_DELAY_MILLIS = 10;
+
+    private final Scheduler scheduler;
+    private final Random random;
+    private final Map<Long, SimulatedPeripheral> peripherals = new LinkedHashMap<>();
+    private final List<Advertiser> advertisers = new ArrayList<>();
+    // Reused by matches; scans run on the scheduler thread
+    private final AdvertisementView view = new AdvertisementView();
+    private BondSink bondSink;
+    private int linksOpened;
+    private int lastAddressType = KnownDevice.ADDRESS_TYPE_UNKNOWN;
+    private int scanStarts;
+
+    SimulatedTransport(Scheduler scheduler, long seed) {
+        this.scheduler = scheduler;
+        this.random = new Random(seed);
+    }
+
+    SimulatedTransport add(SimulatedPeripheral peripheral) {
+        peripherals.put(peripheral.getAddress(), peripheral);
+        return this;
+    }
+
+    SimulatedPeripheral get(long address) {
+        return peripherals.get(address);
+    }
+
+    int getLinksOpened() {
+        return linksOpened;
+    }
+
+    // Address type the last link was opened with
+    int getLastAddressType() {
+        return lastAddressType;
+    }
+
+    int getScanStarts() {
+        return scanStarts;
+    }
+
+    boolean isScanning() {
+        return !advertisers.isEmpty();
+    }
+
+    @Override
+    public boolean startScan(ScanConfig config, ScanSink<SimulatedPeripheral> sink) {
+        stopScan();
+        scanStarts++;
+        for (SimulatedPeripheral peripheral : peripherals.values()) {
+            if (peripheral.getAdvertisingIntervalMillis() > 0 && matches(config, peripheral)) {
+                Advertiser advertiser = new Advertiser(peripheral, sink);
+                advertisers.add(advertiser);
+                advertiser.schedule();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void stopScan() {
+        for (Advertiser advertiser : advertisers) {
+            advertiser.cancel();
+        }
+        advertisers.clear();
+    }
+
+    @Override
+    public boolean matches(ScanConfig config, SimulatedPeripheral device, byte[] advertisement) {
+        return matches(config, device);
+    }
+
+    @Override
+    public GattLink openLink(long address, int addressType, boolean autoConnect, GattLink.Listener listener) {
+        linksOpened++;
+        lastAddressType = addressType;
+        return new SimulatedLink(this, scheduler, peripherals.get(address), autoConnect, listener);
+    }
+
+    @Override
+    public String getName(long address) {
+        SimulatedPeripheral peripheral = peripherals.get(address);
+        return peripheral != null ? peripheral.getName() : null;
+    }
+
+    @Override
+    public boolean isBonded(long address) {
+        return getBondState(address) == BOND_BONDED;
+    }
+
+    @Override
+    public int getBondState(long address) {
+        SimulatedPeripheral peripheral = peripherals.get(address);
+        return peripheral != null ? peripheral.getBondState() : BOND_NONE;
+    }
+
+    // Pairing takes the peripheral's bonding time and fails if it rejects it or leaves range
+    @Override
+    public boolean createBond(final long address) {
+        final SimulatedPeripheral peripheral = peripherals.get(address);
+        if (peripheral == null || peripheral.getBondState() != BOND_NONE) {
+            return false;
+        }
+        setBondState(peripheral, BOND_BONDING);
+        scheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                boolean accepted = peripheral.isInRange() && peripheral.acceptsBonding();
+                setBondState(peripheral, accepted ? BOND_BONDED : BOND_NONE);
+            }
+        }, peripheral.getBondingMillis());
+        return true;
+    }
+
+    @Override
+    public void startBondEvents(BondSink sink) {
+        bondSink = sink;
+    }
+
+    @Override
+    public void stopBondEvents() {
+        bondSink = null;
+    }
+
+    boolean isListeningForBonds() {
+        return bondSink != null;
+    }
+
+    private void setBondState(SimulatedPeripheral peripheral, int state) {
+        int previous = peripheral.getBondState();
+        peripheral.setBondState(state);
+        if (bondSink != null) {
+            bondSink.onBondStateChanged(peripheral.getAddress(), state, previous);
+        }
+    }
+
+    boolean isLost(SimulatedPeripheral peripheral) {
+        return peripheral.getPacketLoss() > 0 && random.nextDouble() < peripheral.getPacketLoss();
+    }
+
+    boolean shouldFail133(SimulatedPeripheral peripheral) {
+        return peripheral.consumeForced133()
+                || (peripheral.getStatus133Rate() > 0 && random.nextDouble() < peripheral.getStatus133Rate());
+    }
+
+    // Controller-side filtering: any filter may match; unset fields match anything
+    private boolean matches(ScanConfig config, SimulatedPeripheral peripheral) {
+        if (config.getFilters().isEmpty()) {
+            return true;
+        }
+        view.reset(peripheral.getAdvertisement());
+        for (ScanConfig.Filter filter : config.getFilters()) {
+            if (filter.matches(view)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class Advertiser implements Runnable {
+        private final SimulatedPeripheral peripheral;
+        private final ScanSink<SimulatedPeripheral> sink;
+        private Scheduler.Cancellable next;
+        private boolean cancelled;
+
+        Advertiser(SimulatedPeripheral peripheral, ScanSink<SimulatedPeripheral> sink) {
+            this.peripheral = peripheral;
+            this.sink = sink;
+        }
+
+        void schedule() {
+            long delay = peripheral.getAdvertisingIntervalMillis() + random.nextInt(MAX_ADV_DELAY_MILLIS + 1);
+            next = scheduler.postDelayed(this, delay);
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (next != null) {
+                next.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            // Connected peripherals usually stop advertising
+            if (peripheral.isInRange() && !peripheral.isConnected() && !isLost(peripheral)) {
+                sink.onScanResult(peripheral.getAddress(), peripheral, peripheral.getRssi(),
+                        peripheral.getAdvertisement(), scheduler.now());
+            }
+            if (!cancelled && peripheral.getAdvertisingIntervalMillis() > 0) {
+                schedule();
+            }
+        }
+    }
+}
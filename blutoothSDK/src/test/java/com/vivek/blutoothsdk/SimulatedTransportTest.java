@@ -0,0 +1,183 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SimulatedTransportTest {
+
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID DATA = UUID.fromString("2F123457-CF6D-4A0F-ADF2-F4911BA9FFA6");
+
+    @Test
+    public void scan_deliversAdvertisementsAtConfiguredRate() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 7);
+        for (int i = 0; i < 50; i++) {
+            transport.add(new SimulatedPeripheral(0xA4C1380B0000L + i).setAdvertisingIntervalMillis(100));
+        }
+        final int[] results = new int[1];
+        transport.startScan(ScanConfig.defaults(), new BleTransport.ScanSink<SimulatedPeripheral>() {
+            @Override
+            public void onScanResult(long address, SimulatedPeripheral device, int rssi, byte[] advertisement,
+                                     long nowMillis) {
+                results[0]++;
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                fail();
+            }
+        });
+        scheduler.advance(1000);
+        // 100 ms interval plus up to 10 ms advDelay: 9-10 events per device per second
+        assertTrue("results=" + results[0], results[0] >= 450 && results[0] <= 500);
+
+        transport.stopScan();
+        assertEquals(0, scheduler.pendingTasks());
+    }
+
+    @Test
+    public void scan_appliesFiltersAndFeedsSession() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 7);
+        final SimulatedPeripheral ringer = new SimulatedPeripheral(1).setName("RingerDevice");
+        transport.add(ringer);
+        transport.add(new SimulatedPeripheral(2).setName("Other"));
+        transport.add(new SimulatedPeripheral(3).setAdvertisement(new byte[]{5, (byte) 0xFF, 0x59, 0x00, 0x01, 0x02}));
+
+        ScanConfig config = new ScanConfig.Builder()
+                .addNameFilter("RingerDevice")
+                .addManufacturerFilter(0x0059, new byte[]{0x01}, null)
+                .setLostTimeoutMillis(500)
+                .build();
+        final List<ScanDelta<SimulatedPeripheral>> deltas = new ArrayList<>();
+        final ScanSession<SimulatedPeripheral> session = new ScanSession<>(config, new ScanListener<SimulatedPeripheral>() {
+            @Override
+            public void onScanFrame(List<ScanDelta<SimulatedPeripheral>> frame) {
+                deltas.addAll(frame);
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+            }
+        });
+        transport.startScan(config, new BleTransport.ScanSink<SimulatedPeripheral>() {
+            @Override
+            public void onScanResult(long address, SimulatedPeripheral device, int rssi, byte[] advertisement,
+                                     long nowMillis) {
+                session.onResult(address, device, rssi, advertisement, nowMillis);
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+            }
+        });
+        scheduler.advance(300);
+        session.tick(scheduler.now());
+        assertEquals(2, session.getTable().size());
+        assertFalse(session.getTable().contains(2));
+
+        ringer.setInRange(false);
+        scheduler.advance(1000);
+        session.tick(scheduler.now());
+        assertFalse(session.getTable().contains(1));
+        session.finish(scheduler.now());
+        boolean lost = false;
+        for (ScanDelta<SimulatedPeripheral> delta : deltas) {
+            lost |= delta.getType() == ScanDelta.Type.LOST && delta.getAddress() == 1;
+        }
+        assertTrue(lost);
+        assertTrue(session.getTable().contains(3));
+        transport.stopScan();
+    }
+
+    @Test
+    public void scan_advertisesNameAndServiceInTheRecord() {
+        SimulatedTransport transport = new SimulatedTransport(new FakeScheduler(), 7);
+        SimulatedPeripheral sensor = new SimulatedPeripheral(1).setName("Sensor").setAdvertisedService(SERVICE)
+                .setAdvertisement(new byte[]{0x02, 0x01, 0x06});
+        AdvertisementView view = new AdvertisementView();
+        view.reset(sensor.getAdvertisement());
+
+        assertEquals(0x06, view.getFlags());
+        assertEquals("Sensor", view.getLocalName());
+        assertTrue(view.hasServiceUuid(SERVICE, null));
+        assertTrue(transport.matches(new ScanConfig.Builder().addServiceUuidFilter(SERVICE).build(), sensor,
+                sensor.getAdvertisement()));
+        assertFalse(transport.matches(new ScanConfig.Builder().addServiceUuidFilter(DATA).build(), sensor,
+                sensor.getAdvertisement()));
+    }
+
+    @Test
+    public void bulkWrite_negotiatesMtuAndStreamsPayload() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 3);
+        SimulatedPeripheral sensor = new SimulatedPeripheral(1)
+                .setMaxMtu(247)
+                .setConnectionIntervalMillis(8)
+                .addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE, null);
+        transport.add(sensor);
+        ConnectionManager manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        final DeviceConnection connection = manager.connect(1, null, null);
+        scheduler.advance(500);
+        assertEquals(DeviceConnection.State.READY, connection.getState());
+
+        byte[] payload = new byte[24400];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        final BulkTransferResult[] result = new BulkTransferResult[1];
+        final GattLink link = connection.getLink();
+        new BulkWriter(connection.getQueue(), scheduler, new BulkWriter.ChunkSink() {
+            @Override
+            public GattOperation requestMtu(int mtu, BluetoothSDK.Callback<GattResult> done) {
+                return GattOperations.requestMtu(link, mtu, 1000, done);
+            }
+
+            @Override
+            public GattOperation writeChunk(byte[] chunk, BluetoothSDK.Callback<GattResult> done) {
+                return GattOperations.writeCharacteristic(link, SERVICE, DATA, chunk,
+                        BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE, 1000, done);
+            }
+        }, payload, r -> result[0] = r).start(BulkWriter.MAX_MTU);
+        scheduler.advance(10000);
+
+        assertTrue(result[0].isSuccess());
+        assertEquals(247, result[0].getMtu());
+        assertArrayEquals(payload, sensor.getReceivedBytes());
+        // 100 chunks of 244 bytes, one per 8 ms connection event, after one MTU exchange
+        assertEquals(100, sensor.getWritesReceived());
+        assertEquals(15 + 100 * 8, result[0].getElapsedMillis());
+    }
+
+    @Test
+    public void packetLoss_dropsUnacknowledgedWritesSilently() {
+        FakeScheduler scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 11);
+        SimulatedPeripheral sensor = new SimulatedPeripheral(1)
+                .addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE, null);
+        transport.add(sensor);
+        ConnectionManager manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        DeviceConnection connection = manager.connect(1, null, null);
+        scheduler.advance(500);
+        sensor.setPacketLoss(0.5);
+
+        final int[] acked = new int[1];
+        for (int i = 0; i < 200; i++) {
+            connection.getQueue().enqueue(GattOperations.writeCharacteristic(connection.getLink(), SERVICE, DATA,
+                    new byte[]{(byte) i}, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE, 1000,
+                    r -> acked[0] += r.isSuccess() ? 1 : 0));
+        }
+        scheduler.advance(5000);
+        assertEquals(200, acked[0]);
+        assertEquals(200, sensor.getWritesReceived() + sensor.getDroppedPackets());
+        assertTrue("dropped=" + sensor.getDroppedPackets(), sensor.getDroppedPackets() > 50);
+    }
+}
@@ -0,0 +1,173 @@
+package com.vivek.blutoothsdk;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+// Notification streams: ring backpressure and CCCD handling against the simulator
+public class SubscriptionTest {
+
+    private static final long ADDRESS = 0xA4C1380B7FE2L;
+    private static final UUID SERVICE = UUID.fromString("2F123456-CF6D-4A0F-ADF2-F4911BA9FFA6");
+    private static final UUID ACCEL = UUID.fromString("00002a58-0000-1000-8000-00805f9b34fb");
+
+    private FakeScheduler scheduler;
+    private SimulatedPeripheral sensor;
+    private ConnectionManager manager;
+    private final List<Integer> values = new ArrayList<>();
+    private final NotificationConsumer consumer = (value, length, timestampMillis) -> values.add(value[0] & 0xFF);
+    // Runs drains only when the test says so, like a busy main thread
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private final Executor held = pending::add;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        SimulatedTransport transport = new SimulatedTransport(scheduler, 1);
+        sensor = new SimulatedPeripheral(ADDRESS)
+                .addCharacteristic(SERVICE, ACCEL, BluetoothGattCharacteristic.PROPERTY_NOTIFY, null);
+        transport.add(sensor);
+        manager = new ConnectionManager(scheduler, transport, new GattLayoutStore());
+        manager.setReconnectPolicy(new ReconnectPolicy.Builder()
+                .setInitialDelayMillis(100)
+                .setJitter(0)
+                .build());
+        manager.connect(ADDRESS, null, null);
+        scheduler.advance(500);
+    }
+
+    @Test
+    public void ring_dropOldestKeepsNewestValues() {
+        NotificationRing ring = new NotificationRing(4, 8, SubscriptionConfig.Backpressure.DROP_OLDEST, 0);
+        for (int i = 0; i < 10; i++) {
+            ring.offer(new byte[]{(byte) i}, i);
+        }
+        assertEquals(4, ring.drain(consumer, 100));
+        assertEquals(Arrays.asList(6, 7, 8, 9), values);
+        assertEquals(10, ring.getReceived());
+        assertEquals(6, ring.getDropped());
+    }
+
+    @Test
+    public void ring_coalesceReplacesNewestAndTruncatesLongValues() {
+        NotificationRing ring = new NotificationRing(2, 1, SubscriptionConfig.Backpressure.COALESCE, 0);
+        for (int i = 0; i < 5; i++) {
+            ring.offer(new byte[]{(byte) i, 0x7F}, i);
+        }
+        final int[] length = new int[1];
+        ring.drain((value, valueLength, timestampMillis) -> {
+            values.add(value[0] & 0xFF);
+            length[0] = valueLength;
+        }, 100);
+        assertEquals(Arrays.asList(0, 4), values);
+        assertEquals(1, length[0]);
+        assertEquals(3, ring.getCoalesced());
+        assertEquals(0, ring.getDropped());
+    }
+
+    @Test
+    public void ring_blockWaitsForTheConsumer() throws Exception {
+        final NotificationRing ring = new NotificationRing(1, 8, SubscriptionConfig.Backpressure.BLOCK, 5000);
+        ring.offer(new byte[]{1}, 0);
+        Thread producer = new Thread(() -> ring.offer(new byte[]{2}, 1));
+        producer.start();
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.sleep(1);
+        }
+        ring.drain(consumer, 1);
+        producer.join(5000);
+        ring.drain(consumer, 1);
+        assertEquals(Arrays.asList(1, 2), values);
+        assertEquals(0, ring.getDropped());
+
+        // Nobody drains: the value is dropped after the timeout
+        NotificationRing stalled = new NotificationRing(1, 8, SubscriptionConfig.Backpressure.BLOCK, 10);
+        stalled.offer(new byte[]{1}, 0);
+        assertFalse(stalled.offer(new byte[]{2}, 1));
+        assertEquals(1, stalled.getDropped());
+    }
+
+    @Test
+    public void subscribe_streamsEveryValueInOrder() {
+        Subscription subscription = subscribe(new SubscriptionConfig.Builder(SERVICE, ACCEL).build(), Runnable::run);
+        scheduler.advance(100);
+        assertTrue(sensor.isSubscribed(ACCEL));
+
+        for (int i = 0; i < 1000; i++) {
+            sensor.notify(SERVICE, ACCEL, new byte[]{(byte) i, 0, 0, 0, 0, 0});
+        }
+        scheduler.advance(100);
+        assertEquals(1000, values.size());
+        assertEquals(999 & 0xFF, (int) values.get(999));
+        assertEquals(1000, subscription.getDeliveredCount());
+        assertEquals(0, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void slowConsumer_losesOldestValuesAndCountsThem() {
+        Subscription subscription = subscribe(new SubscriptionConfig.Builder(SERVICE, ACCEL)
+                .setCapacity(16)
+                .build(), held);
+        scheduler.advance(100);
+        for (int i = 0; i < 100; i++) {
+            sensor.notify(SERVICE, ACCEL, new byte[]{(byte) i});
+        }
+        scheduler.advance(100);
+        // One drain task for the whole burst
+        assertEquals(1, pending.size());
+        while (!pending.isEmpty()) {
+            pending.poll().run();
+        }
+        assertEquals(16, values.size());
+        assertEquals(84, (int) values.get(0));
+        assertEquals(84, subscription.getDroppedCount());
+        assertEquals(100, subscription.getReceivedCount());
+    }
+
+    @Test
+    public void reconnect_reenablesAndCancelDisables() {
+        final List<GattResult> enabled = new ArrayList<>();
+        Subscription subscription = new Subscription(ADDRESS, new SubscriptionConfig.Builder(SERVICE, ACCEL).build(),
+                consumer, scheduler, manager, Runnable::run, enabled::add);
+        manager.subscribe(subscription);
+        scheduler.advance(100);
+
+        sensor.dropLink(GattStatus.CONNECTION_TIMEOUT);
+        scheduler.advance(1000);
+        assertEquals(2, enabled.size());
+        assertTrue(enabled.get(1).isSuccess());
+        sensor.notify(SERVICE, ACCEL, new byte[]{42});
+        scheduler.advance(100);
+        assertEquals(Collections.singletonList(42), values);
+
+        subscription.cancel();
+        scheduler.advance(100);
+        assertFalse(subscription.isActive());
+        assertFalse(sensor.isSubscribed(ACCEL));
+    }
+
+    @Test
+    public void missingCharacteristic_reportsNotFound() {
+        final List<GattResult> enabled = new ArrayList<>();
+        manager.subscribe(new Subscription(ADDRESS, new SubscriptionConfig.Builder(SERVICE, UUID.randomUUID())
+                .build(), consumer, scheduler, manager, Runnable::run, enabled::add));
+        assertEquals(GattResult.STATUS_NOT_FOUND, enabled.get(0).getStatus());
+    }
+
+    private Subscription subscribe(SubscriptionConfig config, Executor executor) {
+        Subscription subscription = new Subscription(ADDRESS, config, consumer, scheduler, manager, executor, null);
+        manager.subscribe(subscription);
+        return subscription;
+    }
+}